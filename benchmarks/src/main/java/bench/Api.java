@@ -0,0 +1,260 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 主工程的类都在默认包里，而 JMH 要求基准类有包名，Java 又不允许具名包引用默认包的类，
+ * 所以这里按名字查出 MethodHandle，默认包的类型统一擦成 Object。
+ * 句柄都是 static final，invokeExact 会被 JIT 当常量内联，测出来的是被调方法本身的开销。
+ */
+final class Api {
+    private Api() {}
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    // ---- 加载器 ----
+    private static final MethodHandle OBJ_READ = method("ObjReader", "read", Path.class, boolean.class);
+    private static final MethodHandle OBJ_PREPARE = method("ObjMtlLoader", "prepareOBJ", Path.class, boolean.class);
+    private static final MethodHandle OBJ_PREPARE_RES = method("ObjMtlLoader", "prepareOBJResource", String.class, boolean.class);
+    private static final MethodHandle MTL_LOAD = method("MtlLoader", "loadDeferred", Path.class);
+    private static final MethodHandle MTL_LOAD_RES = method("MtlLoader", "loadResourceDeferred", String.class, String.class);
+    private static final MethodHandle OBJ_PARSE_FILE = method("ObjParser", "parseFile", Path.class, boolean.class, boolean.class);
+    private static final MethodHandle PMX_PARSE = method("PmxLoader", "parse", ByteBuffer.class);
+
+    // ---- 矩阵 / 相机 ----
+    private static final Class<?>[] LOOK_AT = { float.class, float.class, float.class, float.class, float.class, float.class,
+            float.class, float.class, float.class };
+    private static final MethodHandle MAT_IDENTITY = method("Mat4f", "identity");
+    private static final MethodHandle MAT_MUL = method("Mat4f", "multiply", float[].class, float[].class);
+    private static final MethodHandle MAT_MUL_DST = method("Mat4f", "multiply", float[].class, float[].class, float[].class);
+    private static final MethodHandle MAT_MUL_MANY = method("Mat4f", "multiplyMany", float[].class, float[].class, int.class,
+            float[].class, int.class, int.class, int.class);
+    private static final MethodHandle MAT_LOOK_AT = method("Mat4f", "lookAt", LOOK_AT);
+    private static final MethodHandle MAT_LOOK_AT_DST = method("Mat4f", "lookAt", prepend(float[].class, LOOK_AT));
+    private static final MethodHandle MAT_PERSPECTIVE = method("Mat4f", "perspective", float.class, float.class, float.class, float.class);
+    private static final MethodHandle MAT_PERSPECTIVE_DST = method("Mat4f", "perspective", float[].class, float.class, float.class,
+            float.class, float.class);
+    private static final MethodHandle CAM_HEADLESS = method("ArcballCamera", "headless", int.class, int.class);
+    private static final MethodHandle CAM_FRAME = method("ArcballCamera", "frameMesh", float.class, float.class, float.class, float.class);
+    private static final MethodHandle CAM_VP = method("ArcballCamera", "getViewProjection");
+    private static final MethodHandle CAM_VP_DST = method("ArcballCamera", "getViewProjection", float[].class);
+
+    // ---- 视锥裁剪 ----
+    private static final MethodHandle FRUSTUM_NEW = constructor("Frustum");
+    private static final MethodHandle FRUSTUM_SET = method("Frustum", "set", float[].class);
+    private static final MethodHandle FRUSTUM_CULL = method("Frustum", "cull", type("Frustum$Boxes"), float[].class);
+    private static final MethodHandle BOXES_NEW = constructor("Frustum$Boxes", int.class);
+    private static final MethodHandle BOXES_ADD = method("Frustum$Boxes", "add", float[].class, float[].class);
+
+    // ---- BVH 拾取 ----
+    private static final Class<?>[] RAY = { float.class, float.class, float.class, float.class, float.class, float.class, float.class };
+    private static final MethodHandle HIT_NEW = constructor("Bvh$Hit");
+    private static final MethodHandle TRI_BVH_NEW = constructor("TriangleBvh", float[].class, int.class, int[].class, ForkJoinPool.class);
+    private static final MethodHandle TRI_BVH_RAYCAST = method("TriangleBvh", "raycast", append(RAY, type("Bvh$Hit")));
+    private static final MethodHandle TRI_BVH_BRUTE = method("TriangleBvh", "raycastBruteForce",
+            prepend(float[].class, prepend(int.class, prepend(int[].class, append(RAY, type("Bvh$Hit"))))));
+    private static final MethodHandle TRI_BVH_REFIT = method("TriangleBvh", "refit", float[].class);
+
+    // ---- 蒙皮 ----
+    static final int PALETTE_FLOATS = 12; // Skeleton.PALETTE_FLOATS
+    private static final MethodHandle SKEL_COPY = method("Skeleton", "copy");
+    private static final MethodHandle SKEL_BONES = method("Skeleton", "boneCount");
+    private static final MethodHandle SKEL_DEPTH = method("Skeleton", "depth", int.class);
+    private static final MethodHandle SKEL_ROTATE = method("Skeleton", "setRotationAxis", int.class, float.class, float.class,
+            float.class, float.class);
+    private static final MethodHandle SKEL_UPDATE = method("Skeleton", "update");
+    private static final MethodHandle SKEL_PALETTE = method("Skeleton", "palette");
+    private static final MethodHandle SKIN_CPU = method("Skin", "skinCpu", float[].class, int[].class, float[].class, float[].class,
+            float[].class, float[].class, float[].class, int.class);
+
+    // ---- 表情变形 ----
+    static final int MORPH_GROUP = 0, MORPH_VERTEX = 1; // PmxLoader.PmxMorph.GROUP / VERTEX
+    private static final MethodHandle MORPHER_NEW = constructor("Morpher", type("Morphs"));
+    private static final MethodHandle MORPHER_CLEAR = method("Morpher", "clear");
+    private static final MethodHandle MORPHER_SET = method("Morpher", "set", int.class, float.class);
+    private static final MethodHandle MORPHER_APPLY = method("Morpher", "apply", type("MorphBuffer"), int.class);
+    private static final MethodHandle MORPH_BUF_NEW = constructor("MorphBuffer", int.class);
+    private static final MethodHandle MORPH_BUF_ALLOCATE = method("MorphBuffer", "allocate", int.class);
+    private static final MethodHandle MORPH_BUF_DISCARD = method("MorphBuffer", "discardDirty");
+
+    static Object objRead(Path p, boolean flipV) throws Throwable { return (Object) OBJ_READ.invokeExact(p, flipV); }
+    @SuppressWarnings("unchecked")
+    static List<Object> objPrepare(Path p, boolean flipV) throws Throwable { return (List<Object>) (Object) OBJ_PREPARE.invokeExact(p, flipV); }
+    @SuppressWarnings("unchecked")
+    static List<Object> objPrepareResource(String res, boolean flipV) throws Throwable { return (List<Object>) (Object) OBJ_PREPARE_RES.invokeExact(res, flipV); }
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> mtlLoad(Path p) throws Throwable { return (Map<String, Object>) (Object) MTL_LOAD.invokeExact(p); }
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> mtlLoadResource(String dir, String file) throws Throwable { return (Map<String, Object>) (Object) MTL_LOAD_RES.invokeExact(dir, file); }
+
+    static Object objParseFile(Path p, boolean flipV, boolean byMaterial) throws Throwable {
+        return (Object) OBJ_PARSE_FILE.invokeExact(p, flipV, byMaterial);
+    }
+    static Object pmxParse(ByteBuffer src) throws Throwable { return (Object) PMX_PARSE.invokeExact(src); }
+
+    static float[] identity() throws Throwable { return (float[]) MAT_IDENTITY.invokeExact(); }
+    static float[] multiply(float[] a, float[] b) throws Throwable { return (float[]) MAT_MUL.invokeExact(a, b); }
+    static float[] multiply(float[] a, float[] b, float[] dst) throws Throwable { return (float[]) MAT_MUL_DST.invokeExact(a, b, dst); }
+    static void multiplyMany(float[] a, float[] src, int srcOff, float[] dst, int dstOff, int stride, int count) throws Throwable {
+        MAT_MUL_MANY.invokeExact(a, src, srcOff, dst, dstOff, stride, count);
+    }
+    static float[] lookAt(float ex, float ey, float ez, float cx, float cy, float cz, float ux, float uy, float uz) throws Throwable {
+        return (float[]) MAT_LOOK_AT.invokeExact(ex, ey, ez, cx, cy, cz, ux, uy, uz);
+    }
+    static float[] lookAt(float[] dst, float ex, float ey, float ez, float cx, float cy, float cz, float ux, float uy, float uz) throws Throwable {
+        return (float[]) MAT_LOOK_AT_DST.invokeExact(dst, ex, ey, ez, cx, cy, cz, ux, uy, uz);
+    }
+    static float[] perspective(float fov, float aspect, float near, float far) throws Throwable {
+        return (float[]) MAT_PERSPECTIVE.invokeExact(fov, aspect, near, far);
+    }
+    static float[] perspective(float[] dst, float fov, float aspect, float near, float far) throws Throwable {
+        return (float[]) MAT_PERSPECTIVE_DST.invokeExact(dst, fov, aspect, near, far);
+    }
+    static Object headlessCamera(int w, int h) throws Throwable { return (Object) CAM_HEADLESS.invokeExact(w, h); }
+    static void frameMesh(Object cam, float cx, float cy, float cz, float r) throws Throwable { CAM_FRAME.invokeExact(cam, cx, cy, cz, r); }
+    static float[] viewProjection(Object cam) throws Throwable { return (float[]) CAM_VP.invokeExact(cam); }
+    static float[] viewProjection(Object cam, float[] dst) throws Throwable { return (float[]) CAM_VP_DST.invokeExact(cam, dst); }
+
+    static Object newFrustum() throws Throwable { return (Object) FRUSTUM_NEW.invokeExact(); }
+    static Object frustumSet(Object f, float[] m) throws Throwable { return (Object) FRUSTUM_SET.invokeExact(f, m); }
+    static int cull(Object f, Object boxes, float[] margin) throws Throwable { return (int) FRUSTUM_CULL.invokeExact(f, boxes, margin); }
+    static Object newBoxes(int capacity) throws Throwable { return (Object) BOXES_NEW.invokeExact(capacity); }
+    static int addBox(Object boxes, float[] min, float[] max) throws Throwable { return (int) BOXES_ADD.invokeExact(boxes, min, max); }
+
+    static Object newHit() throws Throwable { return (Object) HIT_NEW.invokeExact(); }
+    static Object triangleBvh(float[] inter, int stride, int[] indices, ForkJoinPool pool) throws Throwable {
+        return (Object) TRI_BVH_NEW.invokeExact(inter, stride, indices, pool);
+    }
+    static boolean raycast(Object bvh, float ox, float oy, float oz, float dx, float dy, float dz, float tMax, Object hit) throws Throwable {
+        return (boolean) TRI_BVH_RAYCAST.invokeExact(bvh, ox, oy, oz, dx, dy, dz, tMax, hit);
+    }
+    static boolean raycastBruteForce(float[] inter, int stride, int[] indices, float ox, float oy, float oz,
+                                     float dx, float dy, float dz, float tMax, Object hit) throws Throwable {
+        return (boolean) TRI_BVH_BRUTE.invokeExact(inter, stride, indices, ox, oy, oz, dx, dy, dz, tMax, hit);
+    }
+    static void refit(Object bvh, float[] inter) throws Throwable { TRI_BVH_REFIT.invokeExact(bvh, inter); }
+
+    static Object skeletonCopy(Object s) throws Throwable { return (Object) SKEL_COPY.invokeExact(s); }
+    static int boneCount(Object s) throws Throwable { return (int) SKEL_BONES.invokeExact(s); }
+    static int depth(Object s, int bone) throws Throwable { return (int) SKEL_DEPTH.invokeExact(s, bone); }
+    static void setRotationAxis(Object s, int bone, float ax, float ay, float az, float rad) throws Throwable {
+        SKEL_ROTATE.invokeExact(s, bone, ax, ay, az, rad);
+    }
+    static void update(Object s) throws Throwable { SKEL_UPDATE.invokeExact(s); }
+    static float[] palette(Object s) throws Throwable { return (float[]) SKEL_PALETTE.invokeExact(s); }
+    static void skinCpu(float[] palette, int[] bones, float[] weights, float[] positions, float[] normals,
+                        float[] outPositions, float[] outNormals, int count) throws Throwable {
+        SKIN_CPU.invokeExact(palette, bones, weights, positions, normals, outPositions, outNormals, count);
+    }
+
+    static Object newMorpher(Object morphs) throws Throwable { return (Object) MORPHER_NEW.invokeExact(morphs); }
+    static void clear(Object morpher) throws Throwable { MORPHER_CLEAR.invokeExact(morpher); }
+    static void set(Object morpher, int morph, float weight) throws Throwable { MORPHER_SET.invokeExact(morpher, morph, weight); }
+    static boolean apply(Object morpher, Object buffer, int base) throws Throwable { return (boolean) MORPHER_APPLY.invokeExact(morpher, buffer, base); }
+    static Object newMorphBuffer(int capacity) throws Throwable { return (Object) MORPH_BUF_NEW.invokeExact(capacity); }
+    static int allocate(Object buffer, int vertexCount) throws Throwable { return (int) MORPH_BUF_ALLOCATE.invokeExact(buffer, vertexCount); }
+    static void discardDirty(Object buffer) throws Throwable { MORPH_BUF_DISCARD.invokeExact(buffer); }
+
+    // ---- 只在 @Setup 里用：反射读字段、调用包内可见的方法，不进计时 ----
+
+    /** 主工程 jar 里的资源（例如 asserts/Klee/Klee.pmx） */
+    static ByteBuffer resource(String path) throws IOException {
+        try (InputStream in = Api.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) throw new IOException(path + " not on classpath");
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    /** 实例字段，可以是包内可见的（主工程在 classpath 上的未命名模块里，对反射是开放的） */
+    static Object field(Object target, String name) {
+        try {
+            Field f = target.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            return f.get(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no such field: " + target.getClass().getName() + "." + name, e);
+        }
+    }
+
+    /** 静态或实例方法（target 为 null 表示静态），可以是包内可见的 */
+    static Object call(String owner, Object target, String name, Class<?>[] params, Object... args) throws Throwable {
+        try {
+            Method m = type(owner).getDeclaredMethod(name, params);
+            m.setAccessible(true);
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no such method: " + owner + "." + name, e);
+        }
+    }
+
+    // ------------------------------------------------------------------
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name, false, Api.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("main project class not on classpath: " + name, e);
+        }
+    }
+
+    /** 静态方法或实例方法（实例方法的接收者为第一个参数） */
+    private static MethodHandle method(String owner, String name, Class<?>... params) {
+        try {
+            Method m = type(owner).getMethod(name, params);
+            return erase(LOOKUP.unreflect(m));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no such method: " + owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... params) {
+        try {
+            Constructor<?> c = type(owner).getConstructor(params);
+            return erase(LOOKUP.unreflectConstructor(c));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no such constructor: " + owner, e);
+        }
+    }
+
+    /** 默认包里的类型（以及集合返回值）擦成 Object，调用处的 invokeExact 才写得出来 */
+    private static MethodHandle erase(MethodHandle h) {
+        MethodType t = h.type();
+        for (int i = 0; i < t.parameterCount(); i++) if (inDefaultPackage(t.parameterType(i))) t = t.changeParameterType(i, Object.class);
+        Class<?> r = t.returnType();
+        if (inDefaultPackage(r) || r == List.class || r == Map.class) t = t.changeReturnType(Object.class);
+        return h.asType(t);
+    }
+
+    private static boolean inDefaultPackage(Class<?> c) {
+        return !c.isPrimitive() && !c.isArray() && c.getPackageName().isEmpty();
+    }
+
+    private static Class<?>[] append(Class<?>[] head, Class<?> last) {
+        Class<?>[] a = Arrays.copyOf(head, head.length + 1);
+        a[head.length] = last;
+        return a;
+    }
+
+    private static Class<?>[] prepend(Class<?> first, Class<?>[] rest) {
+        Class<?>[] a = new Class<?>[rest.length + 1];
+        a[0] = first;
+        System.arraycopy(rest, 0, a, 1, rest.length);
+        return a;
+    }
+}
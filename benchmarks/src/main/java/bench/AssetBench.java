@@ -0,0 +1,35 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 真实模型的几何准备（ObjMtlLoader.prepareOBJResource，与 MainApp 加载同一路径但不碰 GL）。
+ * 仓库里只带了 MTL 与贴图，OBJ 本体较大没有入库：放到 src/main/resources 下重新 install 主工程后可用，
+ * 或用 {@code -p obj=asserts/xxx/yyy.obj} 指定；资源不存在时本基准在 setup 阶段报错，其余基准照常运行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dgmesh.cache=false", "-Xmx4g" })
+public class AssetBench {
+
+    @Param({ "asserts/Losalia/Losalia.obj" })
+    public String obj;
+
+    @Setup(Level.Trial)
+    public void check() {
+        if (ClassLoader.getSystemClassLoader().getResource(obj) == null) {
+            throw new IllegalStateException("asset not bundled: " + obj + " (add it under src/main/resources or pass -p obj=...)");
+        }
+    }
+
+    @Benchmark
+    public List<Object> prepareResource() throws Throwable {
+        return Api.objPrepareResource(obj, true);
+    }
+}
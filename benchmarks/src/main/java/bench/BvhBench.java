@@ -0,0 +1,123 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BVH 拾取：构建（common pool 上并行）、每条射线的遍历、逐三角形暴力扫描对照与整体平移后的 refit。
+ * 网格是程序生成的起伏球面，射线从外接球面射向中心附近的随机点，与 BVH 结果一致性见 BvhTest。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BvhBench {
+
+    private static final int RAYS = 1024;
+
+    /** 球面经纬分段数：三角形数 = 2 * seg^2（708 ≈ 100 万） */
+    @Param({ "100", "708" })
+    public int seg;
+
+    private float[] inter, moved, ray;
+    private int[] idx;
+    private Object bvh, hit;
+
+    @Setup
+    public void setup() throws Throwable {
+        inter = bumpySphere(seg);
+        idx = sphereIndices(seg);
+        moved = inter.clone();
+        for (int v = 1; v < moved.length; v += 3) moved[v] += 0.5f;
+        ray = makeRays(RAYS, new Random(42));
+        bvh = Api.triangleBvh(inter, 3, idx, ForkJoinPool.commonPool());
+        hit = Api.newHit();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object build() throws Throwable {
+        return Api.triangleBvh(inter, 3, idx, ForkJoinPool.commonPool());
+    }
+
+    /** 分数为每条射线的耗时 */
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int raycast() throws Throwable {
+        int hits = 0;
+        for (int o = 0; o < ray.length; o += 6) {
+            if (Api.raycast(bvh, ray[o], ray[o+1], ray[o+2], ray[o+3], ray[o+4], ray[o+5], Float.POSITIVE_INFINITY, hit)) hits++;
+        }
+        return hits;
+    }
+
+    /** 对照：只取前 16 条射线，大网格上暴力扫描一条就要几毫秒 */
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int raycastBruteForce() throws Throwable {
+        int hits = 0;
+        for (int o = 0; o < 16 * 6; o += 6) {
+            if (Api.raycastBruteForce(inter, 3, idx, ray[o], ray[o+1], ray[o+2], ray[o+3], ray[o+4], ray[o+5],
+                    Float.POSITIVE_INFINITY, hit)) hits++;
+        }
+        return hits;
+    }
+
+    /** 在两组顶点之间来回 refit，拓扑不变 */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object refit() throws Throwable {
+        float[] t = moved; moved = inter; inter = t;
+        Api.refit(bvh, inter);
+        return bvh;
+    }
+
+    /** 每条射线 6 个 float：起点 + 方向（指向中心附近的随机点）；球面半径约 1，外接球取 2 */
+    static float[] makeRays(int n, Random rnd) {
+        float rad = 2f;
+        float[] r = new float[6 * n];
+        for (int i = 0; i < n; i++) {
+            double th = rnd.nextDouble() * Math.PI * 2, z = rnd.nextDouble() * 2 - 1, s = Math.sqrt(1 - z * z);
+            float ox = (float) (rad * s * Math.cos(th)), oy = (float) (rad * s * Math.sin(th)), oz = (float) (rad * z);
+            float tx = (rnd.nextFloat() - 0.5f) * rad * 0.5f, ty = (rnd.nextFloat() - 0.5f) * rad * 0.5f,
+                    tz = (rnd.nextFloat() - 0.5f) * rad * 0.5f;
+            r[6*i] = ox; r[6*i+1] = oy; r[6*i+2] = oz;
+            r[6*i+3] = tx - ox; r[6*i+4] = ty - oy; r[6*i+5] = tz - oz;
+        }
+        return r;
+    }
+
+    static float[] bumpySphere(int seg) {
+        float[] p = new float[3 * (seg + 1) * (seg + 1)];
+        int k = 0;
+        for (int i = 0; i <= seg; i++) {
+            double th = Math.PI * i / seg;
+            for (int j = 0; j <= seg; j++) {
+                double ph = 2 * Math.PI * j / seg;
+                double r = 1 + 0.05 * Math.sin(12 * th) * Math.cos(9 * ph);
+                p[k++] = (float) (r * Math.sin(th) * Math.cos(ph));
+                p[k++] = (float) (r * Math.cos(th));
+                p[k++] = (float) (r * Math.sin(th) * Math.sin(ph));
+            }
+        }
+        return p;
+    }
+
+    static int[] sphereIndices(int seg) {
+        int[] ix = new int[seg * seg * 6];
+        int k = 0;
+        for (int i = 0; i < seg; i++) {
+            for (int j = 0; j < seg; j++) {
+                int a = i * (seg + 1) + j, b = a + seg + 1;
+                ix[k++] = a; ix[k++] = b; ix[k++] = a + 1;
+                ix[k++] = a + 1; ix[k++] = b; ix[k++] = b + 1;
+            }
+        }
+        return ix;
+    }
+}
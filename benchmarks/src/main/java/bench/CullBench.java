@@ -0,0 +1,50 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视锥裁剪热路径：从 viewProj 提取平面 + 对 SoA 包围盒批量测试（RenderQueue 每次 submit 做的事）。
+ * 包围盒随机散布在相机周围，大约一半落在视锥内。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CullBench {
+
+    @Param({ "64", "4096", "65536" })
+    public int boxes;
+
+    private Object frustum, soa;
+    private float[] viewProj, margin;
+
+    @Setup
+    public void setup() throws Throwable {
+        Object cam = Api.headlessCamera(1280, 800);
+        Api.frameMesh(cam, 0f, 0f, 0f, 10f);
+        viewProj = Api.viewProjection(cam);
+        frustum = Api.newFrustum();
+        soa = Api.newBoxes(boxes);
+        Random r = new Random(7);
+        float[] mn = new float[3], mx = new float[3];
+        for (int i = 0; i < boxes; i++) {
+            for (int k = 0; k < 3; k++) {
+                float c = (r.nextFloat() - 0.5f) * 60f, e = 0.1f + r.nextFloat();
+                mn[k] = c - e; mx[k] = c + e;
+            }
+            Api.addBox(soa, mn, mx);
+        }
+        margin = new float[boxes];
+    }
+
+    @Benchmark
+    public int setAndCull() throws Throwable {
+        Api.frustumSet(frustum, viewProj);
+        return Api.cull(frustum, soa, margin);
+    }
+}
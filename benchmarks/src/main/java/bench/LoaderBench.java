@@ -0,0 +1,71 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * OBJ 加载的 CPU 路径，输入为 {@link ObjGen} 生成的临时文件：
+ * <ul>
+ *   <li>{@code objReaderRead}：ObjReader.read，整文件一个组（解析 + 顶点去重）；</li>
+ *   <li>{@code objLoaderPrepare}：ObjMtlLoader.prepareOBJ，即 loadOBJWithMTL 在上传 GL 之前做的全部几何工作
+ *       （按材质解析 + 顶点缓存 / overdraw 重排 + LOD），不读写 .gmesh。</li>
+ * </ul>
+ * 多线程扩展性用 {@code -t N} 或 {@link Scaling}；每个线程各读同一个文件。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dgmesh.cache=false", "-Xmx4g" })
+public class LoaderBench {
+
+    /** 每边的格数：三角形数约为 2·size² */
+    @Param({ "128", "512" })
+    public int size;
+
+    @Param({ "TRI", "QUAD", "NGON" })
+    public ObjGen.Topology topology;
+
+    @Param({ "false", "true" })
+    public boolean negative;
+
+    @Param({ "4" })
+    public int materials;
+
+    private Path dir, obj;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        dir = Files.createTempDirectory("objbench");
+        obj = dir.resolve("synthetic.obj");
+        Files.write(obj, ObjGen.obj(size, topology, negative, materials));
+        Files.write(dir.resolve("synthetic.mtl"), ObjGen.mtl(materials));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+
+    @Benchmark
+    public Object objReaderRead() throws Throwable {
+        return Api.objRead(obj, false);
+    }
+
+    @Benchmark
+    public void objLoaderPrepare(Blackhole bh) throws Throwable {
+        List<Object> parts = Api.objPrepare(obj, false);
+        bh.consume(parts);
+    }
+}
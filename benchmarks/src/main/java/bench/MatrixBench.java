@@ -0,0 +1,93 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mat4f 与 ArcballCamera 的帧路径：返回新数组的版本对比写入 dst 的版本。
+ * 配合 {@code -prof gc} 看 gc.alloc.rate.norm：dst 版本应为 0 B/op。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBench {
+
+    private static final int INSTANCES = 10_000, STRIDE = 20; // InstanceBuffer.FLOATS
+
+    private float[] a, b, dst, m16;
+    private float[] instances, out;
+    private Object camera;
+
+    @Setup
+    public void setup() throws Throwable {
+        a = Api.perspective(60f, 1.6f, 0.1f, 100f);
+        b = Api.lookAt(1f, 2f, 5f, 0f, 0.5f, 0f, 0f, 1f, 0f);
+        dst = new float[16]; m16 = new float[16];
+        instances = new float[INSTANCES * STRIDE]; out = new float[INSTANCES * STRIDE];
+        for (int i = 0; i < INSTANCES; i++) {
+            float[] t = Api.identity();
+            t[12] = i % 100; t[14] = i / 100f;
+            System.arraycopy(t, 0, instances, i * STRIDE, 16);
+        }
+        camera = Api.headlessCamera(1280, 800);
+        Api.frameMesh(camera, 0f, 1f, 0f, 2.5f);
+    }
+
+    @Benchmark
+    public float[] multiplyAlloc() throws Throwable { return Api.multiply(a, b); }
+
+    @Benchmark
+    public float[] multiplyDst() throws Throwable { return Api.multiply(a, b, dst); }
+
+    @Benchmark
+    public float[] lookAtAlloc() throws Throwable { return Api.lookAt(1f, 2f, 5f, 0f, 0.5f, 0f, 0f, 1f, 0f); }
+
+    @Benchmark
+    public float[] lookAtDst() throws Throwable { return Api.lookAt(dst, 1f, 2f, 5f, 0f, 0.5f, 0f, 0f, 1f, 0f); }
+
+    @Benchmark
+    public float[] perspectiveAlloc() throws Throwable { return Api.perspective(60f, 1.6f, 0.1f, 100f); }
+
+    @Benchmark
+    public float[] perspectiveDst() throws Throwable { return Api.perspective(dst, 60f, 1.6f, 0.1f, 100f); }
+
+    /**
+     * 重构前 getViewProjection 内部的算法：每帧 lookAt + perspective + multiply 各分配一个新数组，
+     * 再乘 MainApp 里的单位阵。相机参数与 setup 里 frameMesh 取景的结果相同，两者一致性见 ArcballCameraTest。
+     */
+    @Benchmark
+    public float[] cameraLegacy() throws Throwable {
+        float dist = 2.5f / (float) Math.tan(Math.toRadians(30.0)) * 1.2f;
+        float[] view = Api.lookAt(0f, 1f, dist, 0f, 1f, 0f, 0f, 1f, 0f);
+        return Api.multiply(Api.multiply(Api.perspective(60f, 1280f / 800f, 0.02f, 1e7f), view), Api.identity());
+    }
+
+    /** MainApp 改造前的调用方式：返回新数组的 getViewProjection() 再乘一个新的单位阵 */
+    @Benchmark
+    public float[] cameraAlloc() throws Throwable { return Api.multiply(Api.viewProjection(camera), Api.identity()); }
+
+    @Benchmark
+    public float[] cameraDst() throws Throwable { return Api.viewProjection(camera, dst); }
+
+    /** 逐实例 viewProj * model，分数为每个矩阵的耗时 */
+    @Benchmark
+    @OperationsPerInvocation(INSTANCES)
+    public float[] instancesAlloc() throws Throwable {
+        for (int i = 0; i < INSTANCES; i++) {
+            System.arraycopy(instances, i * STRIDE, m16, 0, 16);
+            System.arraycopy(Api.multiply(a, m16), 0, out, i * STRIDE, 16);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTANCES)
+    public float[] instancesDst() throws Throwable {
+        Api.multiplyMany(a, instances, 0, out, 0, STRIDE, INSTANCES);
+        return out;
+    }
+}
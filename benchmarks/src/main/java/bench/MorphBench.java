@@ -0,0 +1,116 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 表情变形的 CPU 开销，对 N 个角色计时。每帧每个角色换一个顶点 / 组变形并改权重：
+ * <ul>
+ *   <li>{@code sparse}：Morpher.apply 只混合生效的变形并标脏块，没有 GL，用 discardDirty 代替上传；</li>
+ *   <li>{@code dense}：对照，每帧对全部顶点、全部变形做一遍稠密混合（相当于重建整个顶点缓冲）。</li>
+ * </ul>
+ * 模型为工程自带的 asserts/Klee/Klee.pmx，顶点顺序与加载器相同（重排 + LOD 之后）；混合结果与脏块的正确性见 MorphTest。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MorphBench {
+
+    @Param({ "1", "10", "50" })
+    public int characters;
+
+    private Object buffer;
+    private Object[] faces;
+    private int[] bases, usable;
+    private int morphCount, frame;
+    // Morphs 的稀疏数据（CSR），dense 对照直接读
+    private int[] first, vertex;
+    private float[] delta, dense, weights;
+
+    @Setup
+    public void setup() throws Throwable {
+        Object p = Api.pmxParse(Api.resource("asserts/Klee/Klee.pmx"));
+        List<?> materials = (List<?>) Api.field(p, "materials");
+        IntFunction<Object> raw = i -> {
+            try {
+                return Api.call("PmxLoader$Parsed", p, "part", new Class<?>[]{ int.class, String.class }, i, i + ":" + i);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        List<?> parts = (List<?>) Api.call("ObjMtlLoader", null, "prepareParts",
+                new Class<?>[]{ int.class, IntFunction.class, boolean.class }, materials.size(), raw, false);
+        List<int[]> map = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            Object d = parts.get(i);
+            if ((boolean) Api.call("MeshData", d, "isEmpty", new Class<?>[0])) continue;
+            float[] inter = (float[]) Api.field(d, "interleaved");
+            int stride = (int) Api.call("MeshData", d, "strideFloats", new Class<?>[0]);
+            map.add((int[]) Api.call("PmxLoader$Parsed", p, "sourceVertices", new Class<?>[]{ int.class, FloatBuffer.class, int.class },
+                    i, FloatBuffer.wrap(inter), stride));
+        }
+        Object morphs = Api.call("Morphs", null, "of", new Class<?>[]{ List.class, int[][].class, int.class },
+                Api.field(p, "morphs"), map.toArray(new int[0][]), Api.field(p, "vertexCount"));
+        if (morphs == null) throw new IllegalStateException("model has no vertex morphs");
+
+        int gpuVertices = (int) Api.field(morphs, "vertexCount");
+        morphCount = (int) Api.call("Morphs", morphs, "count", new Class<?>[0]);
+        List<Integer> ok = new ArrayList<>();
+        for (int m = 0; m < morphCount; m++) {
+            int type = (int) Api.call("Morphs", morphs, "type", new Class<?>[]{ int.class }, m);
+            if (type == Api.MORPH_VERTEX || type == Api.MORPH_GROUP) ok.add(m);
+        }
+        usable = ok.stream().mapToInt(Integer::intValue).toArray();
+        first = (int[]) Api.field(morphs, "first");
+        vertex = (int[]) Api.field(morphs, "vertex");
+        delta = (float[]) Api.field(morphs, "delta");
+
+        buffer = Api.newMorphBuffer(characters * gpuVertices);
+        faces = new Object[characters];
+        bases = new int[characters];
+        for (int i = 0; i < characters; i++) { faces[i] = Api.newMorpher(morphs); bases[i] = Api.allocate(buffer, gpuVertices); }
+        dense = new float[gpuVertices * 3];
+        weights = new float[morphCount];
+    }
+
+    @Benchmark
+    public Object sparse() throws Throwable {
+        int f = frame++;
+        float w = (float) Math.sin(Math.PI * (f % 90) / 90.0);
+        for (int i = 0; i < characters; i++) {
+            Api.clear(faces[i]);
+            Api.set(faces[i], usable[(f / 90 + i) % usable.length], w);
+            Api.apply(faces[i], buffer, bases[i]);
+        }
+        Api.discardDirty(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] dense() {
+        int f = frame++;
+        float w = (float) Math.sin(Math.PI * (f % 90) / 90.0);
+        for (int i = 0; i < characters; i++) {
+            Arrays.fill(weights, 0f);
+            weights[usable[(f / 90 + i) % usable.length]] = w; // 组变形按 0 处理，稠密路径的工作量与权重无关
+            Arrays.fill(dense, 0f);
+            for (int m = 0; m < morphCount; m++) {
+                float wm = weights[m];
+                for (int e = first[m]; e < first[m + 1]; e++) {
+                    int o = vertex[e] * 3;
+                    dense[o] += wm * delta[e * 3]; dense[o + 1] += wm * delta[e * 3 + 1]; dense[o + 2] += wm * delta[e * 3 + 2];
+                }
+            }
+        }
+        return dense;
+    }
+}
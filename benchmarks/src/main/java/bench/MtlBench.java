@@ -0,0 +1,55 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MtlLoader：合成的纯色材质库（不含贴图，只测解析），以及工程自带的 MTL。
+ * 自带 MTL 引用的贴图第一次调用时提交到后台解码，之后命中 TextureCache，测到的基本是解析 + 缓存查找。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MtlBench {
+
+    @Param({ "16", "1024" })
+    public int materials;
+
+    private Path dir, mtl;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        dir = Files.createTempDirectory("mtlbench");
+        mtl = dir.resolve("synthetic.mtl");
+        Files.write(mtl, ObjGen.mtl(materials));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(mtl);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public Map<String, Object> synthetic() throws Throwable {
+        return Api.mtlLoad(mtl);
+    }
+
+    @Benchmark
+    public Map<String, Object> bundledLosalia() throws Throwable {
+        return Api.mtlLoadResource("asserts/Losalia/", "Losalia.mtl");
+    }
+
+    @Benchmark
+    public Map<String, Object> bundledAnbo() throws Throwable {
+        return Api.mtlLoadResource("asserts/Anbo/", "无标题.mtl");
+    }
+}
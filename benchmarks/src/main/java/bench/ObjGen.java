@@ -0,0 +1,83 @@
+package bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 合成 OBJ：(size+1)² 个顶点铺在一张起伏的曲面上，面的拓扑可选，便于按规模和写法对比解析开销。
+ * <ul>
+ *   <li>{@link Topology#TRI}：每格两个三角形；</li>
+ *   <li>{@link Topology#QUAD}：每格一个四边形（解析器扇形三角化）；</li>
+ *   <li>{@link Topology#NGON}：横向两格合成一个六边形；</li>
+ * </ul>
+ * negative 为 true 时面用负（相对）索引；materials &gt; 1 时按行分成若干个 usemtl 段。
+ */
+public final class ObjGen {
+    private ObjGen() {}
+
+    public enum Topology { TRI, QUAD, NGON }
+
+    static byte[] obj(int size, Topology topo, boolean negative, int materials) {
+        int side = size + 1, n = side * side;
+        StringBuilder sb = new StringBuilder(n * 90);
+        sb.append("# synthetic ").append(size).append('x').append(size).append(' ').append(topo)
+                .append(negative ? " negative" : "").append('\n');
+        sb.append("mtllib synthetic.mtl\n");
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                float u = (float) x / size, v = (float) y / size;
+                float h = 0.05f * (float) (Math.sin(u * 17.0) * Math.cos(v * 13.0));
+                sb.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f%n", u * 2f - 1f, h, v * 2f - 1f));
+            }
+        }
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) sb.append(String.format(Locale.ROOT, "vt %.6f %.6f%n", (float) x / size, (float) y / size));
+        }
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                float nx = (float) (Math.sin(x * 0.37) * 0.2), nz = (float) (Math.cos(y * 0.29) * 0.2);
+                float len = (float) Math.sqrt(nx * nx + 1f + nz * nz);
+                sb.append(String.format(Locale.ROOT, "vn %.6f %.6f %.6f%n", nx / len, 1f / len, nz / len));
+            }
+        }
+        int rowsPerMaterial = Math.max(1, (size + materials - 1) / Math.max(1, materials));
+        for (int y = 0; y < size; y++) {
+            if (materials > 1 && y % rowsPerMaterial == 0) sb.append("usemtl m").append(y / rowsPerMaterial).append('\n');
+            if (topo == Topology.NGON) {
+                for (int x = 0; x + 2 <= size; x += 2) {
+                    face(sb, n, negative, y * side + x, y * side + x + 1, y * side + x + 2,
+                            (y + 1) * side + x + 2, (y + 1) * side + x + 1, (y + 1) * side + x);
+                }
+                continue;
+            }
+            for (int x = 0; x < size; x++) {
+                int a = y * side + x, b = a + 1, c = a + side + 1, d = a + side;
+                if (topo == Topology.QUAD) face(sb, n, negative, a, b, c, d);
+                else { face(sb, n, negative, a, b, c); face(sb, n, negative, a, c, d); }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** 顶点下标从 0 开始；所有 v/vt/vn 都写在面之前，所以相对索引 = 绝对索引 - n - 1 */
+    private static void face(StringBuilder sb, int n, boolean negative, int... verts) {
+        sb.append('f');
+        for (int v : verts) {
+            int i = negative ? v - n : v + 1;
+            sb.append(' ').append(i).append('/').append(i).append('/').append(i);
+        }
+        sb.append('\n');
+    }
+
+    /** 不带贴图的材质库，kd 各不相同 */
+    static byte[] mtl(int materials) {
+        StringBuilder sb = new StringBuilder(materials * 120);
+        for (int m = 0; m < materials; m++) {
+            float k = (m % 17) / 16f;
+            sb.append("newmtl m").append(m).append('\n')
+                    .append(String.format(Locale.ROOT, "Ka 0.1 0.1 0.1%nKd %.4f %.4f %.4f%nKs 0.2 0.2 0.2%nNs 32%nd 1%nillum 2%n%n",
+                            k, 1f - k, 0.5f));
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PMX 直接解析 vs 先转成 OBJ 再解析：同一份几何（顶点、UV、法线、按材质分组的面），
+ * 对比 PmxLoader.parse 与 ObjParser.parseFile 的耗时。模型为工程自带的 asserts/Klee/Klee.pmx，
+ * 解析结果的校验见 PmxLoaderTest。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PmxBench {
+
+    private ByteBuffer pmx;
+    private Path obj;
+
+    @Setup
+    public void setup() throws Throwable {
+        pmx = Api.resource("asserts/Klee/Klee.pmx");
+        obj = Files.createTempFile("pmxbench", ".obj");
+        Files.write(obj, toObj(Api.pmxParse(pmx)));
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        Files.deleteIfExists(obj);
+    }
+
+    @Benchmark
+    public Object parsePmx() throws Throwable { return Api.pmxParse(pmx); }
+
+    @Benchmark
+    public Object parseObj() throws Throwable { return Api.objParseFile(obj, false, true); }
+
+    /** 按材质分 usemtl 组写出 OBJ（v/vt/vn 共用同一下标），即"先转 OBJ"流程的产物 */
+    static byte[] toObj(Object parsed) {
+        int n = (int) Api.field(parsed, "vertexCount");
+        float[] pos = (float[]) Api.field(parsed, "positions"), uv = (float[]) Api.field(parsed, "uvs"),
+                nrm = (float[]) Api.field(parsed, "normals");
+        int[] ix = (int[]) Api.field(parsed, "indices");
+        List<?> materials = (List<?>) Api.field(parsed, "materials");
+        StringBuilder sb = new StringBuilder(n * 110 + ix.length * 12);
+        for (int i = 0; i < n; i++) sb.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f%n", pos[i * 3], pos[i * 3 + 1], pos[i * 3 + 2]));
+        for (int i = 0; i < n; i++) sb.append(String.format(Locale.ROOT, "vt %.6f %.6f%n", uv[i * 2], uv[i * 2 + 1]));
+        for (int i = 0; i < n; i++) sb.append(String.format(Locale.ROOT, "vn %.6f %.6f %.6f%n", nrm[i * 3], nrm[i * 3 + 1], nrm[i * 3 + 2]));
+        for (int m = 0; m < materials.size(); m++) {
+            int first = (int) Api.field(materials.get(m), "firstIndex"), count = (int) Api.field(materials.get(m), "indexCount");
+            sb.append("usemtl m").append(m).append('\n');
+            for (int k = first; k < first + count; k += 3) {
+                sb.append('f');
+                for (int j = 0; j < 3; j++) {
+                    int v = ix[k + j] + 1;
+                    sb.append(' ').append(v).append('/').append(v).append('/').append(v);
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
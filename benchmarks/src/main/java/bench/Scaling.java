@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 线程扩展性：同一组基准依次以 1、2、4 … 个线程运行（上限为 CPU 数，至少跑到 2），
+ * 打开 GC profiler，最后汇总每个基准在各线程数下的吞吐与每次操作分配的字节数。
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.Scaling                      # 默认：加载器（size=128）
+ *   java -cp target/benchmarks.jar bench.Scaling 'MatrixBench.*Dst'   # 任意 JMH include 正则
+ * </pre>
+ */
+public final class Scaling {
+    private Scaling() {}
+
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : "LoaderBench";
+        int max = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<Integer> threads = new ArrayList<>();
+        for (int t = 1; t < max; t *= 2) threads.add(t);
+        threads.add(max);
+
+        List<String> rows = new ArrayList<>();
+        for (int t : threads) {
+            ChainedOptionsBuilder opt = new OptionsBuilder().include(include).threads(t).addProfiler(GCProfiler.class);
+            if (args.length == 0) opt.param("size", "128").param("negative", "false");
+            Collection<RunResult> results = new Runner(opt.build()).run();
+            for (RunResult r : results) {
+                Result<?> primary = r.getPrimaryResult();
+                String params = r.getParams().getParamsKeys().isEmpty() ? "" : r.getParams().toString();
+                rows.add(String.format("%-48s %-40s %3d  %14.3f %-8s %12.1f", r.getParams().getBenchmark().replaceFirst("^bench\\.", ""),
+                        params, t, primary.getScore(), primary.getScoreUnit(), allocPerOp(r)));
+            }
+        }
+        System.out.printf("%n%-48s %-40s %3s  %14s %-8s %12s%n", "benchmark", "params", "thr", "score", "unit", "B/op");
+        rows.forEach(System.out::println);
+    }
+
+    /** GCProfiler 的键名在不同 JMH 版本里有无 "·" 前缀，按后缀找 */
+    private static double allocPerOp(RunResult r) {
+        // getSecondaryResults() 声明为原始类型的 Map<String, Result>，只按键取值，赋给 Result<?>
+        for (String key : r.getSecondaryResults().keySet()) {
+            if (!key.endsWith("gc.alloc.rate.norm")) continue;
+            Result<?> alloc = r.getSecondaryResults().get(key);
+            return alloc.getScore();
+        }
+        return Double.NaN;
+    }
+}
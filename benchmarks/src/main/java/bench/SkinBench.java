@@ -0,0 +1,79 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 蒙皮的 CPU 开销，对 N 个角色计时：
+ * <ul>
+ *   <li>{@code gpuPath}：GPU 蒙皮每帧只求姿势（每根骨骼一次），再把调色板拷进 BonePalette 的镜像；</li>
+ *   <li>{@code cpuSkinning}：CPU 回退路径，求姿势之后还要用 Skin.skinCpu 逐顶点混合位置与法线（之后还得重传顶点）。</li>
+ * </ul>
+ * 模型为工程自带的 asserts/Klee/Klee.pmx；绑定姿势与已知姿势下的正确性见 SkinTest。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkinBench {
+
+    @Param({ "1", "10", "50" })
+    public int characters;
+
+    private Object[] poses;
+    private int boneCount, vertexCount, paletteFloats, frame;
+    private int[] bones;
+    private float[] weights, positions, normals, outPos, outNrm, palette;
+
+    @Setup
+    public void setup() throws Throwable {
+        Object p = Api.pmxParse(Api.resource("asserts/Klee/Klee.pmx"));
+        Object rig = Api.call("Skeleton", null, "of", new Class<?>[]{ List.class }, Api.field(p, "bones"));
+        poses = new Object[characters];
+        for (int i = 0; i < characters; i++) poses[i] = Api.skeletonCopy(rig);
+        boneCount = Api.boneCount(rig);
+        paletteFloats = boneCount * Api.PALETTE_FLOATS;
+        vertexCount = (int) Api.field(p, "vertexCount");
+        bones = (int[]) Api.field(p, "skinBones");
+        weights = (float[]) Api.field(p, "skinWeights");
+        positions = (float[]) Api.field(p, "positions");
+        normals = (float[]) Api.field(p, "normals");
+        outPos = new float[vertexCount * 3];
+        outNrm = new float[vertexCount * 3];
+        palette = new float[characters * paletteFloats];
+    }
+
+    @Benchmark
+    public float[] gpuPath() throws Throwable {
+        float t = frame++ / 60f;
+        for (int i = 0; i < characters; i++) {
+            pose(poses[i], t, i * 0.7f);
+            System.arraycopy(Api.palette(poses[i]), 0, palette, i * paletteFloats, paletteFloats); // BonePalette.set 的拷贝
+        }
+        return palette;
+    }
+
+    @Benchmark
+    public float[] cpuSkinning() throws Throwable {
+        float t = frame++ / 60f;
+        for (int i = 0; i < characters; i++) {
+            pose(poses[i], t, i * 0.7f);
+            Api.skinCpu(Api.palette(poses[i]), bones, weights, positions, normals, outPos, outNrm, vertexCount);
+        }
+        return outPos;
+    }
+
+    /** 与 MainApp 的演示动画相同的工作量：每根骨骼一个旋转，然后求调色板 */
+    private void pose(Object s, float t, float phase) throws Throwable {
+        for (int b = 0; b < boneCount; b++) {
+            int depth = Api.depth(s, b);
+            float a = depth == 0 ? 0f : 0.08f * (float) Math.sin(t * 2.0 + phase + depth * 0.6);
+            Api.setRotationAxis(s, b, 0.4472136f, 0f, 0.8944272f, a);
+        }
+        Api.update(s);
+    }
+}
@@ -4,9 +4,17 @@ import org.lwjgl.system.MemoryStack;
 import static org.lwjgl.glfw.GLFW.*;
 import static java.lang.Math.*;
 
+/**
+ * 轨道相机：鼠标拖拽（arcball）旋转、中/右键平移、滚轮缩放，{@link #update()} 轮询键盘。
+ * <p>
+ * 每帧路径不分配内存：基向量、四元数增量、view / proj 都放在字段里复用，
+ * {@link #getViewProjection(float[])} 写进调用方的数组。{@link #headless} 创建的相机不碰 GLFW，
+ * 帧缓冲尺寸由 {@link #setViewportSize} 指定，供离屏渲染与基准测试使用。
+ */
 public class ArcballCamera {
 
-    private final long window;
+    private final long window;          // 0 = 无窗口
+    private int headlessWidth = 1, headlessHeight = 1;
 
     // 目标点（围绕它旋转/平移）
     private final float[] target = new float[]{0f, 0f, 0f};
@@ -43,10 +51,30 @@ public class ArcballCamera {
     // 键盘轮询的时间步
     private double lastTime;
 
+    // 每帧复用的临时量
+    private final float[] right = new float[3], upVec = new float[3], axis = new float[3], eye = new float[3];
+    private final float[] dq = new float[4];
+    private final float[] view = new float[16], proj = new float[16];
+    private final int[] size = new int[2];
+
     public ArcballCamera(long window) {
         this.window = window;
-        installCallbacks();
-        lastTime = glfwGetTime();
+        if (window != 0L) {
+            installCallbacks();
+            lastTime = glfwGetTime();
+        }
+    }
+
+    /** 不依赖窗口与 GLFW 的相机：没有输入，update() 什么都不做 */
+    public static ArcballCamera headless(int width, int height) {
+        ArcballCamera c = new ArcballCamera(0L);
+        c.setViewportSize(width, height);
+        return c;
+    }
+
+    /** 只对 headless 相机有意义；有窗口时尺寸总是取当前帧缓冲 */
+    public void setViewportSize(int width, int height) {
+        headlessWidth = Math.max(1, width); headlessHeight = Math.max(1, height);
     }
 
     // ---------- 外部设置 ----------
@@ -81,14 +109,8 @@ public class ArcballCamera {
 
     /** 根据半径精确取景（留 20% 边界） */
     public void fitByRadius(float radius) {
-        int width, height;
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            var w = stack.mallocInt(1); var h = stack.mallocInt(1);
-            glfwGetFramebufferSize(window, w, h);
-            width = Math.max(1, w.get(0));
-            height = Math.max(1, h.get(0));
-        }
-        float aspect = (float) width / (float) height;
+        framebufferSize(size);
+        float aspect = (float) size[0] / (float) size[1];
         float fovy = (float) toRadians(fovDeg);
         float fovx = 2f * (float) atan(tan(fovy / 2f) * aspect);
 
@@ -105,6 +127,7 @@ public class ArcballCamera {
 
     /** 每帧调用：键盘（WASD/QE/Shift + 方向键/Z/X 旋转） */
     public void update() {
+        if (window == 0L) return;
         double now = glfwGetTime();
         float dt = (float) (now - lastTime);
         lastTime = now;
@@ -115,8 +138,8 @@ public class ArcballCamera {
         float boost = boosting ? shiftMultiplier : 1.0f;
 
         // 基坐标
-        float[] right = rotateVec3(rot, new float[]{1, 0, 0});
-        float[] upVec = rotateVec3(rot, new float[]{0, 1, 0});
+        rotateVec3(rot, 1, 0, 0, right);
+        rotateVec3(rot, 0, 1, 0, upVec);
         normalize3(right); normalize3(upVec);
 
         // --- 平移: WASD ---
@@ -150,16 +173,16 @@ public class ArcballCamera {
                 - (glfwGetKey(window, GLFW_KEY_X)     == GLFW_PRESS ? 1 : 0);
 
         if (yawKey != 0) {
-            float[] axisY = new float[]{0, 1, 0}; // 世界Y轴，避免“歪头”
-            applyAxisAngle(axisY, yawKey * rotRad);
+            axis[0] = 0; axis[1] = 1; axis[2] = 0; // 世界Y轴，避免“歪头”
+            applyAxisAngle(axis, yawKey * rotRad);
         }
         if (pitchKey != 0) {
-            float[] axisR = rotateVec3(rot, new float[]{1, 0, 0}); normalize3(axisR);
-            applyAxisAngle(axisR, pitchKey * rotRad);
+            rotateVec3(rot, 1, 0, 0, axis); normalize3(axis);
+            applyAxisAngle(axis, pitchKey * rotRad);
         }
         if (rollKey != 0) {
-            float[] axisF = rotateVec3(rot, new float[]{0, 0, 1}); normalize3(axisF);
-            applyAxisAngle(axisF, rollKey * rotRad);
+            rotateVec3(rot, 0, 0, 1, axis); normalize3(axis);
+            applyAxisAngle(axis, rollKey * rotRad);
         }
 
         // --- 重置旋转: R ---
@@ -169,25 +192,72 @@ public class ArcballCamera {
     }
 
     // ---------- 取 VP ----------
+    /** 返回新数组；帧循环里用 {@link #getViewProjection(float[])} */
     public float[] getViewProjection() {
+        return getViewProjection(new float[16]);
+    }
+
+    /** 写入 dst 并返回它，不分配内存 */
+    public float[] getViewProjection(float[] dst) {
+        framebufferSize(size);
+        float aspect = (float) size[0] / (float) size[1];
+
+        rotateVec3(rot, 0, 0, distance, eye);
+        eye[0] += target[0]; eye[1] += target[1]; eye[2] += target[2];
+
+        rotateVec3(rot, 0, 1, 0, upVec);
+
+        Mat4f.lookAt(view, eye[0], eye[1], eye[2], target[0], target[1], target[2], upVec[0], upVec[1], upVec[2]);
+        Mat4f.perspective(proj, fovDeg, aspect, near, far);
+        return Mat4f.multiply(proj, view, dst);
+    }
+
+    /**
+     * 拾取射线：光标坐标（窗口坐标，左上角为原点）→ 世界空间射线，origin 为相机位置，dir 已归一化。
+     * 与 getViewProjection() 使用同一套 eye/up/fov，结果可直接交给 Model.raycast。
+     */
+    public void pickRay(double cursorX, double cursorY, float[] origin, float[] dir) {
         int width, height;
-        try (MemoryStack stack = MemoryStack.stackPush()) {
+        if (window == 0L) { width = headlessWidth; height = headlessHeight; }
+        else try (MemoryStack stack = MemoryStack.stackPush()) {
             var w = stack.mallocInt(1);
             var h = stack.mallocInt(1);
-            glfwGetFramebufferSize(window, w, h);
+            glfwGetWindowSize(window, w, h); // 光标是窗口坐标，HiDPI 下与帧缓冲尺寸不同
             width = max(1, w.get(0));
             height = max(1, h.get(0));
         }
         float aspect = (float) width / (float) height;
+        float ndcX = (float) (2.0 * cursorX / width - 1.0);
+        float ndcY = (float) (1.0 - 2.0 * cursorY / height);
+        float t = (float) tan(toRadians(fovDeg) * 0.5);
+
+        rotateVec3(rot, 0, 0, distance, eye);
+        rotateVec3(rot, 1, 0, 0, right);
+        rotateVec3(rot, 0, 1, 0, upVec);
+        origin[0] = eye[0] + target[0]; origin[1] = eye[1] + target[1]; origin[2] = eye[2] + target[2];
+        for (int i = 0; i < 3; i++) dir[i] = -eye[i] / distance + right[i] * ndcX * t * aspect + upVec[i] * ndcY * t;
+        normalize3(dir);
+    }
 
-        float[] eye = rotateVec3(rot, new float[]{0, 0, distance});
-        eye[0] += target[0]; eye[1] += target[1]; eye[2] += target[2];
+    /** 帧缓冲高度（像素），LOD 选择用 */
+    public int viewportHeight() {
+        framebufferSize(size);
+        return size[1];
+    }
 
-        float[] up = rotateVec3(rot, new float[]{0, 1, 0});
+    public double cursorX() { return window == 0L ? 0.0 : getCursorX(); }
+    public double cursorY() { return window == 0L ? 0.0 : getCursorY(); }
 
-        float[] view = Mat4f.lookAt(eye[0], eye[1], eye[2], target[0], target[1], target[2], up[0], up[1], up[2]);
-        float[] proj = Mat4f.perspective(fovDeg, aspect, near, far);
-        return Mat4f.multiply(proj, view);
+    /** out = (width, height)，至少为 1；MemoryStack 上取值，不分配堆内存 */
+    private void framebufferSize(int[] out) {
+        if (window == 0L) { out[0] = headlessWidth; out[1] = headlessHeight; return; }
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            var w = stack.mallocInt(1);
+            var h = stack.mallocInt(1);
+            glfwGetFramebufferSize(window, w, h);
+            out[0] = max(1, w.get(0));
+            out[1] = max(1, h.get(0));
+        }
     }
 
     // ---------- 鼠标/滚轮 ----------
@@ -224,14 +294,8 @@ public class ArcballCamera {
 
     // ---------- Arcball ----------
     private void mapToSphere(double mx, double my, float[] out) {
-        int width, height;
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            var w = stack.mallocInt(1);
-            var h = stack.mallocInt(1);
-            glfwGetFramebufferSize(window, w, h);
-            width = max(1, w.get(0));
-            height = max(1, h.get(0));
-        }
+        framebufferSize(size);
+        int width = size[0], height = size[1];
         double s = min(width, height);
         double x = (2.0 * mx - width)  / s;
         double y = (height - 2.0 * my) / s;
@@ -247,7 +311,7 @@ public class ArcballCamera {
     private void applyArcballDrag(float[] v0, float[] v1) {
         float dot = clamp(dot(v0, v1), -1f, 1f);
         float angle = (float) acos(dot);
-        float[] axis = cross(v0, v1);
+        cross(v0, v1, axis);
         float len = length(axis);
         if (len < 1e-6f || angle == 0f) return;
         axis[0]/=len; axis[1]/=len; axis[2]/=len;
@@ -258,25 +322,19 @@ public class ArcballCamera {
     private void applyAxisAngle(float[] axis, float angle) {
         float half = angle * 0.5f;
         float s = (float) sin(half);
-        float[] dq = new float[]{(float) cos(half), axis[0]*s, axis[1]*s, axis[2]*s};
+        dq[0] = (float) cos(half); dq[1] = axis[0]*s; dq[2] = axis[1]*s; dq[3] = axis[2]*s;
         mulQuat(dq, rot, rot);
         normalizeQuat(rot);
     }
 
     private void panByPixelDelta(double dx, double dy) {
-        int w, h;
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            var wi = stack.mallocInt(1);
-            var hi = stack.mallocInt(1);
-            glfwGetFramebufferSize(window, wi, hi);
-            w = max(1, wi.get(0)); h = max(1, hi.get(0));
-        }
-        float scale = (float) (distance * panSpeed / min(w, h));
-        float[] right = rotateVec3(rot, new float[]{1, 0, 0});
-        float[] upVec = rotateVec3(rot, new float[]{0, 1, 0});
-        target[0] -= (float) dx * scale * right[0] - (float) dy * scale * upVec[0];
-        target[1] -= (float) dx * scale * right[1] - (float) dy * scale * upVec[1];
-        target[2] -= (float) dx * scale * right[2] - (float) dy * scale * upVec[2];
+        framebufferSize(size);
+        float scale = (float) (distance * panSpeed / min(size[0], size[1]));
+        rotateVec3(rot, 1, 0, 0, right);
+        rotateVec3(rot, 0, 1, 0, upVec);
+        target[0] -= (float) (dx * scale * right[0] - dy * scale * upVec[0]);
+        target[1] -= (float) (dx * scale * right[1] - dy * scale * upVec[1]);
+        target[2] -= (float) (dx * scale * right[2] - dy * scale * upVec[2]);
     }
 
     // ---------- 小数学 ----------
@@ -286,8 +344,9 @@ public class ArcballCamera {
     }
     private static float dot(float[] a, float[] b){ return a[0]*b[0]+a[1]*b[1]+a[2]*b[2]; }
     private static float length(float[] v){ return (float) sqrt(dot(v,v)); }
-    private static float[] cross(float[] a, float[] b){
-        return new float[]{ a[1]*b[2]-a[2]*b[1], a[2]*b[0]-a[0]*b[2], a[0]*b[1]-a[1]*b[0] };
+    private static void cross(float[] a, float[] b, float[] out){
+        float x = a[1]*b[2]-a[2]*b[1], y = a[2]*b[0]-a[0]*b[2], z = a[0]*b[1]-a[1]*b[0];
+        out[0] = x; out[1] = y; out[2] = z;
     }
     private static float clamp(float x, float lo, float hi){ return x<lo?lo:(x>hi?hi:x); }
 
@@ -304,16 +363,15 @@ public class ArcballCamera {
         if (l==0f){ q[0]=1; q[1]=q[2]=q[3]=0; return; }
         q[0]/=l; q[1]/=l; q[2]/=l; q[3]/=l;
     }
-    private static float[] rotateVec3(float[] q, float[] v){
+    /** out = q 旋转 (vx, vy, vz) */
+    private static void rotateVec3(float[] q, float vx, float vy, float vz, float[] out){
         float w=q[0], x=q[1], y=q[2], z=q[3];
-        float tx = 2f * (y*v[2] - z*v[1]);
-        float ty = 2f * (z*v[0] - x*v[2]);
-        float tz = 2f * (x*v[1] - y*v[0]);
-        return new float[]{
-                v[0] + w*tx + (y*tz - z*ty),
-                v[1] + w*ty + (z*tx - x*tz),
-                v[2] + w*tz + (x*ty - y*tx)
-        };
+        float tx = 2f * (y*vz - z*vy);
+        float ty = 2f * (z*vx - x*vz);
+        float tz = 2f * (x*vy - y*vx);
+        out[0] = vx + w*tx + (y*tz - z*ty);
+        out[1] = vy + w*ty + (z*tx - x*tz);
+        out[2] = vz + w*tz + (x*ty - y*tx);
     }
 
     private double getCursorX(){ try (MemoryStack s = MemoryStack.stackPush()){ var x=s.mallocDouble(1); var y=s.mallocDouble(1); glfwGetCursorPos(window, x, y); return x.get(0);} }
@@ -0,0 +1,312 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * 资源包（.gpak）：把一棵资源目录打成一个文件，相同内容只存一份，运行时整个文件映射一次，
+ * 每个资源是映射上的零拷贝切片，不再逐个 getResourceAsStream + readAllBytes。
+ * <p>
+ * 用 -Dassets.pack=a.gpak[,b.gpak] 或 {@link #mount} 挂载后，{@link #resource} 先按资源路径
+ * （如 "asserts/Losalia/Losalia.obj"）查已挂载的包，没有再退回 classpath，所以 Texture2D、MtlLoader、
+ * ObjMtlLoader、PmxLoader 不挂包时行为不变。TextureCache 对包里的贴图按内容哈希去重，
+ * 不同目录下的同一张图只解码、上传一次。
+ * <pre>
+ * 文件布局（little-endian）：
+ *   int magic "GPAK", int version, int entryCount, int blobCount
+ *   entryCount × { str 路径, long 偏移, long 长度, long 哈希 }   str = short 字节数 + UTF-8，路径用 '/' 分隔
+ *   数据区：每份不同的内容一段，按 16 字节对齐；内容相同的条目指向同一段
+ * </pre>
+ * 哈希为内容 SHA-256 的前 8 字节；打包时按完整摘要去重。-Dassets.verbose 时挂载打印包的概况。
+ * 用法：java AssetPack build &lt;资源根目录&gt; &lt;out.gpak&gt; | list &lt;pack&gt; | bench &lt;pack&gt;
+ */
+public final class AssetPack {
+    public static final String EXT = ".gpak";
+    private static final int MAGIC = 0x4B415047; // "GPAK"
+    private static final int VERSION = 1;
+
+    /** 一个条目在包里的位置 */
+    public static final class Entry {
+        public final String path;
+        public final long offset, length, hash;
+        Entry(String path, long offset, long length, long hash) {
+            this.path = path; this.offset = offset; this.length = length; this.hash = hash;
+        }
+    }
+
+    private final Path file;
+    private final ByteBuffer map;
+    private final Map<String, Entry> entries;
+    private final int blobs;
+
+    private AssetPack(Path file, ByteBuffer map, Map<String, Entry> entries, int blobs) {
+        this.file = file; this.map = map; this.entries = entries; this.blobs = blobs;
+    }
+
+    // ======================== 读 ========================
+
+    /** 映射整个包并读索引；映射在包对象不可达后由 GC 释放 */
+    public static AssetPack open(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("asset pack too large (> 2 GB): " + file);
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("asset pack not found: " + file);
+        }
+        ByteBuffer b = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (b.getInt() != MAGIC) throw new IOException("not an asset pack: " + file);
+            int version = b.getInt();
+            if (version != VERSION) throw new IOException("unsupported asset pack version " + version + ": " + file);
+            int count = b.getInt(), blobs = b.getInt();
+            if (count < 0 || blobs < 0 || blobs > count) throw new IOException("corrupt asset pack header: " + file);
+            Map<String, Entry> entries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[Short.toUnsignedInt(b.getShort())];
+                b.get(name);
+                String path = new String(name, StandardCharsets.UTF_8);
+                long off = b.getLong(), len = b.getLong(), hash = b.getLong();
+                if (off < 0 || len < 0 || off > buf.capacity() || len > buf.capacity() - off) throw new IOException("corrupt asset pack entry " + path + ": " + file);
+                entries.put(path, new Entry(path, off, len, hash));
+            }
+            return new AssetPack(file, buf, entries, blobs);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated asset pack: " + file);
+        }
+    }
+
+    public Path file() { return file; }
+    public int entryCount() { return entries.size(); }
+    /** 去重后的内容段数 */
+    public int blobCount() { return blobs; }
+    public long sizeBytes() { return map.capacity(); }
+
+    public Entry entry(String resPath) {
+        return entries.get(TextureCache.normalize(resPath));
+    }
+
+    /** 只读的零拷贝切片（直接缓冲，可交给 STB 等原生代码）；没有这个条目时返回 null */
+    public ByteBuffer slice(String resPath) {
+        Entry e = entry(resPath);
+        return e == null ? null : slice(e);
+    }
+
+    public ByteBuffer slice(Entry e) {
+        return map.slice((int) e.offset, (int) e.length);
+    }
+
+    public Collection<Entry> entries() { return Collections.unmodifiableCollection(entries.values()); }
+
+    // ======================== 挂载 ========================
+
+    private static final List<AssetPack> mounted = new CopyOnWriteArrayList<>();
+
+    static {
+        String prop = System.getProperty("assets.pack");
+        if (prop != null) {
+            for (String p : prop.split(",")) {
+                if (p.isBlank()) continue;
+                try {
+                    mount(Path.of(p.strip()));
+                } catch (IOException e) {
+                    System.err.println("WARN: asset pack not mounted -> " + p + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** 挂载一个包；后挂的先查，可用来覆盖前面的同名资源 */
+    public static AssetPack mount(Path file) throws IOException {
+        AssetPack pack = open(file);
+        mounted.add(0, pack);
+        if (Boolean.getBoolean("assets.verbose")) System.out.printf("INFO: mounted %s (%d entries, %d blobs, %.1f MB)%n",
+                file, pack.entryCount(), pack.blobCount(), pack.sizeBytes() / (1024.0 * 1024.0));
+        return pack;
+    }
+
+    public static void unmountAll() { mounted.clear(); }
+
+    public static List<AssetPack> mounted() { return Collections.unmodifiableList(mounted); }
+
+    /** 已挂载的包里的条目，没有时返回 null */
+    public static Entry find(String resPath) {
+        if (mounted.isEmpty()) return null;
+        String norm = TextureCache.normalize(resPath);
+        for (AssetPack p : mounted) {
+            Entry e = p.entries.get(norm);
+            if (e != null) return e;
+        }
+        return null;
+    }
+
+    /** 已挂载的包里的切片，没有时返回 null（调用方自行退回 classpath） */
+    public static ByteBuffer findSlice(String resPath) {
+        if (mounted.isEmpty()) return null;
+        String norm = TextureCache.normalize(resPath);
+        for (AssetPack p : mounted) {
+            Entry e = p.entries.get(norm);
+            if (e != null) return p.slice(e);
+        }
+        return null;
+    }
+
+    /**
+     * 按资源路径取内容：先查已挂载的包（零拷贝切片），再读 classpath（堆上的拷贝）。
+     * 包里的切片只读；字节序均为默认的 big-endian，解析方自行设置。
+     */
+    public static ByteBuffer resource(String resPath) throws IOException {
+        ByteBuffer b = findSlice(resPath);
+        if (b != null) return b;
+        String p = resPath.startsWith("/") ? resPath.substring(1) : resPath;
+        try (InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(p)) {
+            if (in == null) throw new FileNotFoundException("resource not found: " + resPath);
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    // ======================== 写 ========================
+
+    /**
+     * 把 root 下的所有文件打成包，条目路径为相对 root 的路径（资源根目录即 classpath 路径）。
+     * 内容相同的文件只存一份；先写临时文件再原子替换。返回写出的包。
+     */
+    public static AssetPack build(Path root, Path out) throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.walk(root)) {
+            Path self = out.toAbsolutePath().normalize();
+            files = s.filter(Files::isRegularFile).filter(f -> !f.toAbsolutePath().normalize().equals(self)).sorted().toList();
+        }
+        MessageDigest sha = sha256();
+        Map<String, long[]> byDigest = new HashMap<>(); // 完整摘要 → { 内容段序号, 长度 }
+        List<byte[]> blobs = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        List<long[]> index = new ArrayList<>();          // { blob 序号, 长度, 哈希 }
+
+        int headerSize = 16;
+        for (Path f : files) {
+            String path = root.relativize(f).toString().replace('\\', '/');
+            int n = path.getBytes(StandardCharsets.UTF_8).length;
+            if (n > 0xFFFF) throw new IOException("asset path too long: " + path);
+            headerSize += 2 + n + 24;
+        }
+        long off = align(headerSize);
+        List<Long> blobOffsets = new ArrayList<>();
+        for (Path f : files) {
+            byte[] data = Files.readAllBytes(f);
+            byte[] digest = sha.digest(data);
+            String key = HexFormat.of().formatHex(digest);
+            long[] at = byDigest.get(key);
+            if (at == null) {
+                at = new long[] { blobs.size(), data.length };
+                byDigest.put(key, at);
+                blobs.add(data);
+                blobOffsets.add(off);
+                off = align(off + data.length);
+            }
+            paths.add(root.relativize(f).toString().replace('\\', '/'));
+            index.add(new long[] { at[0], data.length, ByteBuffer.wrap(digest).getLong() });
+        }
+        if (off > Integer.MAX_VALUE) throw new IOException("asset pack would exceed 2 GB: " + root);
+
+        ByteBuffer head = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(MAGIC).putInt(VERSION).putInt(paths.size()).putInt(blobs.size());
+        for (int i = 0; i < paths.size(); i++) {
+            byte[] name = paths.get(i).getBytes(StandardCharsets.UTF_8);
+            long[] e = index.get(i);
+            head.putShort((short) name.length).put(name);
+            head.putLong(blobOffsets.get((int) e[0])).putLong(e[1]).putLong(e[2]);
+        }
+        head.flip();
+
+        Path dir = out.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "gpak", ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            writeAt(ch, head, 0);
+            for (int i = 0; i < blobs.size(); i++) writeAt(ch, ByteBuffer.wrap(blobs.get(i)), blobOffsets.get(i));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(out);
+    }
+
+    private static void writeAt(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    private static long align(long x) { return (x + 15) & ~15L; }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 每个 JRE 都必须提供 SHA-256
+        }
+    }
+
+    // ======================== 命令行 ========================
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("build")) {
+            long t0 = System.nanoTime();
+            AssetPack p = build(Path.of(args[1]), Path.of(args[2]));
+            long raw = 0;
+            for (Entry e : p.entries.values()) raw += e.length;
+            System.out.printf("%s: %d entries -> %d blobs, %.2f MB (loose files %.2f MB), %.0f ms%n",
+                    p.file, p.entryCount(), p.blobCount(), p.sizeBytes() / 1048576.0, raw / 1048576.0, (System.nanoTime() - t0) / 1e6);
+        } else if (args.length == 2 && args[0].equals("list")) {
+            AssetPack p = open(Path.of(args[1]));
+            List<Entry> list = new ArrayList<>(p.entries.values());
+            list.sort(Comparator.comparing(e -> e.path));
+            for (Entry e : list) System.out.printf("%016x %10d @%-10d %s%n", e.hash, e.length, e.offset, e.path);
+            System.out.printf("%d entries, %d blobs%n", p.entryCount(), p.blobCount());
+        } else if (args.length == 2 && args[0].equals("bench")) {
+            bench(Path.of(args[1]));
+        } else {
+            System.err.println("usage: AssetPack build <root> <out" + EXT + "> | list <pack> | bench <pack>");
+            System.exit(2);
+        }
+    }
+
+    /** 包里的每个条目：classpath 流式拷贝 vs 映射切片，各取一遍并读完每个字节 */
+    private static void bench(Path file) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (Entry e : open(file).entries.values()) paths.add(e.path);
+        for (int round = 0; round < 5; round++) {
+            long t0 = System.nanoTime(), sumA = 0;
+            for (String p : paths) {
+                try (InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(p)) {
+                    if (in == null) continue;
+                    ByteBuffer b = ByteBuffer.wrap(in.readAllBytes());
+                    sumA += touch(b);
+                }
+            }
+            long t1 = System.nanoTime();
+            AssetPack pack = open(file);
+            long sumB = 0;
+            for (String p : paths) sumB += touch(pack.slice(p));
+            long t2 = System.nanoTime();
+            System.out.printf("round %d: %d assets, classpath streams %.2f ms, pack (open + slices) %.2f ms%s%n",
+                    round, paths.size(), (t1 - t0) / 1e6, (t2 - t1) / 1e6, sumA == sumB ? "" : " (content differs)");
+        }
+    }
+
+    private static long touch(ByteBuffer b) {
+        long s = 0;
+        for (int i = b.position(); i < b.limit(); i += 64) s += b.get(i);
+        return s;
+    }
+}
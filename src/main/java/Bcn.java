@@ -0,0 +1,487 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * 纯 Java 的块压缩编码/解码：BC1（不透明，8 字节 / 4×4 块，RGBA8 的 1/8）与 BC7（带 alpha，16 字节 / 块，1/4）。
+ * 不依赖 GL 与原生库，在没有显卡的机器上也能转换、校验。
+ * <p>
+ * BC1 用主成分轴取端点（两端各内收 1/16）再做一次最小二乘精修；BC7 只用模式 6
+ * （单分区 RGBA、7 位端点 + p 位、4 位索引），做法相同。质量介于“快速”与“标准”档编码器之间，
+ * 换来的是简单和可预期的速度；块行在 ForkJoinPool 上并行编码。
+ * mip 链由 {@link #mipChain} 在 CPU 上生成（sRGB 贴图在线性空间平均），运行时不再 glGenerateMipmap。
+ * <p>
+ * 用法：java Bcn convert &lt;in.png|jpg&gt; &lt;out.ktx2&gt; [bc1|bc7|auto] [-linear]
+ *      | bench &lt;资源路径&gt; [bc1|bc7|auto]
+ */
+public final class Bcn {
+    private Bcn() {}
+
+    public static final int BC1 = 1, BC7 = 7;
+
+    /** 每块字节数 */
+    public static int blockBytes(int format) { return format == BC1 ? 8 : 16; }
+
+    /** 一层的压缩数据字节数 */
+    public static int levelBytes(int format, int w, int h) {
+        return ((w + 3) / 4) * ((h + 3) / 4) * blockBytes(format);
+    }
+
+    public static int levelCount(int w, int h) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(w, h));
+    }
+
+    /** alpha 全为 255 时用 BC1，否则 BC7 */
+    public static int choose(ByteBuffer rgba) {
+        for (int i = rgba.position() + 3; i < rgba.limit(); i += 4) if (rgba.get(i) != (byte) 0xFF) return BC7;
+        return BC1;
+    }
+
+    // ======================== mip 链 ========================
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    private static int linearToSrgb(float l) {
+        double c = l <= 0.0031308 ? l * 12.92 : 1.055 * Math.pow(l, 1 / 2.4) - 0.055;
+        return Math.min(255, Math.max(0, (int) Math.round(c * 255)));
+    }
+
+    /** 基础层（RGBA8，w×h）生成完整 mip 链，第 0 层为拷贝；2×2 盒式滤波，奇数边最后一行/列重复使用 */
+    public static byte[][] mipChain(ByteBuffer rgba, int w, int h, boolean srgb) {
+        byte[][] out = new byte[levelCount(w, h)][];
+        out[0] = new byte[w * h * 4];
+        rgba.duplicate().get(out[0]);
+        for (int l = 1; l < out.length; l++) {
+            int pw = Math.max(1, w >> (l - 1)), ph = Math.max(1, h >> (l - 1));
+            int nw = Math.max(1, w >> l), nh = Math.max(1, h >> l);
+            byte[] src = out[l - 1], dst = new byte[nw * nh * 4];
+            IntStream.range(0, nh).parallel().forEach(y -> {
+                int y0 = Math.min(y * 2, ph - 1), y1 = Math.min(y * 2 + 1, ph - 1);
+                for (int x = 0; x < nw; x++) {
+                    int x0 = Math.min(x * 2, pw - 1), x1 = Math.min(x * 2 + 1, pw - 1);
+                    int a = (y0 * pw + x0) * 4, b = (y0 * pw + x1) * 4, c = (y1 * pw + x0) * 4, d = (y1 * pw + x1) * 4;
+                    int o = (y * nw + x) * 4;
+                    for (int k = 0; k < 3; k++) {
+                        if (srgb) {
+                            float s = SRGB_TO_LINEAR[src[a + k] & 0xFF] + SRGB_TO_LINEAR[src[b + k] & 0xFF]
+                                    + SRGB_TO_LINEAR[src[c + k] & 0xFF] + SRGB_TO_LINEAR[src[d + k] & 0xFF];
+                            dst[o + k] = (byte) linearToSrgb(s * 0.25f);
+                        } else {
+                            dst[o + k] = (byte) (((src[a + k] & 0xFF) + (src[b + k] & 0xFF) + (src[c + k] & 0xFF) + (src[d + k] & 0xFF) + 2) >> 2);
+                        }
+                    }
+                    dst[o + 3] = (byte) (((src[a + 3] & 0xFF) + (src[b + 3] & 0xFF) + (src[c + 3] & 0xFF) + (src[d + 3] & 0xFF) + 2) >> 2);
+                }
+            });
+            out[l] = dst;
+        }
+        return out;
+    }
+
+    // ======================== 编码 ========================
+
+    /** 整条 mip 链编码，每层一个直接缓冲（可直接交给 glCompressedTexImage2D） */
+    public static ByteBuffer[] encode(ByteBuffer rgba, int w, int h, int format, boolean srgb) {
+        byte[][] mips = mipChain(rgba, w, h, srgb);
+        ByteBuffer[] out = new ByteBuffer[mips.length];
+        for (int l = 0; l < mips.length; l++) {
+            out[l] = encodeLevel(mips[l], Math.max(1, w >> l), Math.max(1, h >> l), format);
+        }
+        return out;
+    }
+
+    /** 一层 RGBA8（w×h）编码；边缘不满 4×4 的块重复最后一行/列 */
+    public static ByteBuffer encodeLevel(byte[] rgba, int w, int h, int format) {
+        int bw = (w + 3) / 4, bh = (h + 3) / 4, bytes = blockBytes(format);
+        ByteBuffer out = ByteBuffer.allocateDirect(bw * bh * bytes).order(ByteOrder.LITTLE_ENDIAN);
+        IntStream.range(0, bh).parallel().forEach(by -> {
+            BlockEncoder enc = new BlockEncoder();
+            for (int bx = 0; bx < bw; bx++) {
+                enc.fetch(rgba, w, h, bx, by);
+                int o = (by * bw + bx) * bytes;
+                if (format == BC1) out.putLong(o, enc.bc1());
+                else { enc.bc7(); out.putLong(o, enc.lo); out.putLong(o + 8, enc.hi); }
+            }
+        });
+        return out;
+    }
+
+    private static final int[] BC7_WEIGHTS = {0, 4, 9, 13, 17, 21, 26, 30, 34, 38, 43, 47, 51, 55, 60, 64};
+
+    /** 单线程的块编码器，各自带暂存数组 */
+    private static final class BlockEncoder {
+        final int[] px = new int[64];
+        final float[] mean = new float[4], axis = new float[4];
+        final int[] idx = new int[16], pal = new int[64];
+        final float[] e0 = new float[4], e1 = new float[4];
+        long lo, hi;
+
+        void fetch(byte[] rgba, int w, int h, int bx, int by) {
+            for (int y = 0; y < 4; y++) {
+                int sy = Math.min(by * 4 + y, h - 1);
+                for (int x = 0; x < 4; x++) {
+                    int s = (sy * w + Math.min(bx * 4 + x, w - 1)) * 4, d = (y * 4 + x) * 4;
+                    px[d] = rgba[s] & 0xFF; px[d + 1] = rgba[s + 1] & 0xFF; px[d + 2] = rgba[s + 2] & 0xFF; px[d + 3] = rgba[s + 3] & 0xFF;
+                }
+            }
+        }
+
+        /** 前 ch 个通道的均值与主轴（幂迭代）；返回投影范围 {min, max}，全块同色时范围为 0 */
+        void principal(int ch, float[] range) {
+            for (int k = 0; k < 4; k++) mean[k] = 0;
+            for (int i = 0; i < 16; i++) for (int k = 0; k < ch; k++) mean[k] += px[i * 4 + k];
+            for (int k = 0; k < ch; k++) mean[k] /= 16f;
+            float[] cov = new float[16];
+            for (int i = 0; i < 16; i++) {
+                for (int a = 0; a < ch; a++) {
+                    float da = px[i * 4 + a] - mean[a];
+                    for (int b = a; b < ch; b++) cov[a * 4 + b] += da * (px[i * 4 + b] - mean[b]);
+                }
+            }
+            for (int a = 0; a < ch; a++) for (int b = 0; b < a; b++) cov[a * 4 + b] = cov[b * 4 + a];
+            for (int k = 0; k < 4; k++) axis[k] = k < ch ? 1f : 0f;
+            for (int it = 0; it < 8; it++) {
+                float[] v = new float[4];
+                float n = 0;
+                for (int a = 0; a < ch; a++) {
+                    for (int b = 0; b < ch; b++) v[a] += cov[a * 4 + b] * axis[b];
+                    n += v[a] * v[a];
+                }
+                if (n < 1e-12f) break; // 全块同色（或只在主轴的正交方向上变化，不会发生）
+                n = (float) (1 / Math.sqrt(n));
+                for (int a = 0; a < ch; a++) axis[a] = v[a] * n;
+            }
+            float mn = Float.MAX_VALUE, mx = -Float.MAX_VALUE;
+            for (int i = 0; i < 16; i++) {
+                float t = 0;
+                for (int k = 0; k < ch; k++) t += (px[i * 4 + k] - mean[k]) * axis[k];
+                mn = Math.min(mn, t); mx = Math.max(mx, t);
+            }
+            range[0] = mn; range[1] = mx;
+        }
+
+        // ---------------- BC1 ----------------
+
+        long bc1() {
+            float[] r = new float[2];
+            principal(3, r);
+            float inset = (r[1] - r[0]) / 16f;
+            for (int k = 0; k < 3; k++) {
+                e0[k] = mean[k] + axis[k] * (r[1] - inset);
+                e1[k] = mean[k] + axis[k] * (r[0] + inset);
+            }
+            long best = bc1Pack(to565(e0), to565(e1));
+            long bestErr = err;
+
+            // 最小二乘精修：索引固定，解两端点
+            float aa = 0, ab = 0, bb = 0;
+            float[] ax = new float[3], bx = new float[3];
+            for (int i = 0; i < 16; i++) {
+                float a = BC1_A[idx[i]], b = 1 - a;
+                aa += a * a; ab += a * b; bb += b * b;
+                for (int k = 0; k < 3; k++) { ax[k] += a * px[i * 4 + k]; bx[k] += b * px[i * 4 + k]; }
+            }
+            float det = aa * bb - ab * ab;
+            if (Math.abs(det) > 1e-6f) {
+                for (int k = 0; k < 3; k++) {
+                    e0[k] = (ax[k] * bb - bx[k] * ab) / det;
+                    e1[k] = (bx[k] * aa - ax[k] * ab) / det;
+                }
+                long refined = bc1Pack(to565(e0), to565(e1));
+                if (err < bestErr) best = refined;
+            }
+            return best;
+        }
+
+        /** idx[i] 对应的 c0 权重（0 = c0，1 = c1，2 = 2/3·c0 + 1/3·c1，3 = 1/3·c0 + 2/3·c1） */
+        private static final float[] BC1_A = {1f, 0f, 2f / 3f, 1f / 3f};
+        long err;
+
+        private long bc1Pack(int c0, int c1) {
+            if (c0 < c1) { int t = c0; c0 = c1; c1 = t; }
+            expand565(c0, pal, 0);
+            expand565(c1, pal, 4);
+            if (c0 == c1) {
+                // 同色块：c0 == c1 时是三色模式，索引全 0 仍取 c0
+                err = 0;
+                for (int i = 0; i < 16; i++) { idx[i] = 0; err += dist3(i, 0); }
+                return (c0 & 0xFFFFL) | (long) c1 << 16;
+            }
+            for (int k = 0; k < 3; k++) {
+                pal[8 + k] = (2 * pal[k] + pal[4 + k]) / 3;
+                pal[12 + k] = (pal[k] + 2 * pal[4 + k]) / 3;
+            }
+            long bits = 0;
+            err = 0;
+            for (int i = 0; i < 16; i++) {
+                int bi = 0, be = Integer.MAX_VALUE;
+                for (int p = 0; p < 4; p++) {
+                    int e = dist3(i, p * 4);
+                    if (e < be) { be = e; bi = p; }
+                }
+                idx[i] = bi;
+                err += be;
+                bits |= (long) bi << (i * 2);
+            }
+            return (c0 & 0xFFFFL) | (long) c1 << 16 | bits << 32;
+        }
+
+        private int dist3(int i, int p) {
+            int dr = px[i * 4] - pal[p], dg = px[i * 4 + 1] - pal[p + 1], db = px[i * 4 + 2] - pal[p + 2];
+            return dr * dr + dg * dg + db * db;
+        }
+
+        // ---------------- BC7 模式 6 ----------------
+
+        void bc7() {
+            float[] r = new float[2];
+            principal(4, r);
+            for (int k = 0; k < 4; k++) {
+                e0[k] = mean[k] + axis[k] * r[0];
+                e1[k] = mean[k] + axis[k] * r[1];
+            }
+            int[] q0 = new int[4], q1 = new int[4];
+            int p0 = quant7p(e0, q0), p1 = quant7p(e1, q1);
+            long bestErr = bc7Indices(q0, p0, q1, p1);
+            int[] bq0 = q0.clone(), bq1 = q1.clone(), bidx = idx.clone();
+            int bp0 = p0, bp1 = p1;
+
+            float aa = 0, ab = 0, bb = 0;
+            float[] ax = new float[4], bx = new float[4];
+            for (int i = 0; i < 16; i++) {
+                float b = BC7_WEIGHTS[idx[i]] / 64f, a = 1 - b;
+                aa += a * a; ab += a * b; bb += b * b;
+                for (int k = 0; k < 4; k++) { ax[k] += a * px[i * 4 + k]; bx[k] += b * px[i * 4 + k]; }
+            }
+            float det = aa * bb - ab * ab;
+            if (Math.abs(det) > 1e-6f) {
+                for (int k = 0; k < 4; k++) {
+                    e0[k] = (ax[k] * bb - bx[k] * ab) / det;
+                    e1[k] = (bx[k] * aa - ax[k] * ab) / det;
+                }
+                p0 = quant7p(e0, q0); p1 = quant7p(e1, q1);
+                long e = bc7Indices(q0, p0, q1, p1);
+                if (e < bestErr) { bq0 = q0; bq1 = q1; bp0 = p0; bp1 = p1; bidx = idx.clone(); }
+            }
+            // 第 0 个像素的索引只存 3 位，最高位必须为 0：否则交换端点并反转索引
+            if (bidx[0] >= 8) {
+                int[] t = bq0; bq0 = bq1; bq1 = t;
+                int tp = bp0; bp0 = bp1; bp1 = tp;
+                for (int i = 0; i < 16; i++) bidx[i] = 15 - bidx[i];
+            }
+            lo = 0; hi = 0; pos = 0;
+            put(1 << 6, 7); // 模式 6
+            for (int k = 0; k < 4; k++) { put(bq0[k], 7); put(bq1[k], 7); }
+            put(bp0, 1); put(bp1, 1);
+            put(bidx[0], 3);
+            for (int i = 1; i < 16; i++) put(bidx[i], 4);
+        }
+
+        /** 端点量化成 7 位 + 共用的 p 位（重建值 q·2 + p），选误差小的 p；返回 p */
+        private static int quant7p(float[] e, int[] q) {
+            float best = Float.MAX_VALUE;
+            int bp = 0;
+            int[] t = new int[4];
+            for (int p = 0; p < 2; p++) {
+                float err = 0;
+                for (int k = 0; k < 4; k++) {
+                    t[k] = Math.min(127, Math.max(0, Math.round((e[k] - p) / 2f)));
+                    float d = (t[k] << 1 | p) - e[k];
+                    err += d * d;
+                }
+                if (err < best) { best = err; bp = p; System.arraycopy(t, 0, q, 0, 4); }
+            }
+            return bp;
+        }
+
+        private long bc7Indices(int[] q0, int p0, int[] q1, int p1) {
+            for (int j = 0; j < 16; j++) {
+                int w = BC7_WEIGHTS[j];
+                for (int k = 0; k < 4; k++) {
+                    int a = q0[k] << 1 | p0, b = q1[k] << 1 | p1;
+                    pal[j * 4 + k] = ((64 - w) * a + w * b + 32) >> 6;
+                }
+            }
+            long total = 0;
+            for (int i = 0; i < 16; i++) {
+                int bi = 0, be = Integer.MAX_VALUE;
+                for (int j = 0; j < 16; j++) {
+                    int dr = px[i * 4] - pal[j * 4], dg = px[i * 4 + 1] - pal[j * 4 + 1];
+                    int db = px[i * 4 + 2] - pal[j * 4 + 2], da = px[i * 4 + 3] - pal[j * 4 + 3];
+                    int e = dr * dr + dg * dg + db * db + da * da;
+                    if (e < be) { be = e; bi = j; }
+                }
+                idx[i] = bi;
+                total += be;
+            }
+            return total;
+        }
+
+        private int pos;
+
+        private void put(int v, int bits) {
+            if (pos < 64) {
+                lo |= (long) v << pos;
+                if (pos + bits > 64) hi |= (long) v >>> (64 - pos);
+            } else {
+                hi |= (long) v << (pos - 64);
+            }
+            pos += bits;
+        }
+    }
+
+    private static int to565(float[] c) {
+        int r = Math.min(31, Math.max(0, Math.round(c[0] * 31 / 255f)));
+        int g = Math.min(63, Math.max(0, Math.round(c[1] * 63 / 255f)));
+        int b = Math.min(31, Math.max(0, Math.round(c[2] * 31 / 255f)));
+        return r << 11 | g << 5 | b;
+    }
+
+    private static void expand565(int c, int[] out, int o) {
+        int r = c >> 11 & 31, g = c >> 5 & 63, b = c & 31;
+        out[o] = r << 3 | r >> 2; out[o + 1] = g << 2 | g >> 4; out[o + 2] = b << 3 | b >> 2; out[o + 3] = 255;
+    }
+
+    // ======================== 解码 ========================
+
+    /**
+     * 一层压缩数据解回 RGBA8（直接缓冲）。用于不支持该压缩格式的 GL 上的退路与离线校验；
+     * BC7 只认本编码器产生的模式 6 块，其它模式解成品红。
+     */
+    public static ByteBuffer decodeLevel(ByteBuffer blocks, int w, int h, int format) {
+        int bw = (w + 3) / 4, bh = (h + 3) / 4, bytes = blockBytes(format);
+        ByteBuffer src = blocks.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = src.position();
+        ByteBuffer out = ByteBuffer.allocateDirect(w * h * 4);
+        IntStream.range(0, bh).parallel().forEach(by -> {
+            int[] px = new int[64];
+            for (int bx = 0; bx < bw; bx++) {
+                int o = base + (by * bw + bx) * bytes;
+                if (format == BC1) decodeBc1(src.getLong(o), px);
+                else decodeBc7(src.getLong(o), src.getLong(o + 8), px);
+                for (int y = 0; y < 4 && by * 4 + y < h; y++) {
+                    for (int x = 0; x < 4 && bx * 4 + x < w; x++) {
+                        int d = ((by * 4 + y) * w + bx * 4 + x) * 4, s = (y * 4 + x) * 4;
+                        out.put(d, (byte) px[s]).put(d + 1, (byte) px[s + 1]).put(d + 2, (byte) px[s + 2]).put(d + 3, (byte) px[s + 3]);
+                    }
+                }
+            }
+        });
+        return out;
+    }
+
+    static void decodeBc1(long block, int[] px) {
+        int c0 = (int) (block & 0xFFFF), c1 = (int) (block >>> 16 & 0xFFFF);
+        int[] pal = new int[16];
+        expand565(c0, pal, 0);
+        expand565(c1, pal, 4);
+        for (int k = 0; k < 3; k++) {
+            if (c0 > c1) {
+                pal[8 + k] = (2 * pal[k] + pal[4 + k]) / 3;
+                pal[12 + k] = (pal[k] + 2 * pal[4 + k]) / 3;
+            } else {
+                pal[8 + k] = (pal[k] + pal[4 + k]) / 2;
+                pal[12 + k] = 0;
+            }
+        }
+        pal[11] = 255;
+        pal[15] = c0 > c1 ? 255 : 0;
+        for (int i = 0; i < 16; i++) {
+            int p = (int) (block >>> (32 + i * 2) & 3) * 4;
+            System.arraycopy(pal, p, px, i * 4, 4);
+        }
+    }
+
+    static void decodeBc7(long lo, long hi, int[] px) {
+        if ((lo & 0x7F) != 1 << 6) {
+            for (int i = 0; i < 16; i++) { px[i * 4] = 255; px[i * 4 + 1] = 0; px[i * 4 + 2] = 255; px[i * 4 + 3] = 255; }
+            return;
+        }
+        int[] e = new int[8];
+        for (int k = 0; k < 4; k++) {
+            e[k] = (int) (lo >>> (7 + k * 14) & 0x7F);
+            e[4 + k] = (int) (lo >>> (14 + k * 14) & 0x7F);
+        }
+        int p0 = (int) (lo >>> 63), p1 = (int) (hi & 1);
+        for (int k = 0; k < 4; k++) { e[k] = e[k] << 1 | p0; e[4 + k] = e[4 + k] << 1 | p1; }
+        for (int i = 0; i < 16; i++) {
+            // 索引从第 65 位开始：第 0 个 3 位，其余 4 位
+            int bit = i == 0 ? 65 : 65 + 3 + (i - 1) * 4;
+            int n = i == 0 ? 3 : 4;
+            int j = (int) (hi >>> (bit - 64) & ((1 << n) - 1));
+            int w = BC7_WEIGHTS[j];
+            for (int k = 0; k < 4; k++) px[i * 4 + k] = ((64 - w) * e[k] + w * e[4 + k] + 32) >> 6;
+        }
+    }
+
+    // ======================== 命令行 ========================
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("convert")) {
+            String mode = args.length > 3 && !args[3].startsWith("-") ? args[3] : "auto";
+            boolean srgb = !java.util.Arrays.asList(args).contains("-linear");
+            Texture2D.Decoded d = Texture2D.decodeFile(java.nio.file.Path.of(args[1]));
+            try {
+                long t0 = System.nanoTime();
+                int format = format(mode, d.pixels);
+                ByteBuffer[] levels = encode(d.pixels, d.width, d.height, format, srgb);
+                Ktx2.write(java.nio.file.Path.of(args[2]), format, srgb, d.width, d.height, levels);
+                long bytes = 0;
+                for (ByteBuffer l : levels) bytes += l.remaining();
+                System.out.printf("%s: %dx%d %s, %d levels, %.2f MB (RGBA8 + mips %.2f MB), %.0f ms%n", args[2], d.width, d.height,
+                        format == BC1 ? "BC1" : "BC7", levels.length, bytes / 1048576.0, d.width * d.height * 4 * 4 / 3 / 1048576.0,
+                        (System.nanoTime() - t0) / 1e6);
+            } finally {
+                d.free();
+            }
+        } else if (args.length >= 2 && args[0].equals("bench")) {
+            Texture2D.Decoded d = Texture2D.decodeResource(args[1]);
+            try {
+                int format = format(args.length > 2 ? args[2] : "auto", d.pixels);
+                byte[] src = new byte[d.width * d.height * 4];
+                d.pixels.duplicate().get(src);
+                for (int round = 0; round < 3; round++) {
+                    long t0 = System.nanoTime();
+                    ByteBuffer[] levels = encode(d.pixels, d.width, d.height, format, true);
+                    long t1 = System.nanoTime();
+                    ByteBuffer back = decodeLevel(levels[0], d.width, d.height, format);
+                    long t2 = System.nanoTime();
+                    double se = 0;
+                    int channels = format == BC1 ? 3 : 4;
+                    for (int i = 0; i < src.length; i++) {
+                        if ((i & 3) >= channels) continue;
+                        int e = (src[i] & 0xFF) - (back.get(i) & 0xFF);
+                        se += e * e;
+                    }
+                    double mse = se / ((double) d.width * d.height * channels);
+                    long bytes = 0;
+                    for (ByteBuffer l : levels) bytes += l.remaining();
+                    System.out.printf("%s %dx%d %s: encode %.0f ms (%d levels), decode %.0f ms, PSNR %.2f dB, %.2f MB vs %.2f MB RGBA8 + mips (%.1fx)%n",
+                            args[1], d.width, d.height, format == BC1 ? "BC1" : "BC7", (t1 - t0) / 1e6, levels.length, (t2 - t1) / 1e6,
+                            10 * Math.log10(255.0 * 255.0 / Math.max(mse, 1e-9)), bytes / 1048576.0,
+                            d.width * d.height * 16 / 3 / 1048576.0, d.width * d.height * 16.0 / 3 / bytes);
+                }
+            } finally {
+                d.free();
+            }
+        } else {
+            System.err.println("usage: Bcn convert <in.png> <out" + Ktx2.EXT + "> [bc1|bc7|auto] [-linear] | bench <resource> [bc1|bc7|auto]");
+            System.exit(2);
+        }
+    }
+
+    /** 模式名（bc1 / bc7 / auto）对应的格式 */
+    static int format(String mode, ByteBuffer rgba) {
+        return switch (mode.toLowerCase()) {
+            case "bc1" -> BC1;
+            case "bc7" -> BC7;
+            default -> choose(rgba);
+        };
+    }
+}
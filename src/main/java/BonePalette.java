@@ -0,0 +1,94 @@
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 所有蒙皮角色共用的骨骼矩阵缓冲：一个 GL_TEXTURE_BUFFER（RGBA32F），每根骨骼 3 个纹素（{@link Skeleton} 的 3x4 调色板）。
+ * 每个角色 {@link #allocate} 一段，得到的基址作为 uBoneBase 随 {@link RenderQueue#submit(ShaderProgram, Model, float[], int)}
+ * 设置；顶点着色器用 texelFetch 取矩阵（{@link Skin#GLSL_SKIN}），没有 uniform 数组的长度限制，
+ * 整帧只需绑定一次、上传一次。
+ * <p>
+ * 与 {@link InstanceBuffer} 一样保留 CPU 镜像，{@link #set} 只标脏，{@link #upload()} 把脏区间一次传上去。
+ * 容量不够时重新分配存储（纹理缓冲对象重新关联），已分配的基址不变。只能在 GL 线程使用。
+ */
+public class BonePalette implements AutoCloseable {
+    public static final int TEXELS_PER_BONE = 3;
+
+    private final int buffer = glGenBuffers(), texture = glGenTextures();
+    private float[] data;
+    private int bones;                  // 已分配的骨骼数
+    private int gpuCapacity;            // GPU 端已分配的骨骼数
+    private int dirtyLo = Integer.MAX_VALUE, dirtyHi = -1;   // 骨骼下标 [lo, hi)
+    private long uploadedBytes;
+    private FloatBuffer staging = MemoryUtil.memAllocFloat(1);
+
+    public BonePalette(int capacityBones) {
+        data = new float[Math.max(1, capacityBones) * Skeleton.PALETTE_FLOATS];
+    }
+
+    /** 为一个有 boneCount 根骨骼的角色分配一段，返回基址（骨骼下标，即着色器里的 uBoneBase） */
+    public int allocate(int boneCount) {
+        int base = bones;
+        int need = (base + boneCount) * Skeleton.PALETTE_FLOATS;
+        if (need > data.length) data = Arrays.copyOf(data, Math.max(need, data.length * 2));
+        bones += boneCount;
+        return base;
+    }
+
+    /** 写入 base 处角色的调色板（通常是 {@link Skeleton#palette()}） */
+    public void set(int base, float[] palette, int boneCount) {
+        System.arraycopy(palette, 0, data, base * Skeleton.PALETTE_FLOATS, boneCount * Skeleton.PALETTE_FLOATS);
+        dirtyLo = Math.min(dirtyLo, base);
+        dirtyHi = Math.max(dirtyHi, base + boneCount);
+    }
+
+    public void set(int base, Skeleton pose) {
+        set(base, pose.palette(), pose.boneCount());
+    }
+
+    public int boneCount() { return bones; }
+    public long uploadedBytesLastTime() { return uploadedBytes; }
+
+    /** 把脏区间上传到 GPU；没有改动时什么也不做 */
+    public void upload() {
+        uploadedBytes = 0;
+        glBindBuffer(GL_TEXTURE_BUFFER, buffer);
+        if (bones > gpuCapacity) {
+            gpuCapacity = data.length / Skeleton.PALETTE_FLOATS;
+            glBufferData(GL_TEXTURE_BUFFER, (long) gpuCapacity * Skeleton.PALETTE_FLOATS * Float.BYTES, GL_DYNAMIC_DRAW);
+            glBindTexture(GL_TEXTURE_BUFFER, texture);
+            glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, buffer); // 存储换了，重新关联
+            glBindTexture(GL_TEXTURE_BUFFER, 0);
+            dirtyLo = 0; dirtyHi = bones;
+        }
+        if (dirtyHi > dirtyLo) {
+            int lo = dirtyLo, floats = (Math.min(dirtyHi, bones) - lo) * Skeleton.PALETTE_FLOATS;
+            if (staging.capacity() < floats) {
+                MemoryUtil.memFree(staging);
+                staging = MemoryUtil.memAllocFloat(Math.max(floats, staging.capacity() * 2));
+            }
+            staging.clear();
+            staging.put(data, lo * Skeleton.PALETTE_FLOATS, floats).flip();
+            glBufferSubData(GL_TEXTURE_BUFFER, (long) lo * Skeleton.PALETTE_FLOATS * Float.BYTES, staging);
+            uploadedBytes = (long) floats * Float.BYTES;
+        }
+        dirtyLo = Integer.MAX_VALUE; dirtyHi = -1;
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+    }
+
+    /** 绑到 unit 号纹理单元（着色器里的 samplerBuffer uBones），之后把活动单元恢复为 0 */
+    public void bind(int unit) {
+        glActiveTexture(GL_TEXTURE0 + unit);
+        glBindTexture(GL_TEXTURE_BUFFER, texture);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    @Override public void close() {
+        glDeleteTextures(texture);
+        glDeleteBuffers(buffer);
+        MemoryUtil.memFree(staging);
+    }
+}
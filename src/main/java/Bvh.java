@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 通用 BVH：输入每个图元的 AABB，用 SAH 分桶（每轴 16 桶）自顶向下构建。
+ * <p>
+ * 全部存成扁平数组：节点 i 的包围盒在 bounds[6i .. 6i+5]（min xyz, max xyz），
+ * 叶子 count[i] > 0、图元为 prims[first[i] .. first[i]+count[i])；内部节点 count[i] == 0、
+ * 左右孩子为 first[i] 与 first[i]+1。孩子总是在父节点之后分配，所以倒序遍历节点就是自底向上。
+ * <p>
+ * 大于 {@link #PARALLEL_MIN} 个图元的子树在 ForkJoinPool 上并行构建。
+ * 图元移动后可以 {@link #refit()} 整体重算，或 {@link #refitPrimitive} 只沿叶子到根更新。
+ * 射线查询见 {@link #raycast}；三角形版本见 {@link TriangleBvh}。
+ */
+public final class Bvh {
+    static final int BINS = 16;
+    static final int MAX_LEAF = 8;          // SAH 认为不值得分时，叶子最多容纳的图元
+    static final int PARALLEL_MIN = 4096;
+    static final float TRAVERSAL_COST = 1f; // 相对一次图元测试
+
+    // 图元 AABB（原始下标）与质心
+    final float[] pmin, pmax, cen;
+    final int n;
+
+    // 节点
+    float[] bounds;
+    int[] first, count, parent;
+    int nodeCount;
+    /** 图元重排后的顺序：叶子引用的是 prims 里的区间 */
+    final int[] prims;
+    /** 图元 → 所在叶子，供增量 refit */
+    int[] leafOf;
+    int maxDepth;
+
+    /**
+     * 射线命中：t 为参数距离；prim 为图元原始下标（场景级拾取时是 Part 下标）；
+     * triangle 为命中的三角形下标，u/v 为其重心坐标；只按包围盒命中时 triangle = -1。
+     */
+    public static final class Hit {
+        public float t = Float.POSITIVE_INFINITY;
+        public int prim = -1;
+        public int triangle = -1;
+        public float u, v;
+        public boolean hit() { return prim >= 0; }
+        void reset(float tMax) { t = tMax; prim = -1; triangle = -1; u = v = 0f; }
+    }
+
+    /** 叶子里的图元测试：返回命中距离（< tBest 才算），未命中返回 +∞；命中时可以顺便写 hit 的 triangle/u/v */
+    public interface PrimitiveTest {
+        float intersect(int prim, float ox, float oy, float oz, float dx, float dy, float dz, float tBest, Hit hit);
+    }
+
+    /** pmin/pmax 各 3n 个 float；数组会被 BVH 持有（refit 时读取） */
+    public Bvh(float[] pmin, float[] pmax, int n) {
+        this.pmin = pmin; this.pmax = pmax; this.n = n;
+        this.cen = new float[3 * n];
+        this.prims = new int[n];
+        for (int i = 0; i < n; i++) {
+            prims[i] = i;
+            for (int a = 0; a < 3; a++) cen[3 * i + a] = (pmin[3 * i + a] + pmax[3 * i + a]) * 0.5f;
+        }
+    }
+
+    /** 由一组 AABB 构建（例如 {@link Model#bounds()}） */
+    public static Bvh ofBoxes(Frustum.Boxes b) {
+        float[] mn = new float[3 * b.count], mx = new float[3 * b.count];
+        for (int i = 0; i < b.count; i++) {
+            mn[3*i] = b.cx[i] - b.ex[i]; mn[3*i+1] = b.cy[i] - b.ey[i]; mn[3*i+2] = b.cz[i] - b.ez[i];
+            mx[3*i] = b.cx[i] + b.ex[i]; mx[3*i+1] = b.cy[i] + b.ey[i]; mx[3*i+2] = b.cz[i] + b.ez[i];
+        }
+        return new Bvh(mn, mx, b.count).build(ForkJoinPool.commonPool());
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public int primitiveCount() { return n; }
+    public int maxDepth() { return maxDepth; }
+
+    // ======================== 构建 ========================
+
+    public Bvh build(ForkJoinPool pool) {
+        int cap = Math.max(1, 2 * n - 1);
+        bounds = new float[6 * cap];
+        first = new int[cap]; count = new int[cap]; parent = new int[cap];
+        leafOf = new int[n];
+        parent[0] = -1;
+        AtomicInteger next = new AtomicInteger(1);
+        AtomicInteger depth = new AtomicInteger();
+        if (n == 0) {
+            nodeCount = 1;
+            Arrays.fill(bounds, 0, 3, Float.POSITIVE_INFINITY);
+            Arrays.fill(bounds, 3, 6, Float.NEGATIVE_INFINITY);
+            return this;
+        }
+        Task root = new Task(0, 0, n, 0, next, depth);
+        if (n >= PARALLEL_MIN) pool.invoke(root); else root.compute();
+        nodeCount = next.get();
+        maxDepth = depth.get();
+        return this;
+    }
+
+    /** 一个子树的构建任务；小子树在当前线程上直接递归 */
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int node, start, end, level;
+        final AtomicInteger next, depth;
+        Task(int node, int start, int end, int level, AtomicInteger next, AtomicInteger depth) {
+            this.node = node; this.start = start; this.end = end; this.level = level; this.next = next; this.depth = depth;
+        }
+        @Override protected void compute() {
+            subdivide(node, start, end, level, new Scratch(), next, depth, true);
+        }
+    }
+
+    /** 每个线程的分桶临时数组 */
+    private static final class Scratch {
+        final int[] binCount = new int[3 * BINS];
+        final float[] binBounds = new float[3 * BINS * 6];
+        final float[] rightArea = new float[BINS];
+        final int[] rightCount = new int[BINS];
+    }
+
+    private void subdivide(int node, int start, int end, int level, Scratch s, AtomicInteger next,
+                           AtomicInteger depth, boolean mayFork) {
+        // 节点包围盒与质心包围盒
+        float bx0 = Float.POSITIVE_INFINITY, by0 = bx0, bz0 = bx0, bx1 = Float.NEGATIVE_INFINITY, by1 = bx1, bz1 = bx1;
+        float cx0 = Float.POSITIVE_INFINITY, cy0 = cx0, cz0 = cx0, cx1 = Float.NEGATIVE_INFINITY, cy1 = cx1, cz1 = cx1;
+        for (int k = start; k < end; k++) {
+            int p = prims[k], o = 3 * p;
+            bx0 = Math.min(bx0, pmin[o]); by0 = Math.min(by0, pmin[o+1]); bz0 = Math.min(bz0, pmin[o+2]);
+            bx1 = Math.max(bx1, pmax[o]); by1 = Math.max(by1, pmax[o+1]); bz1 = Math.max(bz1, pmax[o+2]);
+            cx0 = Math.min(cx0, cen[o]); cy0 = Math.min(cy0, cen[o+1]); cz0 = Math.min(cz0, cen[o+2]);
+            cx1 = Math.max(cx1, cen[o]); cy1 = Math.max(cy1, cen[o+1]); cz1 = Math.max(cz1, cen[o+2]);
+        }
+        int b = 6 * node;
+        bounds[b] = bx0; bounds[b+1] = by0; bounds[b+2] = bz0; bounds[b+3] = bx1; bounds[b+4] = by1; bounds[b+5] = bz1;
+        depth.accumulateAndGet(level, Math::max);
+
+        int cnt = end - start;
+        if (cnt <= 2) { makeLeaf(node, start, end); return; }
+
+        // ---- SAH 分桶：三个轴都试 ----
+        float[] cmin = { cx0, cy0, cz0 }, cext = { cx1 - cx0, cy1 - cy0, cz1 - cz0 };
+        int[] bc = s.binCount;
+        float[] bb = s.binBounds;
+        Arrays.fill(bc, 0);
+        for (int i = 0; i < 3 * BINS; i++) {
+            int o = 6 * i;
+            bb[o] = bb[o+1] = bb[o+2] = Float.POSITIVE_INFINITY;
+            bb[o+3] = bb[o+4] = bb[o+5] = Float.NEGATIVE_INFINITY;
+        }
+        for (int k = start; k < end; k++) {
+            int p = prims[k], o = 3 * p;
+            for (int a = 0; a < 3; a++) {
+                if (!(cext[a] > 0f)) continue;
+                int bin = binOf(cen[o + a], cmin[a], cext[a]);
+                int slot = a * BINS + bin, q = 6 * slot;
+                bc[slot]++;
+                bb[q]   = Math.min(bb[q],   pmin[o]);   bb[q+1] = Math.min(bb[q+1], pmin[o+1]); bb[q+2] = Math.min(bb[q+2], pmin[o+2]);
+                bb[q+3] = Math.max(bb[q+3], pmax[o]);   bb[q+4] = Math.max(bb[q+4], pmax[o+1]); bb[q+5] = Math.max(bb[q+5], pmax[o+2]);
+            }
+        }
+        float bestCost = Float.POSITIVE_INFINITY;
+        int bestAxis = -1, bestSplit = -1;
+        for (int a = 0; a < 3; a++) {
+            if (!(cext[a] > 0f)) continue;
+            // 从右往左累计
+            float rx0 = Float.POSITIVE_INFINITY, ry0 = rx0, rz0 = rx0, rx1 = Float.NEGATIVE_INFINITY, ry1 = rx1, rz1 = rx1;
+            int rc = 0;
+            for (int i = BINS - 1; i > 0; i--) {
+                int q = 6 * (a * BINS + i);
+                rc += bc[a * BINS + i];
+                rx0 = Math.min(rx0, bb[q]); ry0 = Math.min(ry0, bb[q+1]); rz0 = Math.min(rz0, bb[q+2]);
+                rx1 = Math.max(rx1, bb[q+3]); ry1 = Math.max(ry1, bb[q+4]); rz1 = Math.max(rz1, bb[q+5]);
+                s.rightCount[i] = rc;
+                s.rightArea[i] = rc == 0 ? 0f : area(rx1 - rx0, ry1 - ry0, rz1 - rz0);
+            }
+            // 从左往右，分割面在桶 i 之前：左 = [0, i)，右 = [i, BINS)
+            float lx0 = Float.POSITIVE_INFINITY, ly0 = lx0, lz0 = lx0, lx1 = Float.NEGATIVE_INFINITY, ly1 = lx1, lz1 = lx1;
+            int lc = 0;
+            for (int i = 1; i < BINS; i++) {
+                int q = 6 * (a * BINS + i - 1);
+                lc += bc[a * BINS + i - 1];
+                lx0 = Math.min(lx0, bb[q]); ly0 = Math.min(ly0, bb[q+1]); lz0 = Math.min(lz0, bb[q+2]);
+                lx1 = Math.max(lx1, bb[q+3]); ly1 = Math.max(ly1, bb[q+4]); lz1 = Math.max(lz1, bb[q+5]);
+                int rcnt = s.rightCount[i];
+                if (lc == 0 || rcnt == 0) continue;
+                float cost = lc * area(lx1 - lx0, ly1 - ly0, lz1 - lz0) + rcnt * s.rightArea[i];
+                if (cost < bestCost) { bestCost = cost; bestAxis = a; bestSplit = i; }
+            }
+        }
+
+        int mid;
+        if (bestAxis < 0) {
+            // 所有质心重合：SAH 无从下手，小的做叶子，大的按下标对半分保证深度
+            if (cnt <= MAX_LEAF) { makeLeaf(node, start, end); return; }
+            mid = (start + end) >>> 1;
+        } else {
+            float parentArea = area(bx1 - bx0, by1 - by0, bz1 - bz0);
+            float splitCost = TRAVERSAL_COST + (parentArea > 0f ? bestCost / parentArea : cnt);
+            if (splitCost >= cnt && cnt <= MAX_LEAF) { makeLeaf(node, start, end); return; }
+            // 原地划分
+            float cm = cmin[bestAxis], ce = cext[bestAxis];
+            int i = start, j = end - 1;
+            while (i <= j) {
+                if (binOf(cen[3 * prims[i] + bestAxis], cm, ce) < bestSplit) i++;
+                else { int t = prims[i]; prims[i] = prims[j]; prims[j] = t; j--; }
+            }
+            mid = i;
+            if (mid == start || mid == end) mid = (start + end) >>> 1; // 浮点边界情况的兜底
+        }
+
+        int left = next.getAndAdd(2);
+        first[node] = left; count[node] = 0;
+        parent[left] = node; parent[left + 1] = node;
+        if (mayFork && cnt >= PARALLEL_MIN) {
+            RecursiveAction.invokeAll(new Task(left, start, mid, level + 1, next, depth),
+                    new Task(left + 1, mid, end, level + 1, next, depth));
+        } else {
+            subdivide(left, start, mid, level + 1, s, next, depth, false);
+            subdivide(left + 1, mid, end, level + 1, s, next, depth, false);
+        }
+    }
+
+    private static int binOf(float c, float cmin, float cext) {
+        int bin = (int) ((c - cmin) * (BINS / cext));
+        return bin < 0 ? 0 : (bin >= BINS ? BINS - 1 : bin);
+    }
+
+    private static float area(float x, float y, float z) { return x * y + y * z + z * x; }
+
+    private void makeLeaf(int node, int start, int end) {
+        first[node] = start; count[node] = end - start;
+        for (int k = start; k < end; k++) leafOf[prims[k]] = node;
+    }
+
+    // ======================== refit ========================
+
+    /** 修改某个图元的 AABB（调用方随后 refit） */
+    public void setPrimitiveBounds(int prim, float[] min, float[] max) {
+        System.arraycopy(min, 0, pmin, 3 * prim, 3);
+        System.arraycopy(max, 0, pmax, 3 * prim, 3);
+    }
+
+    /** 全部重算：拓扑不变，只收紧/放大包围盒，O(节点数) */
+    public void refit() {
+        for (int node = nodeCount - 1; node >= 0; node--) recompute(node);
+    }
+
+    /** 只更新一个图元所在叶子到根的路径；包围盒不再变化时提前停止 */
+    public void refitPrimitive(int prim) {
+        int node = leafOf[prim];
+        while (node >= 0) {
+            if (!recompute(node)) return;
+            node = parent[node];
+        }
+    }
+
+    /** 重算节点包围盒，返回是否有变化 */
+    private boolean recompute(int node) {
+        float x0 = Float.POSITIVE_INFINITY, y0 = x0, z0 = x0, x1 = Float.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        if (count[node] > 0) {
+            for (int k = first[node], e = k + count[node]; k < e; k++) {
+                int o = 3 * prims[k];
+                x0 = Math.min(x0, pmin[o]); y0 = Math.min(y0, pmin[o+1]); z0 = Math.min(z0, pmin[o+2]);
+                x1 = Math.max(x1, pmax[o]); y1 = Math.max(y1, pmax[o+1]); z1 = Math.max(z1, pmax[o+2]);
+            }
+        } else {
+            int l = 6 * first[node], r = l + 6;
+            x0 = Math.min(bounds[l],   bounds[r]);   y0 = Math.min(bounds[l+1], bounds[r+1]); z0 = Math.min(bounds[l+2], bounds[r+2]);
+            x1 = Math.max(bounds[l+3], bounds[r+3]); y1 = Math.max(bounds[l+4], bounds[r+4]); z1 = Math.max(bounds[l+5], bounds[r+5]);
+        }
+        int b = 6 * node;
+        boolean changed = bounds[b] != x0 || bounds[b+1] != y0 || bounds[b+2] != z0
+                || bounds[b+3] != x1 || bounds[b+4] != y1 || bounds[b+5] != z1;
+        bounds[b] = x0; bounds[b+1] = y0; bounds[b+2] = z0; bounds[b+3] = x1; bounds[b+4] = y1; bounds[b+5] = z1;
+        return changed;
+    }
+
+    // ======================== 查询 ========================
+
+    /**
+     * 最近命中：按进入距离由近到远遍历，叶子交给 test。hit 会被重置，返回是否命中。
+     * dx/dy/dz 不必归一化，t 以方向向量长度为单位。
+     */
+    public boolean raycast(float ox, float oy, float oz, float dx, float dy, float dz, float tMax,
+                           PrimitiveTest test, Hit hit) {
+        hit.reset(tMax);
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        if (slab(0, ox, oy, oz, ix, iy, iz, tMax) == Float.POSITIVE_INFINITY) return false;
+        int[] stack = new int[maxDepth + 2];
+        int sp = 0;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int node = stack[--sp];
+            if (count[node] > 0) {
+                for (int k = first[node], e = k + count[node]; k < e; k++) {
+                    int p = prims[k];
+                    float t = test.intersect(p, ox, oy, oz, dx, dy, dz, hit.t, hit);
+                    if (t < hit.t) { hit.t = t; hit.prim = p; }
+                }
+                continue;
+            }
+            int l = first[node], r = l + 1;
+            float tl = slab(l, ox, oy, oz, ix, iy, iz, hit.t);
+            float tr = slab(r, ox, oy, oz, ix, iy, iz, hit.t);
+            // 远的先压栈，近的先出栈
+            if (tl <= tr) {
+                if (tr != Float.POSITIVE_INFINITY) stack[sp++] = r;
+                if (tl != Float.POSITIVE_INFINITY) stack[sp++] = l;
+            } else {
+                if (tl != Float.POSITIVE_INFINITY) stack[sp++] = l;
+                if (tr != Float.POSITIVE_INFINITY) stack[sp++] = r;
+            }
+        }
+        return hit.hit();
+    }
+
+    /** 射线与节点包围盒：返回进入距离（≥0），不相交或比 tBest 远时返回 +∞ */
+    float slab(int node, float ox, float oy, float oz, float ix, float iy, float iz, float tBest) {
+        int b = 6 * node;
+        float tx0 = (bounds[b]   - ox) * ix, tx1 = (bounds[b+3] - ox) * ix;
+        float ty0 = (bounds[b+1] - oy) * iy, ty1 = (bounds[b+4] - oy) * iy;
+        float tz0 = (bounds[b+2] - oz) * iz, tz1 = (bounds[b+5] - oz) * iz;
+        float tmin = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.max(Math.min(tz0, tz1), 0f));
+        float tmax = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.max(tz0, tz1));
+        return (tmin <= tmax && tmin < tBest) ? tmin : Float.POSITIVE_INFINITY;
+    }
+
+    /** 把一个图元自身的 AABB 当作命中体（场景级按包围盒拾取时用） */
+    public float intersectPrimitiveBox(int prim, float ox, float oy, float oz, float dx, float dy, float dz, float tBest) {
+        int o = 3 * prim;
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        float tx0 = (pmin[o] - ox) * ix, tx1 = (pmax[o] - ox) * ix;
+        float ty0 = (pmin[o+1] - oy) * iy, ty1 = (pmax[o+1] - oy) * iy;
+        float tz0 = (pmin[o+2] - oz) * iz, tz1 = (pmax[o+2] - oz) * iz;
+        float tmin = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.max(Math.min(tz0, tz1), 0f));
+        float tmax = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.max(tz0, tz1));
+        return (tmin <= tmax && tmin < tBest) ? tmin : Float.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,370 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 帧分析器：按段统计 CPU 时间（System.nanoTime）与 GPU 时间（GL_TIMESTAMP 查询），外加每帧计数器
+ * （draw call、三角形、各类绑定、上传字节……），维护最近 {@link #WINDOW} 帧的 p50/p95/p99。
+ * <p>
+ * GPU 计时用 glQueryCounter 打时间戳而不是 GL_TIME_ELAPSED：后者不能嵌套，而"整帧"段包住了所有其它段。
+ * 每帧一组查询，放在 {@link #LATENCY} 帧深的环里；结果只在 GL_QUERY_RESULT_AVAILABLE 之后读取，
+ * 读不到就留到下一帧再看，永远不让 CPU 等 GPU。环满了仍未完成的那一帧 GPU 数据丢弃（计入 gpuDropped）。
+ * <p>
+ * 同一段一帧内可以进出多次：CPU 时间累加；GPU 时间取第一次 begin 到最后一次 end。
+ * 结果可以取成叠加层文本、写 CSV（逐帧）/ JSON（分位数汇总），开启 JFR 时还会发出
+ * {@code lwjgl.Frame}、{@code lwjgl.FrameSection}、{@code lwjgl.GpuSection} 事件。
+ * 只能在 GL 线程使用。
+ */
+public final class FrameProfiler implements AutoCloseable {
+
+    /** 分位数统计窗口（帧） */
+    public static final int WINDOW = Integer.getInteger("profile.window", 240);
+    /** GPU 查询最多落后几帧 */
+    public static final int LATENCY = 4;
+    /** CSV 保留的帧数 */
+    private static final int HISTORY = Integer.getInteger("profile.history", 3600);
+
+    private static final int MAX_SECTIONS = 32;
+
+    private final List<String> sectionNames = new ArrayList<>();
+    private final List<String> counterNames = new ArrayList<>();
+    private boolean[] sectionGpu = new boolean[MAX_SECTIONS];
+
+    // 当前帧
+    private long frame = -1;
+    private final long[] cpuStart = new long[MAX_SECTIONS];
+    private final long[] cpuAccum = new long[MAX_SECTIONS];
+    private final boolean[] gpuBegun = new boolean[MAX_SECTIONS];
+    private long[] counterValues = new long[8];
+
+    // GPU 查询：[槽位][段 * 2 + (0=begin,1=end)]
+    private final int[][] queries = new int[LATENCY][MAX_SECTIONS * 2];
+    private final long[] slotFrame = new long[LATENCY];
+    private final boolean[][] slotUsed = new boolean[LATENCY][MAX_SECTIONS];
+    private long gpuDropped;
+
+    // 滚动统计：CPU / GPU 每段一个，计数器每个一个
+    private final Rolling[] cpuStats = new Rolling[MAX_SECTIONS];
+    private final Rolling[] gpuStats = new Rolling[MAX_SECTIONS];
+    private Rolling[] counterStats = new Rolling[8];
+
+    // CSV 历史：行 = frame % HISTORY
+    private final long[] histFrame = new long[HISTORY];
+    private final float[][] histCpu = new float[MAX_SECTIONS][];
+    private final float[][] histGpu = new float[MAX_SECTIONS][];
+    private long[][] histCounter = new long[8][];
+
+    /** 内置的整帧段，beginFrame / endFrame 自动进出 */
+    public final int frameSection;
+
+    // JFR：isEnabled() 很便宜，每次检查，录制可以在运行中途开始
+    private static final EventType FRAME_EVENT = EventType.getEventType(FrameEvent.class);
+    private static final EventType SECTION_EVENT = EventType.getEventType(SectionEvent.class);
+    private static final EventType GPU_EVENT = EventType.getEventType(GpuSectionEvent.class);
+    private FrameEvent frameEvent;
+
+    public FrameProfiler() {
+        Arrays.fill(slotFrame, -1L);
+        for (int[] q : queries) glGenQueries(q);
+        frameSection = section("frame", true);
+    }
+
+    /** 注册一个段；gpu 为 false 时只计 CPU（例如纯 CPU 的裁剪） */
+    public int section(String name, boolean gpu) {
+        int i = sectionNames.indexOf(name);
+        if (i >= 0) return i;
+        if (sectionNames.size() == MAX_SECTIONS) throw new IllegalStateException("too many profiler sections");
+        i = sectionNames.size();
+        sectionNames.add(name);
+        sectionGpu[i] = gpu;
+        cpuStats[i] = new Rolling(WINDOW);
+        gpuStats[i] = new Rolling(WINDOW);
+        histCpu[i] = new float[HISTORY];
+        histGpu[i] = new float[HISTORY];
+        Arrays.fill(histGpu[i], Float.NaN);
+        return i;
+    }
+
+    /** 注册一个每帧计数器，用 {@link #count} 设值 */
+    public int counter(String name) {
+        int i = counterNames.indexOf(name);
+        if (i >= 0) return i;
+        i = counterNames.size();
+        counterNames.add(name);
+        if (i == counterValues.length) {
+            counterValues = Arrays.copyOf(counterValues, i * 2);
+            counterStats = Arrays.copyOf(counterStats, i * 2);
+            histCounter = Arrays.copyOf(histCounter, i * 2);
+        }
+        counterStats[i] = new Rolling(WINDOW);
+        histCounter[i] = new long[HISTORY];
+        return i;
+    }
+
+    public void beginFrame() {
+        collect(false);
+        frame++;
+        int slot = (int) (frame % LATENCY);
+        if (slotFrame[slot] >= 0) { // 环满了仍没等到：丢掉那一帧的 GPU 数据，槽位给本帧
+            gpuDropped++;
+            slotFrame[slot] = -1;
+        }
+        slotFrame[slot] = frame;
+        Arrays.fill(slotUsed[slot], false);
+        Arrays.fill(cpuAccum, 0L);
+        Arrays.fill(gpuBegun, false);
+        Arrays.fill(counterValues, 0L);
+        if (FRAME_EVENT.isEnabled()) {
+            frameEvent = new FrameEvent();
+            frameEvent.begin();
+        }
+        begin(frameSection);
+    }
+
+    public void begin(int section) {
+        cpuStart[section] = System.nanoTime();
+        if (sectionGpu[section] && !gpuBegun[section]) {
+            gpuBegun[section] = true;
+            glQueryCounter(queries[(int) (frame % LATENCY)][section * 2], GL_TIMESTAMP);
+        }
+    }
+
+    public void end(int section) {
+        long now = System.nanoTime();
+        cpuAccum[section] += now - cpuStart[section];
+        if (sectionGpu[section]) {
+            int slot = (int) (frame % LATENCY);
+            glQueryCounter(queries[slot][section * 2 + 1], GL_TIMESTAMP); // 多次进出时后一次覆盖前一次
+            slotUsed[slot][section] = true;
+        }
+        if (SECTION_EVENT.isEnabled()) {
+            SectionEvent e = new SectionEvent();
+            e.frame = frame;
+            e.section = sectionNames.get(section);
+            e.millis = (now - cpuStart[section]) / 1e6f;
+            e.commit();
+        }
+    }
+
+    /** 别处自己计时的 CPU 时间（例如 RenderQueue 里累计的裁剪耗时）计入某段 */
+    public void add(int section, long cpuNanos) {
+        cpuAccum[section] += cpuNanos;
+    }
+
+    public void count(int counter, long value) {
+        counterValues[counter] = value;
+    }
+
+    public void endFrame() {
+        end(frameSection);
+        int row = (int) (frame % HISTORY);
+        histFrame[row] = frame;
+        for (int s = 0; s < sectionNames.size(); s++) {
+            cpuStats[s].add(cpuAccum[s] / 1e6f);
+            histCpu[s][row] = cpuAccum[s] / 1e6f;
+            histGpu[s][row] = Float.NaN; // GPU 结果几帧后才到
+        }
+        for (int c = 0; c < counterNames.size(); c++) {
+            counterStats[c].add(counterValues[c]);
+            histCounter[c][row] = counterValues[c];
+        }
+        if (frameEvent != null) {
+            frameEvent.frame = frame;
+            frameEvent.cpuMillis = cpuAccum[frameSection] / 1e6f;
+            frameEvent.counters = countersText();
+            frameEvent.commit();
+            frameEvent = null;
+        }
+    }
+
+    /** 取回已完成的 GPU 查询；wait 为 true 时等所有在途查询（只在退出 / 导出时用） */
+    private void collect(boolean wait) {
+        for (int k = 1; k <= LATENCY; k++) { // 从最旧的开始
+            int slot = (int) ((frame + k) % LATENCY);
+            long f = slotFrame[slot];
+            if (f < 0 || f == frame && !wait) continue;
+            int[] q = queries[slot];
+            int last = -1;
+            for (int s = 0; s < sectionNames.size(); s++) if (slotUsed[slot][s]) last = s;
+            if (last >= 0 && !wait && glGetQueryObjecti(q[last * 2 + 1], GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) {
+                break; // 后面的槽位只会更晚，本帧不再查
+            }
+            boolean jfr = GPU_EVENT.isEnabled();
+            for (int s = 0; s < sectionNames.size(); s++) {
+                if (!slotUsed[slot][s]) continue;
+                long t0 = glGetQueryObjecti64(q[s * 2], GL_QUERY_RESULT), t1 = glGetQueryObjecti64(q[s * 2 + 1], GL_QUERY_RESULT);
+                float ms = (t1 - t0) / 1e6f;
+                gpuStats[s].add(ms);
+                int row = (int) (f % HISTORY);
+                if (histFrame[row] == f) histGpu[s][row] = ms;
+                if (jfr) {
+                    GpuSectionEvent e = new GpuSectionEvent();
+                    e.frame = f;
+                    e.section = sectionNames.get(s);
+                    e.millis = ms;
+                    e.commit();
+                }
+            }
+            slotFrame[slot] = -1;
+        }
+    }
+
+    public long frame() { return frame; }
+    public long gpuDropped() { return gpuDropped; }
+    public float cpuPercentile(int section, float p) { return cpuStats[section].percentile(p); }
+    public float gpuPercentile(int section, float p) { return gpuStats[section].percentile(p); }
+    public float counterPercentile(int counter, float p) { return counterStats[counter].percentile(p); }
+
+    /** 叠加层用的多行文本：每段 CPU / GPU 的 p50/p95/p99（毫秒），计数器的最近值与 p95 */
+    public String overlayText() {
+        StringBuilder sb = new StringBuilder(512);
+        float p50 = cpuStats[frameSection].percentile(50f);
+        sb.append(String.format(Locale.ROOT, "frame %d  %.1f fps (p50)%n", frame, p50 > 0f ? 1000f / p50 : 0f));
+        sb.append(String.format(Locale.ROOT, "%-10s %6s %6s %6s | %6s %6s %6s%n", "ms", "cpu50", "cpu95", "cpu99", "gpu50", "gpu95", "gpu99"));
+        for (int s = 0; s < sectionNames.size(); s++) {
+            Rolling c = cpuStats[s], g = gpuStats[s];
+            sb.append(String.format(Locale.ROOT, "%-10s %6.2f %6.2f %6.2f", sectionNames.get(s), c.percentile(50f), c.percentile(95f), c.percentile(99f)));
+            if (sectionGpu[s] && g.size() > 0) {
+                sb.append(String.format(Locale.ROOT, " | %6.2f %6.2f %6.2f", g.percentile(50f), g.percentile(95f), g.percentile(99f)));
+            }
+            sb.append('\n');
+        }
+        for (int c = 0; c < counterNames.size(); c++) {
+            sb.append(String.format(Locale.ROOT, "%-14s %10d  p95 %10.0f%n", counterNames.get(c), counterStats[c].last(), counterStats[c].percentile(95f)));
+        }
+        if (gpuDropped > 0) sb.append("gpu queries dropped: ").append(gpuDropped).append('\n');
+        return sb.toString();
+    }
+
+    private String countersText() {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < counterNames.size(); c++) {
+            if (c > 0) sb.append(' ');
+            sb.append(counterNames.get(c)).append('=').append(counterValues[c]);
+        }
+        return sb.toString();
+    }
+
+    /** 逐帧 CSV：frame, 各段 cpu_ms / gpu_ms, 各计数器；GPU 未取回的格子为空 */
+    public void dumpCsv(Path file) throws IOException {
+        collect(true);
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file))) {
+            StringBuilder h = new StringBuilder("frame");
+            for (String s : sectionNames) h.append(',').append(s).append("_cpu_ms,").append(s).append("_gpu_ms");
+            for (String c : counterNames) h.append(',').append(c);
+            w.println(h);
+            long first = Math.max(0, frame - HISTORY + 1);
+            for (long f = first; f <= frame; f++) {
+                int row = (int) (f % HISTORY);
+                if (histFrame[row] != f) continue;
+                StringBuilder sb = new StringBuilder().append(f);
+                for (int s = 0; s < sectionNames.size(); s++) {
+                    sb.append(',').append(String.format(Locale.ROOT, "%.4f", histCpu[s][row])).append(',');
+                    if (!Float.isNaN(histGpu[s][row])) sb.append(String.format(Locale.ROOT, "%.4f", histGpu[s][row]));
+                }
+                for (int c = 0; c < counterNames.size(); c++) sb.append(',').append(histCounter[c][row]);
+                w.println(sb);
+            }
+        }
+    }
+
+    /** 汇总 JSON：窗口内各段 / 计数器的 p50/p95/p99 */
+    public void dumpJson(Path file) throws IOException {
+        collect(true);
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\n  \"frame\": ").append(frame).append(",\n  \"window\": ").append(WINDOW)
+                .append(",\n  \"gpuDropped\": ").append(gpuDropped).append(",\n  \"sections\": {");
+        for (int s = 0; s < sectionNames.size(); s++) {
+            sb.append(s == 0 ? "\n" : ",\n").append("    \"").append(sectionNames.get(s)).append("\": { \"cpu\": ");
+            percentilesJson(sb, cpuStats[s]);
+            if (sectionGpu[s]) { sb.append(", \"gpu\": "); percentilesJson(sb, gpuStats[s]); }
+            sb.append(" }");
+        }
+        sb.append("\n  },\n  \"counters\": {");
+        for (int c = 0; c < counterNames.size(); c++) {
+            sb.append(c == 0 ? "\n" : ",\n").append("    \"").append(counterNames.get(c)).append("\": ");
+            percentilesJson(sb, counterStats[c]);
+        }
+        sb.append("\n  }\n}\n");
+        Files.writeString(file, sb);
+    }
+
+    private static void percentilesJson(StringBuilder sb, Rolling r) {
+        sb.append(String.format(Locale.ROOT, "{ \"p50\": %.4f, \"p95\": %.4f, \"p99\": %.4f }",
+                r.percentile(50f), r.percentile(95f), r.percentile(99f)));
+    }
+
+    @Override public void close() {
+        for (int[] q : queries) glDeleteQueries(q);
+    }
+
+    // ------------------------------------------------------------------
+
+    /** 最近 n 个样本的环；分位数按需排序一份拷贝（叠加层每秒刷新几次，开销可以忽略） */
+    static final class Rolling {
+        private final float[] ring, sorted;
+        private int count, next;
+        private boolean dirty;
+
+        Rolling(int n) { ring = new float[n]; sorted = new float[n]; }
+
+        void add(float v) {
+            ring[next] = v;
+            next = (next + 1) % ring.length;
+            if (count < ring.length) count++;
+            dirty = true;
+        }
+
+        int size() { return count; }
+        long last() { return count == 0 ? 0 : (long) ring[(next - 1 + ring.length) % ring.length]; }
+
+        /** 最近邻秩分位数，p ∈ [0, 100] */
+        float percentile(float p) {
+            if (count == 0) return 0f;
+            if (dirty) {
+                System.arraycopy(ring, 0, sorted, 0, count);
+                Arrays.sort(sorted, 0, count);
+                dirty = false;
+            }
+            int i = (int) Math.ceil(p / 100f * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, i))];
+        }
+    }
+
+    // ---- JFR 事件：java -XX:StartFlightRecording ... 时可在 JMC 里按帧查看 ----
+
+    @Name("lwjgl.Frame") @Label("Frame") @Category("Rendering") @StackTrace(false)
+    public static final class FrameEvent extends Event {
+        @Label("Frame") public long frame;
+        @Label("CPU ms") public float cpuMillis;
+        @Label("Counters") public String counters;
+    }
+
+    @Name("lwjgl.FrameSection") @Label("Frame Section (CPU)") @Category("Rendering") @StackTrace(false)
+    public static final class SectionEvent extends Event {
+        @Label("Frame") public long frame;
+        @Label("Section") public String section;
+        @Label("CPU ms") public float millis;
+    }
+
+    @Name("lwjgl.GpuSection") @Label("Frame Section (GPU)") @Category("Rendering") @StackTrace(false)
+    public static final class GpuSectionEvent extends Event {
+        @Label("Frame") public long frame;
+        @Label("Section") public String section;
+        @Label("GPU ms") public float millis;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * 视锥裁剪：从列主序 MVP / viewProj 提取 6 个平面（Gribb–Hartmann），测试 AABB 是否可能可见。
+ * <p>
+ * 平面定义在矩阵的输入空间里：传 viewProj 得到世界空间平面，传 MVP 得到物体空间平面，
+ * 后者可以直接拿网格自带的 AABB 测，不用先变换包围盒。
+ * 批量测试用 {@link Boxes}（中心/半长的 SoA 数组），内层循环只有乘加和 min，C2 能自动向量化。
+ */
+public final class Frustum {
+    /** 6 个平面 (a,b,c,d)，法线指向视锥内部，已归一化 */
+    private final float[] px = new float[6], py = new float[6], pz = new float[6], pw = new float[6];
+
+    /** m 为列主序 4x4：行 i = (m[i], m[4+i], m[8+i], m[12+i]) */
+    public Frustum set(float[] m) {
+        plane(0, m, 0,  1); // left   = row3 + row0
+        plane(1, m, 0, -1); // right  = row3 - row0
+        plane(2, m, 1,  1); // bottom = row3 + row1
+        plane(3, m, 1, -1); // top    = row3 - row1
+        plane(4, m, 2,  1); // near   = row3 + row2
+        plane(5, m, 2, -1); // far    = row3 - row2
+        return this;
+    }
+
+    private void plane(int p, float[] m, int row, float sign) {
+        float a = m[3]  + sign * m[row];
+        float b = m[7]  + sign * m[4 + row];
+        float c = m[11] + sign * m[8 + row];
+        float d = m[15] + sign * m[12 + row];
+        float len = (float) Math.sqrt(a * a + b * b + c * c);
+        if (len > 0f) { a /= len; b /= len; c /= len; d /= len; }
+        px[p] = a; py[p] = b; pz[p] = c; pw[p] = d;
+    }
+
+    /** 保守测试：返回 false 表示 AABB 一定在视锥外 */
+    public boolean intersects(float[] min, float[] max) {
+        float cx = (min[0] + max[0]) * 0.5f, cy = (min[1] + max[1]) * 0.5f, cz = (min[2] + max[2]) * 0.5f;
+        float ex = (max[0] - min[0]) * 0.5f, ey = (max[1] - min[1]) * 0.5f, ez = (max[2] - min[2]) * 0.5f;
+        for (int p = 0; p < 6; p++) {
+            float d = px[p] * cx + py[p] * cy + pz[p] * cz + pw[p];
+            float r = Math.abs(px[p]) * ex + Math.abs(py[p]) * ey + Math.abs(pz[p]) * ez;
+            if (d + r < 0f) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 批量测试：margin[i] = 各平面上 (距离 + 投影半径) 的最小值，≥ 0 表示可能可见。
+     * 平面在外层、盒子在内层，内层循环无分支，便于 JIT 生成 SIMD 代码。返回可见个数。
+     */
+    public int cull(Boxes b, float[] margin) {
+        int n = b.count;
+        Arrays.fill(margin, 0, n, Float.POSITIVE_INFINITY);
+        float[] cx = b.cx, cy = b.cy, cz = b.cz, ex = b.ex, ey = b.ey, ez = b.ez;
+        for (int p = 0; p < 6; p++) {
+            float a = px[p], bb = py[p], c = pz[p], d = pw[p];
+            float aa = Math.abs(a), ab = Math.abs(bb), ac = Math.abs(c);
+            for (int i = 0; i < n; i++) {
+                float s = a * cx[i] + bb * cy[i] + c * cz[i] + d + aa * ex[i] + ab * ey[i] + ac * ez[i];
+                margin[i] = Math.min(margin[i], s); // Math.min 是 intrinsic，可向量化；写成三目会变成分支
+            }
+        }
+        int visible = 0;
+        for (int i = 0; i < n; i++) if (margin[i] >= 0f) visible++;
+        return visible;
+    }
+
+    /** AABB 的 SoA 存储：中心与半长各一组数组 */
+    public static final class Boxes {
+        public float[] cx, cy, cz, ex, ey, ez;
+        public int count;
+
+        public Boxes(int capacity) {
+            int c = Math.max(1, capacity);
+            cx = new float[c]; cy = new float[c]; cz = new float[c];
+            ex = new float[c]; ey = new float[c]; ez = new float[c];
+        }
+
+        public void clear() { count = 0; }
+
+        public int add(float[] min, float[] max) {
+            if (count == cx.length) grow();
+            int i = count++;
+            cx[i] = (min[0] + max[0]) * 0.5f; ex[i] = (max[0] - min[0]) * 0.5f;
+            cy[i] = (min[1] + max[1]) * 0.5f; ey[i] = (max[1] - min[1]) * 0.5f;
+            cz[i] = (min[2] + max[2]) * 0.5f; ez[i] = (max[2] - min[2]) * 0.5f;
+            return i;
+        }
+
+        private void grow() {
+            int n = cx.length * 2;
+            cx = Arrays.copyOf(cx, n); cy = Arrays.copyOf(cy, n); cz = Arrays.copyOf(cz, n);
+            ex = Arrays.copyOf(ex, n); ey = Arrays.copyOf(ey, n); ez = Arrays.copyOf(ez, n);
+        }
+    }
+}
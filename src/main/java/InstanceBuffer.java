@@ -0,0 +1,146 @@
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 逐实例数据：每个实例一个模型矩阵（列主序 mat4）+ 一个 RGBA 着色，共 20 个 float。
+ * 顶点着色器里对应 location 3..6（mat4 aModel，占 4 个槽）与 location 7（vec4 aTint），divisor = 1。
+ * <p>
+ * CPU 端保留一份镜像，set* 只标脏；{@link #upload()} 只把脏区间 glBufferSubData 上去，
+ * 一帧只有少数实例移动时上传量也只有那几个实例。容量不够时原 buffer 名字不变、重新分配存储，
+ * 已经挂到 VAO 上的属性指针仍然有效。只能在 GL 线程使用。
+ */
+public class InstanceBuffer implements AutoCloseable {
+    public static final int FLOATS = 20;
+    public static final int STRIDE = FLOATS * Float.BYTES;
+    /** 着色器里 aModel 的 location（占 LOC_MODEL..LOC_MODEL+3），aTint 为 LOC_TINT */
+    public static final int LOC_MODEL = 3, LOC_TINT = 7;
+
+    private final int vbo;
+    private float[] data;
+    private int count;
+    private int gpuCapacity;            // GPU 端已分配的实例数
+    private int dirtyLo = Integer.MAX_VALUE, dirtyHi = -1;   // 脏区间 [lo, hi)
+    private long uploadedBytes;         // 最近一次 upload 的字节数
+
+    public InstanceBuffer(int capacity) {
+        data = new float[Math.max(1, capacity) * FLOATS];
+        vbo = glGenBuffers();
+    }
+
+    public int id() { return vbo; }
+    public int size() { return count; }
+    public long uploadedBytesLastTime() { return uploadedBytes; }
+
+    /** 设定实例个数；新增的实例为单位矩阵 + 白色 */
+    public void resize(int n) {
+        ensure(n);
+        for (int i = count; i < n; i++) setIdentity(i);
+        count = n;
+    }
+
+    /** 追加一个实例，返回其下标 */
+    public int add(float[] model16, float r, float g, float b, float a) {
+        int i = count;
+        resize(count + 1);
+        set(i, model16, r, g, b, a);
+        return i;
+    }
+
+    public void set(int i, float[] model16, float r, float g, float b, float a) {
+        setTransform(i, model16);
+        setTint(i, r, g, b, a);
+    }
+
+    public void setTransform(int i, float[] model16) {
+        check(i);
+        System.arraycopy(model16, 0, data, i * FLOATS, 16);
+        markDirty(i);
+    }
+
+    /** 只改平移，常见于整体移动的角色 */
+    public void setTranslation(int i, float x, float y, float z) {
+        check(i);
+        int o = i * FLOATS;
+        data[o + 12] = x; data[o + 13] = y; data[o + 14] = z;
+        markDirty(i);
+    }
+
+    public void setTint(int i, float r, float g, float b, float a) {
+        check(i);
+        int o = i * FLOATS + 16;
+        data[o] = r; data[o + 1] = g; data[o + 2] = b; data[o + 3] = a;
+        markDirty(i);
+    }
+
+    /** 把脏区间上传到 GPU；没有改动时什么也不做 */
+    public void upload() {
+        uploadedBytes = 0;
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        if (count > gpuCapacity) {
+            // 重新分配（按 CPU 镜像容量），整体上传
+            gpuCapacity = data.length / FLOATS;
+            glBufferData(GL_ARRAY_BUFFER, (long) gpuCapacity * STRIDE, GL_DYNAMIC_DRAW);
+            dirtyLo = 0; dirtyHi = count;
+        }
+        if (dirtyHi > dirtyLo) {
+            int lo = dirtyLo, hi = Math.min(dirtyHi, count);
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                int floats = (hi - lo) * FLOATS;
+                // 大区间不放栈上（MemoryStack 默认只有 64 KB）
+                FloatBuffer fb = floats <= 8192 ? stack.mallocFloat(floats) : MemoryUtil.memAllocFloat(floats);
+                try {
+                    fb.put(data, lo * FLOATS, floats).flip();
+                    glBufferSubData(GL_ARRAY_BUFFER, (long) lo * STRIDE, fb);
+                } finally {
+                    if (floats > 8192) MemoryUtil.memFree(fb);
+                }
+                uploadedBytes = (long) floats * Float.BYTES;
+            }
+        }
+        dirtyLo = Integer.MAX_VALUE; dirtyHi = -1;
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /** 把逐实例属性挂到当前绑定的 VAO 上 */
+    void attachToBoundVao() {
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        for (int c = 0; c < 4; c++) {
+            int loc = LOC_MODEL + c;
+            glVertexAttribPointer(loc, 4, GL_FLOAT, false, STRIDE, (long) c * 4 * Float.BYTES);
+            glEnableVertexAttribArray(loc);
+            glVertexAttribDivisor(loc, 1);
+        }
+        glVertexAttribPointer(LOC_TINT, 4, GL_FLOAT, false, STRIDE, 16L * Float.BYTES);
+        glEnableVertexAttribArray(LOC_TINT);
+        glVertexAttribDivisor(LOC_TINT, 1);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override public void close() { glDeleteBuffers(vbo); }
+
+    private void ensure(int n) {
+        if (n * FLOATS > data.length) data = Arrays.copyOf(data, Math.max(n, data.length / FLOATS * 2) * FLOATS);
+    }
+
+    private void setIdentity(int i) {
+        int o = i * FLOATS;
+        Arrays.fill(data, o, o + FLOATS, 0f);
+        data[o] = data[o + 5] = data[o + 10] = data[o + 15] = 1f;
+        data[o + 16] = data[o + 17] = data[o + 18] = data[o + 19] = 1f;
+        markDirty(i);
+    }
+
+    private void markDirty(int i) {
+        if (i < dirtyLo) dirtyLo = i;
+        if (i + 1 > dirtyHi) dirtyHi = i + 1;
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("instance " + i + " of " + count);
+    }
+}
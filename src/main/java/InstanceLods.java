@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * 按 LOD 分桶的实例集合：每一级一个 {@link InstanceBuffer}，{@link #select} 按每个实例包围球的投影误差
+ * 把实例分到对应的桶里，{@link #submit} 再每级一次 submitInstanced。
+ * <p>
+ * 分桶结果不变时不碰任何桶，平时只动几个实例的增量上传照样有效；有实例换桶时所有桶按主副本重排，
+ * 每个桶整体上传一次（相机缩放时才会发生）。只能在 GL 线程使用。
+ */
+public class InstanceLods implements AutoCloseable {
+    private final InstanceBuffer[] buckets;
+    private float[] data;           // 主副本，与 InstanceBuffer 相同的 20 float 布局
+    private int count;
+    private int[] level, slot;      // 实例 → 桶 / 桶内下标
+    private int[] next;             // select 的临时结果
+    private final float[] sphere = new float[4], m16 = new float[16];
+
+    public InstanceLods(int levels, int capacity) {
+        buckets = new InstanceBuffer[Math.max(1, levels)];
+        for (int l = 0; l < buckets.length; l++) buckets[l] = new InstanceBuffer(l == 0 ? capacity : 16);
+        int c = Math.max(1, capacity);
+        data = new float[c * InstanceBuffer.FLOATS];
+        level = new int[c]; slot = new int[c]; next = new int[c];
+    }
+
+    public int size() { return count; }
+    public int levels() { return buckets.length; }
+    public InstanceBuffer bucket(int lod) { return buckets[lod]; }
+
+    /** 追加一个实例（先放在第 0 级），返回其下标 */
+    public int add(float[] model16, float r, float g, float b, float a) {
+        if (count == level.length) grow();
+        int i = count++, o = i * InstanceBuffer.FLOATS;
+        System.arraycopy(model16, 0, data, o, 16);
+        data[o + 16] = r; data[o + 17] = g; data[o + 18] = b; data[o + 19] = a;
+        level[i] = 0;
+        slot[i] = buckets[0].add(model16, r, g, b, a);
+        return i;
+    }
+
+    public void setTranslation(int i, float x, float y, float z) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("instance " + i + " of " + count);
+        int o = i * InstanceBuffer.FLOATS;
+        data[o + 12] = x; data[o + 13] = y; data[o + 14] = z;
+        buckets[level[i]].setTranslation(slot[i], x, y, z);
+    }
+
+    /**
+     * 重新分桶：实例 i 的包围球为 model 的外接球经其模型矩阵变换（按最大轴缩放），
+     * 级别取 {@link Model#selectLod}。返回是否有实例换了桶。
+     */
+    public boolean select(Model model, float[] viewProj, int viewportHeight, float pixelError) {
+        if (buckets.length == 1 || viewportHeight <= 0) return false;
+        model.boundingSphere(sphere);
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            int o = i * InstanceBuffer.FLOATS;
+            float sx = len(data, o), sy = len(data, o + 4), sz = len(data, o + 8);
+            float s = Math.max(sx, Math.max(sy, sz));
+            float cx = data[o] * sphere[0] + data[o + 4] * sphere[1] + data[o + 8] * sphere[2] + data[o + 12];
+            float cy = data[o + 1] * sphere[0] + data[o + 5] * sphere[1] + data[o + 9] * sphere[2] + data[o + 13];
+            float cz = data[o + 2] * sphere[0] + data[o + 6] * sphere[1] + data[o + 10] * sphere[2] + data[o + 14];
+            float ppu = Lod.pixelsPerUnit(viewProj, cx, cy, cz, sphere[3] * s, viewportHeight) * s; // 世界单位 → 物体单位
+            int l = Math.min(model.selectLod(ppu, pixelError), buckets.length - 1);
+            next[i] = l;
+            changed |= l != level[i];
+        }
+        if (!changed) return false;
+        for (InstanceBuffer b : buckets) b.resize(0);
+        for (int i = 0; i < count; i++) {
+            int o = i * InstanceBuffer.FLOATS;
+            System.arraycopy(data, o, m16, 0, 16);
+            level[i] = next[i];
+            slot[i] = buckets[next[i]].add(m16, data[o + 16], data[o + 17], data[o + 18], data[o + 19]);
+        }
+        return true;
+    }
+
+    /** 每个非空的桶提交一次，级别即桶号 */
+    public void submit(RenderQueue queue, ShaderProgram shader, Model model, float[] viewProj) {
+        for (int l = 0; l < buckets.length; l++) queue.submitInstanced(shader, model, viewProj, buckets[l], l);
+    }
+
+    /** close() 之前调用 */
+    public void forget(RenderQueue queue) {
+        for (InstanceBuffer b : buckets) queue.forget(b);
+    }
+
+    @Override public void close() {
+        for (InstanceBuffer b : buckets) b.close();
+    }
+
+    private static float len(float[] m, int o) {
+        return (float) Math.sqrt(m[o] * m[o] + m[o + 1] * m[o + 1] + m[o + 2] * m[o + 2]);
+    }
+
+    private void grow() {
+        int n = level.length * 2;
+        data = Arrays.copyOf(data, n * InstanceBuffer.FLOATS);
+        level = Arrays.copyOf(level, n); slot = Arrays.copyOf(slot, n);
+        next = new int[n];
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * KTX 2.0 容器的最小读写：单张 2D 纹理、完整 mip 链、无超压缩，格式只有 {@link Bcn} 产生的
+ * BC1 / BC7（UNORM 与 SRGB 两种 vkFormat）。读取时各层是输入缓冲上的切片，映射的文件直接交给
+ * glCompressedTexImage2D，不经过解码。
+ * <p>
+ * 首次加载时压缩（-Dtexture.compress=auto|bc1|bc7，默认关闭）的结果缓存在 -Dktx.cache.dir
+ * （默认 java.io.tmpdir/ktx-cache），以源文件内容（SHA-256 前 8 字节 + 长度，摘要同 {@link MeshCache#contentDigest}）、
+ * 格式与 sRGB 为键。
+ * 离线转换见 {@link Bcn#main}：x.ktx2 放在 x.png 旁边（或打进 {@link AssetPack}）时总是优先使用。
+ * <pre>
+ * 文件布局（little-endian，见 KTX 2.0 规范）：
+ *   byte[12] 标识, int vkFormat, typeSize, width, height, depth=0, layers=0, faces=1, levelCount, supercompression=0
+ *   int dfdOffset, dfdLength, kvdOffset=0, kvdLength=0, long sgdOffset=0, sgdLength=0
+ *   levelCount × { long 偏移, long 长度, long 未压缩长度 }   第 0 层在前
+ *   DFD：一个基本描述块、一个样本
+ *   数据区：最小的一层在前，每层按块大小对齐
+ * </pre>
+ */
+public final class Ktx2 {
+    private Ktx2() {}
+
+    public static final String EXT = ".ktx2";
+    private static final byte[] IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+
+    static final int VK_BC1_RGB_UNORM = 131, VK_BC1_RGB_SRGB = 132, VK_BC7_UNORM = 145, VK_BC7_SRGB = 146;
+    private static final int KHR_DF_MODEL_BC1A = 128, KHR_DF_MODEL_BC7 = 134;
+    private static final int KHR_DF_TRANSFER_LINEAR = 1, KHR_DF_TRANSFER_SRGB = 2, KHR_DF_PRIMARIES_BT709 = 1;
+
+    /** 读出的纹理：levels[0] 为最大的一层，各层是输入缓冲上的切片 */
+    public static final class Image {
+        public final int format, width, height;
+        public final boolean srgb;
+        public final ByteBuffer[] levels;
+        Image(int format, boolean srgb, int width, int height, ByteBuffer[] levels) {
+            this.format = format; this.srgb = srgb; this.width = width; this.height = height; this.levels = levels;
+        }
+        public long bytes() {
+            long n = 0;
+            for (ByteBuffer l : levels) n += l.remaining();
+            return n;
+        }
+    }
+
+    public static int vkFormat(int format, boolean srgb) {
+        return format == Bcn.BC1 ? (srgb ? VK_BC1_RGB_SRGB : VK_BC1_RGB_UNORM) : (srgb ? VK_BC7_SRGB : VK_BC7_UNORM);
+    }
+
+    // ======================== 读 ========================
+
+    public static Image read(ByteBuffer src) throws IOException {
+        ByteBuffer b = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = b.position();
+        try {
+            for (byte id : IDENTIFIER) if (b.get() != id) throw new IOException("not a KTX2 file");
+            int vk = b.getInt();
+            int format, srgbFlag;
+            switch (vk) {
+                case VK_BC1_RGB_UNORM -> { format = Bcn.BC1; srgbFlag = 0; }
+                case VK_BC1_RGB_SRGB -> { format = Bcn.BC1; srgbFlag = 1; }
+                case VK_BC7_UNORM -> { format = Bcn.BC7; srgbFlag = 0; }
+                case VK_BC7_SRGB -> { format = Bcn.BC7; srgbFlag = 1; }
+                default -> throw new IOException("unsupported KTX2 vkFormat " + vk);
+            }
+            b.getInt(); // typeSize
+            int w = b.getInt(), h = b.getInt(), depth = b.getInt(), layers = b.getInt(), faces = b.getInt();
+            int levelCount = Math.max(1, b.getInt()), scheme = b.getInt();
+            if (depth != 0 || layers > 1 || faces != 1) throw new IOException("only single 2D KTX2 textures are supported");
+            if (scheme != 0) throw new IOException("KTX2 supercompression " + scheme + " not supported");
+            if (w <= 0 || h <= 0 || w > 1 << 16 || h > 1 << 16) throw new IOException("bad KTX2 size " + w + "x" + h);
+            if (levelCount > Bcn.levelCount(w, h)) throw new IOException("bad KTX2 level count " + levelCount);
+            b.position(base + 80);
+            ByteBuffer[] levels = new ByteBuffer[levelCount];
+            for (int l = 0; l < levelCount; l++) {
+                long off = b.getLong(), len = b.getLong();
+                b.getLong();
+                int expect = Bcn.levelBytes(format, Math.max(1, w >> l), Math.max(1, h >> l));
+                if (len != expect || off < 0 || base + off + len > src.limit()) throw new IOException("corrupt KTX2 level " + l);
+                levels[l] = src.slice(base + (int) off, (int) len).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new Image(format, srgbFlag != 0, w, h, levels);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("truncated KTX2 file");
+        }
+    }
+
+    /** 映射文件后读取；映射由返回的切片持有 */
+    public static Image read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        } catch (NoSuchFileException e) {
+            throw new IOException("texture not found: " + file);
+        }
+    }
+
+    // ======================== 写 ========================
+
+    /** 写到临时文件再原子替换 */
+    public static void write(Path file, int format, boolean srgb, int w, int h, ByteBuffer[] levels) throws IOException {
+        int n = levels.length, block = Bcn.blockBytes(format);
+        int dfdOffset = 80 + 24 * n, dfdLength = 4 + 24 + 16;
+        long[] offsets = new long[n];
+        long off = dfdOffset + dfdLength;
+        for (int l = n - 1; l >= 0; l--) { // 最小的一层在前
+            off = (off + block - 1) / block * block;
+            offsets[l] = off;
+            off += levels[l].remaining();
+        }
+        ByteBuffer head = ByteBuffer.allocate(dfdOffset + dfdLength).order(ByteOrder.LITTLE_ENDIAN);
+        head.put(IDENTIFIER);
+        head.putInt(vkFormat(format, srgb)).putInt(1).putInt(w).putInt(h).putInt(0).putInt(0).putInt(1).putInt(n).putInt(0);
+        head.putInt(dfdOffset).putInt(dfdLength).putInt(0).putInt(0).putLong(0).putLong(0);
+        for (int l = 0; l < n; l++) {
+            head.putLong(offsets[l]).putLong(levels[l].remaining()).putLong(levels[l].remaining());
+        }
+        head.putInt(dfdLength);
+        head.putInt(0);                                   // vendorId = Khronos, descriptorType = basic
+        head.putInt(2 | (24 + 16) << 16);                 // version 2, 一个样本
+        head.putInt((format == Bcn.BC1 ? KHR_DF_MODEL_BC1A : KHR_DF_MODEL_BC7) | KHR_DF_PRIMARIES_BT709 << 8
+                | (srgb ? KHR_DF_TRANSFER_SRGB : KHR_DF_TRANSFER_LINEAR) << 16);
+        head.putInt(3 | 3 << 8);                          // 4×4 块
+        head.putInt(block).putInt(0);                     // bytesPlane0..7
+        head.putInt((block * 8 - 1) << 16);               // bitOffset 0, bitLength, channel = color
+        head.putInt(0).putInt(0).putInt(-1);              // samplePosition, sampleLower, sampleUpper
+        head.flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "ktx2", ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            writeAt(ch, head, 0);
+            for (int l = 0; l < n; l++) writeAt(ch, levels[l].duplicate(), offsets[l]);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeAt(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    // ======================== 首次加载时压缩 ========================
+
+    /** -Dtexture.compress：false（默认）、auto（不透明用 BC1，否则 BC7）、bc1、bc7 */
+    public static String compressMode() {
+        return System.getProperty("texture.compress", "false").toLowerCase();
+    }
+
+    public static boolean compressEnabled() {
+        return !compressMode().equals("false");
+    }
+
+    public static Path cacheDir() {
+        String dir = System.getProperty("ktx.cache.dir");
+        return dir != null ? Path.of(dir) : Path.of(System.getProperty("java.io.tmpdir"), "ktx-cache");
+    }
+
+    /**
+     * 已编码的贴图（PNG/JPG 字节）→ 压缩纹理：命中缓存时直接映射，否则 STB 解码、压缩并写缓存
+     * （写失败只告警）。name 只用于缓存文件名。
+     */
+    public static Image compressCached(ByteBuffer encoded, String name, boolean srgb) throws IOException {
+        String mode = compressMode();
+        long hash = ByteBuffer.wrap(MeshCache.contentDigest(encoded)).getLong(), size = encoded.remaining();
+        String safe = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        Path cache = cacheDir().resolve(String.format("%s-%016x-%x-%s%s%s", safe, hash, size, mode, srgb ? "-srgb" : "", EXT));
+        if (Files.isRegularFile(cache)) {
+            try {
+                return read(cache);
+            } catch (IOException e) {
+                System.err.println("WARN: bad texture cache, re-encoding -> " + cache + ": " + e.getMessage());
+            }
+        }
+        Texture2D.Decoded d = Texture2D.decode(encoded);
+        try {
+            int format = Bcn.format(mode, d.pixels);
+            ByteBuffer[] levels = Bcn.encode(d.pixels, d.width, d.height, format, srgb);
+            try {
+                write(cache, format, srgb, d.width, d.height, levels);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("WARN: texture cache not written -> " + cache + ": " + e);
+            }
+            return new Image(format, srgb, d.width, d.height, levels);
+        } finally {
+            d.free();
+        }
+    }
+
+    /** x.png → x.ktx2 */
+    static String sibling(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')), dot = path.lastIndexOf('.');
+        return (dot > slash ? path.substring(0, dot) : path) + EXT;
+    }
+
+    static boolean isKtx2(String path) {
+        return path.toLowerCase().endsWith(EXT);
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * LOD 选择：把物体空间的几何误差投影成屏幕像素，选投影误差不超过阈值的最粗一级。
+ * <p>
+ * 相机距离和 FOV 都可以直接从 MVP 读出来：透视矩阵下，点 c 的裁剪坐标 w 就是它在视线方向上的深度，
+ * 第 2 行 xyz 的长度等于 模型缩放 / tan(fovY/2)。所以物体空间长度 e 在 c 附近约占
+ * <pre>
+ *   e · |row1.xyz| / w(c) · viewportHeight / 2   像素
+ * </pre>
+ * 这里 w 取包围球上离相机最近的点，避免大物体近处一侧被选得过粗。正交投影下 w 恒为 1，公式同样成立。
+ */
+public final class Lod {
+    private Lod() {}
+
+    /** 物体空间单位长度在包围球 (c, radius) 最近处的像素数；球跨过相机平面时返回 +∞（只能用第 0 级） */
+    public static float pixelsPerUnit(float[] mvp, float cx, float cy, float cz, float radius, int viewportHeight) {
+        float w = mvp[3] * cx + mvp[7] * cy + mvp[11] * cz + mvp[15];
+        float depthScale = (float) Math.sqrt(mvp[3] * mvp[3] + mvp[7] * mvp[7] + mvp[11] * mvp[11]);
+        float near = w - radius * depthScale;
+        if (!(near > 1e-6f)) return Float.POSITIVE_INFINITY;
+        float yScale = (float) Math.sqrt(mvp[1] * mvp[1] + mvp[5] * mvp[5] + mvp[9] * mvp[9]);
+        return yScale * 0.5f * viewportHeight / near;
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import static org.lwjgl.glfw.GLFW.*;
@@ -7,42 +9,105 @@ import static org.lwjgl.opengl.GL11C.*;   // 只导常量/函数：glGetString
 
 public class MainApp {
 
-    // 改成你的真实资源路径（aserts/ 或 assets/）
-    private static final String OBJ_PATH = "asserts/Losalia/Losalia.obj";
+    // 改成你的真实资源路径（aserts/ 或 assets/）；-Dmodel=asserts/Klee/Klee.pmx 可换成自带的 PMX 模型
+    private static final String OBJ_PATH = System.getProperty("model", "asserts/Losalia/Losalia.obj");
     private static final boolean FLIP_V = true; // 若贴图上下颠倒可切换
+    /** -Dcrowd=N：用硬件实例化摆出 N 个模型的方阵（蒙皮模型每个角色一份姿势，逐角色提交） */
+    private static final int CROWD = Integer.getInteger("crowd", 0);
+    /** -Dlod.pixels=E：LOD 允许的屏幕误差（像素），0 关闭 LOD 选择 */
+    private static final float LOD_PIXELS = Float.parseFloat(System.getProperty("lod.pixels", "1"));
+    /** -Dprofile.overlay=true：启动时就显示分析叠加层（F4 切换，F5 导出 CSV/JSON） */
+    private static final boolean PROFILE_OVERLAY = Boolean.getBoolean("profile.overlay");
+    /** -Dprofile.dump=前缀：退出时写 前缀.csv / 前缀.json */
+    private static final String PROFILE_DUMP = System.getProperty("profile.dump");
+    /** -Dskin.amplitude=弧度：蒙皮模型演示动画里每根骨骼摆动的幅度，0 保持绑定姿势 */
+    private static final float SKIN_AMPLITUDE = Float.parseFloat(System.getProperty("skin.amplitude", "0.08"));
+
+    /** 不带实例化的基础着色器（Thumbnails 也用它） */
+    static final String VS =
+            "#version 330 core\n" +
+                    "layout(location=0) in vec3 aPos;\n" +
+                    "layout(location=1) in vec3 aNormal;\n" +   // 可选；八面体编码时只有 xy
+                    "layout(location=2) in vec2 aUV;\n" +       // 可选；half 由 GL 转成 float
+                    "uniform mat4 uMVP;\n" +
+                    VertexFormat.GLSL_DECODE +                   // 紧凑顶点格式（-Dmesh.format）的解码
+                    "out vec2 vUV;\n" +
+                    "void main(){ vUV = aUV; gl_Position = uMVP * vec4(decodePosition(aPos),1.0); }\n";
+
+    /**
+     * GPU 蒙皮版本：解码位置 → 加上表情位移 → 按骨骼混合。调色板（BonePalette）在 1 号纹理单元，
+     * 表情位移（MorphBuffer）在 2 号；没有表情的模型 uMorphBase 为 -1。
+     */
+    static final String VS_SKINNED =
+            "#version 330 core\n" +
+                    "layout(location=0) in vec3 aPos;\n" +
+                    "layout(location=2) in vec2 aUV;\n" +
+                    "uniform mat4 uMVP;\n" +
+                    VertexFormat.GLSL_DECODE +
+                    Skin.GLSL_SKIN +
+                    Morphs.GLSL_MORPH +
+                    "out vec2 vUV;\n" +
+                    "void main(){ vUV = aUV; gl_Position = uMVP * vec4(skinPosition(morphPosition(decodePosition(aPos))),1.0); }\n";
+
+    static final String FS =
+            "#version 330 core\n" +
+                    "in vec2 vUV;\n" +
+                    "uniform sampler2D uAlbedo;\n" +
+                    "uniform int uUseTex;        // 1=用纹理 0=用颜色\n" +
+                    "uniform vec3 uColor;        // MTL 的 Kd 或回退色\n" +
+                    "out vec4 FragColor;\n" +
+                    "void main(){\n" +
+                    "  vec3 base = (uUseTex==1) ? texture(uAlbedo, vUV).rgb : uColor;\n" +
+                    "  FragColor = vec4(base, 1.0);\n" +
+                    "}\n";
 
     public static void main(String[] args) throws Exception {
         Renderer renderer = new Renderer(1280, 800);
-        renderer.initWindow("LWJGL – OBJ+MTL Textured Model");
+        String title = "LWJGL – OBJ+MTL Textured Model";
+        renderer.initWindow(title);
 
-        String vs =
+        ShaderProgram shader = new ShaderProgram(VS, FS);
+        shader.use();
+        shader.set1i("uAlbedo", 0);
+        ShaderProgram.unbind();
+
+        // 实例化版本：模型矩阵与着色来自 InstanceBuffer（location 3..7），uMVP 只是 viewProj
+        String vsInst =
                 "#version 330 core\n" +
                         "layout(location=0) in vec3 aPos;\n" +
-                        "layout(location=1) in vec3 aNormal;\n" +   // 可选
-                        "layout(location=2) in vec2 aUV;\n" +       // 可选
+                        "layout(location=2) in vec2 aUV;\n" +
+                        "layout(location=3) in mat4 aModel;\n" +
+                        "layout(location=7) in vec4 aTint;\n" +
                         "uniform mat4 uMVP;\n" +
+                        VertexFormat.GLSL_DECODE +
                         "out vec2 vUV;\n" +
-                        "void main(){ vUV = aUV; gl_Position = uMVP * vec4(aPos,1.0); }\n";
-
-        String fs =
+                        "out vec4 vTint;\n" +
+                        "void main(){ vUV = aUV; vTint = aTint; gl_Position = uMVP * aModel * vec4(decodePosition(aPos),1.0); }\n";
+        String fsInst =
                 "#version 330 core\n" +
                         "in vec2 vUV;\n" +
+                        "in vec4 vTint;\n" +
                         "uniform sampler2D uAlbedo;\n" +
-                        "uniform int uUseTex;        // 1=用纹理 0=用颜色\n" +
-                        "uniform vec3 uColor;        // MTL 的 Kd 或回退色\n" +
+                        "uniform int uUseTex;\n" +
+                        "uniform vec3 uColor;\n" +
                         "out vec4 FragColor;\n" +
                         "void main(){\n" +
                         "  vec3 base = (uUseTex==1) ? texture(uAlbedo, vUV).rgb : uColor;\n" +
-                        "  FragColor = vec4(base, 1.0);\n" +
+                        "  FragColor = vec4(base * vTint.rgb, 1.0);\n" +
                         "}\n";
-
-        ShaderProgram shader = new ShaderProgram(vs, fs);
-        shader.use();
-        shader.set1i("uAlbedo", 0);
+        ShaderProgram instShader = new ShaderProgram(vsInst, fsInst);
+        instShader.use();
+        instShader.set1i("uAlbedo", 0);
         ShaderProgram.unbind();
 
         // ===== 载入 OBJ+MTL+多纹理，按材质切分为多个 Part =====
-        Model model = ObjMtlLoader.loadOBJWithMTLResource(OBJ_PATH, FLIP_V);
+        // 网格与贴图经 PBO 分帧上传，加载完成后首帧不再卡顿；未到齐的 Part 暂不绘制 / 用纯色
+        UploadQueue uploads = UploadQueue.createDefault();
+        long loadStart = System.nanoTime();
+        Model model = OBJ_PATH.toLowerCase().endsWith(".pmx") ? PmxLoader.loadResource(OBJ_PATH, uploads)
+                : ObjMtlLoader.loadOBJWithMTLResource(OBJ_PATH, FLIP_V, uploads);
+        System.out.printf("Loaded %s in %.1f ms%n", OBJ_PATH, (System.nanoTime() - loadStart) / 1e6);
+        System.out.println(TextureCache.stats());
 
         // ===== 聚合全局 AABB（用每个子网格的 center+maxExtent 近似合并）=====
         float[] globalMin = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
@@ -68,59 +133,278 @@ public class MainApp {
         System.out.println("Model AABB min=" + Arrays.toString(globalMin) + " max=" + Arrays.toString(globalMax));
         System.out.println("center=" + Arrays.toString(center) + " radius=" + radius);
 
+        // ===== 蒙皮模型（PMX）：每个角色一份姿势，调色板放进同一个纹理缓冲，逐角色提交 =====
+        Skeleton[] poses = new Skeleton[0];
+        int[] boneBases = new int[0];
+        float[][] placement = new float[0][];
+        BonePalette palette = null;
+        Morpher[] faces = new Morpher[0];
+        int[] morphBases = new int[0];
+        MorphBuffer morphBuffer = null;
+        ShaderProgram skinShader = null;
+        int side = (int) Math.ceil(Math.sqrt(Math.max(1, CROWD)));
+        float spacing = 2.2f * radius, bob = 0.2f * radius;
+        if (model.skin != null) {
+            int n = Math.max(1, CROWD);
+            skinShader = new ShaderProgram(VS_SKINNED, FS);
+            skinShader.use();
+            skinShader.set1i("uAlbedo", 0);
+            skinShader.set1i("uBones", 1);
+            skinShader.set1i("uMorphs", 2);
+            ShaderProgram.unbind();
+            palette = new BonePalette(n * model.skeleton.boneCount());
+            poses = new Skeleton[n];
+            boneBases = new int[n];
+            placement = new float[n][];
+            if (model.morphs != null) {
+                morphBuffer = new MorphBuffer(n * model.morphs.vertexCount);
+                faces = new Morpher[n];
+            }
+            morphBases = new int[n];
+            for (int i = 0; i < n; i++) {
+                poses[i] = model.skeleton.copy();
+                boneBases[i] = palette.allocate(poses[i].boneCount());
+                morphBases[i] = -1;
+                if (morphBuffer != null) {
+                    faces[i] = new Morpher(model.morphs);
+                    morphBases[i] = morphBuffer.allocate(model.morphs.vertexCount);
+                }
+                placement[i] = Mat4f.identity();
+                if (CROWD > 0) {
+                    placement[i][12] = (i % side - (side - 1) * 0.5f) * spacing;
+                    placement[i][14] = (i / side - (side - 1) * 0.5f) * spacing;
+                }
+            }
+            if (CROWD > 0) radius = (float) Math.hypot(radius, side * spacing * 0.5f * Math.sqrt(2.0));
+            System.out.println("skinned: " + n + " character(s) x " + model.skeleton.boneCount() + " bones, "
+                    + model.skin.vertexCount + " skinned vertices");
+        }
+
+        // ===== 方阵：N 个实例排在 XZ 平面上，间距为模型直径 =====
+        InstanceLods crowd = null;
+        if (CROWD > 0 && model.skin == null) {
+            crowd = new InstanceLods(model.lodLevels(), CROWD); // 每级 LOD 一个实例桶
+            float[] m = Mat4f.identity();
+            for (int i = 0; i < CROWD; i++) {
+                m[12] = (i % side - (side - 1) * 0.5f) * spacing;
+                m[14] = (i / side - (side - 1) * 0.5f) * spacing;
+                float h = (i * 0.618034f) % 1f; // 黄金比例取色，相邻实例颜色错开
+                crowd.add(m, 0.75f + 0.25f * h, 0.75f + 0.25f * ((h + 0.33f) % 1f), 0.75f + 0.25f * ((h + 0.67f) % 1f), 1f);
+            }
+            radius = (float) Math.hypot(radius, side * spacing * 0.5f * Math.sqrt(2.0));
+            System.out.println("crowd=" + CROWD + " (" + side + "x" + side + ")");
+        }
+
         // ===== 相机：对准整体模型并按半径取景 =====
         ArcballCamera cam = new ArcballCamera(renderer.getWindow());
         cam.frameMesh(center[0], center[1], center[2], Math.max(1e-6f, radius));
         // 可选：再放宽远裁剪
         cam.setProjection(60f, 0.02f, 1e9f);
 
+        // ===== 帧分析：各段 CPU / GPU 时间 + 计数器 =====
+        FrameProfiler prof = new FrameProfiler();
+        int secCamera = prof.section("camera", false), secUpload = prof.section("upload", true),
+                secClear = prof.section("clear", true), secSubmit = prof.section("submit", false),
+                secCull = prof.section("cull", false), secDraw = prof.section("draw", true),
+                secOverlay = prof.section("overlay", true), secSwap = prof.section("swap", false),
+                secSkin = prof.section("skin", false), secMorph = prof.section("morph", false);
+        int cDraws = prof.counter("draws"), cCalls = prof.counter("drawCalls"), cTris = prof.counter("triangles"),
+                cCulled = prof.counter("culledParts"), cProgram = prof.counter("programBinds"),
+                cTexture = prof.counter("textureBinds"), cVao = prof.counter("vaoBinds"),
+                cUpload = prof.counter("uploadBytes"), cTexResident = prof.counter("texResidentBytes"),
+                cTexEvicted = prof.counter("texEvictedBytes");
+        ProfilerOverlay overlay = new ProfilerOverlay();
+        final boolean[] showOverlay = { PROFILE_OVERLAY };
+
         // ===== 线框/退出 快捷键 =====
         final boolean[] wire = { false };
         glfwSetKeyCallback(renderer.getWindow(), (w, key, sc, action, mods) -> {
             if (action == GLFW_PRESS && key == GLFW_KEY_F2) {
                 wire[0] = !wire[0];
                 glPolygonMode(GL_FRONT_AND_BACK, wire[0] ? GL_LINE : GL_FILL);
+            } else if (action == GLFW_PRESS && key == GLFW_KEY_F3) {
+                // 拾取光标下的 Part（-Dobj.pick=true 时精确到三角形）
+                float[] o = new float[3], d = new float[3];
+                cam.pickRay(cam.cursorX(), cam.cursorY(), o, d);
+                Bvh.Hit hit = new Bvh.Hit();
+                long t0 = System.nanoTime();
+                boolean got = model.raycast(o[0], o[1], o[2], d[0], d[1], d[2], hit);
+                long us = (System.nanoTime() - t0) / 1000;
+                if (!got) System.out.println("pick: miss (" + us + " us)");
+                else {
+                    Material m = model.parts.get(hit.prim).material;
+                    System.out.printf("pick: part %d (%s) triangle %d t=%.4f (%d us)%n", hit.prim,
+                            m != null ? m.name : "default", hit.triangle, hit.t, us);
+                }
+            } else if (action == GLFW_PRESS && key == GLFW_KEY_F4) {
+                showOverlay[0] = !showOverlay[0];
+            } else if (action == GLFW_PRESS && key == GLFW_KEY_F5) {
+                dumpProfile(prof, "profile-" + System.currentTimeMillis());
             } else if (action == GLFW_PRESS && key == GLFW_KEY_ESCAPE) {
                 glfwSetWindowShouldClose(w, true);
             }
         });
 
         // ===== 主循环 =====
+        // 所有 Part 进 RenderQueue，按 shader/纹理/材质/网格排序后只发出变化的状态
+        RenderQueue queue = new RenderQueue();
+        // 贴图显存预算（-Dtexture.budget.mb）：超出时按 LRU 丢最大的 mip 层，需要时再回载
+        TextureResidency residency = new TextureResidency(cam, TextureResidency.budgetFromProperty());
+        queue.setResidency(residency);
+        long statsAt = System.nanoTime();
+        float[] mvp = new float[16]; // 模型矩阵为单位阵，MVP 就是 viewProj；跨帧复用，循环里不分配
+        float[] charMvp = new float[16];
+        String overlayText = "";
+        long overlayAt = 0;
+
         while (!renderer.shouldClose()) {
+            prof.beginFrame();
+            prof.begin(secCamera);
             cam.update();
+            prof.end(secCamera);
+            prof.begin(secUpload);
+            uploads.pump();
+            prof.end(secUpload);
+            prof.begin(secClear);
             renderer.beginFrame();
+            prof.end(secClear);
 
-            float[] mvp = Mat4f.multiply(cam.getViewProjection(), Mat4f.identity());
-            shader.use();
-            shader.setMat4("uMVP", mvp);
-
-            for (Model.Part p : model.parts) {
-                if (p.material != null) {
-                    shader.set3f("uColor", p.material.kdR, p.material.kdG, p.material.kdB);
-                    if (p.material.mapKd != null) {
-                        shader.set1i("uUseTex", 1);
-                        p.material.mapKd.bind(0);
-                    } else {
-                        shader.set1i("uUseTex", 0);
+            prof.begin(secSubmit);
+            cam.getViewProjection(mvp);
+            int lodHeight = LOD_PIXELS > 0f ? cam.viewportHeight() : 0;
+            if (palette != null) {
+                // 姿势与调色板在 CPU 上每根骨骼一次，逐顶点的混合全在顶点着色器里
+                prof.begin(secSkin);
+                float t = (float) glfwGetTime();
+                for (int i = 0; i < poses.length; i++) {
+                    animate(poses[i], t, i * 0.7f);
+                    palette.set(boneBases[i], poses[i]);
+                }
+                palette.upload();
+                palette.bind(1);
+                prof.end(secSkin);
+                if (morphBuffer != null) {
+                    // 只混合生效的表情、只上传被它们碰到的顶点块
+                    prof.begin(secMorph);
+                    for (int i = 0; i < faces.length; i++) {
+                        express(faces[i], t, i);
+                        faces[i].apply(morphBuffer, morphBases[i]);
                     }
-                } else {
-                    shader.set1i("uUseTex", 0);
-                    shader.set3f("uColor", 0.8f, 0.8f, 0.8f);
+                    morphBuffer.upload();
+                    morphBuffer.bind(2);
+                    prof.end(secMorph);
+                }
+                queue.setLod(lodHeight, LOD_PIXELS);
+                for (int i = 0; i < poses.length; i++) {
+                    Mat4f.multiply(mvp, placement[i], charMvp);
+                    queue.submit(skinShader, model, charMvp, boneBases[i], morphBases[i]);
                 }
+            } else if (crowd != null) {
+                // 只有第一排上下浮动：每帧只上传这一段实例
+                float t = (float) glfwGetTime();
+                for (int i = 0; i < Math.min(side, CROWD); i++) {
+                    crowd.setTranslation(i, (i - (side - 1) * 0.5f) * spacing, bob * (float) Math.sin(t * 3f + i),
+                            -(side - 1) * 0.5f * spacing);
+                }
+                crowd.select(model, mvp, lodHeight, LOD_PIXELS);
+                crowd.submit(queue, instShader, model, mvp);
+            } else {
+                queue.setLod(lodHeight, LOD_PIXELS);
+                queue.submit(shader, model, mvp);
+            }
+            prof.end(secSubmit);
+            prof.begin(secDraw);
+            queue.flush();
+            residency.update();
+            prof.end(secDraw);
+            prof.add(secCull, queue.cullNanos());
+
+            long uploadBytes = uploads.bytesLastFrame();
+            if (crowd != null) for (int l = 0; l < crowd.levels(); l++) uploadBytes += crowd.bucket(l).uploadedBytesLastTime();
+            if (palette != null) uploadBytes += palette.uploadedBytesLastTime();
+            if (morphBuffer != null) uploadBytes += morphBuffer.uploadedBytesLastTime();
+            prof.count(cDraws, queue.draws());
+            prof.count(cCalls, queue.drawCalls());
+            prof.count(cTris, queue.drawnTriangles());
+            prof.count(cCulled, queue.culledParts());
+            prof.count(cProgram, queue.programBinds());
+            prof.count(cTexture, queue.textureBinds());
+            prof.count(cVao, queue.vaoBinds());
+            prof.count(cUpload, uploadBytes);
+            prof.count(cTexResident, residency.residentBytes());
+            prof.count(cTexEvicted, residency.evictedBytesLastFrame());
 
-                p.mesh.bind();
-                p.mesh.draw();
-                p.mesh.unbind();
-                Texture2D.unbind();
+            if (showOverlay[0]) {
+                prof.begin(secOverlay);
+                if (System.nanoTime() - overlayAt > 250_000_000L) { // 文本每秒刷新 4 次，分位数排序不必每帧做
+                    overlayText = prof.overlayText();
+                    overlayAt = System.nanoTime();
+                }
+                overlay.draw(overlayText, 8f, 8f, renderer.getWidth(), renderer.getHeight());
+                prof.end(secOverlay);
             }
 
-            ShaderProgram.unbind();
+            if (System.nanoTime() - statsAt > 1_000_000_000L) { // 每秒把本帧统计刷到标题栏
+                glfwSetWindowTitle(renderer.getWindow(), title + "  [" + queue.stats() + "]");
+                statsAt = System.nanoTime();
+            }
+            prof.begin(secSwap);
             renderer.endFrame();
+            prof.end(secSwap);
+            prof.endFrame();
         }
 
         // ===== 清理 =====
+        if (PROFILE_DUMP != null) dumpProfile(prof, PROFILE_DUMP);
+        System.out.println(residency.stats());
+        overlay.close();
+        prof.close();
+        uploads.close();
+        queue.forget(model);
         model.close();
+        if (crowd != null) { crowd.forget(queue); crowd.close(); }
+        if (palette != null) palette.close();
+        if (morphBuffer != null) morphBuffer.close();
+        if (skinShader != null) skinShader.dispose();
+        instShader.dispose();
         shader.dispose();
         renderer.cleanup();
     }
+
+    /**
+     * 没有动作数据时的演示动画：每根非根骨骼绕一根斜轴（局部 X、Z 之间）摆动，越靠末端相位越滞后，
+     * 像整体在风里晃。幅度见 -Dskin.amplitude。
+     */
+    private static void animate(Skeleton s, float t, float phase) {
+        for (int b = 0, n = s.boneCount(); b < n; b++) {
+            int d = s.depth(b);
+            float a = d == 0 ? 0f : SKIN_AMPLITUDE * (float) Math.sin(t * 2.0 + phase + d * 0.6);
+            s.setRotationAxis(b, 0.4472136f, 0f, 0.8944272f, a);
+        }
+        s.update();
+    }
+
+    /**
+     * 没有动作数据时的表情演示：依次淡入淡出每个顶点 / 组变形（每个 1.5 秒），相邻角色错开一个。
+     */
+    private static void express(Morpher face, float t, int character) {
+        Morphs m = face.morphs();
+        int n = m.count();
+        float phase = t / 1.5f + character;
+        int k = (int) phase % n;
+        for (int i = 0; i < n; i++) {
+            boolean shown = i == k && (m.type(i) == Morphs.VERTEX || m.type(i) == Morphs.GROUP);
+            face.set(i, shown ? (float) Math.sin(Math.PI * (phase - Math.floor(phase))) : 0f);
+        }
+    }
+
+    private static void dumpProfile(FrameProfiler prof, String prefix) {
+        try {
+            prof.dumpCsv(Path.of(prefix + ".csv"));
+            prof.dumpJson(Path.of(prefix + ".json"));
+            System.out.println("profile written: " + prefix + ".csv / .json");
+        } catch (IOException e) {
+            System.err.println("profile dump failed: " + e);
+        }
+    }
 }
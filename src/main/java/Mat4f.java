@@ -1,31 +1,72 @@
+/**
+ * 列主序 4x4 矩阵工具。每个运算都有写入 dst 的版本（返回 dst），帧循环里用它们配合预先分配的数组，
+ * 稳态下不产生垃圾；带 offset 的版本直接读写大数组里的一段（例如 {@link InstanceBuffer} 的 20 float 布局），
+ * 适合成千上万个实例的批量矩阵运算。返回新数组的旧版本保留，内部转调 dst 版本。
+ */
 public final class Mat4f {
     private Mat4f() {}
 
     /** 单位矩阵（列主序） */
     public static float[] identity() {
-        float[] m = new float[16];
-        m[0]=1; m[5]=1; m[10]=1; m[15]=1;
-        return m;
+        return identity(new float[16]);
+    }
+
+    public static float[] identity(float[] dst) {
+        return identity(dst, 0);
+    }
+
+    public static float[] identity(float[] dst, int off) {
+        for (int i = 0; i < 16; i++) dst[off + i] = 0f;
+        dst[off] = 1; dst[off + 5] = 1; dst[off + 10] = 1; dst[off + 15] = 1;
+        return dst;
     }
 
     /** r = a * b （列主序） */
     public static float[] multiply(float[] a, float[] b) {
-        float[] r = new float[16];
-        for (int c=0; c<4; c++) {
-            for (int r0=0; r0<4; r0++) {
-                r[c*4 + r0] = a[0*4+r0]*b[c*4+0]
-                        + a[1*4+r0]*b[c*4+1]
-                        + a[2*4+r0]*b[c*4+2]
-                        + a[3*4+r0]*b[c*4+3];
-            }
+        return multiply(a, 0, b, 0, new float[16], 0);
+    }
+
+    /** dst = a * b；dst 可以就是 a 或 b */
+    public static float[] multiply(float[] a, float[] b, float[] dst) {
+        return multiply(a, 0, b, 0, dst, 0);
+    }
+
+    /**
+     * dst[dOff..] = a[aOff..] * b[bOff..]。先把 a 读进局部变量，b 按列读完再写，
+     * 所以 dst 与 a 或 b 重叠（同一段）也没问题。
+     */
+    public static float[] multiply(float[] a, int aOff, float[] b, int bOff, float[] dst, int dOff) {
+        float a00 = a[aOff],      a10 = a[aOff + 1],  a20 = a[aOff + 2],  a30 = a[aOff + 3];
+        float a01 = a[aOff + 4],  a11 = a[aOff + 5],  a21 = a[aOff + 6],  a31 = a[aOff + 7];
+        float a02 = a[aOff + 8],  a12 = a[aOff + 9],  a22 = a[aOff + 10], a32 = a[aOff + 11];
+        float a03 = a[aOff + 12], a13 = a[aOff + 13], a23 = a[aOff + 14], a33 = a[aOff + 15];
+        for (int c = 0; c < 4; c++) {
+            int bc = bOff + 4 * c, dc = dOff + 4 * c;
+            float b0 = b[bc], b1 = b[bc + 1], b2 = b[bc + 2], b3 = b[bc + 3];
+            dst[dc]     = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+            dst[dc + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+            dst[dc + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+            dst[dc + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
         }
-        return r;
+        return dst;
+    }
+
+    /**
+     * 批量：dst 的第 i 段 = a * src 的第 i 段，段起点为 off + i * stride（两边同一 stride），共 count 段。
+     * 例如 a = viewProj、src = 实例数据（stride = {@link InstanceBuffer#FLOATS}）得到每个实例的 MVP。
+     */
+    public static void multiplyMany(float[] a, float[] src, int srcOff, float[] dst, int dstOff, int stride, int count) {
+        for (int i = 0; i < count; i++) multiply(a, 0, src, srcOff + i * stride, dst, dstOff + i * stride);
     }
 
     public static float[] translate(float x, float y, float z) {
-        float[] m = identity();
-        m[12]=x; m[13]=y; m[14]=z;
-        return m;
+        return translation(new float[16], x, y, z);
+    }
+
+    public static float[] translation(float[] dst, float x, float y, float z) {
+        identity(dst);
+        dst[12]=x; dst[13]=y; dst[14]=z;
+        return dst;
     }
 
     public static float[] scale(float s) {
@@ -43,28 +84,38 @@ public final class Mat4f {
     }
 
     public static float[] perspective(float fovDeg, float aspect, float near, float far) {
+        return perspective(new float[16], fovDeg, aspect, near, far);
+    }
+
+    public static float[] perspective(float[] dst, float fovDeg, float aspect, float near, float far) {
         float f = 1f/(float)Math.tan(Math.toRadians(fovDeg)/2.0);
-        float[] m = new float[16];
-        m[0]=f/aspect; m[5]=f; m[10]=(far+near)/(near-far); m[11]=-1f;
-        m[14]=(2f*far*near)/(near-far);
-        return m;
+        for (int i = 0; i < 16; i++) dst[i] = 0f;
+        dst[0]=f/aspect; dst[5]=f; dst[10]=(far+near)/(near-far); dst[11]=-1f;
+        dst[14]=(2f*far*near)/(near-far);
+        return dst;
     }
 
     public static float[] lookAt(float ex,float ey,float ez,
                                  float cx,float cy,float cz,
                                  float ux,float uy,float uz) {
+        return lookAt(new float[16], ex, ey, ez, cx, cy, cz, ux, uy, uz);
+    }
+
+    /** 旋转部分同上；平移列直接写 -R·eye，相当于 R * translate(-eye)，不再做一次矩阵乘 */
+    public static float[] lookAt(float[] dst,
+                                 float ex,float ey,float ez,
+                                 float cx,float cy,float cz,
+                                 float ux,float uy,float uz) {
         float fx=cx-ex, fy=cy-ey, fz=cz-ez;
         float fl=(float)Math.sqrt(fx*fx+fy*fy+fz*fz); fx/=fl; fy/=fl; fz/=fl;
         float sx = fy*uz - fz*uy, sy = fz*ux - fx*uz, sz = fx*uy - fy*ux;
         float sl=(float)Math.sqrt(sx*sx+sy*sy+sz*sz); sx/=sl; sy/=sl; sz/=sl;
         float ux2 = sy*fz - sz*fy, uy2 = sz*fx - sx*fz, uz2 = sx*fy - sy*fx;
 
-        float[] m = new float[16];
-        m[0]=sx;  m[4]=ux2; m[8] =-fx; m[12]=0;
-        m[1]=sy;  m[5]=uy2; m[9] =-fy; m[13]=0;
-        m[2]=sz;  m[6]=uz2; m[10]=-fz; m[14]=0;
-        m[3]=0;   m[7]=0;   m[11]=0;  m[15]=1;
-
-        return multiply(m, translate(-ex, -ey, -ez));
+        dst[0]=sx;  dst[4]=ux2; dst[8] =-fx; dst[12]=-(sx*ex + ux2*ey - fx*ez);
+        dst[1]=sy;  dst[5]=uy2; dst[9] =-fy; dst[13]=-(sy*ex + uy2*ey - fy*ez);
+        dst[2]=sz;  dst[6]=uz2; dst[10]=-fz; dst[14]=-(sz*ex + uz2*ey - fz*ez);
+        dst[3]=0;   dst[7]=0;   dst[11]=0;   dst[15]=1;
+        return dst;
     }
 }
@@ -5,11 +5,30 @@ public class Material implements AutoCloseable {
     public float shininess=16f;         // Ns（先不用）
 
     public Texture2D mapKd;             // 漫反射贴图
+    /** 后台解码中的 map_Kd，GL 线程调用 resolveTextures() 后转成 mapKd */
+    TextureCache.Pending mapKdPending;
     // TODO: mapKs, normal 等可后续加
 
     public boolean hasMapKd(){ return mapKd != null; }
 
+    /** GL 线程：等待后台解码并上传（幂等） */
+    public void resolveTextures() throws java.io.IOException { resolveTextures(null); }
+
+    /** uploads 非空时贴图经 UploadQueue 分帧上传 */
+    public void resolveTextures(UploadQueue uploads) throws java.io.IOException {
+        if (mapKdPending != null) { mapKd = mapKdPending.get(uploads); mapKdPending = null; }
+    }
+
+    /** 有贴图且已上传完毕 */
+    public boolean hasReadyMapKd(){ return mapKd != null && mapKd.isReady(); }
+
+    /** 贴图可能被多个材质共享（TextureCache），这里只归还引用；还没 resolve 的贴图放弃解码结果，不上传 */
     @Override public void close() {
-        if (mapKd != null) mapKd.close();
+        if (mapKdPending != null) {
+            mapKdPending.release();
+            mapKdPending = null;
+        }
+        TextureCache.release(mapKd);
+        mapKd = null;
     }
 }
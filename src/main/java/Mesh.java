@@ -1,33 +1,63 @@
-import org.lwjgl.BufferUtils;
 import java.io.IOException;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.Arrays;
 import static org.lwjgl.opengl.GL33C.*;
 
 public class Mesh implements AutoCloseable {
     private final int vao, vbo, ebo;
-    private final int vertexCount;
+    private int vertexCount;           // 有索引时为第 0 级的索引数
     private final boolean indexed;
     private final boolean hasNormal, hasUV;
+    /** GPU 上的存储格式（见 {@link VertexFormat}）：索引类型与量化位置的解码参数 */
+    private final VertexFormat format;
+    private final int indexType, indexBytes;
+    private final float[] posOffset, posScale;
+    private final long gpuBytes;
+    /** 经 UploadQueue 分帧上传时，数据到齐之前不绘制 */
+    private boolean ready = true;
+    private int pendingUploads;
+    /** 合并缓冲：多个 Mesh 共用一组 VAO/VBO/EBO，各自只记录索引区间与 baseVertex */
+    private final Shared shared;
+    private final long indexOffset;     // 字节
+    private final int baseVertex;
+    private boolean disposed;
+    /** LOD 链（见 {@link #setLods}）：各级索引在同一个 EBO 里首尾相接，第 0 级在最前面；为 null 时只有一级 */
+    private int[] lodCounts, lodFirst;
+    private float[] lodErrors;
+
+    /** 分帧上传的归属：独立网格各有一个，合并缓冲的各部分共用 Shared 里的那个 */
+    private final UploadQueue.Owner uploadOwner;
+
+    private static final class Shared { int refs; final UploadQueue.Owner uploadOwner = new UploadQueue.Owner(); }
     // Mesh.java 增加字段与方法
     private final float[] aabbMin = new float[3];
     private final float[] aabbMax = new float[3];
 
-    private void computeBounds(float[] interleaved, boolean hasNormal, boolean hasUV){
+    /** 按 stride 扫描位置分量，写入 min/max（各 3 个 float） */
+    static void computeBounds(float[] interleaved, boolean hasNormal, boolean hasUV, float[] min, float[] max){
         int stride = 3 + (hasNormal?3:0) + (hasUV?2:0);
-        aabbMin[0]=aabbMin[1]=aabbMin[2]= Float.POSITIVE_INFINITY;
-        aabbMax[0]=aabbMax[1]=aabbMax[2]= Float.NEGATIVE_INFINITY;
+        min[0]=min[1]=min[2]= Float.POSITIVE_INFINITY;
+        max[0]=max[1]=max[2]= Float.NEGATIVE_INFINITY;
         for (int i=0;i<interleaved.length;i+=stride){
             float x=interleaved[i], y=interleaved[i+1], z=interleaved[i+2];
-            if (x<aabbMin[0]) aabbMin[0]=x; if (x>aabbMax[0]) aabbMax[0]=x;
-            if (y<aabbMin[1]) aabbMin[1]=y; if (y>aabbMax[1]) aabbMax[1]=y;
-            if (z<aabbMin[2]) aabbMin[2]=z; if (z>aabbMax[2]) aabbMax[2]=z;
+            if (x<min[0]) min[0]=x; if (x>max[0]) max[0]=x;
+            if (y<min[1]) min[1]=y; if (y>max[1]) max[1]=y;
+            if (z<min[2]) min[2]=z; if (z>max[2]) max[2]=z;
         }
     }
     public float[] getCenter(){ return new float[]{ (aabbMin[0]+aabbMax[0])/2f, (aabbMin[1]+aabbMax[1])/2f, (aabbMin[2]+aabbMax[2])/2f}; }
     public float getMaxExtent(){ return Math.max(aabbMax[0]-aabbMin[0], Math.max(aabbMax[1]-aabbMin[1], aabbMax[2]-aabbMin[2])); }
 
+    /** 物体空间 AABB，拷贝到 min/max */
+    public void getBounds(float[] min, float[] max){
+        System.arraycopy(aabbMin, 0, min, 0, 3);
+        System.arraycopy(aabbMax, 0, max, 0, 3);
+    }
+
+    public int triangleCount(){ return vertexCount / 3; }
+    public int triangleCount(int lod){ return indexCount(lod) / 3; }
+
     public float getBoundingRadius() {
         float dx = aabbMax[0] - aabbMin[0];
         float dy = aabbMax[1] - aabbMin[1];
@@ -36,66 +66,289 @@ public class Mesh implements AutoCloseable {
     }
 
 
-    private Mesh(float[] interleaved, int[] indices, boolean hasNormal, boolean hasUV) {
+    private Mesh(float[] interleaved, int[] indices, boolean hasNormal, boolean hasUV, int formatFlags, UploadQueue uploads) {
+        this(encode(interleaved, indices, hasNormal, hasUV, formatFlags), uploads);
+        // ★ 必须：先算 AABB，后面相机会用到
+        computeBounds(interleaved, hasNormal, hasUV, aabbMin, aabbMax);
+    }
 
-        this.hasNormal = hasNormal; this.hasUV = hasUV;
+    private static VertexFormat.Encoded encode(float[] interleaved, int[] indices, boolean hasNormal, boolean hasUV, int formatFlags) {
+        float[] mn = new float[3], mx = new float[3];
+        if ((formatFlags & VertexFormat.POS16) != 0) computeBounds(interleaved, hasNormal, hasUV, mn, mx);
+        return VertexFormat.encode(interleaved, indices, hasNormal, hasUV, mn, mx, formatFlags);
+    }
 
-        // ★ 必须：先算 AABB，后面相机会用到
-        computeBounds(interleaved, hasNormal, hasUV);
+    /**
+     * 直接上传已打包的字节（native order），索引可为 null。
+     * uploads 非空时只分配 GL 缓冲，数据交给 UploadQueue 分帧拷贝（源缓冲在完成前须保持有效）。
+     */
+    private Mesh(VertexFormat.Encoded e, UploadQueue uploads) {
 
-        int strideFloats = 3 + (hasNormal?3:0) + (hasUV?2:0);
-        int strideBytes  = strideFloats * Float.BYTES;
+        this.hasNormal = e.format.hasNormal; this.hasUV = e.format.hasUV;
+        this.format = e.format; this.posOffset = e.posOffset.clone(); this.posScale = e.posScale.clone();
+        this.indexType = e.indexType; this.indexBytes = e.indexBytes(); this.gpuBytes = e.gpuBytes();
+        this.shared = null; this.indexOffset = 0L; this.baseVertex = 0;
+        this.uploadOwner = new UploadQueue.Owner();
+        ByteBuffer vertices = e.vertices, indices = e.indices;
 
         vao = glGenVertexArrays(); glBindVertexArray(vao);
         vbo = glGenBuffers(); glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        FloatBuffer fb = BufferUtils.createFloatBuffer(interleaved.length).put(interleaved); fb.flip();
-        glBufferData(GL_ARRAY_BUFFER, fb, GL_STATIC_DRAW);
+        if (uploads == null) glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        else streamInto(vbo, GL_ARRAY_BUFFER, vertices, uploads);
 
-        long off = 0L;
-        glVertexAttribPointer(0,3,GL_FLOAT,false,strideBytes,off); glEnableVertexAttribArray(0); off += 3L*Float.BYTES;
-        if (hasNormal){ glVertexAttribPointer(1,3,GL_FLOAT,false,strideBytes,off); glEnableVertexAttribArray(1); off += 3L*Float.BYTES; }
-        if (hasUV){     glVertexAttribPointer(2,2,GL_FLOAT,false,strideBytes,off); glEnableVertexAttribArray(2); }
+        format.setupAttribs();
 
-        if (indices!=null && indices.length>0){
-            indexed = true; vertexCount = indices.length;
+        if (indices!=null && indices.remaining()>0){
+            indexed = true; vertexCount = indices.remaining() / indexBytes;
             ebo = glGenBuffers(); glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
-            IntBuffer ib = BufferUtils.createIntBuffer(indices.length).put(indices); ib.flip();
-            glBufferData(GL_ELEMENT_ARRAY_BUFFER, ib, GL_STATIC_DRAW);
+            if (uploads == null) glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+            else streamInto(ebo, GL_ELEMENT_ARRAY_BUFFER, indices, uploads);
         } else {
-            indexed = false; vertexCount = interleaved.length / strideFloats; ebo = 0;
+            indexed = false; vertexCount = vertices.remaining() / format.strideBytes; ebo = 0;
         }
 
         glBindBuffer(GL_ARRAY_BUFFER,0); glBindVertexArray(0);
     }
 
+    /** 合并缓冲里的一个视图：共用 vao/vbo/ebo，只画 [indexOffset, indexOffset + indexCount) 这段索引 */
+    private Mesh(int vao, int vbo, int ebo, Shared shared, VertexFormat.Encoded e, long indexOffset, int baseVertex) {
+        this.vao = vao; this.vbo = vbo; this.ebo = ebo;
+        this.shared = shared; shared.refs++;
+        this.uploadOwner = shared.uploadOwner;
+        this.vertexCount = e.indexCount(); this.indexed = true;
+        this.indexOffset = indexOffset; this.baseVertex = baseVertex;
+        this.hasNormal = e.format.hasNormal; this.hasUV = e.format.hasUV;
+        this.format = e.format; this.posOffset = e.posOffset.clone(); this.posScale = e.posScale.clone();
+        this.indexType = e.indexType; this.indexBytes = e.indexBytes(); this.gpuBytes = e.gpuBytes();
+    }
+
+    private void streamInto(int buffer, int target, ByteBuffer src, UploadQueue uploads){
+        glBufferData(target, src.remaining(), GL_STATIC_DRAW); // 只分配
+        streamAt(buffer, 0L, src, uploads);
+    }
+
+    private void streamAt(int buffer, long dstOffset, ByteBuffer src, UploadQueue uploads){
+        if (src.remaining() == 0) return;
+        ready = false;
+        pendingUploads++;
+        uploads.enqueueBuffer(buffer, dstOffset, src, uploadOwner, () -> { if (--pendingUploads == 0) ready = true; });
+    }
+
     public static Mesh loadOBJ(String filePath, boolean flipV) throws IOException {
         ObjReader.Result r = ObjReader.read(Path.of(filePath), flipV);
-        return new Mesh(r.interleaved, r.indices, r.hasNormal, r.hasUV);
+        return new Mesh(r.interleaved, r.indices, r.hasNormal, r.hasUV, VertexFormat.FLOAT, null);
     }
 
     // ★ 新增：从 classpath 资源加载
     public static Mesh loadOBJResource(String resourcePath, boolean flipV) throws IOException {
         ObjReader.Result r = ObjReader.readResource(resourcePath, flipV);
-        return new Mesh(r.interleaved, r.indices, r.hasNormal, r.hasUV);
+        return new Mesh(r.interleaved, r.indices, r.hasNormal, r.hasUV, VertexFormat.FLOAT, null);
     }
 
     // ① 便捷版：只有位置属性（location=0），不带索引
     public static Mesh fromInterleaved(float[] positionsOnly) {
-        return new Mesh(positionsOnly, null, /*hasNormal*/ false, /*hasUV*/ false);
+        return new Mesh(positionsOnly, null, /*hasNormal*/ false, /*hasUV*/ false, VertexFormat.FLOAT, null);
     }
 
     // ② 通用版：interleaved = [pos(3) + (opt normal3) + (opt uv2)], 可带索引
     public static Mesh fromInterleaved(float[] interleaved, int[] indices,
                                        boolean hasNormal, boolean hasUV) {
-        return new Mesh(interleaved, indices, hasNormal, hasUV);
+        return new Mesh(interleaved, indices, hasNormal, hasUV, VertexFormat.FLOAT, null);
+    }
+
+    // ②' 分帧上传版：uploads 为 null 时等同上面
+    public static Mesh fromInterleaved(float[] interleaved, int[] indices,
+                                       boolean hasNormal, boolean hasUV, UploadQueue uploads) {
+        return new Mesh(interleaved, indices, hasNormal, hasUV, VertexFormat.FLOAT, uploads);
+    }
+
+    // ②'' 紧凑格式版：formatFlags 见 {@link VertexFormat}，着色器须按 {@link VertexFormat#GLSL_DECODE} 解码
+    public static Mesh fromInterleaved(float[] interleaved, int[] indices,
+                                       boolean hasNormal, boolean hasUV, int formatFlags, UploadQueue uploads) {
+        return new Mesh(interleaved, indices, hasNormal, hasUV, formatFlags, uploads);
     }
 
 
 
+    // ③ 零拷贝版：直接把（例如 .gmesh 映射出来的）字节切片交给 glBufferData，AABB 由调用方提供
+    public static Mesh fromBuffers(ByteBuffer vertices, ByteBuffer indices, boolean hasNormal, boolean hasUV,
+                                   float[] aabbMin, float[] aabbMax) {
+        return fromBuffers(vertices, indices, hasNormal, hasUV, aabbMin, aabbMax, null);
+    }
+
+    public static Mesh fromBuffers(ByteBuffer vertices, ByteBuffer indices, boolean hasNormal, boolean hasUV,
+                                   float[] aabbMin, float[] aabbMax, UploadQueue uploads) {
+        return fromEncoded(VertexFormat.encode(vertices, indices, hasNormal, hasUV, aabbMin, aabbMax, VertexFormat.FLOAT),
+                aabbMin, aabbMax, uploads);
+    }
+
+    /** 已按 {@link VertexFormat#encode} 打包的数据；量化位置时 AABB 应与打包时所用的一致 */
+    public static Mesh fromEncoded(VertexFormat.Encoded encoded, float[] aabbMin, float[] aabbMax, UploadQueue uploads) {
+        Mesh m = new Mesh(encoded, uploads);
+        System.arraycopy(aabbMin, 0, m.aabbMin, 0, 3);
+        System.arraycopy(aabbMax, 0, m.aabbMax, 0, 3);
+        return m;
+    }
+
+    /**
+     * ④ 合并版：所有部分放进同一个 VBO/EBO（一个 VAO），索引保持各自从 0 开始，
+     * 绘制时用 glDrawElementsBaseVertex 加上 baseVertex。要求各部分顶点布局相同且都有索引。
+     * 返回的每个 Mesh 可单独 dispose，最后一个释放时删除共享的 GL 对象。
+     */
+    public static Mesh[] merged(ByteBuffer[] vertices, ByteBuffer[] indices, boolean hasNormal, boolean hasUV,
+                                float[][] aabbMin, float[][] aabbMax, UploadQueue uploads) {
+        VertexFormat.Encoded[] e = new VertexFormat.Encoded[vertices.length];
+        for (int i = 0; i < e.length; i++) {
+            e[i] = VertexFormat.encode(vertices[i], indices[i], hasNormal, hasUV, aabbMin[i], aabbMax[i], VertexFormat.FLOAT);
+        }
+        return merged(e, aabbMin, aabbMax, uploads);
+    }
+
+    /**
+     * 打包后的合并版：各部分的顶点格式须相同，索引类型可以不同（每段按 4 字节对齐），
+     * 量化位置的解码参数各部分独立。
+     */
+    public static Mesh[] merged(VertexFormat.Encoded[] parts, float[][] aabbMin, float[][] aabbMax, UploadQueue uploads) {
+        int n = parts.length;
+        VertexFormat format = parts[0].format;
+        int strideBytes = format.strideBytes;
+        long vBytes = 0, iBytes = 0;
+        for (VertexFormat.Encoded p : parts) {
+            if (p.indices == null || p.indices.remaining() == 0) throw new IllegalArgumentException("merged meshes must be indexed");
+            if (!p.format.sameLayout(format)) throw new IllegalArgumentException("merged meshes must share a vertex format");
+            vBytes += p.vertices.remaining(); iBytes = align4(iBytes) + p.indices.remaining();
+        }
+        if (vBytes / strideBytes > Integer.MAX_VALUE) throw new IllegalArgumentException("too many vertices to merge");
+
+        int vao = glGenVertexArrays(); glBindVertexArray(vao);
+        int vbo = glGenBuffers(); glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vBytes, GL_STATIC_DRAW);
+        format.setupAttribs();
+        int ebo = glGenBuffers(); glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, iBytes, GL_STATIC_DRAW);
+
+        Shared shared = new Shared();
+        Mesh[] out = new Mesh[n];
+        long vOff = 0, iOff = 0;
+        for (int i = 0; i < n; i++) {
+            VertexFormat.Encoded p = parts[i];
+            iOff = align4(iOff);
+            Mesh m = new Mesh(vao, vbo, ebo, shared, p, iOff, (int) (vOff / strideBytes));
+            System.arraycopy(aabbMin[i], 0, m.aabbMin, 0, 3);
+            System.arraycopy(aabbMax[i], 0, m.aabbMax, 0, 3);
+            if (uploads == null) {
+                glBufferSubData(GL_ARRAY_BUFFER, vOff, p.vertices);
+                glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, iOff, p.indices);
+            } else {
+                m.streamAt(vbo, vOff, p.vertices, uploads);
+                m.streamAt(ebo, iOff, p.indices, uploads);
+            }
+            vOff += p.vertices.remaining(); iOff += p.indices.remaining();
+            out[i] = m;
+        }
+        glBindVertexArray(0); glBindBuffer(GL_ARRAY_BUFFER, 0);
+        return out;
+    }
+
+    private static long align4(long bytes){ return (bytes + 3) & ~3L; }
+
+    /** float[] 版合并：AABB 就地计算 */
+    public static Mesh[] merged(float[][] interleaved, int[][] indices, boolean hasNormal, boolean hasUV, UploadQueue uploads) {
+        return merged(interleaved, indices, hasNormal, hasUV, VertexFormat.FLOAT, uploads);
+    }
+
+    public static Mesh[] merged(float[][] interleaved, int[][] indices, boolean hasNormal, boolean hasUV,
+                                int formatFlags, UploadQueue uploads) {
+        int n = interleaved.length;
+        VertexFormat.Encoded[] e = new VertexFormat.Encoded[n];
+        float[][] mn = new float[n][3], mx = new float[n][3];
+        for (int i = 0; i < n; i++) {
+            computeBounds(interleaved[i], hasNormal, hasUV, mn[i], mx[i]);
+            e[i] = VertexFormat.encode(interleaved[i], indices[i], hasNormal, hasUV, mn[i], mx[i], formatFlags);
+        }
+        return merged(e, mn, mx, uploads);
+    }
+
     public void bind(){ glBindVertexArray(vao); if (ebo!=0) glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo); }
     public void unbind(){ if (ebo!=0) glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0); glBindVertexArray(0); }
-    public void draw(){ if (indexed) glDrawElements(GL_TRIANGLES, vertexCount, GL_UNSIGNED_INT, 0L);
-    else glDrawArrays(GL_TRIANGLES, 0, vertexCount); }
-    public void dispose(){ if (ebo!=0) glDeleteBuffers(ebo); glDeleteBuffers(vbo); glDeleteVertexArrays(vao); }
+    public boolean isReady(){ return ready; }
+    public void draw(){ draw(0); }
+    public void draw(int lod){ if (!ready) return;
+        if (shared != null) glDrawElementsBaseVertex(GL_TRIANGLES, indexCount(lod), indexType, indexOffset(lod), baseVertex);
+        else if (indexed) glDrawElements(GL_TRIANGLES, indexCount(lod), indexType, indexOffset(lod));
+        else glDrawArrays(GL_TRIANGLES, 0, vertexCount); }
+
+    /** 硬件实例化：一次调用画 instances 份，逐实例数据见 {@link InstanceBuffer} */
+    public void drawInstanced(int instances){ drawInstanced(instances, 0); }
+    public void drawInstanced(int instances, int lod){ if (!ready || instances <= 0) return;
+        if (shared != null) glDrawElementsInstancedBaseVertex(GL_TRIANGLES, indexCount(lod), indexType, indexOffset(lod), instances, baseVertex);
+        else if (indexed) glDrawElementsInstanced(GL_TRIANGLES, indexCount(lod), indexType, indexOffset(lod), instances);
+        else glDrawArraysInstanced(GL_TRIANGLES, 0, vertexCount, instances); }
+
+    /**
+     * 声明 EBO 里的 LOD 链（{@link MeshSimplifier.Lods}）：上传的索引是各级首尾相接的结果，
+     * counts[0] 为原始网格。之后 draw() / indexCount() 等不带 lod 的版本都指第 0 级。
+     */
+    public void setLods(int[] counts, float[] errors){
+        if (!indexed || counts.length == 0 || counts.length != errors.length) throw new IllegalArgumentException("bad LOD table");
+        int total = lodCounts != null ? lodFirst[lodFirst.length - 1] + lodCounts[lodCounts.length - 1] : vertexCount;
+        int[] first = new int[counts.length];
+        for (int l = 1; l < counts.length; l++) first[l] = first[l - 1] + counts[l - 1];
+        if (first[counts.length - 1] + counts[counts.length - 1] != total) throw new IllegalArgumentException("LOD counts do not match index buffer");
+        lodCounts = counts.clone(); lodFirst = first; lodErrors = errors.clone();
+        vertexCount = counts[0];
+    }
+
+    public int lodCount(){ return lodCounts != null ? lodCounts.length : 1; }
+    /** 第 lod 级相对原始网格的几何误差（物体空间距离） */
+    public float lodError(int lod){ return lodErrors != null ? lodErrors[clampLod(lod)] : 0f; }
+
+    /** 投影误差不超过 pixelError 的最粗一级；pixelsPerUnit 为物体空间单位长度在屏幕上的像素数（见 {@link Lod}） */
+    public int selectLod(float pixelsPerUnit, float pixelError){
+        if (lodErrors == null) return 0;
+        for (int l = lodErrors.length - 1; l > 0; l--) if (lodErrors[l] * pixelsPerUnit <= pixelError) return l;
+        return 0;
+    }
+
+    private int clampLod(int lod){ return Math.max(0, Math.min(lod, lodCount() - 1)); }
+
+    /** 把实例属性挂到本网格的 VAO（合并缓冲的各部分共用一个 VAO，挂一次即可） */
+    public void attachInstances(InstanceBuffer instances){
+        glBindVertexArray(vao);
+        instances.attachToBoundVao();
+        glBindVertexArray(0);
+    }
+
+    // 供 RenderQueue 合批：同一 VAO 上的多个视图可以一次 glMultiDrawElementsBaseVertex
+    public int vao(){ return vao; }
+    public boolean isShared(){ return shared != null; }
+    public boolean isIndexed(){ return indexed; }
+    public int indexCount(){ return indexed ? vertexCount : 0; }
+    public long indexOffset(){ return indexOffset; }
+    public int indexCount(int lod){ return !indexed ? 0 : lodCounts != null ? lodCounts[clampLod(lod)] : vertexCount; }
+    /** 字节偏移；超出范围的 lod 按最粗一级处理 */
+    public long indexOffset(int lod){ return lodFirst == null ? indexOffset : indexOffset + (long) lodFirst[clampLod(lod)] * indexBytes; }
+    public int baseVertex(){ return baseVertex; }
+    /** GL_UNSIGNED_INT 或 GL_UNSIGNED_SHORT */
+    public int indexType(){ return indexType; }
+    public VertexFormat format(){ return format; }
+    /** 本网格（合并缓冲时为它那一段）占用的顶点 + 索引字节数 */
+    public long gpuBytes(){ return gpuBytes; }
+
+    /** 量化位置的解码参数：p = offset + q * scale；float 格式时为 0 / 1 */
+    public float posOffset(int axis){ return posOffset[axis]; }
+    public float posScale(int axis){ return posScale[axis]; }
+    /** 解码参数与索引类型都相同时，两个网格可以在同一次 multi-draw 里 */
+    public boolean sameEncoding(Mesh o){
+        return indexType == o.indexType && format.sameLayout(o.format)
+                && Arrays.equals(posOffset, o.posOffset) && Arrays.equals(posScale, o.posScale);
+    }
+
+    public void dispose(){
+        if (disposed) return;
+        disposed = true;
+        if (shared != null && --shared.refs > 0) return;
+        uploadOwner.cancel(); // 还在排队的拷贝不能再写进已删除（可能被复用）的缓冲名
+        if (ebo!=0) glDeleteBuffers(ebo); glDeleteBuffers(vbo); glDeleteVertexArrays(vao); }
     @Override public void close(){ dispose(); }
 }
@@ -0,0 +1,293 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * .gmesh 二进制网格缓存：首次解析 OBJ 后自动写出，之后直接映射文件，
+ * 把顶点/索引切片原样交给 glBufferData（见 {@link Mesh#fromEncoded}），不再经过 float[]。
+ * 除 float 源数据（拾取 BVH、蒙皮对齐要用）外还存按 -Dmesh.format 打包好的 GPU 格式（{@link VertexFormat}），
+ * 格式计入加载选项摘要，命中缓存时不必在 CPU 上重新量化。
+ * <p>
+ * 缓存以源内容（SHA-256 + 长度，同 {@link AssetPack}）、源路径、flipV 和加载选项摘要为键，源文件一改就自然失效；
+ * 写新条目时顺带删掉同一源路径留下的旧条目，缓存目录不会无限增长。
+ * 离线生成的 LOD 索引（{@link MeshSimplifier}）与缓存友好的重排（{@link MeshOptimizer}）也存在这里，
+ * 命中缓存时这些开销都不用再付。
+ * 目录由 -Dgmesh.cache.dir 指定（默认 java.io.tmpdir/gmesh-cache），-Dgmesh.cache=false 关闭。
+ * <pre>
+ * 文件布局（little-endian）：
+ *   int magic "GMSH", int version, byte[32] srcSha256, long srcSize, str 源路径, int flipV, long settings
+ *   int mtllibCount, { str }                      str = int 字节数 + UTF-8
+ *   int partCount,  { str 材质名, int 属性位(1=normal 2=uv), int floatCount, int indexCount,
+ *                     float[3] aabbMin, float[3] aabbMax, int lodCount, { int 索引数, float 误差 },
+ *                     long 顶点偏移, long 索引偏移,
+ *                     int 打包顶点项, int 打包索引字节(2/4), float[3] posOffset, float[3] posScale,
+ *                     float[3] 打包误差(位置, 法线角度, uv), long 打包顶点偏移, long 打包索引偏移 }
+ *   indexCount 是各级 LOD 索引首尾相接后的总数；打包后与源数据相同的段（float 顶点、32 位索引）不重复存，
+ *   偏移直接指向源数据
+ *   数据区：每段按 16 字节对齐
+ * </pre>
+ */
+public final class MeshCache {
+    private MeshCache() {}
+
+    public static final String EXT = ".gmesh";
+    private static final int MAGIC = 0x48534D47; // "GMSH"
+    private static final int VERSION = 5;
+    private static final int ATTR_NORMAL = 1, ATTR_UV = 2;
+
+    public static boolean enabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("gmesh.cache", "true"))
+                && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN; // 切片直接上传，要求字节序一致
+    }
+
+    public static Path cacheDir() {
+        String dir = System.getProperty("gmesh.cache.dir");
+        return dir != null ? Path.of(dir) : Path.of(System.getProperty("java.io.tmpdir"), "gmesh-cache");
+    }
+
+    /** 源内容的键：SHA-256，碰撞了就会把别的模型当成缓存命中，所以不用 CRC */
+    public static byte[] contentDigest(ByteBuffer src) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(src.duplicate());
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 每个 JRE 都必须提供 SHA-256
+        }
+    }
+
+    /**
+     * 缓存文件路径：源文件名 + 源路径的 CRC（同名模型在不同目录下互不覆盖）+ 内容摘要前 8 字节。
+     * 名字只为便于辨认和清理旧条目，真正的校验在文件头。source 为资源路径或磁盘绝对路径。
+     */
+    public static Path pathFor(String source, byte[] digest, boolean flipV) {
+        return cacheDir().resolve(String.format("%s-%016x%s%s", prefix(source), ByteBuffer.wrap(digest).getLong(),
+                flipV ? "-f" : "", EXT));
+    }
+
+    /** 同一源路径的所有条目共用的文件名前缀 */
+    private static String prefix(String source) {
+        String name = source.substring(Math.max(source.lastIndexOf('/'), source.lastIndexOf('\\')) + 1);
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        String safe = name.replaceAll("[^A-Za-z0-9._-]", "_"); // 非 ASCII 名在某些 locale 下无法作为文件名
+        CRC32C crc = new CRC32C();
+        crc.update(source.getBytes(StandardCharsets.UTF_8));
+        return String.format("%s-%08x", safe, crc.getValue());
+    }
+
+    /** 删掉 source 的其他条目（源内容已变，或是旧版本写的）；失败只告警 */
+    static void removeStale(Path keep, String source, boolean flipV) {
+        Pattern stale = Pattern.compile(Pattern.quote(prefix(source)) + "-[0-9a-f]{16}" + (flipV ? "-f" : "")
+                + Pattern.quote(EXT));
+        Path dir = keep.getParent();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, p -> stale.matcher(p.getFileName().toString()).matches())) {
+            for (Path p : ds) if (!p.equals(keep)) Files.deleteIfExists(p);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARN: stale mesh cache entries not removed in " + dir + ": " + e);
+        }
+    }
+
+    // ======================== 读 ========================
+
+    public static final class Part {
+        public final String material;
+        public final boolean hasNormal, hasUV;
+        public final float[] aabbMin = new float[3], aabbMax = new float[3];
+        /** 映射文件上的切片，native order，可直接交给 glBufferData；indices 含全部 LOD 级 */
+        public final ByteBuffer vertices, indices;
+        /** 各级 LOD 的索引数与误差，第 0 级为原始网格 */
+        public final int[] lodCounts;
+        public final float[] lodErrors;
+        /** 按写入时的 -Dmesh.format 打包好的 GPU 数据，同样是映射文件上的切片 */
+        public final VertexFormat.Encoded encoded;
+
+        Part(String material, boolean hasNormal, boolean hasUV, ByteBuffer vertices, ByteBuffer indices,
+             int[] lodCounts, float[] lodErrors, VertexFormat.Encoded encoded) {
+            this.material = material; this.hasNormal = hasNormal; this.hasUV = hasUV;
+            this.vertices = vertices; this.indices = indices;
+            this.lodCounts = lodCounts; this.lodErrors = lodErrors;
+            this.encoded = encoded;
+        }
+
+        /** 只含第 0 级的索引切片 */
+        public ByteBuffer baseIndices() {
+            return indices.slice(0, lodCounts[0] * Integer.BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public static final class Cached {
+        public final List<String> mtllibs = new ArrayList<>();
+        public final List<Part> parts = new ArrayList<>();
+    }
+
+    /** 不存在、版本不符或与源（内容、路径）不匹配时返回 null（调用方回退到解析 OBJ） */
+    public static Cached read(Path file, byte[] digest, long size, String source, boolean flipV, long settings) {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            byte[] sha = new byte[32];
+            buf.get(sha);
+            if (!Arrays.equals(sha, digest) || buf.getLong() != size || !getString(buf).equals(source)) return null;
+            if ((buf.getInt() != 0) != flipV || buf.getLong() != settings) return null;
+
+            Cached c = new Cached();
+            int libs = buf.getInt();
+            for (int i = 0; i < libs; i++) c.mtllibs.add(getString(buf));
+            int parts = buf.getInt();
+            for (int i = 0; i < parts; i++) {
+                String mtl = getString(buf);
+                int attrs = buf.getInt();
+                int floats = buf.getInt(), indexCount = buf.getInt();
+                float[] mn = { buf.getFloat(), buf.getFloat(), buf.getFloat() };
+                float[] mx = { buf.getFloat(), buf.getFloat(), buf.getFloat() };
+                int lods = buf.getInt();
+                int[] counts = new int[lods];
+                float[] errors = new float[lods];
+                for (int l = 0; l < lods; l++) { counts[l] = buf.getInt(); errors[l] = buf.getFloat(); }
+                int vOff = (int) buf.getLong(), iOff = (int) buf.getLong();
+                ByteBuffer v = buf.slice(vOff, floats * Float.BYTES).order(ByteOrder.nativeOrder());
+                ByteBuffer ix = buf.slice(iOff, indexCount * Integer.BYTES).order(ByteOrder.nativeOrder());
+                boolean hasNormal = (attrs & ATTR_NORMAL) != 0, hasUV = (attrs & ATTR_UV) != 0;
+
+                int flags = buf.getInt(), indexBytes = buf.getInt();
+                float[] posOffset = { buf.getFloat(), buf.getFloat(), buf.getFloat() };
+                float[] posScale = { buf.getFloat(), buf.getFloat(), buf.getFloat() };
+                float[] packErrors = { buf.getFloat(), buf.getFloat(), buf.getFloat() };
+                int evOff = (int) buf.getLong(), eiOff = (int) buf.getLong();
+                VertexFormat fmt = new VertexFormat(hasNormal, hasUV, flags);
+                int vertexCount = floats / fmt.sourceStrideFloats();
+                ByteBuffer ev = buf.slice(evOff, vertexCount * fmt.strideBytes).order(ByteOrder.nativeOrder());
+                ByteBuffer ei = buf.slice(eiOff, indexCount * indexBytes).order(ByteOrder.nativeOrder());
+                VertexFormat.Encoded enc = VertexFormat.restore(hasNormal, hasUV, flags, ev, ei, indexBytes == Short.BYTES,
+                        posOffset, posScale, packErrors, (long) floats * Float.BYTES + (long) indexCount * Integer.BYTES);
+
+                Part p = new Part(mtl, hasNormal, hasUV, v, ix, counts, errors, enc);
+                System.arraycopy(mn, 0, p.aabbMin, 0, 3);
+                System.arraycopy(mx, 0, p.aabbMax, 0, 3);
+                c.parts.add(p);
+            }
+            return c;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARN: ignore broken mesh cache " + file + ": " + e);
+            return null;
+        }
+    }
+
+    // ======================== 写 ========================
+
+    /**
+     * 写到临时文件再原子替换，半截文件不会被读到；失败只告警，不影响本次加载。
+     * settings 为影响几何内容的加载选项（LOD、重排、顶点格式等）的摘要，读取时不一致即视为未命中。
+     * encoded 与 parts 一一对应，是本次上传用的打包结果，min/max 为各 Part 的 AABB。
+     * 写成功后删除同一源路径的旧条目。
+     */
+    public static void write(Path file, byte[] digest, long size, String source, boolean flipV, long settings,
+                             List<String> mtllibs, List<MeshData> parts, VertexFormat.Encoded[] encoded,
+                             float[][] min, float[][] max) {
+        try {
+            Files.createDirectories(file.getParent());
+
+            ByteBuffer head = ByteBuffer.allocate(headerSize(source, mtllibs, parts)).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC).putInt(VERSION).put(digest).putLong(size);
+            putString(head, source);
+            head.putInt(flipV ? 1 : 0).putLong(settings);
+            head.putInt(mtllibs.size());
+            for (String s : mtllibs) putString(head, s);
+            head.putInt(parts.size());
+
+            long off = align(head.capacity());
+            for (int i = 0; i < parts.size(); i++) {
+                MeshData p = parts.get(i);
+                VertexFormat.Encoded e = encoded[i];
+                float[] mn = min[i], mx = max[i];
+                putString(head, p.name);
+                head.putInt((p.hasNormal ? ATTR_NORMAL : 0) | (p.hasUV ? ATTR_UV : 0));
+                head.putInt(p.interleaved.length).putInt(p.indices.length);
+                head.putFloat(mn[0]).putFloat(mn[1]).putFloat(mn[2]);
+                head.putFloat(mx[0]).putFloat(mx[1]).putFloat(mx[2]);
+                head.putInt(p.lodCounts.length);
+                for (int k = 0; k < p.lodCounts.length; k++) head.putInt(p.lodCounts[k]).putFloat(p.lodErrors[k]);
+                long vOff = off;
+                long iOff = align(vOff + (long) p.interleaved.length * Float.BYTES);
+                off = align(iOff + (long) p.indices.length * Integer.BYTES);
+                head.putLong(vOff).putLong(iOff);
+
+                head.putInt(e.format.flags).putInt(e.indexBytes());
+                head.putFloat(e.posOffset[0]).putFloat(e.posOffset[1]).putFloat(e.posOffset[2]);
+                head.putFloat(e.posScale[0]).putFloat(e.posScale[1]).putFloat(e.posScale[2]);
+                head.putFloat(e.maxPositionError).putFloat(e.maxNormalDegrees).putFloat(e.maxUvError);
+                long evOff = vOff, eiOff = iOff;
+                if (e.format.flags != 0) { evOff = off; off = align(off + e.vertices.remaining()); }
+                if (e.indexBytes() != Integer.BYTES) { eiOff = off; off = align(off + e.indices.remaining()); }
+                head.putLong(evOff).putLong(eiOff);
+            }
+            if (off > Integer.MAX_VALUE) return; // 映射切片用 int 偏移，超大模型不缓存
+            head.flip();
+
+            Path tmp = Files.createTempFile(file.getParent(), "gmesh", ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.write(head);
+                long pos = align(head.limit());
+                for (int i = 0; i < parts.size(); i++) {
+                    MeshData p = parts.get(i);
+                    VertexFormat.Encoded e = encoded[i];
+                    ByteBuffer v = ByteBuffer.allocate(p.interleaved.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                    v.asFloatBuffer().put(p.interleaved);
+                    pos = writeAt(ch, v, pos);
+                    ByteBuffer ix = ByteBuffer.allocate(p.indices.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                    ix.asIntBuffer().put(p.indices);
+                    pos = writeAt(ch, ix, pos);
+                    // 打包数据是 native order，enabled() 已保证与文件的 little-endian 一致
+                    if (e.format.flags != 0) pos = writeAt(ch, e.vertices.duplicate(), pos);
+                    if (e.indexBytes() != Integer.BYTES) pos = writeAt(ch, e.indices.duplicate(), pos);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            removeStale(file, source, flipV);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARN: mesh cache not written -> " + file + ": " + e);
+        }
+    }
+
+    private static long writeAt(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+        return align(pos);
+    }
+
+    private static int headerSize(String source, List<String> mtllibs, List<MeshData> parts) {
+        int n = 4 + 4 + 32 + 8 + 4 + source.getBytes(StandardCharsets.UTF_8).length + 4 + 8 + 4 + 4;
+        for (String s : mtllibs) n += 4 + s.getBytes(StandardCharsets.UTF_8).length;
+        for (MeshData p : parts) {
+            n += 4 + p.name.getBytes(StandardCharsets.UTF_8).length + 4 * 3 + 4 * 6 + 4 + 8 * p.lodCounts.length + 8 * 2
+                    + 4 * 2 + 4 * 9 + 8 * 2;
+        }
+        return n;
+    }
+
+    private static long align(long x) { return (x + 15) & ~15L; }
+
+    private static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,33 @@
+import java.util.Arrays;
+
+/**
+ * 一个 Part 上传前的几何：交错顶点 + 索引（各级 LOD 首尾相接，第 0 级为原始网格）。
+ * 解析结果经 ObjMtlLoader 的优化 / 简化之后变成它，再写进 .gmesh 并交给 {@link Mesh}。
+ */
+public final class MeshData {
+    public final String name;
+    public final boolean hasNormal, hasUV;
+    public final float[] interleaved;
+    public final int[] indices;
+    public final int[] lodCounts;
+    public final float[] lodErrors;
+
+    public MeshData(String name, boolean hasNormal, boolean hasUV, float[] interleaved, int[] indices,
+                    int[] lodCounts, float[] lodErrors) {
+        this.name = name; this.hasNormal = hasNormal; this.hasUV = hasUV;
+        this.interleaved = interleaved; this.indices = indices;
+        this.lodCounts = lodCounts; this.lodErrors = lodErrors;
+    }
+
+    /** 只有一级 */
+    public MeshData(String name, boolean hasNormal, boolean hasUV, float[] interleaved, int[] indices) {
+        this(name, hasNormal, hasUV, interleaved, indices, new int[]{ indices.length }, new float[]{ 0f });
+    }
+
+    public int strideFloats() { return 3 + (hasNormal ? 3 : 0) + (hasUV ? 2 : 0); }
+    public int vertexCount() { return interleaved.length / strideFloats(); }
+    public boolean isEmpty() { return lodCounts[0] == 0; }
+
+    /** 第 0 级索引（多级时为拷贝） */
+    public int[] baseIndices() { return lodCounts.length == 1 ? indices : Arrays.copyOf(indices, lodCounts[0]); }
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+/**
+ * 索引/顶点重排，提高 GPU 顶点后变换缓存命中率、顶点读取局部性，并可减少 overdraw。
+ * 全部就地修改或返回新数组，不改变渲染结果（三角形集合与绕序不变）。
+ * <ul>
+ *   <li>{@link #optimizeVertexCache}：Tipsify（Sander, Nehab, Barczak 2007），线性时间，
+ *       围绕“扇心”顶点连续输出三角形，按 FIFO 缓存模型选下一个扇心；</li>
+ *   <li>{@link #optimizeOverdraw}：在缓存友好的顺序上切出簇（全未命中的三角形是硬边界，
+ *       ACMR 不超过阈值时再细分），按“簇越靠外、越朝外越先画”排序，前面的簇更可能挡住后面的；</li>
+ *   <li>{@link #optimizeVertexFetch}：按索引首次出现的顺序重排顶点，顶点读取近似顺序访问。</li>
+ * </ul>
+ * 缓存模型统一为 {@link #CACHE_SIZE} 项 FIFO，{@link #acmr} 用同一模型统计平均每三角形未命中数。
+ */
+public final class MeshOptimizer {
+    private MeshOptimizer() {}
+
+    public static final int CACHE_SIZE = 16;
+
+    /** ACMR：每个三角形平均的顶点缓存未命中数，范围 0.5（理想）~ 3 */
+    public static float acmr(int[] indices, int offset, int count, int vertexCount) {
+        if (count == 0) return 0f;
+        return (float) cacheMisses(indices, offset, count, vertexCount, new int[vertexCount]) / (count / 3);
+    }
+
+    public static float acmr(int[] indices, int vertexCount) {
+        return acmr(indices, 0, indices.length, vertexCount);
+    }
+
+    /** FIFO 缓存模拟：stamp[v] 为 v 进入缓存时的时间，time - stamp &lt; 容量即命中 */
+    static int cacheMisses(int[] indices, int offset, int count, int vertexCount, int[] stamp) {
+        Arrays.fill(stamp, 0, vertexCount, -CACHE_SIZE - 1);
+        int time = 0, misses = 0;
+        for (int k = offset, e = offset + count; k < e; k++) {
+            int v = indices[k];
+            if (time - stamp[v] > CACHE_SIZE - 1) { stamp[v] = time++; misses++; }
+        }
+        return misses;
+    }
+
+    /** Tipsify：重排 indices[offset, offset+count) 里的三角形 */
+    public static void optimizeVertexCache(int[] indices, int offset, int count, int vertexCount) {
+        int tris = count / 3;
+        if (tris < 2) return;
+        // 顶点 → 三角形邻接（CSR），live = 尚未输出的相邻三角形数
+        int[] start = new int[vertexCount + 1];
+        for (int k = offset; k < offset + count; k++) start[indices[k] + 1]++;
+        for (int v = 0; v < vertexCount; v++) start[v + 1] += start[v];
+        int[] live = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) live[v] = start[v + 1] - start[v];
+        int[] adj = new int[count], fill = Arrays.copyOf(start, vertexCount);
+        for (int k = 0; k < count; k++) adj[fill[indices[offset + k]]++] = k / 3;
+
+        int[] stamp = new int[vertexCount];
+        Arrays.fill(stamp, Integer.MIN_VALUE / 2);
+        boolean[] emitted = new boolean[tris];
+        int[] deadEnd = new int[count];
+        int deadTop = 0;
+        int[] out = new int[count];
+        int outCount = 0;
+        int[] cand = new int[count];
+        int time = CACHE_SIZE + 1, cursor = 0;
+
+        int fan = indices[offset];
+        while (fan >= 0) {
+            int candCount = 0;
+            for (int k = start[fan]; k < start[fan + 1]; k++) {
+                int t = adj[k];
+                if (emitted[t]) continue;
+                emitted[t] = true;
+                for (int c = 0; c < 3; c++) {
+                    int v = indices[offset + 3 * t + c];
+                    out[outCount++] = v;
+                    deadEnd[deadTop++] = v;
+                    cand[candCount++] = v;
+                    live[v]--;
+                    if (time - stamp[v] > CACHE_SIZE) stamp[v] = time++;
+                }
+            }
+            // 下一个扇心：还有未输出三角形、且输出完它们后仍在缓存里的候选中最“老”的那个
+            int best = -1, bestPri = -1;
+            for (int c = 0; c < candCount; c++) {
+                int v = cand[c];
+                if (live[v] <= 0) continue;
+                int pri = 0;
+                if (time - stamp[v] + 2 * live[v] <= CACHE_SIZE) pri = time - stamp[v];
+                if (pri > bestPri) { bestPri = pri; best = v; }
+            }
+            if (best < 0) {
+                // 死胡同：先从最近用过的顶点里找，再按输入顺序往后找
+                while (deadTop > 0 && best < 0) { int v = deadEnd[--deadTop]; if (live[v] > 0) best = v; }
+                while (best < 0 && cursor < vertexCount) { if (live[cursor] > 0) best = cursor; cursor++; }
+            }
+            fan = best;
+        }
+        System.arraycopy(out, 0, indices, offset, count);
+    }
+
+    public static void optimizeVertexCache(int[] indices, int vertexCount) {
+        optimizeVertexCache(indices, 0, indices.length, vertexCount);
+    }
+
+    /**
+     * 减少 overdraw：indices 应先经 {@link #optimizeVertexCache}。threshold 为允许的 ACMR 上升比例
+     * （例如 1.05），越大切出的簇越多、排序越充分，缓存命中率损失也越大。
+     */
+    public static void optimizeOverdraw(int[] indices, int offset, int count, float[] interleaved, int strideFloats,
+                                        float threshold) {
+        int tris = count / 3, vertexCount = interleaved.length / strideFloats;
+        if (tris < 2) return;
+        int[] stamp = new int[vertexCount];
+
+        // 1) 硬边界：三个顶点全未命中的三角形（Tipsify 跳到了新的扇心区域）
+        int[] clusters = new int[tris + 1];
+        int clusterCount = 0;
+        Arrays.fill(stamp, -CACHE_SIZE - 1);
+        int time = 0;
+        for (int t = 0; t < tris; t++) {
+            int misses = 0;
+            for (int c = 0; c < 3; c++) {
+                int v = indices[offset + 3 * t + c];
+                if (time - stamp[v] > CACHE_SIZE - 1) { stamp[v] = time++; misses++; }
+            }
+            if (t == 0 || misses == 3) clusters[clusterCount++] = t;
+        }
+        clusters[clusterCount] = tris;
+
+        // 2) 软边界：簇内累计 ACMR 不超过 簇 ACMR × threshold 时就地切开
+        int[] soft = new int[tris + 1];
+        int softCount = 0;
+        for (int c = 0; c < clusterCount; c++) {
+            int a = clusters[c], b = clusters[c + 1];
+            float limit = (float) cacheMisses(indices, offset + 3 * a, 3 * (b - a), vertexCount, stamp) / (b - a) * threshold;
+            Arrays.fill(stamp, -CACHE_SIZE - 1);
+            time = 0;
+            int misses = 0, from = a;
+            soft[softCount++] = a;
+            for (int t = a; t < b; t++) {
+                for (int k = 0; k < 3; k++) {
+                    int v = indices[offset + 3 * t + k];
+                    if (time - stamp[v] > CACHE_SIZE - 1) { stamp[v] = time++; misses++; }
+                }
+                if (t + 1 < b && t - from >= 8 && (float) misses / (t - from + 1) <= limit) {
+                    soft[softCount++] = t + 1;
+                    from = t + 1; misses = 0;
+                    Arrays.fill(stamp, -CACHE_SIZE - 1);
+                    time = 0;
+                }
+            }
+        }
+        soft[softCount] = tris;
+
+        // 3) 按 dot(簇中心 - 网格中心, 簇平均法线) 从大到小排序（面积加权）
+        double mx = 0, my = 0, mz = 0, area = 0;
+        double[] cx = new double[softCount], cy = new double[softCount], cz = new double[softCount];
+        double[] nx = new double[softCount], ny = new double[softCount], nz = new double[softCount], ca = new double[softCount];
+        for (int c = 0; c < softCount; c++) {
+            for (int t = soft[c]; t < soft[c + 1]; t++) {
+                int o = offset + 3 * t;
+                int p0 = indices[o] * strideFloats, p1 = indices[o + 1] * strideFloats, p2 = indices[o + 2] * strideFloats;
+                float e1x = interleaved[p1] - interleaved[p0], e1y = interleaved[p1 + 1] - interleaved[p0 + 1], e1z = interleaved[p1 + 2] - interleaved[p0 + 2];
+                float e2x = interleaved[p2] - interleaved[p0], e2y = interleaved[p2 + 1] - interleaved[p0 + 1], e2z = interleaved[p2 + 2] - interleaved[p0 + 2];
+                double fx = e1y * e2z - e1z * e2y, fy = e1z * e2x - e1x * e2z, fz = e1x * e2y - e1y * e2x;
+                double w = Math.sqrt(fx * fx + fy * fy + fz * fz);
+                double gx = (interleaved[p0] + interleaved[p1] + interleaved[p2]) / 3.0;
+                double gy = (interleaved[p0 + 1] + interleaved[p1 + 1] + interleaved[p2 + 1]) / 3.0;
+                double gz = (interleaved[p0 + 2] + interleaved[p1 + 2] + interleaved[p2 + 2]) / 3.0;
+                cx[c] += gx * w; cy[c] += gy * w; cz[c] += gz * w; ca[c] += w;
+                nx[c] += fx; ny[c] += fy; nz[c] += fz; // 叉积长度本身就是面积权重
+            }
+            mx += cx[c]; my += cy[c]; mz += cz[c]; area += ca[c];
+        }
+        if (area > 0) { mx /= area; my /= area; mz /= area; }
+        long[] keys = new long[softCount];
+        for (int c = 0; c < softCount; c++) {
+            double d = 0;
+            double len = Math.sqrt(nx[c] * nx[c] + ny[c] * ny[c] + nz[c] * nz[c]);
+            if (ca[c] > 0 && len > 0) {
+                d = ((cx[c] / ca[c] - mx) * nx[c] + (cy[c] / ca[c] - my) * ny[c] + (cz[c] / ca[c] - mz) * nz[c]) / len;
+            }
+            // 降序：取反后按 float 位模式排序（负数需翻转低位才能保持顺序）
+            int bits = Float.floatToIntBits((float) -d);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            keys[c] = (long) bits << 32 | c;
+        }
+        Arrays.sort(keys);
+        int[] out = new int[count];
+        int o = 0;
+        for (long key : keys) {
+            int c = (int) key;
+            int from = offset + 3 * soft[c], n = 3 * (soft[c + 1] - soft[c]);
+            System.arraycopy(indices, from, out, o, n);
+            o += n;
+        }
+        System.arraycopy(out, 0, indices, offset, count);
+    }
+
+    /**
+     * 按 indices 里首次出现的顺序重排顶点，同时改写 indices；没被引用的顶点丢弃。
+     * 返回新的交错数组（长度可能变短）。
+     */
+    public static float[] optimizeVertexFetch(float[] interleaved, int strideFloats, int[] indices) {
+        int vertexCount = interleaved.length / strideFloats;
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int k = 0; k < indices.length; k++) {
+            int v = indices[k];
+            if (remap[v] < 0) remap[v] = next++;
+            indices[k] = remap[v];
+        }
+        float[] out = new float[next * strideFloats];
+        for (int v = 0; v < vertexCount; v++) {
+            if (remap[v] >= 0) System.arraycopy(interleaved, v * strideFloats, out, remap[v] * strideFloats, strideFloats);
+        }
+        return out;
+    }
+}
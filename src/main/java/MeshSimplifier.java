@@ -0,0 +1,332 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 二次误差度量（QEM，Garland–Heckbert）网格简化。只产出新的索引、不改顶点，
+ * 因此各级 LOD 可以首尾相接放进同一个 EBO，与第 0 级共用 VBO 和 baseVertex。
+ * <p>
+ * 边折叠只把一个端点并到另一个端点（不生成新顶点），按代价从小到大分趟进行：每趟重建邻接、
+ * 给所有边算代价并排序，同一趟里一个顶点只参与一次折叠，使折叠均匀分布在整个网格上。
+ * 约束：
+ * <ul>
+ *   <li>位置相同、法线或 UV 不同的顶点（UV 接缝、硬边）是同一位置的多个“楔”。折叠时起点的每个楔
+ *       都必须在终点找到唯一的对应楔（即沿着接缝折叠），否则拒绝，接缝两侧的 UV 不会被拉扯；</li>
+ *   <li>开放边界（只属于一个三角形的边）与非流形边上的顶点锁定。ObjMtlLoader 按材质切成多个 Part
+ *       分别简化，材质边界就是各 Part 的开放边界，锁定后相邻材质之间不会裂开；</li>
+ *   <li>会让周围三角形翻面的折叠拒绝。</li>
+ * </ul>
+ * 同一个实例可以连续调用 {@link #simplifyTo} 逐级变粗，误差始终相对原始网格。
+ */
+public final class MeshSimplifier {
+    private static final int Q = 11; // 每个二次型：A 的 6 项、b 的 3 项、c、权重（面积）
+
+    private final float[] vtx;
+    private final int stride;
+    private final int[] remap;     // 顶点 → 同位置的代表顶点
+    private final int[] wedge;     // 同位置顶点串成的环
+    private final double[] quad;   // 按代表顶点存
+    private final boolean[] locked;
+    private int[] ix;
+    private int slots;             // ix 里的三角形个数（含本趟刚退化、尚未压缩掉的）
+    private int triCount;          // 其中未退化的个数
+    private double maxCost;
+
+    // 每趟重建：代表顶点 → 三角形（CSR）
+    private int[] adjStart, adjTri;
+    private boolean[] touched;
+    private long[] candKey = new long[0];
+    private int[] candFrom = new int[0], candTo = new int[0];
+    private int[] pairFrom = new int[8], pairTo = new int[8];
+
+    /** 一个 Part 的 LOD 链：各级索引首尾相接（第 0 级为原始索引），counts / errors 逐级对应 */
+    public static final class Lods {
+        public final int[] indices;
+        public final int[] counts;
+        /** 物体空间的几何误差（距离），第 0 级为 0 */
+        public final float[] errors;
+
+        Lods(int[] indices, int[] counts, float[] errors) {
+            this.indices = indices; this.counts = counts; this.errors = errors;
+        }
+
+        public int levels() { return counts.length; }
+    }
+
+    /**
+     * @param interleaved 交错顶点，位置在每个顶点的前 3 个 float
+     * @param strideFloats 每个顶点的 float 数
+     * @param indices 三角形索引（不会被修改）
+     */
+    public MeshSimplifier(float[] interleaved, int strideFloats, int[] indices) {
+        this.vtx = interleaved; this.stride = strideFloats;
+        int n = interleaved.length / strideFloats;
+        remap = new int[n];
+        wedge = new int[n];
+        weld(n);
+        ix = indices.clone();
+        slots = ix.length / 3;
+        compact(); // 原本就退化的三角形不参与
+        quad = new double[Q * n];
+        for (int t = 0; t < triCount; t++) addTriangleQuadric(t);
+        locked = new boolean[n];
+        touched = new boolean[n];
+        buildAdjacency();
+        lockBorders();
+    }
+
+    /**
+     * 按 ratio 逐级生成 LOD，最多 levels 级（不含第 0 级）；某一级减不到上一级的 90% 时提前停止
+     * （比如大部分顶点都在锁定的边界上）。
+     */
+    public static Lods buildLods(float[] interleaved, int strideFloats, int[] indices, int levels, float ratio) {
+        List<int[]> out = new ArrayList<>();
+        List<Float> err = new ArrayList<>();
+        out.add(indices); err.add(0f);
+        if (levels > 0 && indices.length >= 3 * 64) { // 太小的 Part 不值得
+            MeshSimplifier s = new MeshSimplifier(interleaved, strideFloats, indices);
+            int target = indices.length;
+            for (int l = 1; l <= levels; l++) {
+                target = (int) (target / 3 * ratio) * 3;
+                int[] lod = s.simplifyTo(target, Float.MAX_VALUE);
+                if (lod.length == 0 || lod.length > out.get(out.size() - 1).length * 0.9) break;
+                out.add(lod); err.add(s.error());
+            }
+        }
+        int total = 0;
+        for (int[] a : out) total += a.length;
+        int[] all = new int[total], counts = new int[out.size()];
+        float[] errors = new float[out.size()];
+        for (int l = 0, off = 0; l < out.size(); l++) {
+            int[] a = out.get(l);
+            System.arraycopy(a, 0, all, off, a.length);
+            off += a.length;
+            counts[l] = a.length; errors[l] = err.get(l);
+        }
+        return new Lods(all, counts, errors);
+    }
+
+    /** 简化到不超过 targetIndexCount 个索引，或者下一步折叠的误差超过 maxError 为止；返回当前索引 */
+    public int[] simplifyTo(int targetIndexCount, float maxError) {
+        int targetTris = Math.max(0, targetIndexCount / 3);
+        double limit = (double) maxError * maxError;
+        while (triCount > targetTris) {
+            buildAdjacency();
+            int cands = collectCandidates();
+            if (cands == 0) break;
+            Arrays.sort(candKey, 0, cands);
+            Arrays.fill(touched, false);
+            int done = 0;
+            for (int k = 0; k < cands && triCount > targetTris; k++) {
+                long key = candKey[k];
+                float cost = Float.intBitsToFloat((int) (key >>> 32));
+                if (cost > limit) break;
+                int c = (int) key, u = candFrom[c], w = candTo[c];
+                if (touched[u] || touched[w]) continue;
+                int removed = collapse(u, w);
+                if (removed < 0) continue;
+                touched[u] = touched[w] = true;
+                maxCost = Math.max(maxCost, cost);
+                triCount -= removed;
+                done++;
+            }
+            compact();
+            if (done == 0) break;
+        }
+        return Arrays.copyOf(ix, triCount * 3);
+    }
+
+    /** 至今为止最大的单次折叠误差（物体空间距离） */
+    public float error() { return (float) Math.sqrt(maxCost); }
+
+    public int triangleCount() { return triCount; }
+
+    // ------------------------------------------------------------------
+
+    /** 按位置焊接：开放寻址哈希，同位置的顶点指向第一个出现的顶点，并串成环 */
+    private void weld(int n) {
+        int cap = Integer.highestOneBit(Math.max(4, n) * 2) << 1, mask = cap - 1;
+        int[] table = new int[cap];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < n; i++) {
+            wedge[i] = i;
+            int o = i * stride;
+            // + 0f 把 -0 变成 +0，两者按 == 相等，哈希也必须相同
+            int xb = Float.floatToIntBits(vtx[o] + 0f), yb = Float.floatToIntBits(vtx[o + 1] + 0f), zb = Float.floatToIntBits(vtx[o + 2] + 0f);
+            int h = (xb * 73856093 ^ yb * 19349663 ^ zb * 83492791) & mask;
+            while (true) {
+                int j = table[h];
+                if (j < 0) { table[h] = i; remap[i] = i; break; }
+                int p = j * stride;
+                if (vtx[p] == vtx[o] && vtx[p + 1] == vtx[o + 1] && vtx[p + 2] == vtx[o + 2]) {
+                    remap[i] = j;
+                    wedge[i] = wedge[j]; wedge[j] = i;
+                    break;
+                }
+                h = (h + 1) & mask;
+            }
+        }
+    }
+
+    private void addTriangleQuadric(int t) {
+        int a = remap[ix[3 * t]] * stride, b = remap[ix[3 * t + 1]] * stride, c = remap[ix[3 * t + 2]] * stride;
+        double e1x = vtx[b] - vtx[a], e1y = vtx[b + 1] - vtx[a + 1], e1z = vtx[b + 2] - vtx[a + 2];
+        double e2x = vtx[c] - vtx[a], e2y = vtx[c + 1] - vtx[a + 1], e2z = vtx[c + 2] - vtx[a + 2];
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (len == 0) return;
+        nx /= len; ny /= len; nz /= len;
+        double d = -(nx * vtx[a] + ny * vtx[a + 1] + nz * vtx[a + 2]);
+        double w = len * 0.5; // 面积加权
+        for (int k = 0; k < 3; k++) {
+            int o = Q * remap[ix[3 * t + k]];
+            quad[o] += w * nx * nx; quad[o + 1] += w * nx * ny; quad[o + 2] += w * nx * nz;
+            quad[o + 3] += w * ny * ny; quad[o + 4] += w * ny * nz; quad[o + 5] += w * nz * nz;
+            quad[o + 6] += w * nx * d; quad[o + 7] += w * ny * d; quad[o + 8] += w * nz * d;
+            quad[o + 9] += w * d * d; quad[o + 10] += w;
+        }
+    }
+
+    /** 把 u 并到 w 的代价：(Qu + Qw)(p_w) / 面积和，即到原平面的面积加权均方距离 */
+    private double cost(int u, int w) {
+        int a = Q * u, b = Q * w, p = w * stride;
+        double x = vtx[p], y = vtx[p + 1], z = vtx[p + 2];
+        double a00 = quad[a] + quad[b], a01 = quad[a + 1] + quad[b + 1], a02 = quad[a + 2] + quad[b + 2];
+        double a11 = quad[a + 3] + quad[b + 3], a12 = quad[a + 4] + quad[b + 4], a22 = quad[a + 5] + quad[b + 5];
+        double b0 = quad[a + 6] + quad[b + 6], b1 = quad[a + 7] + quad[b + 7], b2 = quad[a + 8] + quad[b + 8];
+        double c = quad[a + 9] + quad[b + 9], wt = quad[a + 10] + quad[b + 10];
+        double e = x * (a00 * x + a01 * y + a02 * z) + y * (a01 * x + a11 * y + a12 * z) + z * (a02 * x + a12 * y + a22 * z)
+                + 2 * (b0 * x + b1 * y + b2 * z) + c;
+        return wt > 0 ? Math.max(0, e / wt) : 0;
+    }
+
+    private boolean degenerate(int t) {
+        int a = remap[ix[3 * t]], b = remap[ix[3 * t + 1]], c = remap[ix[3 * t + 2]];
+        return a == b || b == c || a == c;
+    }
+
+    private void compact() {
+        int n = 0;
+        for (int t = 0; t < slots; t++) {
+            if (degenerate(t)) continue;
+            if (n != t) System.arraycopy(ix, 3 * t, ix, 3 * n, 3);
+            n++;
+        }
+        slots = triCount = n;
+    }
+
+    private void buildAdjacency() {
+        int n = remap.length;
+        if (adjStart == null) adjStart = new int[n + 1];
+        else Arrays.fill(adjStart, 0);
+        if (adjTri == null || adjTri.length < 3 * triCount) adjTri = new int[3 * triCount];
+        for (int k = 0; k < 3 * triCount; k++) adjStart[remap[ix[k]] + 1]++;
+        for (int i = 0; i < n; i++) adjStart[i + 1] += adjStart[i];
+        int[] fill = Arrays.copyOf(adjStart, n);
+        for (int k = 0; k < 3 * triCount; k++) adjTri[fill[remap[ix[k]]]++] = k / 3;
+    }
+
+    /** 开放边（只有一个三角形）与非流形边（三个以上）的端点锁定 */
+    private void lockBorders() {
+        for (int t = 0; t < triCount; t++) {
+            for (int e = 0; e < 3; e++) {
+                int a = remap[ix[3 * t + e]], b = remap[ix[3 * t + (e + 1) % 3]];
+                int shared = 0;
+                for (int k = adjStart[a]; k < adjStart[a + 1]; k++) if (hasCorner(adjTri[k], b)) shared++;
+                if (shared != 2) locked[a] = locked[b] = true;
+            }
+        }
+    }
+
+    private boolean hasCorner(int t, int canonical) {
+        return remap[ix[3 * t]] == canonical || remap[ix[3 * t + 1]] == canonical || remap[ix[3 * t + 2]] == canonical;
+    }
+
+    /** 每条内部边只在 a &lt; b 的那个方向出现一次；两个方向里取允许且代价小的 */
+    private int collectCandidates() {
+        int max = 3 * triCount;
+        if (candKey.length < max) { candKey = new long[max]; candFrom = new int[max]; candTo = new int[max]; }
+        int n = 0;
+        for (int t = 0; t < triCount; t++) {
+            for (int e = 0; e < 3; e++) {
+                int a = remap[ix[3 * t + e]], b = remap[ix[3 * t + (e + 1) % 3]];
+                if (a >= b) continue;
+                double ab = locked[a] ? Double.POSITIVE_INFINITY : cost(a, b);
+                double ba = locked[b] ? Double.POSITIVE_INFINITY : cost(b, a);
+                if (ab == Double.POSITIVE_INFINITY && ba == Double.POSITIVE_INFINITY) continue;
+                boolean fwd = ab <= ba;
+                candFrom[n] = fwd ? a : b; candTo[n] = fwd ? b : a;
+                // 非负 float 的位模式与数值同序，可直接拼进排序键
+                candKey[n] = (long) Float.floatToIntBits((float) (fwd ? ab : ba)) << 32 | n;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** 把代表顶点 u 并到 w；不满足接缝 / 翻面约束时返回 -1，否则返回变成退化的三角形个数 */
+    private int collapse(int u, int w) {
+        int s = adjStart[u], e = adjStart[u + 1];
+        // 1) 楔对应：u 的每个用到的楔在与 w 共享的三角形里必须恰好对应 w 的一个楔
+        int pairs = 0;
+        int x = u;
+        do {
+            int partner = -1;
+            boolean used = false;
+            for (int k = s; k < e; k++) {
+                int t = adjTri[k];
+                if (degenerate(t)) continue;
+                int o = 3 * t;
+                if (ix[o] != x && ix[o + 1] != x && ix[o + 2] != x) continue;
+                used = true;
+                for (int c = o; c < o + 3; c++) {
+                    if (remap[ix[c]] != w) continue;
+                    if (partner < 0) partner = ix[c];
+                    else if (partner != ix[c]) return -1;
+                }
+            }
+            if (used) {
+                if (partner < 0) return -1; // 这个楔不挨着 w：u 在接缝上但边不沿接缝
+                if (pairs == pairFrom.length) { pairFrom = Arrays.copyOf(pairFrom, pairs * 2); pairTo = Arrays.copyOf(pairTo, pairs * 2); }
+                pairFrom[pairs] = x; pairTo[pairs] = partner; pairs++;
+            }
+            x = wedge[x];
+        } while (x != u);
+
+        // 2) 翻面检查：不含 w 的三角形把 u 换成 w 后法线不能反向
+        int pw = w * stride;
+        for (int k = s; k < e; k++) {
+            int t = adjTri[k];
+            if (degenerate(t) || hasCorner(t, w)) continue;
+            int o = 3 * t;
+            int a = remap[ix[o]] * stride, b = remap[ix[o + 1]] * stride, c = remap[ix[o + 2]] * stride;
+            float n0x, n0y, n0z;
+            {
+                float e1x = vtx[b] - vtx[a], e1y = vtx[b + 1] - vtx[a + 1], e1z = vtx[b + 2] - vtx[a + 2];
+                float e2x = vtx[c] - vtx[a], e2y = vtx[c + 1] - vtx[a + 1], e2z = vtx[c + 2] - vtx[a + 2];
+                n0x = e1y * e2z - e1z * e2y; n0y = e1z * e2x - e1x * e2z; n0z = e1x * e2y - e1y * e2x;
+            }
+            int us = u * stride;
+            if (a == us) a = pw; else if (b == us) b = pw; else c = pw;
+            float e1x = vtx[b] - vtx[a], e1y = vtx[b + 1] - vtx[a + 1], e1z = vtx[b + 2] - vtx[a + 2];
+            float e2x = vtx[c] - vtx[a], e2y = vtx[c + 1] - vtx[a + 1], e2z = vtx[c + 2] - vtx[a + 2];
+            float n1x = e1y * e2z - e1z * e2y, n1y = e1z * e2x - e1x * e2z, n1z = e1x * e2y - e1y * e2x;
+            if (n0x * n1x + n0y * n1y + n0z * n1z <= 0f) return -1;
+        }
+
+        // 3) 执行：u 的各楔换成对应的 w 楔，含 w 的三角形随之退化
+        int removed = 0;
+        for (int k = s; k < e; k++) {
+            int t = adjTri[k];
+            if (degenerate(t)) continue;
+            if (hasCorner(t, w)) removed++;
+            for (int c = 3 * t; c < 3 * t + 3; c++) {
+                if (remap[ix[c]] != u) continue;
+                for (int p = 0; p < pairs; p++) if (pairFrom[p] == ix[c]) { ix[c] = pairTo[p]; break; }
+            }
+        }
+        int a = Q * u, b = Q * w;
+        for (int q = 0; q < Q; q++) quad[b + q] += quad[a + q];
+        return removed;
+    }
+}
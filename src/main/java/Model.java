@@ -5,14 +5,88 @@ public class Model implements AutoCloseable {
     public static class Part {
         public final Mesh mesh;
         public final Material material;
+        /** 可选：CPU 端三角形 BVH，有它时拾取精确到三角形，否则只按 AABB */
+        public TriangleBvh pick;
         public Part(Mesh m, Material mat){ this.mesh=m; this.material=mat; }
     }
     public final List<Part> parts = new ArrayList<>();
+    /** parts 的 AABB（SoA），供批量视锥裁剪；add 后重建 */
+    private Frustum.Boxes bounds;
+    /** Part 级 BVH（按各 Part 的 AABB），拾取时懒构建 */
+    private Bvh partBvh;
+    /** 可选：骨骼层级（绑定姿势）与挂在各 Part VAO 上的蒙皮权重，见 {@link Skin} */
+    public Skeleton skeleton;
+    public Skin skin;
+    /** 可选：稀疏的变形目标（表情），顶点下标为 GPU 顺序，见 {@link Morpher} */
+    public Morphs morphs;
 
-    public void add(Mesh m, Material mat){ parts.add(new Part(m, mat)); }
+    public void add(Mesh m, Material mat){ parts.add(new Part(m, mat)); bounds = null; partBvh = null; }
+
+    public void add(Mesh m, Material mat, TriangleBvh pick){ add(m, mat); parts.get(parts.size() - 1).pick = pick; }
+
+    /** 下标与 parts 一一对应 */
+    public Frustum.Boxes bounds() {
+        if (bounds == null || bounds.count != parts.size()) {
+            Frustum.Boxes b = new Frustum.Boxes(parts.size());
+            float[] mn = new float[3], mx = new float[3];
+            for (Part p : parts) { p.mesh.getBounds(mn, mx); b.add(mn, mx); }
+            bounds = b;
+        }
+        return bounds;
+    }
+
+    /** 各 Part 中最多的 LOD 级数 */
+    public int lodLevels() {
+        int n = 1;
+        for (Part p : parts) n = Math.max(n, p.mesh.lodCount());
+        return n;
+    }
+
+    /** 整个模型共用一级时（例如实例化）：取各 Part 所选级别中最细的，保证每个 Part 的误差都不超标 */
+    public int selectLod(float pixelsPerUnit, float pixelError) {
+        int lod = Integer.MAX_VALUE;
+        for (Part p : parts) if (p.mesh.lodCount() > 1) lod = Math.min(lod, p.mesh.selectLod(pixelsPerUnit, pixelError));
+        return lod == Integer.MAX_VALUE ? 0 : lod;
+    }
+
+    /** 所有 Part 的 AABB 的外接球：out = (cx, cy, cz, r) */
+    public void boundingSphere(float[] out) {
+        Frustum.Boxes b = bounds();
+        float x0 = Float.POSITIVE_INFINITY, y0 = x0, z0 = x0, x1 = Float.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int i = 0; i < b.count; i++) {
+            x0 = Math.min(x0, b.cx[i] - b.ex[i]); x1 = Math.max(x1, b.cx[i] + b.ex[i]);
+            y0 = Math.min(y0, b.cy[i] - b.ey[i]); y1 = Math.max(y1, b.cy[i] + b.ey[i]);
+            z0 = Math.min(z0, b.cz[i] - b.ez[i]); z1 = Math.max(z1, b.cz[i] + b.ez[i]);
+        }
+        if (b.count == 0) { out[0] = out[1] = out[2] = out[3] = 0f; return; }
+        out[0] = (x0 + x1) * 0.5f; out[1] = (y0 + y1) * 0.5f; out[2] = (z0 + z1) * 0.5f;
+        out[3] = 0.5f * (float) Math.sqrt((x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0) + (z1 - z0) * (z1 - z0));
+    }
+
+    /**
+     * 物体空间射线拾取：先用 Part 级 BVH 找候选，再进入各 Part 的三角形 BVH。
+     * 命中时 hit.prim 为 Part 下标、hit.triangle 为该 Part 内的三角形（没有三角形 BVH 时为 -1）。
+     */
+    public boolean raycast(float ox, float oy, float oz, float dx, float dy, float dz, Bvh.Hit hit) {
+        if (partBvh == null || partBvh.primitiveCount() != parts.size()) partBvh = Bvh.ofBoxes(bounds());
+        Bvh.Hit inner = new Bvh.Hit();
+        Bvh pb = partBvh;
+        return pb.raycast(ox, oy, oz, dx, dy, dz, Float.POSITIVE_INFINITY, (p, x, y, z, ddx, ddy, ddz, tBest, h) -> {
+            TriangleBvh tri = parts.get(p).pick;
+            if (tri == null) {
+                float t = pb.intersectPrimitiveBox(p, x, y, z, ddx, ddy, ddz, tBest);
+                if (t < tBest) h.triangle = -1;
+                return t;
+            }
+            if (!tri.raycast(x, y, z, ddx, ddy, ddz, tBest, inner)) return Float.POSITIVE_INFINITY;
+            h.triangle = inner.triangle; h.u = inner.u; h.v = inner.v;
+            return inner.t;
+        }, hit);
+    }
 
     @Override public void close() {
         for (Part p: parts){ p.mesh.dispose(); if (p.material != null) p.material.close(); }
         parts.clear();
+        if (skin != null) { skin.close(); skin = null; }
     }
 }
@@ -0,0 +1,150 @@
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 所有角色共用的变形位移缓冲：一个 GL_TEXTURE_BUFFER（RGBA32F），每个 GPU 顶点一个纹素（xyz 为位移）。
+ * 每个角色 {@link #allocate} 一段（模型的 GPU 顶点数），基址作为 uMorphBase 随
+ * {@link RenderQueue#submit(ShaderProgram, Model, float[], int, int)} 设置。
+ * <p>
+ * CPU 端保留镜像，{@link Morpher#apply} 只改动到的顶点标脏；脏的记录粒度是 {@link #BLOCK} 个顶点一块，
+ * {@link #upload()} 把相邻的脏块合成一段段 glBufferSubData，表情变化时只传脸上那几块，网格顶点缓冲完全不动。
+ * GL 对象在第一次 upload 时才创建，之前（例如基准测试里）只用 CPU 镜像。只能在 GL 线程 upload / bind。
+ */
+public class MorphBuffer implements AutoCloseable {
+    public static final int BLOCK = 64;
+    private static final int FLOATS = 4;
+
+    private int buffer, texture;
+    private float[] data;
+    private int vertices;               // 已分配的顶点数
+    private int gpuCapacity;
+    private long[] dirty = new long[1]; // 每位一块
+    private boolean anyDirty;
+    private long uploadedBytes;
+    private int uploadRanges;
+    private FloatBuffer staging;
+
+    public MorphBuffer(int capacityVertices) {
+        data = new float[Math.max(1, capacityVertices) * FLOATS];
+    }
+
+    /** 为一个有 vertexCount 个 GPU 顶点的角色分配一段（初始位移为 0），返回基址 */
+    public int allocate(int vertexCount) {
+        int base = vertices;
+        int need = (base + vertexCount) * FLOATS;
+        if (need > data.length) data = Arrays.copyOf(data, Math.max(need, data.length * 2));
+        vertices += vertexCount;
+        int blocks = (vertices + BLOCK - 1) / BLOCK;
+        if (blocks > dirty.length * 64) dirty = Arrays.copyOf(dirty, Math.max((blocks + 63) / 64, dirty.length * 2));
+        return base;
+    }
+
+    /** 位移清零（v 为缓冲里的绝对下标，即基址 + GPU 顶点） */
+    void zero(int v) {
+        int o = v * FLOATS;
+        data[o] = 0f; data[o + 1] = 0f; data[o + 2] = 0f;
+        mark(v);
+    }
+
+    /** 累加 w · (dx, dy, dz) */
+    void add(int v, float w, float dx, float dy, float dz) {
+        int o = v * FLOATS;
+        data[o] += w * dx; data[o + 1] += w * dy; data[o + 2] += w * dz;
+        mark(v);
+    }
+
+    private void mark(int v) {
+        int b = v / BLOCK;
+        dirty[b >>> 6] |= 1L << b;
+        anyDirty = true;
+    }
+
+    public int vertexCount() { return vertices; }
+    public long uploadedBytesLastTime() { return uploadedBytes; }
+    /** 最近一次 upload 的 glBufferSubData 次数 */
+    public int uploadRangesLastTime() { return uploadRanges; }
+
+    /** 下一次 upload 要传的字节数（不含扩容时的整体上传） */
+    public long pendingBytes() {
+        long blocks = 0;
+        for (long w : dirty) blocks += Long.bitCount(w);
+        return blocks * BLOCK * FLOATS * Float.BYTES;
+    }
+
+    /** 丢掉脏标记而不上传（没有 GL 的测试与基准用） */
+    public void discardDirty() {
+        Arrays.fill(dirty, 0L);
+        anyDirty = false;
+    }
+
+    /** 第 v 个顶点当前的位移（CPU 镜像） */
+    public void get(int v, float[] out3) {
+        System.arraycopy(data, v * FLOATS, out3, 0, 3);
+    }
+
+    /** 把脏块上传到 GPU：相邻的脏块合成一段 */
+    public void upload() {
+        uploadedBytes = 0;
+        uploadRanges = 0;
+        if (buffer == 0) {
+            buffer = glGenBuffers();
+            texture = glGenTextures();
+        }
+        glBindBuffer(GL_TEXTURE_BUFFER, buffer);
+        if (vertices > gpuCapacity) {
+            gpuCapacity = data.length / FLOATS;
+            glBufferData(GL_TEXTURE_BUFFER, (long) gpuCapacity * FLOATS * Float.BYTES, GL_DYNAMIC_DRAW);
+            glBindTexture(GL_TEXTURE_BUFFER, texture);
+            glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, buffer);
+            glBindTexture(GL_TEXTURE_BUFFER, 0);
+            Arrays.fill(dirty, -1L); // 新存储内容未定义，整体传一次
+            anyDirty = true;
+        }
+        if (anyDirty) {
+            int blocks = (vertices + BLOCK - 1) / BLOCK;
+            for (int b = nextDirty(0, blocks); b < blocks; b = nextDirty(b, blocks)) {
+                int end = b;
+                while (end < blocks && (dirty[end >>> 6] & 1L << end) != 0) end++;
+                int lo = b * BLOCK, hi = Math.min(end * BLOCK, vertices), floats = (hi - lo) * FLOATS;
+                if (staging == null || staging.capacity() < floats) {
+                    if (staging != null) MemoryUtil.memFree(staging);
+                    staging = MemoryUtil.memAllocFloat(Math.max(floats, staging == null ? BLOCK * FLOATS * 16 : staging.capacity() * 2));
+                }
+                staging.clear();
+                staging.put(data, lo * FLOATS, floats).flip();
+                glBufferSubData(GL_TEXTURE_BUFFER, (long) lo * FLOATS * Float.BYTES, staging);
+                uploadedBytes += (long) floats * Float.BYTES;
+                uploadRanges++;
+                b = end;
+            }
+            Arrays.fill(dirty, 0L);
+            anyDirty = false;
+        }
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+    }
+
+    private int nextDirty(int from, int limit) {
+        for (int b = from; b < limit; b++) {
+            long w = dirty[b >>> 6] >>> (b & 63);
+            if (w == 0) { b |= 63; continue; } // 整个字剩下的都干净
+            return b + Long.numberOfTrailingZeros(w);
+        }
+        return limit;
+    }
+
+    /** 绑到 unit 号纹理单元（着色器里的 samplerBuffer uMorphs），之后把活动单元恢复为 0 */
+    public void bind(int unit) {
+        glActiveTexture(GL_TEXTURE0 + unit);
+        glBindTexture(GL_TEXTURE_BUFFER, texture);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    @Override public void close() {
+        if (buffer != 0) { glDeleteTextures(texture); glDeleteBuffers(buffer); }
+        if (staging != null) MemoryUtil.memFree(staging);
+    }
+}
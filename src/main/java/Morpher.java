@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+/**
+ * 一个角色的表情权重：{@link #set} 按名字或下标改权重，{@link #apply} 把混合结果写进 {@link MorphBuffer}。
+ * <p>
+ * 只混合权重非零的变形：先把上一次生效的变形碰过的顶点清零，再累加这一次生效的变形，
+ * 工作量与它们的顶点数成正比，和模型总顶点数、变形总数无关。权重没变时 apply 什么也不做。
+ * 组变形按比例展开到顶点变形上。set 与 apply 都不分配内存。
+ */
+public final class Morpher {
+    private final Morphs morphs;
+    private final float[] weights, effective;
+    // 上一次 apply 时生效的顶点变形（清零用）与这一次的
+    private int[] last, next;
+    private int lastCount;
+    private boolean changed = true;
+
+    public Morpher(Morphs morphs) {
+        this.morphs = morphs;
+        int n = morphs.count();
+        weights = new float[n];
+        effective = new float[n];
+        last = new int[n];
+        next = new int[n];
+    }
+
+    public Morphs morphs() { return morphs; }
+
+    public void set(int morph, float weight) {
+        if (weights[morph] != weight) { weights[morph] = weight; changed = true; }
+    }
+
+    /** 按名字设置；没有这个变形时返回 false */
+    public boolean set(String name, float weight) {
+        int m = morphs.find(name);
+        if (m >= 0) set(m, weight);
+        return m >= 0;
+    }
+
+    public float weight(int morph) { return weights[morph]; }
+
+    public void clear() {
+        for (int m = 0; m < weights.length; m++) set(m, 0f);
+    }
+
+    /**
+     * 把混合结果写进 buffer 里 base 开始的一段（base 为 {@link MorphBuffer#allocate} 的返回值），
+     * 只标脏改动到的顶点。返回是否有改动。
+     */
+    public boolean apply(MorphBuffer buffer, int base) {
+        if (!changed) return false;
+        changed = false;
+        Arrays.fill(effective, 0f);
+        for (int m = 0; m < weights.length; m++) {
+            float w = weights[m];
+            if (w == 0f) continue;
+            if (morphs.type(m) == Morphs.VERTEX) effective[m] += w;
+            else if (morphs.groupTargets[m] != null) {
+                int[] t = morphs.groupTargets[m];
+                float[] r = morphs.groupRatios[m];
+                for (int k = 0; k < t.length; k++) if (morphs.type(t[k]) == Morphs.VERTEX) effective[t[k]] += w * r[k];
+            }
+        }
+
+        int[] vertex = morphs.vertex;
+        float[] delta = morphs.delta;
+        for (int i = 0; i < lastCount; i++) {
+            int m = last[i];
+            for (int e = morphs.first[m], end = morphs.first[m + 1]; e < end; e++) buffer.zero(base + vertex[e]);
+        }
+        int nextCount = 0;
+        for (int m = 0; m < effective.length; m++) {
+            float w = effective[m];
+            if (w == 0f || morphs.size(m) == 0) continue;
+            next[nextCount++] = m;
+            for (int e = morphs.first[m], end = morphs.first[m + 1]; e < end; e++) {
+                buffer.add(base + vertex[e], w, delta[e * 3], delta[e * 3 + 1], delta[e * 3 + 2]);
+            }
+        }
+        int[] t = last; last = next; next = t;
+        lastCount = nextCount;
+        return true;
+    }
+}
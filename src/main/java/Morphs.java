@@ -0,0 +1,126 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个模型的变形目标（表情）：顶点变形以稀疏方式存放，每个变形只记它移动的顶点与位移，
+ * 顶点下标已换成 GPU 上的最终顺序（合并缓冲里的全局下标，gl_VertexID 直接可用）。
+ * 组变形记为对顶点变形的加权引用，混合时展开。只读，同一模型的所有角色共用；每个角色的权重见 {@link Morpher}，
+ * 混合结果放在 {@link MorphBuffer} 里，顶点着色器拼上 {@link #GLSL_MORPH} 后用 morphPosition 加上位移。
+ * <p>
+ * 骨骼变形、UV 变形与材质变形（例如切换表情贴图）不在这里，它们的权重调了也没有效果。
+ */
+public final class Morphs {
+    public static final int VERTEX = PmxLoader.PmxMorph.VERTEX, GROUP = PmxLoader.PmxMorph.GROUP;
+
+    /** 顶点着色器里拼在 main 之前；uMorphs 为 {@link MorphBuffer} 所在的纹理单元，uMorphBase < 0 表示没有变形 */
+    public static final String GLSL_MORPH =
+            "uniform samplerBuffer uMorphs;\n" +
+            "uniform int uMorphBase;\n" +
+            "vec3 morphPosition(vec3 p){\n" +
+            "  return uMorphBase < 0 ? p : p + texelFetch(uMorphs, uMorphBase + gl_VertexID).xyz;\n" +
+            "}\n";
+
+    private final String[] names;
+    private final int[] types;
+    /** 顶点变形 m 的条目为 [first[m], first[m + 1])；非顶点变形区间为空 */
+    final int[] first;
+    final int[] vertex;
+    final float[] delta;
+    /** 组变形 m 引用的变形与比例；其它类型为 null */
+    final int[][] groupTargets;
+    final float[][] groupRatios;
+    public final int vertexCount;
+
+    private Morphs(String[] names, int[] types, int[] first, int[] vertex, float[] delta,
+                   int[][] groupTargets, float[][] groupRatios, int vertexCount) {
+        this.names = names; this.types = types; this.first = first; this.vertex = vertex; this.delta = delta;
+        this.groupTargets = groupTargets; this.groupRatios = groupRatios; this.vertexCount = vertexCount;
+    }
+
+    /**
+     * PMX 变形节 + 各 Part 的顶点映射（sources[i][v] 为第 i 个 Part 第 v 个 GPU 顶点的源顶点，
+     * Part 的顶点在 GPU 上首尾相接）。一个源顶点可能被几个 Part 各复制一份，位移对每份都生效。
+     * 没有顶点变形时返回 null。
+     */
+    public static Morphs of(List<PmxLoader.PmxMorph> morphs, int[][] sources, int sourceVertexCount) {
+        boolean any = false;
+        for (PmxLoader.PmxMorph m : morphs) any |= m.type == VERTEX && m.targets.length > 0;
+        if (!any) return null;
+
+        // 源顶点 → GPU 顶点（CSR，一对多）
+        int[] count = new int[sourceVertexCount + 1];
+        int gpu = 0;
+        for (int[] s : sources) { for (int v : s) count[v + 1]++; gpu += s.length; }
+        for (int i = 0; i < sourceVertexCount; i++) count[i + 1] += count[i];
+        int[] at = Arrays.copyOf(count, sourceVertexCount), copies = new int[gpu];
+        for (int i = 0, base = 0; i < sources.length; base += sources[i].length, i++) {
+            for (int v = 0; v < sources[i].length; v++) copies[at[sources[i][v]]++] = base + v;
+        }
+
+        int n = morphs.size();
+        String[] names = new String[n];
+        int[] types = new int[n], first = new int[n + 1];
+        int[][] groupTargets = new int[n][];
+        float[][] groupRatios = new float[n][];
+        int total = 0;
+        for (int m = 0; m < n; m++) {
+            PmxLoader.PmxMorph pm = morphs.get(m);
+            if (pm.type == VERTEX) for (int v : pm.targets) total += count[v + 1] - count[v];
+        }
+        int[] vertex = new int[total];
+        float[] delta = new float[total * 3];
+        int e = 0;
+        for (int m = 0; m < n; m++) {
+            PmxLoader.PmxMorph pm = morphs.get(m);
+            names[m] = pm.name;
+            types[m] = pm.type;
+            first[m] = e;
+            if (pm.type == VERTEX) {
+                int start = e;
+                for (int k = 0; k < pm.targets.length; k++) {
+                    int v = pm.targets[k];
+                    for (int c = count[v]; c < count[v + 1]; c++) {
+                        vertex[e] = copies[c];
+                        delta[e * 3] = pm.values[k * 3]; delta[e * 3 + 1] = pm.values[k * 3 + 1]; delta[e * 3 + 2] = pm.values[k * 3 + 2];
+                        e++;
+                    }
+                }
+                sortByVertex(vertex, delta, start, e); // GPU 顺序，脏块更集中，写入也更连续
+            } else if (pm.type == GROUP) {
+                groupTargets[m] = pm.targets.clone();
+                groupRatios[m] = pm.values.clone();
+            }
+        }
+        first[n] = e;
+        return new Morphs(names, types, first, vertex, delta, groupTargets, groupRatios, gpu);
+    }
+
+    private static void sortByVertex(int[] vertex, float[] delta, int from, int to) {
+        int n = to - from;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) packed[i] = (long) vertex[from + i] << 32 | i;
+        Arrays.sort(packed);
+        float[] d = Arrays.copyOfRange(delta, from * 3, to * 3);
+        for (int i = 0; i < n; i++) {
+            int src = (int) packed[i];
+            vertex[from + i] = (int) (packed[i] >>> 32);
+            System.arraycopy(d, src * 3, delta, (from + i) * 3, 3);
+        }
+    }
+
+    public int count() { return names.length; }
+    public String name(int morph) { return names[morph]; }
+    /** PMX 的变形类型（{@link #VERTEX}、{@link #GROUP} 等） */
+    public int type(int morph) { return types[morph]; }
+    /** 顶点变形移动的 GPU 顶点数 */
+    public int size(int morph) { return first[morph + 1] - first[morph]; }
+
+    /** 按名字找变形，没有时返回 -1 */
+    public int find(String name) {
+        for (int i = 0; i < names.length; i++) if (names[i].equals(name)) return i;
+        return -1;
+    }
+
+    /** 稀疏数据占的字节数（每条 4 字节下标 + 12 字节位移） */
+    public long bytes() { return (long) vertex.length * 16; }
+}
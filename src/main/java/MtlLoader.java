@@ -1,53 +1,95 @@
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class MtlLoader {
 
+    /** map_Kd 等贴图引用的加载方式（classpath 或磁盘），解码在后台进行 */
+    private interface TextureSource {
+        TextureCache.Pending load(String ref);
+    }
+
     /** @param baseDir 以资源根为基准的目录，如 "aserts/Losalia/" */
     public static Map<String, Material> loadResource(String baseDir, String mtlFile) throws IOException {
+        return resolve(loadResourceDeferred(baseDir, mtlFile));
+    }
+
+    /** 磁盘上的 .mtl，贴图相对 mtl 所在目录解析 */
+    public static Map<String, Material> load(Path mtlFile) throws IOException {
+        return resolve(loadDeferred(mtlFile));
+    }
+
+    /**
+     * 与 loadResource 相同，但贴图只提交到后台解码，不等待也不上传：
+     * 可在任意线程调用，之后须在 GL 线程对每个材质调用 {@link Material#resolveTextures()}。
+     */
+    public static Map<String, Material> loadResourceDeferred(String baseDir, String mtlFile) throws IOException {
         String resPath = join(baseDir, mtlFile);
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                Objects.requireNonNull(ClassLoader.getSystemClassLoader().getResourceAsStream(resPath),
-                        "mtl resource not found: " + resPath),
-                StandardCharsets.UTF_8))) {
-
-            Map<String, Material> map = new LinkedHashMap<>();
-            Material cur = null;
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.strip();
-                if (line.isEmpty() || line.startsWith("#")) continue;
-                String[] p = line.split("\\s+");
-                switch (p[0]) {
-                    case "newmtl" -> {
-                        cur = new Material();
-                        cur.name = line.substring("newmtl".length()).trim();
-                        map.put(cur.name, cur);
-                    }
-                    case "Kd" -> {
-                        if (cur != null && p.length >= 4) {
-                            cur.kdR = f(p[1]); cur.kdG = f(p[2]); cur.kdB = f(p[3]);
-                        }
+        // 资源包里的切片直接按 UTF-8 解码，不经过流
+        ByteBuffer packed = AssetPack.findSlice(resPath);
+        try (BufferedReader br = packed != null
+                ? new BufferedReader(new StringReader(StandardCharsets.UTF_8.decode(packed).toString()))
+                : new BufferedReader(new InputStreamReader(
+                        Objects.requireNonNull(ClassLoader.getSystemClassLoader().getResourceAsStream(resPath),
+                                "mtl resource not found: " + resPath),
+                        StandardCharsets.UTF_8))) {
+            return parse(br, tex -> TextureCache.acquireResourceAsync(join(baseDir, tex), true));
+        }
+    }
+
+    public static Map<String, Material> loadDeferred(Path mtlFile) throws IOException {
+        if (!Files.isRegularFile(mtlFile)) throw new FileNotFoundException("mtl not found: " + mtlFile);
+        Path dir = mtlFile.toAbsolutePath().getParent();
+        try (BufferedReader br = Files.newBufferedReader(mtlFile, StandardCharsets.UTF_8)) {
+            return parse(br, tex -> TextureCache.acquireAsync(dir.resolve(tex), true));
+        }
+    }
+
+    /** 同一个 mtl 里的贴图仍是并行解码的，这里只是依次等待并上传 */
+    private static Map<String, Material> resolve(Map<String, Material> map) throws IOException {
+        for (Material m : map.values()) m.resolveTextures();
+        return map;
+    }
+
+    private static Map<String, Material> parse(BufferedReader br, TextureSource textures) throws IOException {
+        Map<String, Material> map = new LinkedHashMap<>();
+        Material cur = null;
+        String line;
+        while ((line = br.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] p = line.split("\\s+");
+            switch (p[0]) {
+                case "newmtl" -> {
+                    cur = new Material();
+                    cur.name = line.substring("newmtl".length()).trim();
+                    map.put(cur.name, cur);
+                }
+                case "Kd" -> {
+                    if (cur != null && p.length >= 4) {
+                        cur.kdR = f(p[1]); cur.kdG = f(p[2]); cur.kdB = f(p[3]);
                     }
-                    case "Ks" -> {
-                        if (cur != null && p.length >= 4) {
-                            cur.ksR = f(p[1]); cur.ksG = f(p[2]); cur.ksB = f(p[3]);
-                        }
+                }
+                case "Ks" -> {
+                    if (cur != null && p.length >= 4) {
+                        cur.ksR = f(p[1]); cur.ksG = f(p[2]); cur.ksB = f(p[3]);
                     }
-                    case "Ns" -> { if (cur != null && p.length >= 2) cur.shininess = f(p[1]); }
-                    case "map_Kd" -> {
-                        if (cur != null) {
-                            // 处理含空格的路径/参数：取最后一个 token 作为文件名（够用）
-                            String tex = p[p.length-1];
-                            cur.mapKd = Texture2D.loadResource(join(baseDir, tex), true);
-                        }
+                }
+                case "Ns" -> { if (cur != null && p.length >= 2) cur.shininess = f(p[1]); }
+                case "map_Kd" -> {
+                    if (cur != null) {
+                        // 处理含空格的路径/参数：取最后一个 token 作为文件名（够用）
+                        String tex = p[p.length-1];
+                        cur.mapKdPending = textures.load(tex);
                     }
-                    default -> {}
                 }
+                default -> {}
             }
-            return map;
         }
+        return map;
     }
 
     private static float f(String s){ return Float.parseFloat(s); }
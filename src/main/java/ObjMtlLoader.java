@@ -1,12 +1,14 @@
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 public class ObjMtlLoader {
 
-    private record VertexKey(int v, int t, int n) {}
-    private static float f(String s){ return Float.parseFloat(s); }
-    private static int resolve(int idx,int size){ return (idx>0)?(idx-1):(size+idx); }
     private static String dirOf(String path){
         int i = path.lastIndexOf('/');
         return (i>=0)? path.substring(0,i+1) : "";
@@ -33,172 +35,414 @@ public class ObjMtlLoader {
     }
 
     public static Model loadOBJWithMTLResource(String objResPath, boolean flipV) throws IOException {
+        return loadOBJWithMTLResource(objResPath, flipV, null);
+    }
+
+    /** uploads 非空时网格与贴图交给 UploadQueue 分帧上传，数据到齐前对应 Part 不绘制 / 不采样 */
+    public static Model loadOBJWithMTLResource(String objResPath, boolean flipV, UploadQueue uploads) throws IOException {
         String res = objResPath.startsWith("/") ? objResPath.substring(1) : objResPath;
-        InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(res);
-        if (in == null) throw new FileNotFoundException("resource not found: " + objResPath);
+        ByteBuffer src = AssetPack.resource(res); // 资源包里是零拷贝切片，否则读 classpath
 
         String baseDir  = dirOf(res);                         // e.g. asserts/Losalia/
         String objName  = res.substring(res.lastIndexOf('/')+1);
         String baseName = objName.toLowerCase().endsWith(".obj") ? objName.substring(0, objName.length()-4) : objName;
 
-        // 顶点池
-        ArrayList<float[]> pos = new ArrayList<>();
-        ArrayList<float[]> uv  = new ArrayList<>();
-        ArrayList<float[]> nrm = new ArrayList<>();
+        // 几何：优先读 .gmesh 缓存，否则字节级解析，按 usemtl 切分（见 ObjParser）
+        return load(src, res, baseName, flipV, l -> ObjParser.parse(src, flipV, true, l),
+                ref -> MtlLoader.loadResourceDeferred(baseDir, ref), ref -> join(baseDir, ref), uploads);
+    }
 
-        // 材质库
-        Map<String, Material> materials = new LinkedHashMap<>();
-        boolean loadedAnyMTL = false;
+    /**
+     * 磁盘上的 OBJ：内存映射，超过 {@link ObjParser#PARALLEL_THRESHOLD} 时分块并行解析，
+     * 结果与顺序解析完全一致。mtllib 与贴图相对 OBJ 所在目录解析。
+     */
+    public static Model loadOBJWithMTL(Path objFile, boolean flipV) throws IOException {
+        return loadOBJWithMTL(objFile, flipV, null);
+    }
 
-        // 文件级全局标记（关键：保证所有子网格 stride 一致）
-        boolean fileHasUV = false;
-        boolean fileHasN  = false;
-
-        // 每材质累积器
-        class Build {
-            LinkedHashMap<VertexKey,Integer> map = new LinkedHashMap<>();
-            ArrayList<Float>  inter   = new ArrayList<>();
-            ArrayList<Integer> indices = new ArrayList<>();
-            boolean seenUV=false, seenN=false;
-        }
-        Map<String, Build> builds = new LinkedHashMap<>();
-        String currentMtl = "default";
-        builds.put(currentMtl, new Build());
-        materials.put("default", null);
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.strip();
-                if (line.isEmpty() || line.startsWith("#")) continue;
-
-                String[] head = line.split("\\s+", 2);
-                String kw = head[0];
-
-                switch (kw) {
-                    case "v" -> {
-                        String[] p = line.split("\\s+");
-                        pos.add(new float[]{ f(p[1]), f(p[2]), f(p[3]) });
-                    }
-                    case "vt" -> {
-                        String[] p = line.split("\\s+");
-                        float u=f(p[1]); float v=f(p[2]);
-                        uv.add(new float[]{ u, flipV?1f-v:v });
-                        fileHasUV = true;
-                        for (Build b: builds.values()) b.seenUV = true; // 同步已有
-                    }
-                    case "vn" -> {
-                        String[] p = line.split("\\s+");
-                        nrm.add(new float[]{ f(p[1]), f(p[2]), f(p[3]) });
-                        fileHasN = true;
-                        for (Build b: builds.values()) b.seenN = true;  // 同步已有
-                    }
-                    case "mtllib" -> {
-                        if (head.length < 2) break;
-                        String[] toks = head[1].trim().split("\\s+");
-                        for (String t : toks) {
-                            String ref = normalizeMtlRef(t);
-                            if (ref.isEmpty()) continue;
-                            try {
-                                Map<String, Material> mm = MtlLoader.loadResource(baseDir, ref);
-                                materials.putAll(mm);
-                                if (!mm.isEmpty()) loadedAnyMTL = true;
-                            } catch (FileNotFoundException e) {
-                                System.err.println("WARN: mtl not found, skip -> " + join(baseDir, ref));
-                            }
-                        }
-                    }
-                    case "usemtl" -> {
-                        if (head.length < 2) break;
-                        currentMtl = head[1].trim();
-                        // 显式 get/put，避免 lambda 的 effectively-final 限制
-                        Build nb = builds.get(currentMtl);
-                        if (nb == null) {
-                            nb = new Build();
-                            nb.seenUV = fileHasUV; // 继承文件级标记
-                            nb.seenN  = fileHasN;
-                            builds.put(currentMtl, nb);
-                        }
-                    }
-                    case "f" -> {
-                        String[] p = line.split("\\s+");
-                        Build b = builds.get(currentMtl);
-                        int[] ids = new int[p.length-1];
-
-                        for (int i=1;i<p.length;i++){
-                            String[] tri = p[i].split("/");
-                            int v = Integer.parseInt(tri[0]);
-                            Integer t = (tri.length>1 && !tri[1].isEmpty()) ? Integer.parseInt(tri[1]) : null;
-                            Integer n = (tri.length>2 && !tri[2].isEmpty()) ? Integer.parseInt(tri[2]) : null;
-
-                            int vi = resolve(v, pos.size());
-                            int ti = (t!=null)? resolve(t, uv.size())  : -1;
-                            int ni = (n!=null)? resolve(n, nrm.size()) : -1;
-
-                            VertexKey key = new VertexKey(vi, ti, ni);
-                            Integer idx = b.map.get(key);
-                            if (idx == null) {
-                                float[] pp = pos.get(vi);
-                                b.inter.add(pp[0]); b.inter.add(pp[1]); b.inter.add(pp[2]);
-
-                                if (ni>=0){
-                                    float[] nn=nrm.get(ni);
-                                    b.inter.add(nn[0]); b.inter.add(nn[1]); b.inter.add(nn[2]);
-                                } else if (b.seenN){
-                                    b.inter.add(0f); b.inter.add(0f); b.inter.add(1f);
-                                }
-
-                                if (ti>=0){
-                                    float[] tt=uv.get(ti);
-                                    b.inter.add(tt[0]); b.inter.add(tt[1]);
-                                } else if (b.seenUV){
-                                    b.inter.add(0f); b.inter.add(0f);
-                                }
-
-                                idx = b.map.size();
-                                b.map.put(key, idx);
-                            }
-                            ids[i-1] = idx;
-                        }
-                        // n-gon 扇形三角化
-                        for (int i=1;i+1<ids.length;i++){
-                            b.indices.add(ids[0]); b.indices.add(ids[i]); b.indices.add(ids[i+1]);
-                        }
-                    }
-                    default -> { /* ignore others */ }
+    public static Model loadOBJWithMTL(Path objFile, boolean flipV, UploadQueue uploads) throws IOException {
+        Path dir = objFile.toAbsolutePath().getParent();
+        String objName = objFile.getFileName().toString();
+        String baseName = objName.toLowerCase().endsWith(".obj") ? objName.substring(0, objName.length()-4) : objName;
+
+        ByteBuffer src = ObjParser.map(objFile);
+        return load(src, objFile.toAbsolutePath().toString(), baseName, flipV, l -> ObjParser.parseFile(objFile, flipV, true, l),
+                ref -> MtlLoader.loadDeferred(dir.resolve(ref)), ref -> dir.resolve(ref).toString(), uploads);
+    }
+
+    /**
+     * 只跑加载流水线的 CPU 部分（解析 + 重排 + LOD），不读 MTL、不查写 .gmesh、不碰 GL，可在任意线程调用。
+     * 基准测试与离线工具用；结果与 loadOBJWithMTL 上传前的几何相同。
+     */
+    public static List<MeshData> prepareOBJ(Path objFile, boolean flipV) throws IOException {
+        return prepare(ObjParser.parseFile(objFile, flipV, true, ref -> {}), false);
+    }
+
+    public static List<MeshData> prepareOBJResource(String objResPath, boolean flipV) throws IOException {
+        ByteBuffer src = AssetPack.resource(objResPath);
+        return prepare(ObjParser.parse(src, flipV, true, ref -> {}), false);
+    }
+
+    private interface MtlSource { Map<String, Material> load(String ref) throws IOException; }
+    private interface Parse { ObjParser.Result run(ObjParser.MtllibListener listener) throws IOException; }
+
+    /**
+     * 加载流水线：
+     * <ol>
+     *   <li>解析到 mtllib（或从 .gmesh 读到 mtllib 列表）时立刻读 MTL，贴图提交到后台并行解码；</li>
+     *   <li>几何继续解析（或直接映射 .gmesh），未命中缓存时并行重排、生成各 Part 的 LOD 并写进缓存，
+     *       在 GL 线程上传网格；</li>
+     *   <li>最后在 GL 线程等待贴图解码完成并上传。</li>
+     * </ol>
+     * 因此总耗时约等于 max(几何, 最慢的一张贴图)，而不是所有资源之和。
+     */
+    private static Model load(ByteBuffer src, String srcPath, String baseName, boolean flipV, Parse parse,
+                              MtlSource source, Function<String, String> describe, UploadQueue uploads) throws IOException {
+        Materials materials = new Materials(source, describe);
+        Model model = null;
+        try {
+            Path cache = null;
+            byte[] digest = null;
+            long size = src.remaining();
+            if (MeshCache.enabled()) {
+                digest = MeshCache.contentDigest(src);
+                cache = MeshCache.pathFor(srcPath, digest, flipV);
+                MeshCache.Cached c = MeshCache.read(cache, digest, size, srcPath, flipV, settingsKey());
+                if (c != null) {
+                    for (String line : c.mtllibs) materials.mtllib(line);
+                    Map<String, Material> mm = materials.finish(baseName);
+                    model = fromCache(c, mm, uploads);
+                }
+            }
+            if (model == null) {
+                ObjParser.Result parsed = parse.run(materials::mtllib);
+                List<MeshData> parts = prepare(parsed, true);
+                Packed packed = pack(parts);
+                if (cache != null) {
+                    MeshCache.write(cache, digest, size, srcPath, flipV, settingsKey(), parsed.mtllibs, parts,
+                            packed.encoded, packed.min, packed.max);
                 }
+                model = toModel(parts, packed, materials.finish(baseName), uploads);
             }
+            for (Material m : materials.map.values()) if (m != null) m.resolveTextures(uploads);
+            return model;
+        } catch (IOException | RuntimeException e) {
+            if (model != null) model.close();
+            throw e;
+        }
+    }
+
+    /** 按 mtllib 出现顺序累积材质；贴图为后台解码中的 Pending */
+    private static final class Materials {
+        final Map<String, Material> map = new LinkedHashMap<>();
+        final MtlSource source;
+        final Function<String, String> describe;
+        boolean loadedAnyMTL = false;
+
+        Materials(MtlSource source, Function<String, String> describe) {
+            this.source = source; this.describe = describe;
+            map.put("default", null);
         }
 
-        // 若没加载到任何 mtl，尝试 <obj同名>.mtl
-        if (!loadedAnyMTL) {
-            String guess = baseName + ".mtl";
-            try {
-                Map<String, Material> mm = MtlLoader.loadResource(baseDir, guess);
-                if (!mm.isEmpty()) {
-                    System.out.println("INFO: fallback to " + join(baseDir, guess));
-                    materials.putAll(mm);
+        void mtllib(String line) throws IOException {
+            String[] toks = line.trim().split("\\s+");
+            for (String t : toks) {
+                String ref = normalizeMtlRef(t);
+                if (ref.isEmpty()) continue;
+                try {
+                    Map<String, Material> mm = source.load(ref);
+                    map.putAll(mm);
+                    if (!mm.isEmpty()) loadedAnyMTL = true;
+                } catch (FileNotFoundException e) {
+                    System.err.println("WARN: mtl not found, skip -> " + describe.apply(ref));
                 }
-            } catch (FileNotFoundException ignored) {}
+            }
         }
 
-        // 生成 Model
+        Map<String, Material> finish(String baseName) throws IOException {
+            // 若没加载到任何 mtl，尝试 <obj同名>.mtl
+            if (!loadedAnyMTL) {
+                String guess = baseName + ".mtl";
+                try {
+                    Map<String, Material> mm = source.load(guess);
+                    if (!mm.isEmpty()) {
+                        System.out.println("INFO: fallback to " + describe.apply(guess));
+                        map.putAll(mm);
+                    }
+                } catch (FileNotFoundException ignored) {}
+            }
+            return map;
+        }
+    }
+
+    /** -Dobj.merge=false 关闭合并：每个材质一套 VAO/VBO/EBO */
+    static boolean mergeBuffers() {
+        return !"false".equalsIgnoreCase(System.getProperty("obj.merge", "true"));
+    }
+
+    /** -Dobj.pick=true：加载时为每个 Part 建三角形 BVH，Model.raycast 可精确到三角形 */
+    static boolean buildPick() {
+        return Boolean.getBoolean("obj.pick");
+    }
+
+    /** -Dobj.lod=N：每个 Part 最多生成 N 级简化 LOD（默认 4，0 关闭）；-Dobj.lod.ratio 为相邻两级的三角形比例 */
+    static int lodLevels() {
+        return Math.max(0, Integer.getInteger("obj.lod", 4));
+    }
+
+    static float lodRatio() {
+        return Float.parseFloat(System.getProperty("obj.lod.ratio", "0.5"));
+    }
+
+    /** -Dobj.optimize=false 关闭顶点缓存 / 顶点读取重排；-Dobj.overdraw=false 只关闭按簇排序减少 overdraw */
+    static boolean optimize() {
+        return !"false".equalsIgnoreCase(System.getProperty("obj.optimize", "true"));
+    }
+
+    static boolean overdraw() {
+        return optimize() && !"false".equalsIgnoreCase(System.getProperty("obj.overdraw", "true"));
+    }
+
+    /** 影响缓存内容的选项摘要（含 -Dmesh.format，缓存里存的是打包后的 GPU 数据），写进 .gmesh 文件头 */
+    private static long settingsKey() {
+        return (long) lodLevels() << 40 ^ (long) Float.floatToIntBits(lodRatio()) << 8
+                ^ (long) VertexFormat.configured() << 4 ^ (optimize() ? 1 : 0) ^ (overdraw() ? 2 : 0);
+    }
+
+    /** -Dmesh.verbose：每次加载打印顶点格式的显存占用与精度损失，以及 PMX 的解析摘要 */
+    static boolean verbose() {
+        return Boolean.getBoolean("mesh.verbose");
+    }
+
+    /** 组之间互不相关，并行处理；未命中缓存时才走这里，结果随即写进 .gmesh */
+    private static List<MeshData> prepare(ObjParser.Result parsed, boolean log) {
+        List<ObjParser.Group> groups = new ArrayList<>(parsed.groups.values());
+        return prepareParts(groups.size(), i -> {
+            ObjParser.Group g = groups.get(i);
+            return new MeshData(g.name, g.hasNormal(), g.hasUV(), g.interleaved(), g.indices());
+        }, log);
+    }
+
+    /** raw(i) 给出第 i 个 Part 的原始几何（单级），在并行任务里调用；其它格式的加载器（PMX）也走这里 */
+    static List<MeshData> prepareParts(int count, IntFunction<MeshData> raw, boolean log) {
+        MeshData[] out = new MeshData[count];
+        float[] before = new float[out.length], after = new float[out.length];
+        long t0 = System.nanoTime();
+        IntStream.range(0, out.length).parallel().forEach(i -> out[i] = prepare(raw.apply(i), before, after, i));
+        long tris = 0;
+        double missBefore = 0, missAfter = 0;
+        int levels = 0;
+        for (int i = 0; i < out.length; i++) {
+            int t = out[i].lodCounts[0] / 3;
+            tris += t; missBefore += before[i] * t; missAfter += after[i] * t;
+            levels += out[i].lodCounts.length - 1;
+        }
+        if (log && tris > 0) {
+            System.out.printf("INFO: prepared %d parts in %.1f ms: ACMR %.3f -> %.3f (FIFO %d), %d LOD levels%n",
+                    out.length, (System.nanoTime() - t0) / 1e6, missBefore / tris, missAfter / tris,
+                    MeshOptimizer.CACHE_SIZE, levels);
+        }
+        return Arrays.asList(out);
+    }
+
+    /**
+     * 单个组：三角形按顶点缓存重排（可选再按簇排序减少 overdraw）→ 在此顺序上简化出 LOD，
+     * 各级再各自做缓存重排 → 最后按整条 LOD 链的首次使用顺序重排顶点。
+     */
+    private static MeshData prepare(MeshData g, float[] acmrBefore, float[] acmrAfter, int slot) {
+        float[] v = g.interleaved;
+        int[] ix = g.indices;
+        int stride = g.strideFloats(), n = v.length / stride;
+        if (ix.length == 0) return g;
+        acmrBefore[slot] = MeshOptimizer.acmr(ix, n);
+        if (optimize()) {
+            MeshOptimizer.optimizeVertexCache(ix, n);
+            if (overdraw()) MeshOptimizer.optimizeOverdraw(ix, 0, ix.length, v, stride, 1.05f);
+        }
+        MeshSimplifier.Lods lods = MeshSimplifier.buildLods(v, stride, ix, lodLevels(), lodRatio());
+        int[] all = lods.indices;
+        if (optimize()) {
+            for (int l = 1, off = lods.counts[0]; l < lods.levels(); off += lods.counts[l], l++) {
+                MeshOptimizer.optimizeVertexCache(all, off, lods.counts[l], n);
+            }
+            v = MeshOptimizer.optimizeVertexFetch(v, stride, all);
+        }
+        acmrAfter[slot] = MeshOptimizer.acmr(all, 0, lods.counts[0], v.length / stride);
+        return new MeshData(g.name, g.hasNormal, g.hasUV, v, all, lods.counts, lods.errors);
+    }
+
+    /**
+     * 非 OBJ 格式的几何进 Model：以 src 的内容摘要和源路径 source 查 .gmesh 缓存（materials 已由调用方建好，按 Part 名对应），
+     * 未命中时用 raw 取各 Part 原始几何，重排 + LOD 后写缓存再上传。贴图由调用方 resolve。
+     */
+    static Model buildModel(ByteBuffer src, String source, int partCount, IntFunction<MeshData> raw,
+                            Map<String, Material> materials, UploadQueue uploads, PartVertices visit) {
+        Path cache = null;
+        byte[] digest = null;
+        long size = src.remaining();
+        if (MeshCache.enabled()) {
+            digest = MeshCache.contentDigest(src);
+            cache = MeshCache.pathFor(source, digest, false);
+            MeshCache.Cached c = MeshCache.read(cache, digest, size, source, false, settingsKey());
+            if (c != null) return fromCache(c, materials, uploads, visit);
+        }
+        List<MeshData> parts = prepareParts(partCount, raw, true);
+        Packed packed = pack(parts);
+        if (cache != null) {
+            MeshCache.write(cache, digest, size, source, false, settingsKey(), List.of(), parts, packed.encoded, packed.min, packed.max);
+        }
+        return toModel(parts, packed, materials, uploads, visit);
+    }
+
+    private static void setLods(Mesh mesh, int[] counts, float[] errors) {
+        if (counts.length > 1) mesh.setLods(counts, errors);
+    }
+
+    private static int strideFloats(boolean hasNormal, boolean hasUV) {
+        return 3 + (hasNormal ? 3 : 0) + (hasUV ? 2 : 0);
+    }
+
+    /**
+     * buildModel 的回调：模型第 index 个 Part（名字同 MeshData.name）上传前的最终顶点，float 交错布局，
+     * 已经过重排 / 去掉未用顶点。供需要逐顶点附加数据的加载器（PMX 的蒙皮权重）对齐顺序。
+     */
+    interface PartVertices {
+        void accept(int index, String name, FloatBuffer interleaved, int strideFloats);
+    }
+
+    private static Model fromCache(MeshCache.Cached c, Map<String, Material> mm, UploadQueue uploads) {
+        return fromCache(c, mm, uploads, null);
+    }
+
+    private static Model fromCache(MeshCache.Cached c, Map<String, Material> mm, UploadQueue uploads, PartVertices visit) {
         Model model = new Model();
-        for (var e : builds.entrySet()){
-            String mtlName = e.getKey();
-            Build b = e.getValue();
+        // 合并时丢掉没有三角形的组（例如 usemtl 之前空着的 default），它们画不出任何东西
+        List<MeshCache.Part> parts = new ArrayList<>();
+        for (MeshCache.Part p : c.parts) if (p.indices.remaining() > 0) parts.add(p);
+        int n = parts.size();
+        boolean merge = mergeBuffers() && n > 1;
+        for (MeshCache.Part p : parts) merge &= p.encoded.format.sameLayout(parts.get(0).encoded.format);
+        if (merge) {
+            VertexFormat.Encoded[] e = new VertexFormat.Encoded[n];
+            float[][] mn = new float[n][], mx = new float[n][];
+            for (int i = 0; i < n; i++) {
+                MeshCache.Part p = parts.get(i);
+                e[i] = p.encoded; // 缓存里已是打包好的 GPU 数据
+                mn[i] = p.aabbMin; mx[i] = p.aabbMax;
+            }
+            logFormat(Arrays.asList(e));
+            Mesh[] meshes = Mesh.merged(e, mn, mx, uploads);
+            for (int i = 0; i < n; i++) {
+                MeshCache.Part p = parts.get(i);
+                setLods(meshes[i], p.lodCounts, p.lodErrors);
+                model.add(meshes[i], mm.getOrDefault(p.material, null), pickOf(p));
+                if (visit != null) visit.accept(i, p.material, p.vertices.asFloatBuffer(), strideFloats(p.hasNormal, p.hasUV));
+            }
+            return model;
+        }
+        List<VertexFormat.Encoded> encoded = new ArrayList<>();
+        for (MeshCache.Part p : c.parts) {
+            VertexFormat.Encoded e = p.encoded;
+            encoded.add(e);
+            Mesh mesh = Mesh.fromEncoded(e, p.aabbMin, p.aabbMax, uploads);
+            setLods(mesh, p.lodCounts, p.lodErrors);
+            model.add(mesh, mm.getOrDefault(p.material, null), pickOf(p));
+            if (visit != null) visit.accept(model.parts.size() - 1, p.material, p.vertices.asFloatBuffer(), strideFloats(p.hasNormal, p.hasUV));
+        }
+        logFormat(encoded);
+        return model;
+    }
+
+    private static TriangleBvh pickOf(MeshCache.Part p) {
+        if (!buildPick() || p.indices.remaining() == 0) return null;
+        return TriangleBvh.fromBuffers(p.vertices, p.baseIndices(), strideFloats(p.hasNormal, p.hasUV));
+    }
 
-            float[] inter = new float[b.inter.size()];
-            for (int i=0;i<inter.length;i++) inter[i]=b.inter.get(i);
-            int[] idx = b.indices.stream().mapToInt(Integer::intValue).toArray();
+    /** 各 Part 按 -Dmesh.format 打包后的 GPU 数据与 AABB，与 parts 一一对应；未命中缓存时只打包一次，写缓存和上传共用 */
+    private static final class Packed {
+        final VertexFormat.Encoded[] encoded;
+        final float[][] min, max;
+        Packed(int n) { encoded = new VertexFormat.Encoded[n]; min = new float[n][3]; max = new float[n][3]; }
+    }
+
+    private static Packed pack(List<MeshData> parts) {
+        int format = VertexFormat.configured();
+        Packed out = new Packed(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            MeshData p = parts.get(i);
+            Mesh.computeBounds(p.interleaved, p.hasNormal, p.hasUV, out.min[i], out.max[i]);
+            out.encoded[i] = VertexFormat.encode(p.interleaved, p.indices, p.hasNormal, p.hasUV, out.min[i], out.max[i], format);
+        }
+        return out;
+    }
 
-            boolean hasN  = b.seenN;
-            boolean hasUV = b.seenUV;
+    private static Model toModel(List<MeshData> parts, Packed packed, Map<String, Material> materials, UploadQueue uploads) {
+        return toModel(parts, packed, materials, uploads, null);
+    }
 
-            Mesh mesh = Mesh.fromInterleaved(inter, idx, hasN, hasUV);
-            Material mat = materials.getOrDefault(mtlName, null);
-            model.add(mesh, mat);
+    private static Model toModel(List<MeshData> parts, Packed packed, Map<String, Material> materials, UploadQueue uploads,
+                                 PartVertices visit) {
+        // 生成 Model
+        Model model = new Model();
+        List<Integer> nonEmpty = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) if (!parts.get(i).isEmpty()) nonEmpty.add(i);
+        int n = nonEmpty.size();
+        if (mergeBuffers() && n > 1) { // 解析结果各组布局一致（finish 统一设置）
+            VertexFormat.Encoded[] e = new VertexFormat.Encoded[n];
+            float[][] mn = new float[n][], mx = new float[n][];
+            for (int i = 0; i < n; i++) {
+                int k = nonEmpty.get(i);
+                e[i] = packed.encoded[k];
+                mn[i] = packed.min[k]; mx[i] = packed.max[k];
+            }
+            logFormat(Arrays.asList(e));
+            Mesh[] meshes = Mesh.merged(e, mn, mx, uploads);
+            for (int i = 0; i < n; i++) {
+                MeshData p = parts.get(nonEmpty.get(i));
+                setLods(meshes[i], p.lodCounts, p.lodErrors);
+                model.add(meshes[i], materials.getOrDefault(p.name, null), pickOf(p));
+                if (visit != null) visit.accept(i, p.name, FloatBuffer.wrap(p.interleaved), p.strideFloats());
+            }
+            return model;
         }
+        List<VertexFormat.Encoded> encoded = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            MeshData p = parts.get(i);
+            VertexFormat.Encoded e = packed.encoded[i];
+            encoded.add(e);
+            Mesh mesh = Mesh.fromEncoded(e, packed.min[i], packed.max[i], uploads);
+            if (!p.isEmpty()) setLods(mesh, p.lodCounts, p.lodErrors);
+            model.add(mesh, materials.getOrDefault(p.name, null), pickOf(p));
+            if (visit != null) visit.accept(model.parts.size() - 1, p.name, FloatBuffer.wrap(p.interleaved), p.strideFloats());
+        }
+        logFormat(encoded);
         return model;
     }
+
+    /** 打包后的显存占用与精度损失（-Dmesh.format，见 {@link VertexFormat}）；只在 -Dmesh.verbose 时打印 */
+    private static void logFormat(List<VertexFormat.Encoded> parts) {
+        if (!verbose()) return;
+        long before = 0, after = 0, vertices = 0;
+        float pos = 0f, rel = 0f, normal = 0f, uv = 0f;
+        int shortIndexed = 0;
+        for (VertexFormat.Encoded e : parts) {
+            before += e.sourceBytes; after += e.gpuBytes(); vertices += e.vertexCount;
+            pos = Math.max(pos, e.maxPositionError);
+            float extent = Math.max(e.posScale[0], Math.max(e.posScale[1], e.posScale[2])) * 65535f;
+            if (e.format.quantized() && extent > 0f) rel = Math.max(rel, e.maxPositionError / extent);
+            normal = Math.max(normal, e.maxNormalDegrees); uv = Math.max(uv, e.maxUvError);
+            if (e.indexBytes() == Short.BYTES) shortIndexed++;
+        }
+        if (vertices == 0) return;
+        VertexFormat f = parts.get(0).format;
+        System.out.printf("INFO: vertex format %d -> %d bytes/vertex, %.2f -> %.2f MB (%d/%d parts 16-bit indices);"
+                        + " max error: position %.3g (%.2g of extent), normal %.4f deg, uv %.3g%n",
+                f.sourceStrideFloats() * Float.BYTES, f.strideBytes, before / 1048576.0, after / 1048576.0,
+                shortIndexed, parts.size(), pos, rel, normal, uv);
+    }
+
+    private static TriangleBvh pickOf(MeshData p) {
+        if (!buildPick() || p.isEmpty()) return null;
+        return new TriangleBvh(p.interleaved, p.strideFloats(), p.baseIndices());
+    }
 }
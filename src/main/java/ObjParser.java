@@ -0,0 +1,600 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * OBJ 字节级解析引擎，ObjReader 与 ObjMtlLoader 共用。
+ * <p>
+ * 直接扫描 ByteBuffer：顶点池、交错数组、索引全部放在可增长的 float[]/int[] 中，
+ * 数字用手写的 tokenizer 解析，顶点去重用开放寻址的 int 哈希表，
+ * 热路径（v/vt/vn/f）上不产生 String、装箱对象或 record。
+ * 磁盘上的大文件可内存映射后分块并行解析（{@link #parseFile}），
+ * 两种模式的输出都与旧的 ArrayList&lt;Float&gt; 实现逐位一致。
+ */
+public final class ObjParser {
+    private ObjParser() {}
+
+    public static final String DEFAULT_GROUP = "default";
+
+    // ======================== 可增长的原始数组 ========================
+
+    public static final class FloatList {
+        float[] a;
+        int size;
+        public FloatList(int cap){ a = new float[Math.max(4, cap)]; }
+        void ensure(int extra){ if (size + extra > a.length) a = Arrays.copyOf(a, Math.max(a.length * 2, size + extra)); }
+        public void add(float v){ ensure(1); a[size++] = v; }
+        public void add2(float x, float y){ ensure(2); a[size++] = x; a[size++] = y; }
+        public void add3(float x, float y, float z){ ensure(3); a[size++] = x; a[size++] = y; a[size++] = z; }
+        public float get(int i){ return a[i]; }
+        public int size(){ return size; }
+        public float[] toArray(){ return Arrays.copyOf(a, size); }
+    }
+
+    public static final class IntList {
+        int[] a;
+        int size;
+        public IntList(int cap){ a = new int[Math.max(4, cap)]; }
+        void ensure(int extra){ if (size + extra > a.length) a = Arrays.copyOf(a, Math.max(a.length * 2, size + extra)); }
+        public void add(int v){ ensure(1); a[size++] = v; }
+        public void add3(int x, int y, int z){ ensure(3); a[size++] = x; a[size++] = y; a[size++] = z; }
+        public int get(int i){ return a[i]; }
+        public int size(){ return size; }
+        public int[] toArray(){ return Arrays.copyOf(a, size); }
+    }
+
+    // ======================== (v,t,n) → 顶点序号 ========================
+
+    /** 开放寻址（线性探测）哈希表，键为三个 int，值为顶点序号；插入顺序即序号顺序 */
+    static final class VertexMap {
+        private int[] keys;   // 每槽 3 个 int
+        private int[] vals;   // -1 = 空槽
+        private int mask, size;
+
+        VertexMap(int expected){
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new int[cap * 3];
+            vals = new int[cap];
+            Arrays.fill(vals, -1);
+            mask = cap - 1;
+        }
+
+        int size(){ return size; }
+
+        private static int hash(int v, int t, int n){
+            int h = v * 0x9E3779B1 + t * 0x85EBCA6B + n * 0xC2B2AE35;
+            return h ^ (h >>> 16);
+        }
+
+        /** 已存在返回序号；不存在则以 size 为序号插入并返回 ~序号（负数） */
+        int getOrAdd(int v, int t, int n){
+            int slot = hash(v, t, n) & mask;
+            while (true) {
+                int val = vals[slot];
+                if (val < 0) break;
+                int k = slot * 3;
+                if (keys[k] == v && keys[k+1] == t && keys[k+2] == n) return val;
+                slot = (slot + 1) & mask;
+            }
+            int idx = size++;
+            int k = slot * 3;
+            keys[k] = v; keys[k+1] = t; keys[k+2] = n;
+            vals[slot] = idx;
+            if (size * 2 > vals.length) grow();
+            return ~idx;
+        }
+
+        private void grow(){
+            int[] ok = keys, ov = vals;
+            int cap = ov.length << 1;
+            keys = new int[cap * 3];
+            vals = new int[cap];
+            Arrays.fill(vals, -1);
+            mask = cap - 1;
+            for (int s = 0; s < ov.length; s++) {
+                if (ov[s] < 0) continue;
+                int v = ok[s*3], t = ok[s*3+1], n = ok[s*3+2];
+                int slot = hash(v, t, n) & mask;
+                while (vals[slot] >= 0) slot = (slot + 1) & mask;
+                keys[slot*3] = v; keys[slot*3+1] = t; keys[slot*3+2] = n;
+                vals[slot] = ov[s];
+            }
+        }
+    }
+
+    // ======================== 每材质（或整文件）累积器 ========================
+
+    public static final class Group {
+        public final String name;
+        final VertexMap map = new VertexMap(1024);
+        final FloatList inter = new FloatList(4096);
+        final IntList indices = new IntList(4096);
+        /** 整个文件是否出现过 vt/vn（决定 stride），解析结束时由 Result.finish 填写 */
+        boolean seenUV, seenN;
+
+        Group(String name){ this.name = name; }
+
+        /**
+         * 追加一个角点（已解析为 0 基索引，-1 = 缺省），返回去重后的顶点序号。
+         * fillN/fillUV：此刻之前是否已出现过 vn/vt，与旧实现一致，出现过则缺省角点补 (0,0,1) / (0,0)
+         */
+        int corner(Pools pools, int vi, int ti, int ni, boolean fillN, boolean fillUV){
+            int idx = map.getOrAdd(vi, ti, ni);
+            if (idx >= 0) return idx;
+            idx = ~idx;
+            float[] p = pools.pos.a;
+            inter.add3(p[vi*3], p[vi*3+1], p[vi*3+2]);
+            if (ni >= 0) { float[] n = pools.nrm.a; inter.add3(n[ni*3], n[ni*3+1], n[ni*3+2]); }
+            else if (fillN) inter.add3(0f, 0f, 1f);
+            if (ti >= 0) { float[] t = pools.uv.a; inter.add2(t[ti*2], t[ti*2+1]); }
+            else if (fillUV) inter.add2(0f, 0f);
+            return idx;
+        }
+
+        /** n-gon 扇形三角化 */
+        void fan(int[] ids, int count){
+            for (int i = 1; i + 1 < count; i++) indices.add3(ids[0], ids[i], ids[i+1]);
+        }
+
+        public float[] interleaved(){ return inter.toArray(); }
+        public int[] indices(){ return indices.toArray(); }
+        public int vertexCount(){ return map.size(); }
+        public boolean hasNormal(){ return seenN; }
+        public boolean hasUV(){ return seenUV; }
+    }
+
+    /** 顶点池：v/vt/vn 分别按 3/2/3 个 float 连续存放 */
+    static final class Pools {
+        final FloatList pos = new FloatList(3 * 4096);
+        final FloatList uv  = new FloatList(2 * 4096);
+        final FloatList nrm = new FloatList(3 * 4096);
+        int posCount(){ return pos.size / 3; }
+        int uvCount(){ return uv.size / 2; }
+        int nrmCount(){ return nrm.size / 3; }
+    }
+
+    // ======================== 解析结果 ========================
+
+    public static final class Result {
+        /** 按首次出现顺序；不按材质切分时只有 DEFAULT_GROUP */
+        public final LinkedHashMap<String, Group> groups = new LinkedHashMap<>();
+        /** mtllib 行在关键字之后的原始文本，按出现顺序 */
+        public final List<String> mtllibs = new ArrayList<>();
+        public boolean hasUV, hasNormal;
+        private final MtllibListener listener;
+
+        Result(MtllibListener listener){
+            this.listener = listener;
+            groups.put(DEFAULT_GROUP, new Group(DEFAULT_GROUP));
+        }
+
+        void addMtllib(String rest) throws IOException {
+            mtllibs.add(rest);
+            if (listener != null) listener.onMtllib(rest);
+        }
+
+        /** 旧实现里出现过 vt/vn 后所有组都会被标记，因此最终标记等于文件级标记 */
+        Result finish(boolean uv, boolean n){
+            hasUV = uv; hasNormal = n;
+            for (Group g : groups.values()) { g.seenUV = uv; g.seenN = n; }
+            return this;
+        }
+    }
+
+    /** 遇到 mtllib 时立即回调，调用方可以趁几何还在解析就开始加载材质和贴图 */
+    public interface MtllibListener {
+        void onMtllib(String rest) throws IOException;
+    }
+
+    // ======================== 行扫描（顺序/分块共用） ========================
+
+    /** 扫描结果的去处：v/vt/vn 直接进 pools，f 与低频指令交给子类 */
+    abstract static class Sink {
+        final Pools pools = new Pools();
+        /** corners 为 count 个原始 (v,t,n) 三元组（未解析，缺省分量为 ABSENT） */
+        abstract void face(int[] corners, int count) throws IOException;
+        /** usemtl / mtllib，head 已 strip 并按空白切成两段 */
+        abstract void directive(String[] head) throws IOException;
+    }
+
+    /** 扫描 [start, end) 内的所有行；调用方保证 start 位于行首 */
+    static void scan(ByteBuffer buf, int start, int end, boolean flipV, boolean byMaterial, Sink sink) throws IOException {
+        Pools pools = sink.pools;
+        int[] corners = new int[3 * 16];
+        int p = start;
+        while (p < end) {
+            int eol = p;
+            while (eol < end) { byte c = buf.get(eol); if (c == '\n' || c == '\r') break; eol++; }
+            int s = skipWs(buf, p, eol);
+            if (s < eol && buf.get(s) != '#') {
+                int ke = tokenEnd(buf, s, eol);
+                int klen = ke - s;
+                byte k0 = buf.get(s);
+                if (k0 == 'v' && klen == 1) {
+                    int a = skipWs(buf, ke, eol), ae = need(buf, a, eol);
+                    int b = skipWs(buf, ae, eol), be = need(buf, b, eol);
+                    int c = skipWs(buf, be, eol), ce = need(buf, c, eol);
+                    pools.pos.add3(parseFloat(buf, a, ae), parseFloat(buf, b, be), parseFloat(buf, c, ce));
+                } else if (k0 == 'v' && klen == 2 && buf.get(s+1) == 't') {
+                    int a = skipWs(buf, ke, eol), ae = need(buf, a, eol);
+                    int b = skipWs(buf, ae, eol), be = need(buf, b, eol);
+                    float u = parseFloat(buf, a, ae), v = parseFloat(buf, b, be);
+                    pools.uv.add2(u, flipV ? 1f - v : v);
+                } else if (k0 == 'v' && klen == 2 && buf.get(s+1) == 'n') {
+                    int a = skipWs(buf, ke, eol), ae = need(buf, a, eol);
+                    int b = skipWs(buf, ae, eol), be = need(buf, b, eol);
+                    int c = skipWs(buf, be, eol), ce = need(buf, c, eol);
+                    pools.nrm.add3(parseFloat(buf, a, ae), parseFloat(buf, b, be), parseFloat(buf, c, ce));
+                } else if (k0 == 'f' && klen == 1) {
+                    int count = 0;
+                    int t = skipWs(buf, ke, eol);
+                    while (t < eol) {
+                        int te = tokenEnd(buf, t, eol);
+                        if (count * 3 == corners.length) corners = Arrays.copyOf(corners, corners.length * 2);
+                        parseCorner(buf, t, te, corners, count * 3);
+                        count++;
+                        t = skipWs(buf, te, eol);
+                    }
+                    sink.face(corners, count);
+                } else if (byMaterial && (isKeyword(buf, s, ke, "usemtl") || isKeyword(buf, s, ke, "mtllib"))) {
+                    // 低频指令走 String 路径，语义与旧实现完全相同（strip + 按空白切两段）
+                    String[] head = decode(buf, s, eol).strip().split("\\s+", 2);
+                    if (head.length >= 2) sink.directive(head);
+                }
+            }
+            p = eol + 1;
+        }
+    }
+
+    // ======================== 顺序解析 ========================
+
+    /** 边扫描边去重，适合小文件与 classpath 资源 */
+    private static final class Builder extends Sink {
+        final Result res;
+        Builder(MtllibListener listener){ res = new Result(listener); cur = res.groups.get(DEFAULT_GROUP); }
+        Group cur;
+        int[] ids = new int[16];
+
+        @Override void face(int[] corners, int count) throws IOException {
+            if (count > ids.length) ids = new int[Math.max(count, ids.length * 2)];
+            boolean fillN = pools.nrmCount() > 0, fillUV = pools.uvCount() > 0;
+            for (int i = 0; i < count; i++) {
+                int vi = resolve(corners[i*3], pools.posCount());
+                int ti = corners[i*3+1] != ABSENT ? resolve(corners[i*3+1], pools.uvCount()) : -1;
+                int ni = corners[i*3+2] != ABSENT ? resolve(corners[i*3+2], pools.nrmCount()) : -1;
+                ids[i] = cur.corner(pools, vi, ti, ni, fillN, fillUV);
+            }
+            cur.fan(ids, count);
+        }
+
+        @Override void directive(String[] head) throws IOException {
+            if (head[0].equals("mtllib")) res.addMtllib(head[1]);
+            else cur = res.groups.computeIfAbsent(head[1].trim(), Group::new);
+        }
+    }
+
+    /**
+     * @param byMaterial true 时按 usemtl 切分子网格并收集 mtllib（ObjMtlLoader），
+     *                   false 时整文件一个组（ObjReader）
+     */
+    public static Result parse(ByteBuffer buf, boolean flipV, boolean byMaterial) throws IOException {
+        return parse(buf, flipV, byMaterial, null);
+    }
+
+    public static Result parse(ByteBuffer buf, boolean flipV, boolean byMaterial, MtllibListener listener) throws IOException {
+        Builder b = new Builder(listener);
+        scan(buf, buf.position(), buf.limit(), flipV, byMaterial, b);
+        return b.res.finish(b.pools.uvCount() > 0, b.pools.nrmCount() > 0);
+    }
+
+    // ======================== 内存映射 + 并行解析 ========================
+
+    /** 超过该大小的磁盘文件走分块并行解析 */
+    public static final long PARALLEL_THRESHOLD = 16L << 20;
+    /** 每块最少字节数，太小的块合并开销大于收益 */
+    private static final int MIN_CHUNK = 1 << 20;
+
+    /** 只读映射整个文件（单个映射上限 2 GB） */
+    public static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("OBJ too large to map (> 2 GB): " + path);
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /** 映射磁盘文件；大文件在 common pool 上并行解析，小文件顺序解析 */
+    public static Result parseFile(Path path, boolean flipV, boolean byMaterial) throws IOException {
+        return parseFile(path, flipV, byMaterial, null);
+    }
+
+    public static Result parseFile(Path path, boolean flipV, boolean byMaterial, MtllibListener listener) throws IOException {
+        MappedByteBuffer buf = map(path);
+        if (buf.limit() >= PARALLEL_THRESHOLD) return parseParallel(buf, flipV, byMaterial, ForkJoinPool.commonPool(), listener);
+        return parse(buf, flipV, byMaterial, listener);
+    }
+
+    /** 一个分块的扫描结果：局部顶点池 + 原始面记录，索引留到合并阶段再解析 */
+    private static final class Chunk extends Sink {
+        final IntList corners = new IntList(4096);
+        /** 每个面 5 个 int：首角点偏移、角点数、此刻局部 v/vt/vn 数量（用于负索引和补缺省值） */
+        final IntList faces = new IntList(4096);
+        /** 指令及其之前的面数，按出现顺序 */
+        final List<String[]> directives = new ArrayList<>();
+        final IntList directiveAt = new IntList(16);
+
+        @Override void face(int[] c, int count) {
+            faces.add(corners.size); faces.add(count);
+            faces.add3(pools.posCount(), pools.uvCount(), pools.nrmCount());
+            corners.ensure(count * 3);
+            System.arraycopy(c, 0, corners.a, corners.size, count * 3);
+            corners.size += count * 3;
+        }
+
+        @Override void directive(String[] head) {
+            directives.add(head);
+            directiveAt.add(faces.size / 5);
+        }
+    }
+
+    /**
+     * 分块并行解析：
+     * <ol>
+     *   <li>按行边界把缓冲区切成若干块，在 pool 上并行扫描 v/vt/vn/f；</li>
+     *   <li>按块顺序做前缀和，拼出全局顶点池，并确定 usemtl 分组与每组的面区间；</li>
+     *   <li>各组独立地按文件顺序解析相对索引、去重、三角化（组间并行，组内顺序）。</li>
+     * </ol>
+     * 结果与 {@link #parse} 完全一致。
+     */
+    public static Result parseParallel(ByteBuffer buf, boolean flipV, boolean byMaterial, ForkJoinPool pool) throws IOException {
+        return parseParallel(buf, flipV, byMaterial, pool, null);
+    }
+
+    /** listener 在合并阶段（调用线程上）按文件顺序回调 */
+    public static Result parseParallel(ByteBuffer buf, boolean flipV, boolean byMaterial, ForkJoinPool pool,
+                                       MtllibListener listener) throws IOException {
+        int start = buf.position(), end = buf.limit();
+        int n = (int) Math.max(1, Math.min((long) pool.getParallelism() * 4, (end - start) / MIN_CHUNK));
+        int[] bounds = new int[n + 1];
+        bounds[0] = start; bounds[n] = end;
+        for (int i = 1; i < n; i++) {
+            int q = Math.max(bounds[i-1], start + (int) ((long) (end - start) * i / n));
+            while (q < end) { byte c = buf.get(q++); if (c == '\n' || c == '\r') break; }
+            bounds[i] = q;
+        }
+
+        // ---- 1. 并行扫描 ----
+        List<Callable<Chunk>> scans = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int s = bounds[i], e = bounds[i+1];
+            scans.add(() -> { Chunk c = new Chunk(); scan(buf, s, e, flipV, byMaterial, c); return c; });
+        }
+        List<Chunk> chunks = invokeAll(pool, scans);
+
+        // ---- 2. 合并顶点池、确定分组 ----
+        int[] basePos = new int[n], baseUV = new int[n], baseN = new int[n];
+        Pools global = new Pools();
+        for (int i = 0; i < n; i++) {
+            Pools p = chunks.get(i).pools;
+            basePos[i] = global.posCount(); baseUV[i] = global.uvCount(); baseN[i] = global.nrmCount();
+            append(global.pos, p.pos); append(global.uv, p.uv); append(global.nrm, p.nrm);
+        }
+
+        Result res = new Result(listener);
+        Map<Group, List<int[]>> spans = new HashMap<>(); // 组 → [块号, 起始面, 结束面]
+        Group cur = res.groups.get(DEFAULT_GROUP);
+        for (int i = 0; i < n; i++) {
+            Chunk c = chunks.get(i);
+            int from = 0;
+            for (int d = 0; d < c.directives.size(); d++) {
+                String[] head = c.directives.get(d);
+                int at = c.directiveAt.get(d);
+                if (head[0].equals("mtllib")) { res.addMtllib(head[1]); continue; }
+                if (at > from) spans.computeIfAbsent(cur, k -> new ArrayList<>()).add(new int[]{i, from, at});
+                from = at;
+                cur = res.groups.computeIfAbsent(head[1].trim(), Group::new);
+            }
+            int total = c.faces.size / 5;
+            if (total > from) spans.computeIfAbsent(cur, k -> new ArrayList<>()).add(new int[]{i, from, total});
+        }
+
+        // ---- 3. 各组按文件顺序去重 + 三角化 ----
+        List<Callable<Void>> builds = new ArrayList<>();
+        for (Map.Entry<Group, List<int[]>> e : spans.entrySet()) {
+            Group g = e.getKey();
+            List<int[]> list = e.getValue();
+            builds.add(() -> {
+                int[] ids = new int[16];
+                for (int[] span : list) {
+                    Chunk c = chunks.get(span[0]);
+                    int bp = basePos[span[0]], bt = baseUV[span[0]], bn = baseN[span[0]];
+                    int[] fa = c.faces.a, ca = c.corners.a;
+                    for (int f = span[1]; f < span[2]; f++) {
+                        int off = fa[f*5], count = fa[f*5+1];
+                        int np = bp + fa[f*5+2], nt = bt + fa[f*5+3], nn = bn + fa[f*5+4];
+                        if (count > ids.length) ids = new int[Math.max(count, ids.length * 2)];
+                        for (int k = 0; k < count; k++) {
+                            int v = ca[off + k*3], t = ca[off + k*3+1], nm = ca[off + k*3+2];
+                            int vi = resolve(v, np);
+                            int ti = t != ABSENT ? resolve(t, nt) : -1;
+                            int ni = nm != ABSENT ? resolve(nm, nn) : -1;
+                            ids[k] = g.corner(global, vi, ti, ni, nn > 0, nt > 0);
+                        }
+                        g.fan(ids, count);
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(pool, builds);
+        return res.finish(global.uvCount() > 0, global.nrmCount() > 0);
+    }
+
+    private static void append(FloatList dst, FloatList src){
+        dst.ensure(src.size);
+        System.arraycopy(src.a, 0, dst.a, dst.size, src.size);
+        dst.size += src.size;
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> out = new ArrayList<>(tasks.size());
+        for (Future<T> f : pool.invokeAll(tasks)) {
+            try {
+                out.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("OBJ parse interrupted");
+            } catch (ExecutionException e) {
+                Throwable c = e.getCause();
+                // ForkJoinPool 把 Callable 抛出的受检异常包成 RuntimeException，跨线程重抛时可能再包一层
+                while (c != null && c.getClass() == RuntimeException.class && c.getCause() != null) c = c.getCause();
+                if (c instanceof IOException io) throw io;
+                if (c instanceof RuntimeException re) throw re;
+                throw new IOException(c);
+            }
+        }
+        return out;
+    }
+
+    // ======================== tokenizer ========================
+
+    static boolean isWs(byte c){ return c == ' ' || c == '\t' || c == '\f' || c == 0x0B || c == '\r' || c == '\n'; }
+
+    static int skipWs(ByteBuffer b, int i, int end){ while (i < end && isWs(b.get(i))) i++; return i; }
+
+    static int tokenEnd(ByteBuffer b, int i, int end){ while (i < end && !isWs(b.get(i))) i++; return i; }
+
+    /** 取必需的 token，缺失时报错（旧实现在这里会抛 ArrayIndexOutOfBounds） */
+    private static int need(ByteBuffer b, int s, int eol) throws IOException {
+        if (s >= eol) throw new IOException("malformed OBJ record near byte " + s);
+        return tokenEnd(b, s, eol);
+    }
+
+    private static boolean isKeyword(ByteBuffer b, int s, int e, String kw){
+        if (e - s != kw.length()) return false;
+        for (int i = 0; i < kw.length(); i++) if (b.get(s + i) != kw.charAt(i)) return false;
+        return true;
+    }
+
+    static String decode(ByteBuffer b, int s, int e){
+        byte[] tmp = new byte[e - s];
+        b.get(s, tmp);
+        return new String(tmp, StandardCharsets.UTF_8);
+    }
+
+    /** 与旧实现相同：正数 1 基，负数相对当前池尾 */
+    static int resolve(int idx, int size) throws IOException {
+        int r = (idx > 0) ? (idx - 1) : (size + idx);
+        if (r < 0 || r >= size) throw new IOException("OBJ index " + idx + " out of range (pool size " + size + ")");
+        return r;
+    }
+
+    /** 角点中缺省的 t/n 分量 */
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    /** 解析 "v"、"v/t"、"v//n"、"v/t/n"，缺省分量写 ABSENT */
+    static void parseCorner(ByteBuffer b, int s, int e, int[] out, int o){
+        out[o] = out[o+1] = out[o+2] = ABSENT;
+        int field = 0, i = s;
+        while (field < 3) {
+            int fe = i;
+            while (fe < e && b.get(fe) != '/') fe++;
+            if (fe > i) out[o + field] = parseInt(b, i, fe);
+            else if (field == 0) throw new NumberFormatException("empty vertex index: " + decode(b, s, e));
+            if (fe >= e) break;
+            i = fe + 1; field++;
+        }
+    }
+
+    static int parseInt(ByteBuffer b, int s, int e){
+        int i = s;
+        boolean neg = false;
+        byte c = b.get(i);
+        if (c == '-' || c == '+') { neg = c == '-'; i++; }
+        if (i >= e) throw new NumberFormatException("For input string: \"" + decode(b, s, e) + "\"");
+        long v = 0;
+        for (; i < e; i++) {
+            int d = b.get(i) - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException("For input string: \"" + decode(b, s, e) + "\"");
+            v = v * 10 + d;
+            if (v > Integer.MAX_VALUE + 1L) throw new NumberFormatException("For input string: \"" + decode(b, s, e) + "\"");
+        }
+        if (!neg && v > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + decode(b, s, e) + "\"");
+        return (int) (neg ? -v : v);
+    }
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 十进制 → float，结果与 Float.parseFloat 逐位一致。
+     * 快路径：尾数 < 2^53 且 |10 的指数| ≤ 22 时 double 运算是正确舍入的（Clinger），
+     * 再转 float 只有在 double 恰好落在两个 float 的中点时才可能二次舍入出错，这种情况以及
+     * 非规格化数、超长尾数、hex/NaN/Infinity 等一律回退到 Float.parseFloat。
+     */
+    static float parseFloat(ByteBuffer b, int s, int e){
+        int i = s;
+        boolean neg = false;
+        byte c = b.get(i);
+        if (c == '-' || c == '+') { neg = c == '-'; i++; }
+
+        long mant = 0;
+        int sig = 0, exp = 0;
+        boolean digits = false;
+        for (; i < e; i++) {
+            int d = b.get(i) - '0';
+            if (d < 0 || d > 9) break;
+            digits = true;
+            if (mant == 0 && d == 0) continue;
+            if (++sig > 18) return slowFloat(b, s, e);
+            mant = mant * 10 + d;
+        }
+        if (i < e && b.get(i) == '.') {
+            for (i++; i < e; i++) {
+                int d = b.get(i) - '0';
+                if (d < 0 || d > 9) break;
+                digits = true;
+                exp--;
+                if (mant == 0 && d == 0) continue;
+                if (++sig > 18) return slowFloat(b, s, e);
+                mant = mant * 10 + d;
+            }
+        }
+        if (!digits) return slowFloat(b, s, e);
+        if (i < e && (b.get(i) == 'e' || b.get(i) == 'E')) {
+            i++;
+            boolean eneg = false;
+            if (i < e && (b.get(i) == '-' || b.get(i) == '+')) { eneg = b.get(i) == '-'; i++; }
+            if (i >= e) return slowFloat(b, s, e);
+            int ev = 0;
+            for (; i < e; i++) {
+                int d = b.get(i) - '0';
+                if (d < 0 || d > 9) return slowFloat(b, s, e);
+                if (ev < 10000) ev = ev * 10 + d;
+            }
+            exp += eneg ? -ev : ev;
+        }
+        if (i != e) return slowFloat(b, s, e);
+
+        if (mant == 0) return neg ? -0f : 0f;
+        if (mant >= (1L << 53) || exp < -22 || exp > 22) return slowFloat(b, s, e);
+        double d = exp >= 0 ? mant * POW10[exp] : mant / POW10[-exp];
+        if (d < Float.MIN_NORMAL || d > Float.MAX_VALUE) return slowFloat(b, s, e);
+        if ((Double.doubleToRawLongBits(d) & 0x1FFFFFFFL) == 0x10000000L) return slowFloat(b, s, e);
+        float f = (float) d;
+        return neg ? -f : f;
+    }
+
+    private static float slowFloat(ByteBuffer b, int s, int e){
+        return Float.parseFloat(decode(b, s, e));
+    }
+}
@@ -0,0 +1,166 @@
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 离屏渲染目标：RGBA8 颜色 + 24 位深度的 FBO，可选 MSAA（渲染到多重采样 FBO，读回前 blit 到单采样 FBO）。
+ * <p>
+ * 读回是异步的：{@link #capture} 只发出 glReadPixels 到一圈 PBO 并插 fence，不等 GPU；
+ * 像素在几帧之后（槽位被重新使用时或 {@link #drain()} 时）映射出来交给回调。
+ * 这样 GPU 渲染第 N 帧时 CPU 可以继续提交第 N+1 帧，吞吐不受一次完整往返的限制。
+ * 只能在 GL 线程使用。
+ */
+public class OffscreenTarget implements AutoCloseable {
+
+    /** 读回完成：rgba 自底向上逐行（GL 约定），只在回调期间有效，需要保留就拷走 */
+    public interface Sink {
+        void accept(ByteBuffer rgba, int width, int height, Object tag);
+    }
+
+    private final int width, height, samples;
+    private final int fbo, color, depth;
+    private final int resolveFbo, resolveColor; // samples > 1 时才有
+    private final int[] pbos;
+    private final long[] fences;
+    private final Object[] tags;
+    private final Sink[] sinks;
+    private int next;
+
+    public OffscreenTarget(int width, int height, int samples) {
+        this(width, height, samples, 3);
+    }
+
+    /** slots：同时在途的读回数 */
+    public OffscreenTarget(int width, int height, int samples, int slots) {
+        this.width = width;
+        this.height = height;
+        this.samples = Math.max(1, Math.min(samples, glGetInteger(GL_MAX_SAMPLES)));
+
+        fbo = glGenFramebuffers();
+        color = glGenRenderbuffers();
+        depth = glGenRenderbuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        storage(color, GL_RGBA8);
+        storage(depth, GL_DEPTH_COMPONENT24);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, color);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depth);
+        check("offscreen");
+
+        if (this.samples > 1) {
+            resolveFbo = glGenFramebuffers();
+            resolveColor = glGenRenderbuffers();
+            glBindFramebuffer(GL_FRAMEBUFFER, resolveFbo);
+            glBindRenderbuffer(GL_RENDERBUFFER, resolveColor);
+            glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, width, height);
+            glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, resolveColor);
+            check("resolve");
+        } else {
+            resolveFbo = 0;
+            resolveColor = 0;
+        }
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+
+        pbos = new int[Math.max(1, slots)];
+        fences = new long[pbos.length];
+        tags = new Object[pbos.length];
+        sinks = new Sink[pbos.length];
+        for (int i = 0; i < pbos.length; i++) {
+            pbos[i] = glGenBuffers();
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+            glBufferData(GL_PIXEL_PACK_BUFFER, (long) width * height * 4, GL_STREAM_READ);
+        }
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    private void storage(int rb, int format) {
+        glBindRenderbuffer(GL_RENDERBUFFER, rb);
+        if (samples > 1) glRenderbufferStorageMultisample(GL_RENDERBUFFER, samples, format, width, height);
+        else glRenderbufferStorage(GL_RENDERBUFFER, format, width, height);
+    }
+
+    private static void check(String what) {
+        int s = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if (s != GL_FRAMEBUFFER_COMPLETE) throw new IllegalStateException(what + " framebuffer incomplete: 0x" + Integer.toHexString(s));
+    }
+
+    public int width() { return width; }
+    public int height() { return height; }
+    public int samples() { return samples; }
+
+    /** 之后的绘制进这个 FBO；视口设为整个目标 */
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glViewport(0, 0, width, height);
+    }
+
+    /**
+     * 把当前画面排进读回队列（必要时先解析 MSAA），tag 原样交给回调。
+     * 下一个槽位若还有未取走的结果，先等它完成并回调——所以最多有 slots 帧在途。
+     */
+    public void capture(Object tag, Sink sink) {
+        int i = next;
+        next = (next + 1) % pbos.length;
+        if (fences[i] != 0L) complete(i);
+
+        if (resolveFbo != 0) {
+            glBindFramebuffer(GL_READ_FRAMEBUFFER, fbo);
+            glBindFramebuffer(GL_DRAW_FRAMEBUFFER, resolveFbo);
+            glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+            glBindFramebuffer(GL_READ_FRAMEBUFFER, resolveFbo);
+        } else {
+            glBindFramebuffer(GL_READ_FRAMEBUFFER, fbo);
+        }
+        glReadBuffer(GL_COLOR_ATTACHMENT0);
+        glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0L);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        fences[i] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        tags[i] = tag;
+        sinks[i] = sink;
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+    }
+
+    /** 按提交顺序取走所有在途的读回 */
+    public void drain() {
+        for (int k = 0; k < pbos.length; k++) {
+            int i = (next + k) % pbos.length;
+            if (fences[i] != 0L) complete(i);
+        }
+    }
+
+    private void complete(int i) {
+        glClientWaitSync(fences[i], GL_SYNC_FLUSH_COMMANDS_BIT, Long.MAX_VALUE);
+        glDeleteSync(fences[i]);
+        fences[i] = 0L;
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+        ByteBuffer px = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, (long) width * height * 4, GL_MAP_READ_BIT);
+        try {
+            if (px != null) sinks[i].accept(px, width, height, tags[i]);
+        } finally {
+            glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            tags[i] = null;
+            sinks[i] = null;
+        }
+    }
+
+    /** 把 GL 自底向上的行序翻成图片文件的自顶向下，写进 dst（position 起 width*height*4 字节） */
+    public static void flipRows(ByteBuffer src, int width, int height, ByteBuffer dst) {
+        int row = width * 4;
+        long s = MemoryUtil.memAddress(src), d = MemoryUtil.memAddress(dst);
+        for (int y = 0; y < height; y++) MemoryUtil.memCopy(s + (long) (height - 1 - y) * row, d + (long) y * row, row);
+    }
+
+    @Override public void close() {
+        drain();
+        for (int p : pbos) glDeleteBuffers(p);
+        glDeleteFramebuffers(fbo);
+        glDeleteRenderbuffers(color);
+        glDeleteRenderbuffers(depth);
+        if (resolveFbo != 0) { glDeleteFramebuffers(resolveFbo); glDeleteRenderbuffers(resolveColor); }
+    }
+}
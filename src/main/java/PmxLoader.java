@@ -0,0 +1,538 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * PMX 2.0 / 2.1（MikuMikuDance 模型）二进制加载器：直接从映射的 ByteBuffer 读顶点、面、贴图、材质四节，
+ * 每个材质一个 Part，几何与 OBJ 走同一条重排 + LOD + .gmesh 缓存的流水线，贴图经 TextureCache 后台解码。
+ * <p>
+ * 坐标：PMX 是左手系（+Z 朝屏幕里），读入时 z 取反、三角形绕序随之翻转；UV 原点在左上角，与 STB 解码后
+ * 第 0 行在 t=0 的约定一致，不需要翻转 V。
+ * <p>
+ * 材质只用到漫反射色与漫反射贴图，sphere / toon 贴图与描边不用。骨骼与顶点权重读入后建成 {@link Skeleton} 与
+ * {@link Skin}（GPU 蒙皮，-Dpmx.skin=false 关闭）；IK、付与（append）只记录不求解。顶点 / 组变形建成稀疏的
+ * {@link Morphs}（表情，-Dpmx.morph=false 关闭），其它变形类型只读名字。显示枠及之后的节暂不读取
+ * （{@link Parsed#displayOffset} 记下了位置）。
+ */
+public final class PmxLoader {
+    private PmxLoader() {}
+
+    private static final int MAGIC = 0x20584D50; // "PMX "
+
+    /** 材质节的一项；indexCount 个索引紧接在前一个材质之后 */
+    public static final class PmxMaterial {
+        public String name, nameEn, memo;
+        public final float[] diffuse = new float[4], specular = new float[3], ambient = new float[3], edgeColor = new float[4];
+        public float specularPower, edgeSize;
+        public int flags, texture = -1, sphereTexture = -1, sphereMode, toon = -1;
+        public boolean sharedToon;
+        public int firstIndex, indexCount;
+    }
+
+    /** 骨骼节的一项：位置已转成右手系；parent / appendParent / ikTarget 为 -1 表示无 */
+    public static final class PmxBone {
+        public static final int TAIL_IS_BONE = 0x0001, IK = 0x0020, APPEND_ROTATE = 0x0100, APPEND_TRANSLATE = 0x0200,
+                FIXED_AXIS = 0x0400, LOCAL_AXIS = 0x0800, AFTER_PHYSICS = 0x1000, EXTERNAL_PARENT = 0x2000;
+        public String name, nameEn;
+        public final float[] position = new float[3];
+        public int parent = -1, layer, flags;
+        public int appendParent = -1;
+        public float appendRatio;
+        public int ikTarget = -1;
+        public int[] ikLinks = new int[0];
+    }
+
+    /**
+     * 变形节的一项。顶点变形：targets 为源顶点，values 每项 3 个 float（位移，已转右手系）；
+     * 组 / 翻转变形：targets 为其它变形，values 为比例；骨骼变形：values 每项平移 3 + 旋转四元数 4。
+     * 其余类型（UV、材质、冲量）只保留名字与类型。
+     */
+    public static final class PmxMorph {
+        public static final int GROUP = 0, VERTEX = 1, BONE = 2, MATERIAL = 8, FLIP = 9;
+        public String name, nameEn;
+        /** 编辑器里的分组：1 眉、2 目、3 口、4 其他 */
+        public int panel, type;
+        public int[] targets = new int[0];
+        public float[] values = new float[0];
+    }
+
+    /** 解析结果（不碰 GL）：顶点数组已转成右手系 */
+    public static final class Parsed {
+        public float version;
+        public String name, nameEn, comment;
+        public int vertexCount;
+        public float[] positions, normals, uvs;
+        public int[] indices;
+        public String[] textures;
+        public final List<PmxMaterial> materials = new ArrayList<>();
+        /** 每顶点 4 个骨骼影响（下标 + 权重），权重已归一化，未用的槽权重为 0 */
+        public int[] skinBones;
+        public float[] skinWeights;
+        public final List<PmxBone> bones = new ArrayList<>();
+        /** 骨骼节、变形（morph）节在文件里的起点 */
+        public int bonesOffset, morphsOffset;
+        public final List<PmxMorph> morphs = new ArrayList<>();
+        /** 显示枠节在文件里的起点（尚未解析） */
+        public int displayOffset;
+        int encoding, additionalUVs, vertexIndexSize, textureIndexSize, materialIndexSize, boneIndexSize, morphIndexSize, rigidIndexSize;
+
+        /** 第 i 个材质的几何：只含它用到的顶点，交错为 pos + normal + uv */
+        public MeshData part(int i, String partName) {
+            PmxMaterial m = materials.get(i);
+            int[] remap = new int[vertexCount];
+            Arrays.fill(remap, -1);
+            int[] ix = new int[m.indexCount];
+            int used = 0;
+            for (int k = 0; k < m.indexCount; k++) {
+                int v = indices[m.firstIndex + k];
+                if (remap[v] < 0) remap[v] = used++;
+                ix[k] = remap[v];
+            }
+            float[] out = new float[used * 8];
+            for (int v = 0; v < vertexCount; v++) {
+                int r = remap[v];
+                if (r < 0) continue;
+                int o = r * 8;
+                out[o] = positions[v * 3]; out[o + 1] = positions[v * 3 + 1]; out[o + 2] = positions[v * 3 + 2];
+                out[o + 3] = normals[v * 3]; out[o + 4] = normals[v * 3 + 1]; out[o + 5] = normals[v * 3 + 2];
+                out[o + 6] = uvs[v * 2]; out[o + 7] = uvs[v * 2 + 1];
+            }
+            return new MeshData(partName, true, true, out, ix);
+        }
+
+        /**
+         * 第 i 个材质重排之后的顶点（{@link #part} 的布局，可能来自 .gmesh 缓存）逐个对回源顶点：
+         * 重排只搬动、不改写 float，按位相等即可匹配。属性完全相同的两个源顶点取其一，二者本就重合。
+         */
+        int[] sourceVertices(int i, FloatBuffer v, int stride) {
+            PmxMaterial m = materials.get(i);
+            Map<Long, Integer> byKey = new HashMap<>(m.indexCount);
+            for (int k = 0; k < m.indexCount; k++) {
+                int s = indices[m.firstIndex + k];
+                byKey.putIfAbsent(vertexKey(positions, normals, uvs, s), s);
+            }
+            int n = v.remaining() / stride, base = v.position();
+            int[] out = new int[n];
+            float[] f = new float[8];
+            for (int k = 0; k < n; k++) {
+                v.get(base + k * stride, f, 0, 8);
+                Integer s = byKey.get(vertexKey(f, 0));
+                if (s == null || !sameVertex(f, s)) s = findVertex(m, f);
+                if (s == null) throw new IllegalStateException("PMX material " + i + ": vertex " + k + " has no source vertex");
+                out[k] = s;
+            }
+            return out;
+        }
+
+        private Integer findVertex(PmxMaterial m, float[] f) { // 键冲突时的兜底
+            for (int k = 0; k < m.indexCount; k++) if (sameVertex(f, indices[m.firstIndex + k])) return indices[m.firstIndex + k];
+            return null;
+        }
+
+        private boolean sameVertex(float[] f, int s) {
+            return f[0] == positions[s * 3] && f[1] == positions[s * 3 + 1] && f[2] == positions[s * 3 + 2]
+                    && f[3] == normals[s * 3] && f[4] == normals[s * 3 + 1] && f[5] == normals[s * 3 + 2]
+                    && f[6] == uvs[s * 2] && f[7] == uvs[s * 2 + 1];
+        }
+
+        private static long vertexKey(float[] pos, float[] nrm, float[] uv, int s) {
+            long h = 0;
+            for (int k = 0; k < 3; k++) h = h * 0x9E3779B97F4A7C15L + Float.floatToRawIntBits(pos[s * 3 + k]);
+            for (int k = 0; k < 3; k++) h = h * 0x9E3779B97F4A7C15L + Float.floatToRawIntBits(nrm[s * 3 + k]);
+            for (int k = 0; k < 2; k++) h = h * 0x9E3779B97F4A7C15L + Float.floatToRawIntBits(uv[s * 2 + k]);
+            return h;
+        }
+
+        private static long vertexKey(float[] f, int o) {
+            long h = 0;
+            for (int k = 0; k < 8; k++) h = h * 0x9E3779B97F4A7C15L + Float.floatToRawIntBits(f[o + k]);
+            return h;
+        }
+    }
+
+    // ------------------------------------------------------------------
+
+    public static Model loadResource(String pmxResPath) throws IOException {
+        return loadResource(pmxResPath, null);
+    }
+
+    /** classpath 资源；贴图相对 .pmx 所在目录 */
+    public static Model loadResource(String pmxResPath, UploadQueue uploads) throws IOException {
+        String res = pmxResPath.startsWith("/") ? pmxResPath.substring(1) : pmxResPath;
+        ByteBuffer src = AssetPack.resource(res);
+        String baseDir = res.substring(0, res.lastIndexOf('/') + 1);
+        return load(src, res, tex -> TextureCache.acquireResourceAsync(baseDir + tex, true), uploads);
+    }
+
+    public static Model load(Path pmxFile) throws IOException {
+        return load(pmxFile, null);
+    }
+
+    /** 磁盘文件：内存映射后直接解析 */
+    public static Model load(Path pmxFile, UploadQueue uploads) throws IOException {
+        Path dir = pmxFile.toAbsolutePath().getParent();
+        return load(ObjParser.map(pmxFile), pmxFile.toAbsolutePath().toString(), tex -> TextureCache.acquireAsync(dir.resolve(tex), true), uploads);
+    }
+
+    private static Model load(ByteBuffer src, String source, Function<String, TextureCache.Pending> textures,
+                              UploadQueue uploads) throws IOException {
+        long t0 = System.nanoTime();
+        Parsed p = parse(src);
+        long t1 = System.nanoTime();
+
+        // 材质先建好、贴图先提交解码，几何重排与解码并行
+        Map<String, Material> materials = new LinkedHashMap<>();
+        String[] partNames = new String[p.materials.size()];
+        for (int i = 0; i < partNames.length; i++) {
+            PmxMaterial pm = p.materials.get(i);
+            partNames[i] = i + ":" + pm.name; // 材质名允许重复，加序号保证唯一
+            Material m = new Material();
+            m.name = pm.name;
+            m.kdR = pm.diffuse[0]; m.kdG = pm.diffuse[1]; m.kdB = pm.diffuse[2];
+            m.ksR = pm.specular[0]; m.ksG = pm.specular[1]; m.ksB = pm.specular[2];
+            m.shininess = pm.specularPower;
+            // 同一张贴图只解码一次（TextureCache），每个材质各持一个引用
+            if (pm.texture >= 0 && pm.texture < p.textures.length) m.mapKdPending = textures.apply(p.textures[pm.texture]);
+            materials.put(partNames[i], m);
+        }
+
+        Model model = null;
+        try {
+            boolean skin = skinEnabled() && !p.bones.isEmpty(), morph = morphsEnabled() && hasVertexMorphs(p);
+            List<int[]> sources = new ArrayList<>();
+            model = ObjMtlLoader.buildModel(src, source, partNames.length, i -> p.part(i, partNames[i]), materials, uploads,
+                    !skin && !morph ? null : (index, part, v, stride) -> sources.add(p.sourceVertices(Integer.parseInt(part.substring(0, part.indexOf(':'))), v, stride)));
+            int[][] map = sources.toArray(new int[0][]);
+            if (skin) {
+                model.skeleton = Skeleton.of(p.bones);
+                model.skin = Skin.attach(model, map, p.skinBones, p.skinWeights);
+            }
+            if (morph) {
+                // 着色器按 gl_VertexID 取位移：要求各 Part 在同一个缓冲里首尾相接（合并缓冲，或只有一个 Part）
+                if (contiguous(model, map)) model.morphs = Morphs.of(p.morphs, map, p.vertexCount);
+                else System.err.println("WARN: pmx morphs need merged buffers (-Dobj.merge=true), expressions disabled");
+            }
+            // 没有三角形的材质不会成为 Part，Model.close 管不到它们，这里先归还
+            for (Material m : materials.values()) if (model.parts.stream().noneMatch(part -> part.material == m)) m.close();
+            for (Material m : materials.values()) {
+                try {
+                    m.resolveTextures(uploads);
+                } catch (IOException e) { // 缺贴图不致命：该材质退回纯色
+                    System.err.println("WARN: pmx texture failed for material " + m.name + ": " + e.getMessage());
+                    m.mapKdPending = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            if (model != null) model.close();
+            for (Material m : materials.values()) m.close(); // 重复 close 无害
+            throw e;
+        }
+        long t2 = System.nanoTime();
+        if (ObjMtlLoader.verbose()) System.out.printf("INFO: PMX %.1f '%s': %d vertices, %d triangles, %d materials, %d textures, %d bones%s, %d morphs;"
+                        + " parse %.1f ms, total %.1f ms%n", p.version, p.name, p.vertexCount, p.indices.length / 3,
+                p.materials.size(), p.textures.length, p.bones.size(), model.skin != null ? " (GPU skinned)" : "",
+                model.morphs != null ? model.morphs.count() : 0,
+                (t1 - t0) / 1e6, (t2 - t0) / 1e6);
+        return model;
+    }
+
+    /** -Dpmx.skin=false：不建骨骼与蒙皮数据，按静态网格画绑定姿势 */
+    static boolean skinEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("pmx.skin", "true"));
+    }
+
+    /** -Dpmx.morph=false：不建表情数据 */
+    static boolean morphsEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("pmx.morph", "true"));
+    }
+
+    private static boolean hasVertexMorphs(Parsed p) {
+        for (PmxMorph m : p.morphs) if (m.type == PmxMorph.VERTEX && m.targets.length > 0) return true;
+        return false;
+    }
+
+    /** 各 Part 的 baseVertex 正好是前面各 Part 顶点数之和，且共用一个 VAO */
+    private static boolean contiguous(Model model, int[][] map) {
+        int base = 0;
+        for (int i = 0; i < map.length; i++) {
+            Mesh mesh = model.parts.get(i).mesh;
+            if (mesh.baseVertex() != base || mesh.vao() != model.parts.get(0).mesh.vao()) return false;
+            base += map[i].length;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+
+    /** 解析到变形节为止；src 的 position 不变。格式不对或文件截断时抛 IOException */
+    public static Parsed parse(ByteBuffer src) throws IOException {
+        ByteBuffer b = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return parseSections(b);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("truncated PMX at byte " + b.position(), e);
+        }
+    }
+
+    private static Parsed parseSections(ByteBuffer b) throws IOException {
+        if (b.getInt() != MAGIC) throw new IOException("not a PMX file");
+        Parsed p = new Parsed();
+        p.version = b.getFloat();
+        if (p.version < 2.0f || p.version > 2.1f + 1e-4f) throw new IOException("unsupported PMX version " + p.version);
+        int globals = b.get() & 0xFF;
+        if (globals < 8) throw new IOException("PMX header has " + globals + " globals, expected at least 8");
+        byte[] g = new byte[globals];
+        b.get(g);
+        p.encoding = g[0];
+        p.additionalUVs = g[1];
+        p.vertexIndexSize = g[2];
+        p.textureIndexSize = g[3];
+        p.materialIndexSize = g[4];
+        p.boneIndexSize = g[5];
+        p.morphIndexSize = g[6];
+        p.rigidIndexSize = g[7];
+        if (p.encoding != 0 && p.encoding != 1) throw new IOException("unknown PMX text encoding " + p.encoding);
+        if (p.additionalUVs < 0 || p.additionalUVs > 4) throw new IOException("bad PMX additional UV count " + p.additionalUVs);
+        Charset cs = p.encoding == 0 ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_8;
+
+        p.name = text(b, cs);
+        p.nameEn = text(b, cs);
+        p.comment = text(b, cs);
+        text(b, cs); // 英文注释
+
+        // ---- 顶点 ----
+        int n = count(b, "vertex");
+        p.vertexCount = n;
+        float[] pos = p.positions = new float[n * 3], nrm = p.normals = new float[n * 3], uv = p.uvs = new float[n * 2];
+        int[] sb = p.skinBones = new int[n * 4];
+        float[] sw = p.skinWeights = new float[n * 4];
+        int skipUV = p.additionalUVs * 16, bone = p.boneIndexSize;
+        for (int i = 0; i < n; i++) {
+            pos[i * 3] = b.getFloat(); pos[i * 3 + 1] = b.getFloat(); pos[i * 3 + 2] = -b.getFloat();
+            nrm[i * 3] = b.getFloat(); nrm[i * 3 + 1] = b.getFloat(); nrm[i * 3 + 2] = -b.getFloat();
+            uv[i * 2] = b.getFloat(); uv[i * 2 + 1] = b.getFloat();
+            skip(b, skipUV);
+            int deform = b.get() & 0xFF, o = i * 4;
+            switch (deform) {
+                case 0 -> {                                 // BDEF1
+                    sb[o] = signedIndex(b, bone); sw[o] = 1f;
+                }
+                case 1, 3 -> {                              // BDEF2；SDEF 按 BDEF2 线性混合，C / R0 / R1 跳过
+                    sb[o] = signedIndex(b, bone); sb[o + 1] = signedIndex(b, bone);
+                    float w = b.getFloat();
+                    sw[o] = w; sw[o + 1] = 1f - w;
+                    if (deform == 3) skip(b, 36);
+                }
+                case 2, 4 -> {                              // BDEF4；QDEF(2.1) 同样按线性混合
+                    for (int k = 0; k < 4; k++) sb[o + k] = signedIndex(b, bone);
+                    for (int k = 0; k < 4; k++) sw[o + k] = b.getFloat();
+                }
+                default -> throw new IOException("unknown PMX weight type " + deform + " at vertex " + i);
+            }
+            b.getFloat(); // 描边倍率
+        }
+
+        // ---- 面：顶点索引 1/2 字节无符号，4 字节有符号 ----
+        int ni = count(b, "index");
+        if (ni % 3 != 0) throw new IOException("PMX index count " + ni + " is not a multiple of 3");
+        int[] ix = p.indices = new int[ni];
+        switch (p.vertexIndexSize) {
+            case 1 -> { for (int i = 0; i < ni; i++) ix[i] = b.get() & 0xFF; }
+            case 2 -> { for (int i = 0; i < ni; i++) ix[i] = b.getShort() & 0xFFFF; }
+            case 4 -> { for (int i = 0; i < ni; i++) ix[i] = b.getInt(); }
+            default -> throw new IOException("bad PMX vertex index size " + p.vertexIndexSize);
+        }
+        for (int i = 0; i < ni; i += 3) {
+            int a = ix[i], c = ix[i + 1], d = ix[i + 2];
+            if (a < 0 || a >= n || c < 0 || c >= n || d < 0 || d >= n) throw new IOException("PMX face " + i / 3 + " references a missing vertex");
+            ix[i + 1] = d; ix[i + 2] = c; // z 取反后翻转绕序
+        }
+
+        // ---- 贴图路径：统一成 '/' 分隔 ----
+        int nt = count(b, "texture");
+        p.textures = new String[nt];
+        for (int i = 0; i < nt; i++) p.textures[i] = text(b, cs).replace('\\', '/');
+
+        // ---- 材质 ----
+        int nm = count(b, "material");
+        int first = 0;
+        for (int i = 0; i < nm; i++) {
+            PmxMaterial m = new PmxMaterial();
+            m.name = text(b, cs);
+            m.nameEn = text(b, cs);
+            for (int k = 0; k < 4; k++) m.diffuse[k] = b.getFloat();
+            for (int k = 0; k < 3; k++) m.specular[k] = b.getFloat();
+            m.specularPower = b.getFloat();
+            for (int k = 0; k < 3; k++) m.ambient[k] = b.getFloat();
+            m.flags = b.get() & 0xFF;
+            for (int k = 0; k < 4; k++) m.edgeColor[k] = b.getFloat();
+            m.edgeSize = b.getFloat();
+            m.texture = signedIndex(b, p.textureIndexSize);
+            m.sphereTexture = signedIndex(b, p.textureIndexSize);
+            m.sphereMode = b.get() & 0xFF;
+            m.sharedToon = b.get() != 0;
+            m.toon = m.sharedToon ? b.get() & 0xFF : signedIndex(b, p.textureIndexSize);
+            m.memo = text(b, cs);
+            m.indexCount = b.getInt();
+            m.firstIndex = first;
+            if (m.indexCount < 0 || m.indexCount % 3 != 0 || (long) first + m.indexCount > ni) {
+                throw new IOException("PMX material " + i + " has a bad index count " + m.indexCount);
+            }
+            first += m.indexCount;
+            p.materials.add(m);
+        }
+        p.bonesOffset = b.position();
+
+        // ---- 骨骼 ----
+        int nb = count(b, "bone");
+        for (int i = 0; i < nb; i++) {
+            PmxBone bn = new PmxBone();
+            bn.name = text(b, cs);
+            bn.nameEn = text(b, cs);
+            bn.position[0] = b.getFloat(); bn.position[1] = b.getFloat(); bn.position[2] = -b.getFloat();
+            bn.parent = signedIndex(b, bone);
+            bn.layer = b.getInt();
+            bn.flags = b.getShort() & 0xFFFF;
+            if ((bn.flags & PmxBone.TAIL_IS_BONE) != 0) signedIndex(b, bone);
+            else skip(b, 12);
+            if ((bn.flags & (PmxBone.APPEND_ROTATE | PmxBone.APPEND_TRANSLATE)) != 0) {
+                bn.appendParent = signedIndex(b, bone);
+                bn.appendRatio = b.getFloat();
+            }
+            if ((bn.flags & PmxBone.FIXED_AXIS) != 0) skip(b, 12);
+            if ((bn.flags & PmxBone.LOCAL_AXIS) != 0) skip(b, 24);
+            if ((bn.flags & PmxBone.EXTERNAL_PARENT) != 0) b.getInt();
+            if ((bn.flags & PmxBone.IK) != 0) {
+                bn.ikTarget = signedIndex(b, bone);
+                b.getInt();   // 迭代次数
+                b.getFloat(); // 单步角度限制
+                int links = count(b, "IK link");
+                bn.ikLinks = new int[links];
+                for (int k = 0; k < links; k++) {
+                    bn.ikLinks[k] = signedIndex(b, bone);
+                    if (b.get() != 0) skip(b, 24); // 角度上下限
+                }
+            }
+            if (bn.parent < -1 || bn.parent >= nb) throw new IOException("PMX bone " + i + " has a bad parent " + bn.parent);
+            p.bones.add(bn);
+        }
+        normalizeWeights(p.skinBones, p.skinWeights, nb);
+        p.morphsOffset = b.position();
+
+        // ---- 变形：顶点 / 组 / 骨骼变形留下数据，其余类型按长度跳过 ----
+        int nmo = count(b, "morph");
+        for (int i = 0; i < nmo; i++) {
+            PmxMorph mo = new PmxMorph();
+            mo.name = text(b, cs);
+            mo.nameEn = text(b, cs);
+            mo.panel = b.get() & 0xFF;
+            mo.type = b.get() & 0xFF;
+            int no = count(b, "morph offset");
+            switch (mo.type) {
+                case PmxMorph.GROUP, PmxMorph.FLIP -> {
+                    mo.targets = new int[no]; mo.values = new float[no];
+                    for (int k = 0; k < no; k++) {
+                        mo.targets[k] = signedIndex(b, p.morphIndexSize);
+                        mo.values[k] = b.getFloat();
+                        if (mo.targets[k] < 0 || mo.targets[k] >= nmo) throw new IOException("PMX morph " + i + " references a missing morph");
+                    }
+                }
+                case PmxMorph.VERTEX -> {
+                    mo.targets = new int[no]; mo.values = new float[no * 3];
+                    for (int k = 0; k < no; k++) {
+                        int v = mo.targets[k] = vertexIndex(b, p.vertexIndexSize);
+                        if (v < 0 || v >= n) throw new IOException("PMX morph " + i + " references a missing vertex");
+                        mo.values[k * 3] = b.getFloat(); mo.values[k * 3 + 1] = b.getFloat(); mo.values[k * 3 + 2] = -b.getFloat();
+                    }
+                }
+                case PmxMorph.BONE -> {
+                    mo.targets = new int[no]; mo.values = new float[no * 7];
+                    for (int k = 0; k < no; k++) {
+                        mo.targets[k] = signedIndex(b, bone);
+                        float[] v = mo.values;
+                        int o = k * 7;
+                        v[o] = b.getFloat(); v[o + 1] = b.getFloat(); v[o + 2] = -b.getFloat();
+                        // 镜像 z 之后四元数的 x、y 取反
+                        v[o + 3] = -b.getFloat(); v[o + 4] = -b.getFloat(); v[o + 5] = b.getFloat(); v[o + 6] = b.getFloat();
+                    }
+                }
+                case 3, 4, 5, 6, 7 -> skip(b, no * (p.vertexIndexSize + 16));               // UV / 追加 UV
+                case PmxMorph.MATERIAL -> skip(b, no * (p.materialIndexSize + 113));
+                case 10 -> skip(b, no * (p.rigidIndexSize + 25));                            // 冲量（2.1）
+                default -> throw new IOException("unknown PMX morph type " + mo.type + " at morph " + i);
+            }
+            p.morphs.add(mo);
+        }
+        p.displayOffset = b.position();
+        return p;
+    }
+
+    /** 顶点索引：1/2 字节无符号，4 字节有符号 */
+    private static int vertexIndex(ByteBuffer b, int size) throws IOException {
+        return switch (size) {
+            case 1 -> b.get() & 0xFF;
+            case 2 -> b.getShort() & 0xFFFF;
+            case 4 -> b.getInt();
+            default -> throw new IOException("bad PMX vertex index size " + size);
+        };
+    }
+
+    /**
+     * 每个顶点 4 个影响：无效骨骼（-1 或越界）和负权重清零，其余归一化；
+     * 没有任何有效影响的顶点挂到 0 号骨骼上（没有骨骼时权重全为 0，蒙皮不会用到）。
+     */
+    private static void normalizeWeights(int[] bones, float[] weights, int boneCount) {
+        for (int o = 0; o < bones.length; o += 4) {
+            float sum = 0f;
+            for (int k = o; k < o + 4; k++) {
+                if (bones[k] < 0 || bones[k] >= boneCount || !(weights[k] > 0f)) { bones[k] = 0; weights[k] = 0f; }
+                sum += weights[k];
+            }
+            if (sum > 0f) for (int k = o; k < o + 4; k++) weights[k] /= sum;
+            else if (boneCount > 0) weights[o] = 1f;
+        }
+    }
+
+    /** 跳过 n 字节；越过末尾与读越界一样按截断处理（position 越界抛的是 IllegalArgumentException） */
+    private static void skip(ByteBuffer b, int n) {
+        if (n < 0 || n > b.remaining()) throw new BufferUnderflowException();
+        b.position(b.position() + n);
+    }
+
+    private static int count(ByteBuffer b, String what) throws IOException {
+        int n = b.getInt();
+        if (n < 0 || n > b.remaining()) throw new IOException("bad PMX " + what + " count " + n);
+        return n;
+    }
+
+    /** 贴图 / 骨骼等非顶点索引：有符号，-1 表示无 */
+    private static int signedIndex(ByteBuffer b, int size) throws IOException {
+        return switch (size) {
+            case 1 -> b.get();
+            case 2 -> b.getShort();
+            case 4 -> b.getInt();
+            default -> throw new IOException("bad PMX index size " + size);
+        };
+    }
+
+    private static String text(ByteBuffer b, Charset cs) throws IOException {
+        int len = b.getInt();
+        if (len < 0 || len > b.remaining()) throw new IOException("bad PMX string length " + len);
+        if (len == 0) return "";
+        byte[] bytes = new byte[len];
+        b.get(bytes);
+        return new String(bytes, cs);
+    }
+}
@@ -0,0 +1,115 @@
+import org.lwjgl.stb.STBEasyFont;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 左上角的文本叠加层（{@link FrameProfiler#overlayText()} 之类的多行文本）。
+ * 字形用 stb_easy_font 直接生成成四边形，不需要字体纹理；四边形经一个预先生成的索引缓冲画成三角形。
+ * 画之前关深度测试、开混合，画完恢复。只能在 GL 线程使用。
+ */
+public class ProfilerOverlay implements AutoCloseable {
+
+    private static final int MAX_QUADS = 16384;
+    /** stb_easy_font 的顶点：x, y, z (float) + RGBA8 */
+    private static final int VERTEX_BYTES = 16;
+
+    private static final String VS =
+            "#version 330 core\n" +
+                    "layout(location=0) in vec2 aPos;\n" +
+                    "layout(location=1) in vec4 aColor;\n" +
+                    "uniform vec2 uScreen;\n" +       // 像素 → NDC，y 向下
+                    "uniform vec2 uOffset;\n" +
+                    "uniform float uScale;\n" +
+                    "out vec4 vColor;\n" +
+                    "void main(){ vec2 p = aPos * uScale + uOffset;\n" +
+                    "  gl_Position = vec4(p.x / uScreen.x * 2.0 - 1.0, 1.0 - p.y / uScreen.y * 2.0, 0.0, 1.0); vColor = aColor; }\n";
+    private static final String FS =
+            "#version 330 core\n" +
+                    "in vec4 vColor;\n" +
+                    "uniform vec4 uTint;\n" +         // 非负时覆盖文字颜色（阴影用）
+                    "out vec4 FragColor;\n" +
+                    "void main(){ FragColor = uTint.a >= 0.0 ? uTint : vColor; }\n";
+
+    private final ShaderProgram shader = new ShaderProgram(VS, FS);
+    private final int vao = glGenVertexArrays(), vbo = glGenBuffers(), ebo = glGenBuffers();
+    private final ByteBuffer vertices = MemoryUtil.memAlloc(MAX_QUADS * 4 * VERTEX_BYTES);
+    private final ByteBuffer color = MemoryUtil.memAlloc(4);
+    private final int[] polygonMode = new int[2];
+    private float scale = 2f;
+
+    public ProfilerOverlay() {
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices.capacity(), GL_STREAM_DRAW);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, VERTEX_BYTES, 0L);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, 4, GL_UNSIGNED_BYTE, true, VERTEX_BYTES, 12L);
+
+        IntBuffer idx = MemoryUtil.memAllocInt(MAX_QUADS * 6);
+        for (int q = 0; q < MAX_QUADS; q++) {
+            int v = q * 4;
+            idx.put(v).put(v + 1).put(v + 2).put(v).put(v + 2).put(v + 3);
+        }
+        idx.flip();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, idx, GL_STATIC_DRAW);
+        MemoryUtil.memFree(idx);
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        color.put(0, (byte) 0xE8).put(1, (byte) 0xE8).put(2, (byte) 0x60).put(3, (byte) 0xFF);
+    }
+
+    /** 字号倍数（stb_easy_font 原始字高约 7 像素） */
+    public void setScale(float s) { scale = s; }
+
+    /** 在 (x, y) 像素处画 text（多行），screenW/H 为当前帧缓冲大小 */
+    public void draw(CharSequence text, float x, float y, int screenW, int screenH) {
+        vertices.clear();
+        int quads = Math.min(MAX_QUADS, STBEasyFont.stb_easy_font_print(0f, 0f, text, color, vertices));
+        if (quads == 0) return;
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices.capacity(), GL_STREAM_DRAW); // 孤立旧存储，不等上一帧
+        glBufferSubData(GL_ARRAY_BUFFER, 0, vertices.limit(quads * 4 * VERTEX_BYTES));
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        boolean depth = glIsEnabled(GL_DEPTH_TEST), blend = glIsEnabled(GL_BLEND);
+        glGetIntegerv(GL_POLYGON_MODE, polygonMode);
+        glDisable(GL_DEPTH_TEST);
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        glPolygonMode(GL_FRONT_AND_BACK, GL_FILL); // F2 线框模式下文字也要实心
+
+        shader.use();
+        shader.set2f("uScreen", screenW, screenH);
+        shader.set1f("uScale", scale);
+        glBindVertexArray(vao);
+        // 先画一层偏移一个像素的黑色阴影，任何背景上都看得清
+        shader.set2f("uOffset", x + scale, y + scale);
+        shader.set4f("uTint", 0f, 0f, 0f, 0.85f);
+        glDrawElements(GL_TRIANGLES, quads * 6, GL_UNSIGNED_INT, 0L);
+        shader.set2f("uOffset", x, y);
+        shader.set4f("uTint", 0f, 0f, 0f, -1f);
+        glDrawElements(GL_TRIANGLES, quads * 6, GL_UNSIGNED_INT, 0L);
+        glBindVertexArray(0);
+        ShaderProgram.unbind();
+
+        glPolygonMode(GL_FRONT_AND_BACK, polygonMode[0]);
+        if (depth) glEnable(GL_DEPTH_TEST);
+        if (!blend) glDisable(GL_BLEND);
+    }
+
+    @Override public void close() {
+        shader.dispose();
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(vbo);
+        glDeleteBuffers(ebo);
+        MemoryUtil.memFree(vertices);
+        MemoryUtil.memFree(color);
+    }
+}
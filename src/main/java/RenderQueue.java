@@ -0,0 +1,470 @@
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 按状态排序的绘制队列：每帧 {@link #submit} 收集一个或多个 Model 的 Part，
+ * {@link #flush()} 时按 64 位排序键排序，再只发出真正变化了的状态切换。
+ * <pre>
+ * 排序键（高位优先）： shader 8 位 | texture 16 位 | material 16 位 | mesh 24 位
+ * </pre>
+ * 纹理排在材质前面：切纹理比改 uniform 贵，而 TextureCache 让多个材质共享同一张贴图。
+ * 排序用 8 位一趟的 LSD 基数排序，缓冲区跨帧复用，稳态下不分配内存。
+ * 合并缓冲（{@link Mesh#merged}）的各部分共用一个 VAO，切换它们不再重新绑定；
+ * 状态（含顶点解码参数与索引类型）完全相同的相邻条目合成一次 glMultiDrawElementsBaseVertex。
+ * {@link #submitInstanced} 提交的条目每个 Part 一次 glDrawElementsInstanced，此时 uMVP 只是 viewProj，
+ * 模型矩阵来自 {@link InstanceBuffer}。
+ * <p>
+ * 非实例化提交默认做视锥裁剪：平面直接从该次的 MVP 提取（物体空间），用 {@link Model#bounds()} 的 SoA 批量测试。
+ * 设置了 {@link #setLod} 后，带 LOD 链的 Part 按各自包围球的投影误差选级（见 {@link Lod}）；
+ * 实例化提交的级别由调用方给出（例如 {@link InstanceLods} 按实例分桶）。
+ * 设置了 {@link #setResidency} 后，贴图按所在 Part 的投影大小向 {@link TextureResidency} 登记需要的 mip 层。
+ * <p>
+ * 着色器约定：mat4 uMVP、vec3 uColor、int uUseTex、sampler2D 在 0 号纹理单元（与 MainApp 一致），
+ * 紧凑顶点格式的解码参数 uPosOffset / uPosScale / uOctNormal（{@link VertexFormat#GLSL_DECODE}）随网格切换设置，
+ * 蒙皮的 uBoneBase（{@link Skin#GLSL_SKIN}）与表情的 uMorphBase（{@link Morphs#GLSL_MORPH}）随变换设置，缺少的 uniform 直接跳过。只能在 GL 线程使用。
+ */
+public class RenderQueue {
+    private static final int SHADER_BITS = 8, TEX_BITS = 16, MAT_BITS = 16, MESH_BITS = 24;
+    private static final float[] FALLBACK_COLOR = { 0.8f, 0.8f, 0.8f };
+    private static final int MAX_MULTI_DRAW = 1024; // 一次 multi-draw 的上限，参数放在 MemoryStack 上
+
+    /** 每个 shader 用到的句柄 */
+    private static final class ShaderSlot {
+        final ShaderProgram program;
+        final ShaderProgram.Uniform mvp, color, useTex, posOffset, posScale, octNormal, boneBase, morphBase;
+        ShaderSlot(ShaderProgram p) {
+            program = p;
+            mvp = p.findUniform("uMVP"); color = p.findUniform("uColor"); useTex = p.findUniform("uUseTex");
+            posOffset = p.findUniform("uPosOffset"); posScale = p.findUniform("uPosScale"); octNormal = p.findUniform("uOctNormal");
+            boneBase = p.findUniform("uBoneBase"); morphBase = p.findUniform("uMorphBase");
+        }
+
+        /** Uniform 自己会跳过与上次相同的值 */
+        void decode(Mesh m) {
+            if (posOffset != null) posOffset.set3f(m.posOffset(0), m.posOffset(1), m.posOffset(2));
+            if (posScale != null) posScale.set3f(m.posScale(0), m.posScale(1), m.posScale(2));
+            if (octNormal != null) octNormal.set1i(m.format().octNormals() ? 1 : 0);
+        }
+    }
+
+    /** 对象 → 稠密 id（从 1 开始，0 留给“无”），跨帧保留以保证排序键稳定；释放的 id 会被复用 */
+    private static final class Ids<T> {
+        final Map<T, Integer> map = new IdentityHashMap<>();
+        final int bits;
+        int next = 1;
+        int[] free = new int[8];
+        int freeCount;
+        Ids(int bits){ this.bits = bits; }
+
+        int of(T obj) {
+            Integer id = map.get(obj);
+            if (id != null) return id;
+            int n = freeCount > 0 ? free[--freeCount] : next++;
+            // 超出位宽说明同时存活的对象太多，直接报错而不是让键冲突
+            if (n >= (1 << bits)) throw new IllegalStateException("RenderQueue: too many distinct objects for " + bits + "-bit key field");
+            map.put(obj, n);
+            return n;
+        }
+
+        void remove(T obj) {
+            Integer id = map.remove(obj);
+            if (id != null) release(id);
+        }
+
+        /** 归还所有满足 dead 的对象的 id */
+        void removeIf(Predicate<T> dead) {
+            for (Iterator<Map.Entry<T, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<T, Integer> e = it.next();
+                if (!dead.test(e.getKey())) continue;
+                it.remove();
+                release(e.getValue());
+            }
+        }
+
+        private void release(int id) {
+            if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+            free[freeCount++] = id;
+        }
+    }
+
+    private final Ids<ShaderProgram> shaderIds = new Ids<>(SHADER_BITS);
+    private final Ids<Texture2D> texIds = new Ids<>(TEX_BITS);
+    private final Ids<Material> matIds = new Ids<>(MAT_BITS);
+    private final Ids<Mesh> meshIds = new Ids<>(MESH_BITS);
+    private ShaderSlot[] shaders = new ShaderSlot[4];
+
+    // 本帧条目（并行数组）
+    private int count;
+    private long[] keys = new long[256], keysTmp = new long[256];
+    private int[] order = new int[256], orderTmp = new int[256];
+    private final int[] hist = new int[256];
+    private ShaderSlot[] itemShader = new ShaderSlot[256];
+    private Texture2D[] itemTex = new Texture2D[256];
+    private Material[] itemMat = new Material[256];
+    private Mesh[] itemMesh = new Mesh[256];
+    private int[] itemXform = new int[256];
+    private int[] itemLod = new int[256];
+    private InstanceBuffer[] itemInst = new InstanceBuffer[256];
+    /** 下标为 VAO 名字 → 当前挂在上面的实例缓冲（数组而不是 Map，查找不装箱） */
+    private InstanceBuffer[] attached = new InstanceBuffer[64];
+
+    // 本帧变换（每次 submit 拷一份 16 个 float）及其蒙皮调色板 / 变形位移基址
+    private float[] xforms = new float[16 * 16];
+    private int[] xformBones = new int[16], xformMorphs = new int[16];
+    private int xformCount;
+
+    // 统计（最近一次 flush）
+    private int draws, drawCalls, programBinds, textureBinds, materialBinds, vaoBinds;
+    private long instancesDrawn;
+    private int culledParts, lodParts;
+    private long culledTris, drawnTris, lodSavedTris, cullNanos;
+    // 本帧累计（submit 时），flush 时转成上面的统计
+    private int pendCulledParts, pendLodParts;
+    private long pendCulledTris, pendDrawnTris, pendLodSavedTris, pendCullNanos;
+
+    private boolean culling = true;
+    private final Frustum frustum = new Frustum();
+    private float[] margin = new float[64];
+    private int lodViewport;            // 0 = 不做 LOD 选择
+    private float lodPixelError = 1f;
+    private TextureResidency residency;  // null = 不登记贴图用量
+
+    /** 提交一个模型的全部 Part；mvp 会被拷贝，调用方可以复用数组。数据尚未上传完的 Part 跳过 */
+    public void submit(ShaderProgram shader, Model model, float[] mvp) {
+        submit(shader, model, mvp, null, 0, 0, -1);
+    }
+
+    /**
+     * 蒙皮角色：同上，另外把 boneBase（{@link BonePalette#allocate} 的返回值）作为 uBoneBase 随变换一起设置。
+     * 视锥裁剪与 LOD 用的是绑定姿势的包围盒，姿势幅度大时可能略偏保守或激进。
+     */
+    public void submit(ShaderProgram shader, Model model, float[] mvp, int boneBase) {
+        submit(shader, model, mvp, null, 0, boneBase, -1);
+    }
+
+    /** 蒙皮 + 表情：morphBase 为 {@link MorphBuffer#allocate} 的返回值（uMorphBase），-1 表示没有变形 */
+    public void submit(ShaderProgram shader, Model model, float[] mvp, int boneBase, int morphBase) {
+        submit(shader, model, mvp, null, 0, boneBase, morphBase);
+    }
+
+    /**
+     * 实例化提交：model 的每个 Part 画 instances.size() 份。shader 须读取 location 3..7 的逐实例属性，
+     * viewProj 作为 uMVP 上传。会先把 instances 的脏区间上传。
+     */
+    public void submitInstanced(ShaderProgram shader, Model model, float[] viewProj, InstanceBuffer instances) {
+        submitInstanced(shader, model, viewProj, instances, 0);
+    }
+
+    /** 同上，全部实例画第 lod 级（超出某个 Part 的级数时用它最粗的一级） */
+    public void submitInstanced(ShaderProgram shader, Model model, float[] viewProj, InstanceBuffer instances, int lod) {
+        instances.upload();
+        if (instances.size() == 0) return;
+        submit(shader, model, viewProj, instances, lod, 0, -1);
+    }
+
+    /** 关闭后所有 Part 都提交（用于对比或调试） */
+    public void setCulling(boolean on) { culling = on; }
+
+    /** 非空时每个可见 Part 的贴图按投影大小向它登记需要的 mip 层（实例化提交总是要第 0 层） */
+    public void setResidency(TextureResidency residency) { this.residency = residency; }
+
+    /**
+     * 非实例化提交的 LOD 选择：viewportHeight 为帧缓冲高度（像素），每个 Part 取投影误差不超过
+     * pixelError 像素的最粗一级。viewportHeight ≤ 0 时关闭，总是画第 0 级。
+     */
+    public void setLod(int viewportHeight, float pixelError) {
+        lodViewport = viewportHeight; lodPixelError = pixelError;
+    }
+
+    private void submit(ShaderProgram shader, Model model, float[] mvp, InstanceBuffer inst, int instLod, int boneBase, int morphBase) {
+        ShaderSlot slot = shaderSlot(shader);
+        int x = addTransform(mvp, boneBase, morphBase);
+        long shaderKey = (long) shaderIds.of(shader) << (TEX_BITS + MAT_BITS + MESH_BITS);
+        // 实例化时每个实例变换不同，整体不裁剪
+        boolean cull = culling && inst == null;
+        boolean lod = lodViewport > 0 && inst == null;
+        boolean resid = residency != null && inst == null;
+        Frustum.Boxes boxes = cull || lod || resid ? model.bounds() : null;
+        if (cull) {
+            long t0 = System.nanoTime();
+            if (margin.length < boxes.count) margin = new float[Math.max(boxes.count, margin.length * 2)];
+            frustum.set(mvp).cull(boxes, margin);
+            pendCullNanos += System.nanoTime() - t0;
+        }
+        int instances = inst == null ? 1 : inst.size();
+        for (int pi = 0, np = model.parts.size(); pi < np; pi++) {
+            Model.Part p = model.parts.get(pi);
+            if (!p.mesh.isReady()) continue;
+            if (cull && !(margin[pi] >= 0f)) {
+                pendCulledParts++;
+                pendCulledTris += p.mesh.triangleCount();
+                continue;
+            }
+            int level = inst != null ? instLod : 0;
+            if (lod && p.mesh.lodCount() > 1) {
+                float r = (float) Math.sqrt(boxes.ex[pi] * boxes.ex[pi] + boxes.ey[pi] * boxes.ey[pi] + boxes.ez[pi] * boxes.ez[pi]);
+                float ppu = Lod.pixelsPerUnit(mvp, boxes.cx[pi], boxes.cy[pi], boxes.cz[pi], r, lodViewport);
+                level = p.mesh.selectLod(ppu, lodPixelError);
+            }
+            level = Math.min(level, p.mesh.lodCount() - 1);
+            if (level > 0) {
+                pendLodParts++;
+                pendLodSavedTris += (long) (p.mesh.triangleCount() - p.mesh.triangleCount(level)) * instances;
+            }
+            pendDrawnTris += (long) p.mesh.triangleCount(level) * instances;
+            Texture2D tex = p.material != null && p.material.hasReadyMapKd() ? p.material.mapKd : null;
+            if (tex != null && residency != null) {
+                float px = Float.POSITIVE_INFINITY;
+                if (resid) {
+                    float r = (float) Math.sqrt(boxes.ex[pi] * boxes.ex[pi] + boxes.ey[pi] * boxes.ey[pi] + boxes.ez[pi] * boxes.ez[pi]);
+                    px = 2f * r * Lod.pixelsPerUnit(mvp, boxes.cx[pi], boxes.cy[pi], boxes.cz[pi], r, residency.viewportHeight());
+                }
+                residency.request(tex, px);
+            }
+            long key = shaderKey
+                    | (long) (tex == null ? 0 : texIds.of(tex)) << (MAT_BITS + MESH_BITS)
+                    | (long) (p.material == null ? 0 : matIds.of(p.material)) << MESH_BITS
+                    | meshIds.of(p.mesh);
+            add(key, slot, tex, p.material, p.mesh, level, x, inst);
+        }
+    }
+
+    /** 排序并绘制本帧所有条目，然后清空队列 */
+    public void flush() {
+        draws = drawCalls = programBinds = textureBinds = materialBinds = vaoBinds = 0;
+        instancesDrawn = 0;
+        culledParts = pendCulledParts; culledTris = pendCulledTris; drawnTris = pendDrawnTris;
+        lodParts = pendLodParts; lodSavedTris = pendLodSavedTris; cullNanos = pendCullNanos;
+        pendCulledParts = pendLodParts = 0; pendCulledTris = pendDrawnTris = pendLodSavedTris = pendCullNanos = 0;
+        sort();
+
+        ShaderSlot curShader = null;
+        Texture2D curTex = null;
+        boolean texState = false;      // 当前 shader 上是否已设置过纹理开关
+        Material curMat = null;
+        boolean matState = false;
+        int curVao = 0;
+        Mesh lastMesh = null, curDecode = null;
+        int curXform = -1;
+
+        for (int n = 0; n < count; ) {
+            int i = order[n];
+            ShaderSlot s = itemShader[i];
+            if (s != curShader) {
+                s.program.use();
+                programBinds++;
+                curShader = s;
+                texState = matState = false;
+                curXform = -1;
+                curDecode = null;
+            }
+            Texture2D tex = itemTex[i];
+            if (!texState || tex != curTex) {
+                if (tex != null) { tex.bind(0); textureBinds++; }
+                if (s.useTex != null) s.useTex.set1i(tex != null ? 1 : 0);
+                curTex = tex; texState = true;
+            }
+            Material m = itemMat[i];
+            if (!matState || m != curMat) {
+                if (s.color != null) {
+                    if (m != null) s.color.set3f(m.kdR, m.kdG, m.kdB);
+                    else s.color.set3f(FALLBACK_COLOR[0], FALLBACK_COLOR[1], FALLBACK_COLOR[2]);
+                }
+                materialBinds++;
+                curMat = m; matState = true;
+            }
+            int x = itemXform[i];
+            if (x != curXform) {
+                if (s.mvp != null) s.mvp.setMat4(xforms, x * 16);
+                if (s.boneBase != null) s.boneBase.set1i(xformBones[x]);
+                if (s.morphBase != null) s.morphBase.set1i(xformMorphs[x]);
+                curXform = x;
+            }
+            Mesh mesh = itemMesh[i];
+            if (mesh.vao() != curVao) { mesh.bind(); vaoBinds++; curVao = mesh.vao(); }
+            if (curDecode == null || !mesh.sameEncoding(curDecode)) { s.decode(mesh); curDecode = mesh; }
+            lastMesh = mesh;
+
+            InstanceBuffer inst = itemInst[i];
+            if (inst != null) {
+                if (curVao >= attached.length) attached = Arrays.copyOf(attached, Math.max(curVao + 1, attached.length * 2));
+                if (attached[curVao] != inst) { inst.attachToBoundVao(); attached[curVao] = inst; }
+                mesh.drawInstanced(inst.size(), itemLod[i]);
+                drawCalls++; draws++; instancesDrawn += inst.size();
+                n++;
+                continue;
+            }
+
+            // 往后找状态完全相同、同一合并 VAO 的条目
+            int end = n + 1;
+            if (mesh.isShared()) {
+                while (end < count && end - n < MAX_MULTI_DRAW) {
+                    int j = order[end];
+                    if (itemShader[j] != s || itemTex[j] != tex || itemMat[j] != m || itemXform[j] != x
+                            || itemMesh[j].vao() != curVao || !itemMesh[j].isShared() || itemInst[j] != null
+                            || !itemMesh[j].sameEncoding(mesh)) break;
+                    end++;
+                }
+            }
+            if (end - n == 1) {
+                mesh.draw(itemLod[i]);
+            } else {
+                multiDraw(n, end);
+            }
+            drawCalls++;
+            draws += end - n;
+            n = end;
+        }
+
+        // 整个队列结束后只解绑一次
+        if (lastMesh != null) lastMesh.unbind();
+        if (curTex != null) Texture2D.unbind();
+        if (curShader != null) ShaderProgram.unbind();
+        clear();
+    }
+
+    /** 丢弃本帧条目（不绘制） */
+    public void clear() {
+        Arrays.fill(itemTex, 0, count, null);
+        Arrays.fill(itemMat, 0, count, null);
+        Arrays.fill(itemMesh, 0, count, null);
+        Arrays.fill(itemShader, 0, count, null);
+        Arrays.fill(itemInst, 0, count, null);
+        count = 0;
+        xformCount = 0;
+        pendCulledParts = pendLodParts = 0; pendCulledTris = pendDrawnTris = pendLodSavedTris = pendCullNanos = 0;
+    }
+
+    /**
+     * 在 model.close() 之前调用，归还其对象 id，避免队列持有已删除的 GL 对象。
+     * 纹理经 TextureCache 在模型间共享，这里不按模型归还：等它真正删除（isClosed）后，
+     * 在下一次 forget 时回收，否则仍在用它的模型会和新纹理共用排序键里的纹理 id。
+     */
+    public void forget(Model model) {
+        texIds.removeIf(Texture2D::isClosed);
+        for (Model.Part p : model.parts) {
+            meshIds.remove(p.mesh);
+            if (p.mesh.vao() < attached.length) attached[p.mesh.vao()] = null; // VAO 名字删除后可能被复用
+            if (p.material != null) matIds.remove(p.material);
+        }
+    }
+
+    /** 实例缓冲 close() 之前调用 */
+    public void forget(InstanceBuffer instances) {
+        for (int i = 0; i < attached.length; i++) if (attached[i] == instances) attached[i] = null;
+    }
+
+    public int size() { return count; }
+    public int draws() { return draws; }
+    /** 实际发出的 draw 调用数（multi-draw 算一次） */
+    public int drawCalls() { return drawCalls; }
+    public int programBinds() { return programBinds; }
+    public int textureBinds() { return textureBinds; }
+    public int materialBinds() { return materialBinds; }
+    public int vaoBinds() { return vaoBinds; }
+    public long instancesDrawn() { return instancesDrawn; }
+    public int culledParts() { return culledParts; }
+    public long culledTriangles() { return culledTris; }
+    public long drawnTriangles() { return drawnTris; }
+    /** 画在第 1 级及以上的 Part 数（实例化按提交次数算） */
+    public int lodParts() { return lodParts; }
+    /** 因 LOD 少画的三角形数 */
+    public long lodSavedTriangles() { return lodSavedTris; }
+    /** 视锥裁剪（平面提取 + 包围盒测试）的 CPU 耗时，纳秒 */
+    public long cullNanos() { return cullNanos; }
+
+    public String stats() {
+        return String.format("draws %d (%d calls, %d instances) | program %d, texture %d, material %d, vao binds %d"
+                        + " | tris %d drawn / %d culled (%d parts) / %d saved by LOD (%d parts)",
+                draws, drawCalls, instancesDrawn, programBinds, textureBinds, materialBinds, vaoBinds,
+                drawnTris, culledTris, culledParts, lodSavedTris, lodParts);
+    }
+
+    // ------------------------------------------------------------------
+
+    private void multiDraw(int from, int to) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            int n = to - from;
+            IntBuffer counts = stack.mallocInt(n), bases = stack.mallocInt(n);
+            PointerBuffer offsets = stack.mallocPointer(n);
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                Mesh mesh = itemMesh[i];
+                counts.put(mesh.indexCount(itemLod[i])); offsets.put(mesh.indexOffset(itemLod[i])); bases.put(mesh.baseVertex());
+            }
+            counts.flip(); offsets.flip(); bases.flip();
+            glMultiDrawElementsBaseVertex(GL_TRIANGLES, counts, itemMesh[order[from]].indexType(), offsets, bases);
+        }
+    }
+
+    private ShaderSlot shaderSlot(ShaderProgram p) {
+        int id = shaderIds.of(p);
+        if (id >= shaders.length) shaders = Arrays.copyOf(shaders, Math.max(id + 1, shaders.length * 2));
+        ShaderSlot s = shaders[id];
+        if (s == null) shaders[id] = s = new ShaderSlot(p);
+        return s;
+    }
+
+    private int addTransform(float[] m16, int boneBase, int morphBase) {
+        if ((xformCount + 1) * 16 > xforms.length) xforms = Arrays.copyOf(xforms, xforms.length * 2);
+        if (xformCount == xformBones.length) {
+            xformBones = Arrays.copyOf(xformBones, xformBones.length * 2);
+            xformMorphs = Arrays.copyOf(xformMorphs, xformBones.length);
+        }
+        System.arraycopy(m16, 0, xforms, xformCount * 16, 16);
+        xformBones[xformCount] = boneBase;
+        xformMorphs[xformCount] = morphBase;
+        return xformCount++;
+    }
+
+    private void add(long key, ShaderSlot s, Texture2D tex, Material m, Mesh mesh, int lod, int xform, InstanceBuffer inst) {
+        if (count == keys.length) grow();
+        keys[count] = key;
+        itemShader[count] = s; itemTex[count] = tex; itemMat[count] = m; itemMesh[count] = mesh; itemLod[count] = lod;
+        itemXform[count] = xform; itemInst[count] = inst;
+        count++;
+    }
+
+    private void grow() {
+        int n = keys.length * 2;
+        keys = Arrays.copyOf(keys, n); keysTmp = new long[n];
+        order = new int[n]; orderTmp = new int[n];
+        itemShader = Arrays.copyOf(itemShader, n);
+        itemTex = Arrays.copyOf(itemTex, n);
+        itemMat = Arrays.copyOf(itemMat, n);
+        itemMesh = Arrays.copyOf(itemMesh, n);
+        itemXform = Arrays.copyOf(itemXform, n);
+        itemLod = Arrays.copyOf(itemLod, n);
+        itemInst = Arrays.copyOf(itemInst, n);
+    }
+
+    /** 对 (key, 条目序号) 做稳定的 LSD 基数排序，所有条目该字节都相同的趟直接跳过；keys 会被打乱 */
+    private void sort() {
+        long[] k = keys, kt = keysTmp;
+        int[] o = order, ot = orderTmp;
+        for (int i = 0; i < count; i++) o[i] = i;
+        if (count < 2) return;
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(hist, 0);
+            for (int i = 0; i < count; i++) hist[(int) (k[i] >>> shift) & 0xFF]++;
+            if (hist[(int) (k[0] >>> shift) & 0xFF] == count) continue;
+            for (int b = 0, sum = 0; b < 256; b++) { int c = hist[b]; hist[b] = sum; sum += c; }
+            for (int i = 0; i < count; i++) {
+                int d = hist[(int) (k[i] >>> shift) & 0xFF]++;
+                kt[d] = k[i]; ot[d] = o[i];
+            }
+            long[] tk = k; k = kt; kt = tk;
+            int[] to = o; o = ot; ot = to;
+        }
+        if (o != order) System.arraycopy(o, 0, order, 0, count);
+    }
+}
@@ -1,14 +1,20 @@
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
 
+import java.util.List;
+
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL33C.*;
 import static org.lwjgl.opengl.GL41.glClearDepthf;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 public class Renderer {
+    /** -Drender.vsync=false：窗口模式下不等垂直同步（测帧率用） */
+    private static final boolean VSYNC = !"false".equalsIgnoreCase(System.getProperty("render.vsync", "true"));
+
     private long window = NULL;
     private int width, height;
+    private boolean headless;
     private float clearR = 0.12f, clearG = 0.13f, clearB = 0.15f, clearA = 1.0f;
 
     public Renderer(int width, int height) {
@@ -29,8 +35,75 @@ public class Renderer {
         if (window == NULL) throw new RuntimeException("Failed to create GLFW window");
 
         glfwMakeContextCurrent(window);
-        glfwSwapInterval(1);
+        glfwSwapInterval(VSYNC ? 1 : 0);
+
+        initContext();
+        glfwSetFramebufferSizeCallback(window, (win, w, h) -> {
+            width = Math.max(1, w);
+            height = Math.max(1, h);
+            glViewport(0, 0, width, height);
+        });
+    }
 
+    /**
+     * 无界面模式：只要一个 GL 3.3 core 上下文，画面渲染到 {@link OffscreenTarget}，不交换缓冲、不等垂直同步。
+     * -Dheadless.backend 选择上下文来源：
+     * <ul>
+     *   <li>{@code hidden}：平台原生上下文 + 不可见窗口（有桌面 / Xvfb 时）；</li>
+     *   <li>{@code egl}：同上，但经 EGL 创建上下文（Wayland、部分驱动的 X11）；</li>
+     *   <li>{@code surfaceless}：GLFW null 平台 + EGL（Mesa 的 EGL_MESA_platform_surfaceless），
+     *       不需要显示服务器，没有 GPU 时 Mesa 自动落到 llvmpipe 软件光栅化；</li>
+     *   <li>{@code osmesa}：GLFW null 平台 + OSMesa，纯软件（需 libOSMesa，例如 Debian 的 libosmesa6）；</li>
+     *   <li>{@code auto}（默认）：Linux 上没有 DISPLAY / WAYLAND_DISPLAY 时依次试 surfaceless、osmesa，否则 hidden。</li>
+     * </ul>
+     */
+    public void initHeadless() {
+        String backend = System.getProperty("headless.backend", "auto").trim().toLowerCase();
+        List<String> candidates;
+        if (backend.equals("auto")) {
+            boolean linux = System.getProperty("os.name", "").toLowerCase().contains("linux");
+            boolean display = System.getenv("DISPLAY") != null || System.getenv("WAYLAND_DISPLAY") != null;
+            candidates = linux && !display ? List.of("surfaceless", "osmesa") : List.of("hidden");
+        } else if (List.of("hidden", "egl", "surfaceless", "osmesa").contains(backend)) {
+            candidates = List.of(backend);
+        } else {
+            throw new IllegalArgumentException("headless.backend: expected auto, hidden, egl, surfaceless or osmesa, got " + backend);
+        }
+
+        GLFWErrorCallback.createPrint(System.err).set();
+        for (String b : candidates) {
+            window = createHeadlessContext(b);
+            if (window != NULL) { backend = b; break; }
+            glfwTerminate(); // 换平台必须重新 init
+        }
+        if (window == NULL) throw new RuntimeException("Failed to create headless GL context (tried " + candidates + ")");
+        headless = true;
+
+        glfwMakeContextCurrent(window);
+        glfwSwapInterval(0);
+        initContext();
+        System.out.println("[Renderer] headless " + backend + ": " + glGetString(GL_RENDERER) + " / " + glGetString(GL_VERSION));
+    }
+
+    private static long createHeadlessContext(String backend) {
+        boolean nullPlatform = backend.equals("surfaceless") || backend.equals("osmesa");
+        glfwInitHint(GLFW_PLATFORM, nullPlatform ? GLFW_PLATFORM_NULL : GLFW_ANY_PLATFORM);
+        if (!glfwInit()) return NULL;
+
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        if (backend.equals("egl") || backend.equals("surfaceless")) glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_EGL_CONTEXT_API);
+        if (backend.equals("osmesa")) glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+
+        // 默认帧缓冲用不到，给最小尺寸；真正的渲染目标是 FBO
+        return glfwCreateWindow(1, 1, "headless", NULL, NULL);
+    }
+
+    private void initContext() {
         GL.createCapabilities();
 
         // ---- 深度 & 剔除（排错阶段先关剔除）----
@@ -40,14 +113,13 @@ public class Renderer {
         glDisable(GL_CULL_FACE);
 
         glViewport(0, 0, width, height);
-        glfwSetFramebufferSizeCallback(window, (win, w, h) -> {
-            width = Math.max(1, w);
-            height = Math.max(1, h);
-            glViewport(0, 0, width, height);
-        });
     }
 
     public long getWindow() { return window; }
+    public boolean isHeadless() { return headless; }
+    /** 当前帧缓冲大小（窗口模式随 resize 回调更新） */
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
 
     public void setClearColor(float r, float g, float b, float a) {
         clearR = r; clearG = g; clearB = b; clearA = a;
@@ -67,12 +139,14 @@ public class Renderer {
         ShaderProgram.unbind();
     }
 
+    /** 无界面模式下没有可交换的缓冲，什么也不做 */
     public void endFrame() {
+        if (headless) return;
         glfwSwapBuffers(window);
         glfwPollEvents();
     }
 
-    public boolean shouldClose() { return glfwWindowShouldClose(window); }
+    public boolean shouldClose() { return !headless && glfwWindowShouldClose(window); }
     public void requestClose() { glfwSetWindowShouldClose(window, true); }
 
     public void cleanup() {
@@ -1,11 +1,86 @@
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL33C.*;
 
+/**
+ * 链接后一次性枚举所有 active uniform，建立 名字→{@link Uniform} 表；之后 set* 不再调用 glGetUniformLocation。
+ * 热循环里先用 {@link #uniform(String)} 取句柄再设值，连字符串查表也省掉。
+ * 每个句柄保留上次上传的值，值未变化时直接跳过 glUniform*（uniform 值属于 program，切换 program 不会失效）。
+ */
 public class ShaderProgram {
     private final int programId;
+    private final Map<String, Uniform> uniforms = new HashMap<>();
+    private static int current; // 当前 glUseProgram 的程序，避免重复绑定
+
+    /** uniform 句柄：location + 上次上传的值 */
+    public static final class Uniform {
+        public final String name;
+        public final int location;
+        public final int type;      // GL_FLOAT_VEC3 等
+        private final float[] f;    // 上次的 float 值（mat4 为 16 个）
+        private int i;
+        private boolean valid;      // 是否已上传过
+
+        Uniform(String name, int location, int type) {
+            this.name = name; this.location = location; this.type = type;
+            this.f = new float[type == GL_FLOAT_MAT4 ? 16 : 4];
+        }
+
+        // 以下调用前须已 use() 所属程序
+        public void set1f(float v) {
+            if (valid && f[0] == v) return;
+            f[0] = v; valid = true;
+            glUniform1f(location, v);
+        }
+        public void set2f(float x, float y) {
+            if (valid && f[0] == x && f[1] == y) return;
+            f[0] = x; f[1] = y; valid = true;
+            glUniform2f(location, x, y);
+        }
+        public void set3f(float x, float y, float z) {
+            if (valid && f[0] == x && f[1] == y && f[2] == z) return;
+            f[0] = x; f[1] = y; f[2] = z; valid = true;
+            glUniform3f(location, x, y, z);
+        }
+        public void set4f(float x, float y, float z, float w) {
+            if (valid && f[0] == x && f[1] == y && f[2] == z && f[3] == w) return;
+            f[0] = x; f[1] = y; f[2] = z; f[3] = w; valid = true;
+            glUniform4f(location, x, y, z, w);
+        }
+        public void set1i(int v) {
+            if (valid && i == v) return;
+            i = v; valid = true;
+            glUniform1i(location, v);
+        }
+        public void set1ui(int v) {
+            if (valid && i == v) return;
+            i = v; valid = true;
+            glUniform1ui(location, v);
+        }
+        public void setBool(boolean b) { set1i(b ? 1 : 0); }
+        /** m16 列主序，从 off 起 16 个 float */
+        public void setMat4(float[] m16, int off) {
+            if (f.length != 16) throw new IllegalStateException("not a mat4 uniform: " + name);
+            if (valid && Arrays.equals(f, 0, 16, m16, off, off + 16)) return;
+            System.arraycopy(m16, off, f, 0, 16); valid = true;
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                FloatBuffer fb = stack.mallocFloat(16);
+                fb.put(m16, off, 16).flip();
+                glUniformMatrix4fv(location, false, fb);
+            }
+        }
+        public void setMat4(float[] m16) {
+            if (m16.length != 16) throw new IllegalArgumentException("mat4 requires 16 floats");
+            setMat4(m16, 0);
+        }
+    }
 
     public ShaderProgram(String vertexSrc, String fragmentSrc) {
         int vs = compile(GL_VERTEX_SHADER, vertexSrc);
@@ -21,6 +96,30 @@ public class ShaderProgram {
         }
         glDeleteShader(vs);
         glDeleteShader(fs);
+        introspect();
+    }
+
+    /** 枚举 active uniform；数组 "a[0]" 同时登记为 "a"，其余元素逐个登记 "a[i]" */
+    private void introspect() {
+        int count = glGetProgrami(programId, GL_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1), type = stack.mallocInt(1);
+            for (int u = 0; u < count; u++) {
+                String name = glGetActiveUniform(programId, u, size, type);
+                int loc = glGetUniformLocation(programId, name);
+                if (loc < 0) continue; // uniform block 成员没有 location
+                if (name.endsWith("[0]")) {
+                    String base = name.substring(0, name.length() - 3);
+                    uniforms.put(base, new Uniform(base, loc, type.get(0)));
+                    for (int e = 1; e < size.get(0); e++) {
+                        String el = base + "[" + e + "]";
+                        int l = glGetUniformLocation(programId, el);
+                        if (l >= 0) uniforms.put(el, new Uniform(el, l, type.get(0)));
+                    }
+                }
+                uniforms.putIfAbsent(name, new Uniform(name, loc, type.get(0)));
+            }
+        }
     }
 
     private static int compile(int type, String src) {
@@ -35,35 +134,37 @@ public class ShaderProgram {
         return id;
     }
 
-    public void use() { glUseProgram(programId); }
-    public static void unbind() { glUseProgram(0); }
-    public void dispose() { glDeleteProgram(programId); }
+    public void use() { if (current != programId) { glUseProgram(programId); current = programId; } }
+    public static void unbind() { if (current != 0) { glUseProgram(0); current = 0; } }
+    public void dispose() { if (current == programId) unbind(); glDeleteProgram(programId); }
+    public int id() { return programId; }
 
     // -------- Uniform helpers --------
-    private int getLocation(String name) {
-        int loc = glGetUniformLocation(programId, name);
-        if (loc < 0) throw new IllegalArgumentException("Uniform not found: " + name);
-        return loc;
+
+    /** 取句柄（不存在或被编译器优化掉时抛异常），建议在初始化时取好后缓存 */
+    public Uniform uniform(String name) {
+        Uniform u = uniforms.get(name);
+        if (u == null) throw new IllegalArgumentException("Uniform not found: " + name);
+        return u;
     }
 
+    /** 不存在时返回 null，用于可选 uniform */
+    public Uniform findUniform(String name) { return uniforms.get(name); }
+
+    public Map<String, Uniform> uniforms() { return Collections.unmodifiableMap(uniforms); }
+
+    // 按名字设置：查表 + 冗余跳过，不再访问驱动取 location
     // float
-    public void set1f(String name, float v) { glUniform1f(getLocation(name), v); }
-    public void set2f(String name, float x, float y) { glUniform2f(getLocation(name), x, y); }
-    public void set3f(String name, float x, float y, float z) { glUniform3f(getLocation(name), x, y, z); }
-    public void set4f(String name, float x, float y, float z, float w) { glUniform4f(getLocation(name), x, y, z, w); }
+    public void set1f(String name, float v) { uniform(name).set1f(v); }
+    public void set2f(String name, float x, float y) { uniform(name).set2f(x, y); }
+    public void set3f(String name, float x, float y, float z) { uniform(name).set3f(x, y, z); }
+    public void set4f(String name, float x, float y, float z, float w) { uniform(name).set4f(x, y, z, w); }
 
     // int / bool / uint
-    public void set1i(String name, int v) { glUniform1i(getLocation(name), v); }           // sampler2D / int / bool(0/1)
-    public void set1ui(String name, int v) { glUniform1ui(getLocation(name), v); }
-    public void setBool(String name, boolean b) { glUniform1i(getLocation(name), b ? 1 : 0); }
+    public void set1i(String name, int v) { uniform(name).set1i(v); }           // sampler2D / int / bool(0/1)
+    public void set1ui(String name, int v) { uniform(name).set1ui(v); }
+    public void setBool(String name, boolean b) { uniform(name).setBool(b); }
 
     // mat4 (column-major float[16])
-    public void setMat4(String name, float[] m16) {
-        if (m16.length != 16) throw new IllegalArgumentException("mat4 requires 16 floats");
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            FloatBuffer fb = stack.mallocFloat(16);
-            fb.put(m16).flip();
-            glUniformMatrix4fv(getLocation(name), false, fb);
-        }
-    }
+    public void setMat4(String name, float[] m16) { uniform(name).setMat4(m16); }
 }
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 骨骼层级与姿势（CPU 端）：每根骨骼一个局部旋转（四元数）+ 局部平移（相对绑定姿势），
+ * {@link #update()} 按“父在前”的顺序求世界矩阵，再乘上绑定姿势的逆，得到蒙皮矩阵调色板。
+ * <p>
+ * 调色板每根骨骼 12 个 float：3x4 行主序（三行 [R | t]），正好是 {@link BonePalette} 里的 3 个 RGBA32F 纹素，
+ * 顶点着色器 / {@link Skin#skinCpu} 按 p' = Σ wᵢ · Mᵢ · p 混合。PMX 的骨骼没有绑定旋转，绑定姿势就是平移到骨骼位置。
+ * <p>
+ * 一个 Skeleton 是一个角色的姿势；同一模型的多个角色各建一个（{@link #copy()}），共用层级数据。
+ * set* 与 update 都不分配内存，可以每帧对几十个角色调用。
+ */
+public final class Skeleton {
+    public static final int PALETTE_FLOATS = 12;
+
+    private final String[] names;
+    private final int[] parent, depth;
+    /** 父在前的求值顺序 */
+    private final int[] order;
+    /** 绑定姿势下的骨骼位置（物体空间） */
+    private final float[] rest;
+    // 姿势：局部旋转 (x, y, z, w) 与局部平移
+    private final float[] rot, trans;
+    // 世界矩阵（列主序 mat4）与输出调色板
+    private final float[] world, palette;
+    private final float[] local = new float[16];
+
+    private Skeleton(String[] names, int[] parent, int[] depth, int[] order, float[] rest) {
+        this.names = names; this.parent = parent; this.depth = depth; this.order = order; this.rest = rest;
+        int n = names.length;
+        rot = new float[n * 4];
+        trans = new float[n * 3];
+        world = new float[n * 16];
+        palette = new float[n * PALETTE_FLOATS];
+        resetPose();
+        update();
+    }
+
+    /** PMX 骨骼节；父骨骼成环时（损坏的文件）环上的骨骼当作根 */
+    public static Skeleton of(List<PmxLoader.PmxBone> bones) {
+        int n = bones.size();
+        String[] names = new String[n];
+        int[] parent = new int[n];
+        float[] rest = new float[n * 3];
+        for (int i = 0; i < n; i++) {
+            PmxLoader.PmxBone b = bones.get(i);
+            names[i] = b.name;
+            parent[i] = b.parent;
+            System.arraycopy(b.position, 0, rest, i * 3, 3);
+        }
+        // 沿父链走，步数超过 n 说明成环，从这里断开
+        for (int i = 0; i < n; i++) {
+            int d = 0;
+            for (int p = parent[i]; p >= 0 && d <= n; p = parent[p]) d++;
+            if (d > n) parent[i] = -1;
+        }
+        int[] depth = new int[n];
+        for (int i = 0; i < n; i++) {
+            int d = 0;
+            for (int p = parent[i]; p >= 0; p = parent[p]) d++;
+            depth[i] = d;
+        }
+        // 按深度稳定排序：父的深度一定更小
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) boxed[i] = i;
+        Arrays.sort(boxed, (a, b) -> depth[a] != depth[b] ? Integer.compare(depth[a], depth[b]) : Integer.compare(a, b));
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = boxed[i];
+        return new Skeleton(names, parent, depth, order, rest);
+    }
+
+    /** 同一层级的另一个角色（姿势独立，层级数组共用） */
+    public Skeleton copy() {
+        return new Skeleton(names, parent, depth, order, rest);
+    }
+
+    public int boneCount() { return names.length; }
+    public String name(int bone) { return names[bone]; }
+    public int parent(int bone) { return parent[bone]; }
+    /** 根为 0 */
+    public int depth(int bone) { return depth[bone]; }
+
+    /** 按名字找骨骼，没有时返回 -1 */
+    public int find(String name) {
+        for (int i = 0; i < names.length; i++) if (names[i].equals(name)) return i;
+        return -1;
+    }
+
+    /** 回到绑定姿势（调色板在下一次 update 后变为单位阵） */
+    public void resetPose() {
+        Arrays.fill(rot, 0f);
+        Arrays.fill(trans, 0f);
+        for (int i = 0; i < names.length; i++) rot[i * 4 + 3] = 1f;
+    }
+
+    /** 局部旋转（相对父骨骼，绕本骨骼位置）；四元数须已归一化 */
+    public void setRotation(int bone, float x, float y, float z, float w) {
+        int o = bone * 4;
+        rot[o] = x; rot[o + 1] = y; rot[o + 2] = z; rot[o + 3] = w;
+    }
+
+    /** 绕单位轴 (ax, ay, az) 转 rad 弧度 */
+    public void setRotationAxis(int bone, float ax, float ay, float az, float rad) {
+        float s = (float) Math.sin(rad * 0.5), c = (float) Math.cos(rad * 0.5);
+        setRotation(bone, ax * s, ay * s, az * s, c);
+    }
+
+    /** 局部平移（相对绑定姿势） */
+    public void setTranslation(int bone, float x, float y, float z) {
+        int o = bone * 3;
+        trans[o] = x; trans[o + 1] = y; trans[o + 2] = z;
+    }
+
+    /** 求世界矩阵与调色板 */
+    public void update() {
+        float[] l = local;
+        for (int b : order) {
+            int q = b * 4, t = b * 3, p = parent[b];
+            float x = rot[q], y = rot[q + 1], z = rot[q + 2], w = rot[q + 3];
+            float xx = x * x, yy = y * y, zz = z * z, xy = x * y, xz = x * z, yz = y * z, wx = w * x, wy = w * y, wz = w * z;
+            l[0] = 1f - 2f * (yy + zz); l[1] = 2f * (xy + wz);      l[2] = 2f * (xz - wy);      l[3] = 0f;
+            l[4] = 2f * (xy - wz);      l[5] = 1f - 2f * (xx + zz); l[6] = 2f * (yz + wx);      l[7] = 0f;
+            l[8] = 2f * (xz + wy);      l[9] = 2f * (yz - wx);      l[10] = 1f - 2f * (xx + yy); l[11] = 0f;
+            // 平移：相对父骨骼的绑定偏移 + 姿势平移
+            float px = p >= 0 ? rest[p * 3] : 0f, py = p >= 0 ? rest[p * 3 + 1] : 0f, pz = p >= 0 ? rest[p * 3 + 2] : 0f;
+            l[12] = rest[t] - px + trans[t]; l[13] = rest[t + 1] - py + trans[t + 1]; l[14] = rest[t + 2] - pz + trans[t + 2];
+            l[15] = 1f;
+            if (p >= 0) Mat4f.multiply(world, p * 16, l, 0, world, b * 16);
+            else System.arraycopy(l, 0, world, b * 16, 16);
+
+            // 蒙皮矩阵 = world · T(-rest)：旋转部分不变，平移 t' = t - R · rest
+            int m = b * 16, o = b * PALETTE_FLOATS;
+            float rx = rest[t], ry = rest[t + 1], rz = rest[t + 2];
+            for (int r = 0; r < 3; r++) {
+                float c0 = world[m + r], c1 = world[m + 4 + r], c2 = world[m + 8 + r];
+                palette[o + r * 4] = c0; palette[o + r * 4 + 1] = c1; palette[o + r * 4 + 2] = c2;
+                palette[o + r * 4 + 3] = world[m + 12 + r] - (c0 * rx + c1 * ry + c2 * rz);
+            }
+        }
+    }
+
+    /** 最近一次 update 的调色板（boneCount × 12，只读） */
+    public float[] palette() { return palette; }
+
+    /** 骨骼的世界位置（当前姿势） */
+    public void worldPosition(int bone, float[] out3) {
+        int m = bone * 16;
+        out3[0] = world[m + 12]; out3[1] = world[m + 13]; out3[2] = world[m + 14];
+    }
+}
@@ -0,0 +1,143 @@
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * GPU 蒙皮的逐顶点数据：每个顶点 4 个骨骼下标（uint16，整数属性）+ 4 个权重（unorm8），共 12 字节，
+ * 单独放在一个 VBO 里，挂到模型网格的 VAO 上（location {@link #LOC_BONES} / {@link #LOC_WEIGHTS}，
+ * 不占 {@link InstanceBuffer} 的 3..7）。网格本身的顶点格式、.gmesh 缓存与合并缓冲都不受影响。
+ * <p>
+ * 顺序与网格顶点一致：加载器在重排 / LOD 之后给出每个 Part 的每个顶点对应的源顶点（{@link #attach}），
+ * 合并缓冲时各段首尾相接、与 baseVertex 对齐，整个 VAO 只挂一次。
+ * 矩阵来自 {@link BonePalette}，顶点着色器拼上 {@link #GLSL_SKIN} 后用 skinPosition 代替原位置。
+ * <p>
+ * {@link #skinCpu} 是同一混合公式的 CPU 版本，只用于测试与基准对比（benchmarks 里的 bench.SkinBench）。
+ */
+public class Skin implements AutoCloseable {
+    public static final int LOC_BONES = 8, LOC_WEIGHTS = 9;
+    public static final int STRIDE = 12;
+
+    /** 顶点着色器里拼在 main 之前；uBones 为 {@link BonePalette} 所在的纹理单元，uBoneBase 由 RenderQueue 按角色设置 */
+    public static final String GLSL_SKIN =
+            "layout(location=8) in uvec4 aBones;\n" +
+            "layout(location=9) in vec4 aWeights;\n" +
+            "uniform samplerBuffer uBones;\n" +
+            "uniform int uBoneBase;\n" +
+            "vec3 skinPosition(vec3 p){\n" +
+            "  vec4 r0 = vec4(0.0), r1 = vec4(0.0), r2 = vec4(0.0);\n" +
+            "  for (int k = 0; k < 4; k++) {\n" +
+            "    int t = (uBoneBase + int(aBones[k])) * 3;\n" +
+            "    r0 += aWeights[k] * texelFetch(uBones, t);\n" +
+            "    r1 += aWeights[k] * texelFetch(uBones, t + 1);\n" +
+            "    r2 += aWeights[k] * texelFetch(uBones, t + 2);\n" +
+            "  }\n" +
+            "  vec4 h = vec4(p, 1.0);\n" +
+            "  return vec3(dot(r0, h), dot(r1, h), dot(r2, h));\n" +
+            "}\n";
+
+    private final int vbo;
+    public final int vertexCount;
+
+    private Skin(int vbo, int vertexCount) { this.vbo = vbo; this.vertexCount = vertexCount; }
+
+    /**
+     * sources[i][v]：模型第 i 个 Part 的第 v 个顶点（GPU 上的最终顺序）对应的源顶点；
+     * bones / weights 为源顶点的 4 个影响（权重已归一化）。立即上传（每顶点只有 12 字节），须在 GL 线程调用。
+     */
+    public static Skin attach(Model model, int[][] sources, int[] bones, float[] weights) {
+        if (sources.length != model.parts.size()) throw new IllegalArgumentException("one vertex map per part expected");
+        int total = 0;
+        for (int[] s : sources) total += s.length;
+        ByteBuffer buf = MemoryUtil.memAlloc(Math.max(1, total) * STRIDE);
+        try {
+            for (int[] s : sources) {
+                for (int src : s) {
+                    int o = src * 4;
+                    for (int k = 0; k < 4; k++) {
+                        int b = bones[o + k];
+                        if (b > 0xFFFF) throw new IllegalArgumentException("bone index " + b + " does not fit in 16 bits");
+                        buf.putShort((short) b);
+                    }
+                    putWeights(buf, weights, o);
+                }
+            }
+            buf.flip();
+            int vbo = glGenBuffers();
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            glBufferData(GL_ARRAY_BUFFER, buf, GL_STATIC_DRAW);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+            // 每个 VAO 挂一次；偏移让 baseVertex 落到该 Part 那一段的开头
+            int[] done = new int[sources.length];
+            int nDone = 0;
+            long seg = 0;
+            for (int i = 0; i < sources.length; i++) {
+                Mesh mesh = model.parts.get(i).mesh;
+                long offset = seg - (long) mesh.baseVertex() * STRIDE;
+                seg += (long) sources[i].length * STRIDE;
+                boolean seen = false;
+                for (int k = 0; k < nDone; k++) seen |= done[k] == mesh.vao();
+                if (seen) continue;
+                if (offset < 0) throw new IllegalStateException("skin segments out of order for part " + i);
+                done[nDone++] = mesh.vao();
+                glBindVertexArray(mesh.vao());
+                glBindBuffer(GL_ARRAY_BUFFER, vbo);
+                glVertexAttribIPointer(LOC_BONES, 4, GL_UNSIGNED_SHORT, STRIDE, offset);
+                glEnableVertexAttribArray(LOC_BONES);
+                glVertexAttribPointer(LOC_WEIGHTS, 4, GL_UNSIGNED_BYTE, true, STRIDE, offset + 8);
+                glEnableVertexAttribArray(LOC_WEIGHTS);
+            }
+            glBindVertexArray(0);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            return new Skin(vbo, total);
+        } finally {
+            MemoryUtil.memFree(buf);
+        }
+    }
+
+    /** 4 个权重量化为 unorm8，舍入误差补到最大的一个上，保证和为 255（刚性部分不会漂） */
+    private static void putWeights(ByteBuffer buf, float[] w, int o) {
+        int[] q = { Math.round(w[o] * 255f), Math.round(w[o + 1] * 255f), Math.round(w[o + 2] * 255f), Math.round(w[o + 3] * 255f) };
+        int sum = q[0] + q[1] + q[2] + q[3], max = 0;
+        for (int k = 1; k < 4; k++) if (q[k] > q[max]) max = k;
+        if (sum > 0) q[max] += 255 - sum;
+        for (int k = 0; k < 4; k++) buf.put((byte) q[k]);
+    }
+
+    public long gpuBytes() { return (long) vertexCount * STRIDE; }
+
+    /**
+     * CPU 蒙皮（线性混合，与 {@link #GLSL_SKIN} 相同）：palette 为 {@link Skeleton#palette()}，
+     * positions / normals 为每顶点 3 个 float 的源数据，结果写进 outPositions / outNormals（normals 可为 null）。
+     * 法线只做旋转部分的混合，不重新归一化。
+     */
+    public static void skinCpu(float[] palette, int[] bones, float[] weights, float[] positions, float[] normals,
+                               float[] outPositions, float[] outNormals, int count) {
+        for (int v = 0; v < count; v++) {
+            int o = v * 4, p = v * 3;
+            float m0 = 0, m1 = 0, m2 = 0, m3 = 0, m4 = 0, m5 = 0, m6 = 0, m7 = 0, m8 = 0, m9 = 0, m10 = 0, m11 = 0;
+            for (int k = 0; k < 4; k++) {
+                float w = weights[o + k];
+                if (w == 0f) continue;
+                int b = bones[o + k] * Skeleton.PALETTE_FLOATS;
+                m0 += w * palette[b];     m1 += w * palette[b + 1];  m2 += w * palette[b + 2];   m3 += w * palette[b + 3];
+                m4 += w * palette[b + 4]; m5 += w * palette[b + 5];  m6 += w * palette[b + 6];   m7 += w * palette[b + 7];
+                m8 += w * palette[b + 8]; m9 += w * palette[b + 9];  m10 += w * palette[b + 10]; m11 += w * palette[b + 11];
+            }
+            float x = positions[p], y = positions[p + 1], z = positions[p + 2];
+            outPositions[p] = m0 * x + m1 * y + m2 * z + m3;
+            outPositions[p + 1] = m4 * x + m5 * y + m6 * z + m7;
+            outPositions[p + 2] = m8 * x + m9 * y + m10 * z + m11;
+            if (normals != null) {
+                float nx = normals[p], ny = normals[p + 1], nz = normals[p + 2];
+                outNormals[p] = m0 * nx + m1 * ny + m2 * nz;
+                outNormals[p + 1] = m4 * nx + m5 * ny + m6 * nz;
+                outNormals[p + 2] = m8 * nx + m9 * ny + m10 * nz;
+            }
+        }
+    }
+
+    @Override public void close() { glDeleteBuffers(vbo); }
+}
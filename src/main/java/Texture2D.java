@@ -1,11 +1,20 @@
 
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static org.lwjgl.opengl.GL33C.*;
 import static java.lang.Math.*;
@@ -14,62 +23,345 @@ public class Texture2D implements AutoCloseable {
     public final int id;
     public final int width, height;
     public final boolean hasAlpha;
+    /** 经 UploadQueue 分帧上传时，第 0 层和 mipmap 到齐之前为 false */
+    private boolean ready = true;
+    private boolean closed;
+    /** 分帧上传时非空：close 时取消还在排队的带 */
+    private UploadQueue.Owner uploadOwner;
+    /** 0 = RGBA8，否则 {@link Bcn#BC1} / {@link Bcn#BC7} */
+    private int format;
+    private int internal;
+    /** 完整 mip 链的级数；前 baseLevel 级（最大的几层）已被 {@link #dropTopLevels} 丢掉，GL 的第 0 层是原来的第 baseLevel 层 */
+    private int levels, baseLevel;
+    /** 回载整条 mip 链的来源（TextureCache 设置）；为 null 时不能丢层 */
+    Source source;
 
-    private Texture2D(int id, int w, int h, boolean a){ this.id=id; this.width=w; this.height=h; this.hasAlpha=a; }
+    private Texture2D(int id, int w, int h, boolean a, int format, int internal, int levels){
+        this.id=id; this.width=w; this.height=h; this.hasAlpha=a;
+        this.format=format; this.internal=internal; this.levels=levels;
+    }
+
+    /** 重新取得解码结果（可在任意线程调用） */
+    public interface Source { Decoded decode() throws IOException; }
+
+    /** 解码后的 RGBA8 像素（STB 分配的堆外内存），或预压缩的 mip 链（{@link #compressed} 非空，pixels 为 null）；上传后须 free() */
+    public static final class Decoded {
+        public final ByteBuffer pixels;
+        public final int width, height;
+        public final Ktx2.Image compressed;
+        private Decoded(ByteBuffer pixels, int w, int h){ this.pixels=pixels; this.width=w; this.height=h; this.compressed=null; }
+        private Decoded(Ktx2.Image c){ this.pixels=null; this.width=c.width; this.height=c.height; this.compressed=c; }
+        public void free(){ if (pixels != null) STBImage.stbi_image_free(pixels); }
+    }
 
     public static Texture2D loadResource(String resPath, boolean srgb) throws IOException {
+        return uploadAndFree(decodeResource(resPath, srgb), srgb);
+    }
+
+    /** 磁盘文件：直接映射给 STB 解码，不经过 byte[] */
+    public static Texture2D load(Path file, boolean srgb) throws IOException {
+        return uploadAndFree(decodeFile(file, srgb), srgb);
+    }
+
+    // -------- 解码：不碰 GL，可在任意线程执行 --------
+
+    /**
+     * 贴图资源：路径本身是 .ktx2、或旁边有同名 .ktx2（资源包或 classpath 里）时直接取压缩数据，完全不解码；
+     * 否则开启 -Dtexture.compress 时压缩成 BC1/BC7（结果缓存，见 {@link Ktx2#compressCached}），
+     * 都不满足时同 {@link #decodeResource(String)}。srgb 决定 mip 链在哪个空间平均。
+     */
+    public static Decoded decodeResource(String resPath, boolean srgb) throws IOException {
+        ByteBuffer ktx = resourceBytes(Ktx2.isKtx2(resPath) ? resPath : Ktx2.sibling(resPath));
+        if (ktx != null) return new Decoded(Ktx2.read(ktx));
+        if (!Ktx2.compressEnabled()) return decodeResource(resPath);
+        ByteBuffer src = resourceBytes(resPath);
+        if (src == null) throw new IOException("resource not found: " + resPath);
+        return new Decoded(Ktx2.compressCached(src, resPath.substring(resPath.lastIndexOf('/') + 1), srgb));
+    }
+
+    /** 磁盘文件，规则同 {@link #decodeResource(String, boolean)} */
+    public static Decoded decodeFile(Path file, boolean srgb) throws IOException {
+        Path ktx = Ktx2.isKtx2(file.toString()) ? file : Path.of(Ktx2.sibling(file.toString()));
+        if (Files.isRegularFile(ktx)) return new Decoded(Ktx2.read(ktx));
+        if (!Ktx2.compressEnabled()) return decodeFile(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Decoded(Ktx2.compressCached(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), file.getFileName().toString(), srgb));
+        } catch (NoSuchFileException e) {
+            throw new IOException("texture not found: " + file);
+        }
+    }
+
+    /** 资源的原始字节（直接缓冲：资源包切片、映射的文件或拷贝），没有时返回 null */
+    private static ByteBuffer resourceBytes(String resPath) throws IOException {
+        ByteBuffer packed = AssetPack.findSlice(resPath);
+        if (packed != null) return packed;
+        Path file = resourceFile(resPath);
+        if (file != null) {
+            if (!Files.isRegularFile(file)) return null;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+        }
+        String p = resPath.startsWith("/") ? resPath.substring(1) : resPath;
+        try (InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(p)) {
+            if (in == null) return null;
+            byte[] bytes = in.readAllBytes();
+            return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+    }
+
+    /** 只解码成 RGBA8，不看 .ktx2 也不压缩 */
+    public static Decoded decodeResource(String resPath) throws IOException {
+        // 已挂载的资源包里有就直接解码映射切片；classpath 指向目录里的普通文件时直接映射，省掉 byte[] 与堆外缓冲两次拷贝
+        ByteBuffer packed = AssetPack.findSlice(resPath);
+        if (packed != null) return decode(packed);
+        Path file = resourceFile(resPath);
+        if (file != null) return decodeFile(file);
         byte[] bytes = readAllBytes(resPath);
         ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
         buf.put(bytes).flip();
+        return decode(buf);
+    }
 
+    private static Path resourceFile(String resPath) {
+        String p = resPath.startsWith("/") ? resPath.substring(1) : resPath;
+        URL url = ClassLoader.getSystemClassLoader().getResource(p);
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException | RuntimeException e) {
+            return null; // 例如文件名无法用当前平台编码表示，退回流式读取
+        }
+    }
+
+    public static Decoded decodeFile(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        } catch (NoSuchFileException e) {
+            throw new IOException("texture not found: " + file);
+        }
+    }
+
+    public static Decoded decode(ByteBuffer encoded) throws IOException {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             var w = stack.mallocInt(1);
             var h = stack.mallocInt(1);
             var comp = stack.mallocInt(1);
 
-            STBImage.stbi_set_flip_vertically_on_load(false); // 我们在 OBJ 已经可选 flipV
-            ByteBuffer img = STBImage.stbi_load_from_memory(buf, w, h, comp, 4); // 强制 RGBA
+            // 我们在 OBJ 已经可选 flipV；用线程局部版本，多个解码线程互不影响
+            STBImage.stbi_set_flip_vertically_on_load_thread(0);
+            ByteBuffer img = STBImage.stbi_load_from_memory(encoded, w, h, comp, 4); // 强制 RGBA
             if (img == null) throw new IOException("stbi error: " + STBImage.stbi_failure_reason());
+            return new Decoded(img, w.get(0), h.get(0));
+        }
+    }
 
-            int tex = glGenTextures();
-            glBindTexture(GL_TEXTURE_2D, tex);
+    // -------- 上传：必须在 GL 线程 --------
 
-            int internal = srgb ? GL_SRGB8_ALPHA8 : GL_RGBA8;
-            glTexImage2D(GL_TEXTURE_2D, 0, internal, w.get(0), h.get(0), 0, GL_RGBA, GL_UNSIGNED_BYTE, img);
-            glGenerateMipmap(GL_TEXTURE_2D);
+    public static Texture2D uploadAndFree(Decoded d, boolean srgb) {
+        try {
+            return upload(d, srgb);
+        } finally {
+            d.free();
+        }
+    }
+
+    public static Texture2D upload(Decoded d, boolean srgb) {
+        if (d.compressed != null) return uploadCompressed(d.compressed, srgb);
+        int tex = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, tex);
 
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
-
-            // 可选各向异性
-            float[] maxAniso = new float[1];
-            int GL_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FE;
-            int GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FF;
-            try {
-                maxAniso[0] = glGetFloat(GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT);
-                glTexParameterf(GL_TEXTURE_2D, GL_TEXTURE_MAX_ANISOTROPY_EXT, min(4.0f, maxAniso[0]));
-            } catch (Throwable ignored){}
-
-            STBImage.stbi_image_free(img);
+        int internal = srgb ? GL_SRGB8_ALPHA8 : GL_RGBA8;
+        glTexImage2D(GL_TEXTURE_2D, 0, internal, d.width, d.height, 0, GL_RGBA, GL_UNSIGNED_BYTE, d.pixels);
+        glGenerateMipmap(GL_TEXTURE_2D);
+        setSampling();
+
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return new Texture2D(tex, d.width, d.height, true, 0, internal, Bcn.levelCount(d.width, d.height));
+    }
+
+    private static final int GL_COMPRESSED_RGB_S3TC_DXT1_EXT = 0x83F0, GL_COMPRESSED_SRGB_S3TC_DXT1_EXT = 0x8C4C;
+    private static final int GL_COMPRESSED_RGBA_BPTC_UNORM = 0x8E8C, GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM = 0x8E8D;
+
+    /** 当前上下文能否直接采样该压缩格式（BC1 要 S3TC 扩展，sRGB 版另需 EXT_texture_sRGB；BC7 要 GL 4.2 或 ARB_texture_compression_bptc） */
+    public static boolean supports(int format, boolean srgb) {
+        GLCapabilities caps = GL.getCapabilities();
+        if (format == Bcn.BC1) return caps.GL_EXT_texture_compression_s3tc && (!srgb || caps.GL_EXT_texture_sRGB);
+        return caps.OpenGL42 || caps.GL_ARB_texture_compression_bptc;
+    }
+
+    /**
+     * 预压缩的 mip 链逐层 glCompressedTexImage2D，不解码、不 glGenerateMipmap。
+     * 驱动不支持该格式时退回 CPU 解压成 RGBA8 逐层上传（仍省掉 PNG 解码与 mip 生成，但不省显存）。
+     */
+    public static Texture2D uploadCompressed(Ktx2.Image img, boolean srgb) {
+        boolean native_ = supports(img.format, srgb);
+        int tex = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, tex);
+        int internal = img.format == Bcn.BC1
+                ? (srgb ? GL_COMPRESSED_SRGB_S3TC_DXT1_EXT : GL_COMPRESSED_RGB_S3TC_DXT1_EXT)
+                : (srgb ? GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM : GL_COMPRESSED_RGBA_BPTC_UNORM);
+        if (!native_) internal = srgb ? GL_SRGB8_ALPHA8 : GL_RGBA8;
+        Texture2D t = new Texture2D(tex, img.width, img.height, img.format != Bcn.BC1, native_ ? img.format : 0, internal, img.levels.length);
+        t.defineFrom(img, 0);
+        setSampling();
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return t;
+    }
+
+    /** 用 img 的第 base 层及以下定义当前绑定的纹理（GL 第 0 层 = 第 base 层） */
+    private void defineFrom(Ktx2.Image img, int base) {
+        for (int l = base; l < levels; l++) {
+            int w = levelWidth(l), h = levelHeight(l);
+            if (format != 0) glCompressedTexImage2D(GL_TEXTURE_2D, l - base, internal, w, h, 0, img.levels[l]);
+            else glTexImage2D(GL_TEXTURE_2D, l - base, internal, w, h, 0, GL_RGBA, GL_UNSIGNED_BYTE, Bcn.decodeLevel(img.levels[l], w, h, img.format));
+        }
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, levels - 1 - base);
+        baseLevel = base;
+    }
+
+    // -------- 驻留：丢掉 / 取回最大的几层（GL 线程） --------
+
+    public int levelCount(){ return levels; }
+    /** 当前驻留的最大一层（完整链中的下标），0 表示全部驻留 */
+    public int residentLevel(){ return baseLevel; }
+    public int levelWidth(int level){ return max(1, width >> level); }
+    public int levelHeight(int level){ return max(1, height >> level); }
+
+    public long levelBytes(int level){
+        int w = levelWidth(level), h = levelHeight(level);
+        return format == 0 ? (long) w * h * 4 : Bcn.levelBytes(format, w, h);
+    }
+
+    /** 从第 from 层到最小一层的字节数 */
+    public long bytesFrom(int from){
+        long n = 0;
+        for (int l = max(0, from); l < levels; l++) n += levelBytes(l);
+        return n;
+    }
+
+    /** 能否丢层 / 回载：有来源、已上传完毕且未关闭 */
+    public boolean isEvictable(){ return source != null && ready && !closed; }
+
+    /**
+     * 只保留第 newBase 层及以下：读回这些层，以同一个纹理名重新定义（GL 第 0 层变成原来的第 newBase 层，UV 不受影响），
+     * 多出的尾部层定义为空以释放显存。读回会让 CPU 等 GPU，只在淘汰时发生，被丢的层远大于读回的层。
+     */
+    void dropTopLevels(int newBase) {
+        newBase = min(newBase, levels - 1);
+        if (newBase <= baseLevel) return;
+        int oldCount = levels - baseLevel, keep = levels - newBase;
+        ByteBuffer[] data = new ByteBuffer[keep];
+        glBindTexture(GL_TEXTURE_2D, id);
+        try {
+            glPixelStorei(GL_PACK_ALIGNMENT, 4);
+            for (int i = 0; i < keep; i++) {
+                data[i] = MemoryUtil.memAlloc((int) levelBytes(newBase + i));
+                if (format != 0) glGetCompressedTexImage(GL_TEXTURE_2D, newBase - baseLevel + i, data[i]);
+                else glGetTexImage(GL_TEXTURE_2D, newBase - baseLevel + i, GL_RGBA, GL_UNSIGNED_BYTE, data[i]);
+            }
+            for (int i = 0; i < keep; i++) {
+                int w = levelWidth(newBase + i), h = levelHeight(newBase + i);
+                if (format != 0) glCompressedTexImage2D(GL_TEXTURE_2D, i, internal, w, h, 0, data[i]);
+                else glTexImage2D(GL_TEXTURE_2D, i, internal, w, h, 0, GL_RGBA, GL_UNSIGNED_BYTE, data[i]);
+            }
+            for (int i = keep; i < oldCount; i++) {
+                glTexImage2D(GL_TEXTURE_2D, i, GL_RGBA8, 0, 0, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            }
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, keep - 1);
+            baseLevel = newBase;
+        } finally {
+            for (ByteBuffer b : data) if (b != null) MemoryUtil.memFree(b);
             glBindTexture(GL_TEXTURE_2D, 0);
-            return new Texture2D(tex, w.get(0), h.get(0), true);
         }
     }
 
+    /** 用重新解码的结果恢复到第 newBase 层及以下（newBase 可小于当前驻留层）；尺寸或格式对不上时返回 false */
+    boolean restore(Decoded d, int newBase) {
+        if (d.width != width || d.height != height || closed) return false;
+        newBase = max(0, min(newBase, levels - 1));
+        if (d.compressed != null) {
+            if (d.compressed.levels.length != levels || (format != 0 && format != d.compressed.format)) return false;
+            glBindTexture(GL_TEXTURE_2D, id);
+            defineFrom(d.compressed, newBase);
+            glBindTexture(GL_TEXTURE_2D, 0);
+            return true;
+        }
+        if (format != 0) return false;
+        glBindTexture(GL_TEXTURE_2D, id);
+        glTexImage2D(GL_TEXTURE_2D, 0, internal, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, d.pixels);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        glGenerateMipmap(GL_TEXTURE_2D);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        baseLevel = 0;
+        dropTopLevels(newBase);
+        return true;
+    }
+
+    /** 过滤/寻址/各向异性，作用于当前绑定的纹理 */
+    private static void setSampling() {
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+
+        // 可选各向异性
+        float[] maxAniso = new float[1];
+        int GL_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FE;
+        int GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FF;
+        try {
+            maxAniso[0] = glGetFloat(GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT);
+            glTexParameterf(GL_TEXTURE_2D, GL_TEXTURE_MAX_ANISOTROPY_EXT, min(4.0f, maxAniso[0]));
+        } catch (Throwable ignored){}
+    }
+
     private static byte[] readAllBytes(String resPath) throws IOException {
         String p = resPath.startsWith("/") ? resPath.substring(1) : resPath;
         try (InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(p)) {
             if (in == null) throw new IOException("resource not found: " + resPath);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            byte[] tmp = new byte[8192];
-            int n; while ((n = in.read(tmp)) != -1) out.write(tmp, 0, n);
-            return out.toByteArray();
+            return in.readAllBytes();
         }
     }
 
+    /**
+     * 分帧上传：立即分配纹理存储并返回，像素交给 UploadQueue 经 PBO 逐带拷贝，
+     * 全部到齐后生成 mipmap 并释放解码内存；在此之前 {@link #isReady()} 为 false。
+     */
+    public static Texture2D uploadStreaming(Decoded d, boolean srgb, UploadQueue uploads) {
+        if (d.compressed != null) return upload(d, srgb); // 压缩后只有 1/4～1/8 大小，直接上传
+        if (!uploads.fitsTextureRow(d.width)) return uploadAndFree(d, srgb); // 一行超过一个槽位，不能分带
+        int tex = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, tex);
+        int internal = srgb ? GL_SRGB8_ALPHA8 : GL_RGBA8;
+        glTexImage2D(GL_TEXTURE_2D, 0, internal, d.width, d.height, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        setSampling();
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        Texture2D t = new Texture2D(tex, d.width, d.height, true, 0, internal, Bcn.levelCount(d.width, d.height));
+        t.ready = false;
+        t.uploadOwner = new UploadQueue.Owner();
+        uploads.enqueueTexture(tex, d.width, d.height, d.pixels, t.uploadOwner, () -> {
+            glBindTexture(GL_TEXTURE_2D, tex);
+            glGenerateMipmap(GL_TEXTURE_2D);
+            glBindTexture(GL_TEXTURE_2D, 0);
+            d.free();
+            t.ready = true;
+            t.uploadOwner = null;
+        }, d::free);
+        return t;
+    }
+
+    public boolean isReady(){ return ready; }
+
+    /** 当前驻留各层的显存占用 */
+    public long gpuBytes(){ return bytesFrom(baseLevel); }
+
+    public boolean isClosed(){ return closed; }
+
     public void bind(int unit){ glActiveTexture(GL_TEXTURE0 + unit); glBindTexture(GL_TEXTURE_2D, id); }
     public static void unbind(){ glBindTexture(GL_TEXTURE_2D, 0); }
-    @Override public void close(){ glDeleteTextures(id); }
+    @Override public void close(){
+        if (uploadOwner != null) uploadOwner.cancel(); // 未拷完的带丢弃，解码内存由队列释放
+        glDeleteTextures(id); closed = true;
+    }
 }
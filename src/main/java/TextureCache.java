@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 引用计数的共享纹理缓存：同一路径 + 同一 sRGB 标志只解码、上传一次。
+ * <p>
+ * MtlLoader 通过 acquire* 取纹理，Material.close() 通过 {@link #release} 归还；
+ * 最后一个引用归还时才真正 glDeleteTextures。不是从这里取到的纹理 release 时直接删除。
+ * <p>
+ * acquire*Async 可在任意线程调用：读文件和 STB 解码在后台线程池并行进行，
+ * 只有 {@link Pending#get()} 里的 glTexImage2D/mipmap 留给 GL 线程，
+ * 因此多张贴图的总耗时取决于最慢的一张而不是之和。其余方法只应在 GL 线程上调用。
+ */
+public final class TextureCache {
+    private TextureCache() {}
+
+    private static final class Entry {
+        final String key;
+        final boolean srgb;
+        /** 后台解码结果；上传完成后置 null */
+        CompletableFuture<Texture2D.Decoded> decoding;
+        Texture2D tex;
+        int refs;
+        /** 上传前命中的次数，尺寸要等解码完才知道，届时再计入 bytesSaved */
+        int pendingHits;
+        /** 上传后交给纹理，供 {@link TextureResidency} 丢层后回载 */
+        final Texture2D.Source source;
+        Entry(String key, boolean srgb, Texture2D.Source source){ this.key = key; this.srgb = srgb; this.source = source; }
+    }
+
+    /** 异步取得的纹理引用；get() 在 GL 线程上完成上传（多次调用只上传一次），不用了就 {@link #release()} */
+    public static final class Pending {
+        private final Entry entry;
+        private boolean released;
+        private Pending(Entry e){ this.entry = e; }
+
+        /**
+         * 放弃这个引用（幂等）。已上传时同 {@link TextureCache#release}；还没上传时不碰 GL：
+         * 最后一个引用归还后条目移出缓存，解码结果到齐时直接释放。
+         */
+        public void release() {
+            synchronized (TextureCache.class) {
+                if (released) return;
+                released = true;
+                Entry e = entry;
+                if (e.tex != null) { TextureCache.release(e.tex); return; }
+                if (e.pendingHits > 0) e.pendingHits--;
+                if (--e.refs > 0) return;
+                byKey.remove(e.key, e);
+                e.decoding.thenAccept(Texture2D.Decoded::free); // 解码失败时没有东西要释放
+            }
+        }
+
+        public Texture2D get() throws IOException {
+            return get(null);
+        }
+
+        /** uploads 非空时纹理经 UploadQueue 分帧上传，返回的纹理在到齐前 isReady() 为 false */
+        public Texture2D get(UploadQueue uploads) throws IOException {
+            Entry e = entry;
+            CompletableFuture<Texture2D.Decoded> f;
+            synchronized (TextureCache.class) {
+                if (e.tex != null) return e.tex;
+                f = e.decoding;
+            }
+            Texture2D.Decoded d;
+            try {
+                d = f.join(); // 等待时不持锁，解析线程仍可继续 acquire
+            } catch (CompletionException ex) {
+                synchronized (TextureCache.class) { byKey.remove(e.key, e); } // 失败的条目不留在缓存里
+                Throwable c = ex.getCause();
+                throw c instanceof IOException io ? io : new IOException(c);
+            }
+            synchronized (TextureCache.class) {
+                e.tex = uploads == null ? Texture2D.uploadAndFree(d, e.srgb) : Texture2D.uploadStreaming(d, e.srgb, uploads);
+                e.decoding = null;
+                e.tex.source = e.source;
+                byTex.put(e.tex, e);
+                bytesSaved += gpuBytes(e.tex) * e.pendingHits;
+                return e.tex;
+            }
+        }
+    }
+
+    /** 解码线程池：守护线程，不阻止 JVM 退出；TextureResidency 的回载也在这里解码 */
+    static final ExecutorService DECODER = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "texture-decode");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final Map<String, Entry> byKey = new HashMap<>();
+    private static final Map<Texture2D, Entry> byTex = new IdentityHashMap<>();
+
+    private static int hits, misses;
+    private static long bytesSaved;
+
+    /** classpath 资源（同步：GL 线程上立即完成上传） */
+    public static Texture2D acquireResource(String resPath, boolean srgb) throws IOException {
+        return acquireResourceAsync(resPath, srgb).get();
+    }
+
+    /** 磁盘文件（同步） */
+    public static Texture2D acquire(Path file, boolean srgb) throws IOException {
+        return acquireAsync(file, srgb).get();
+    }
+
+    public static Pending acquireResourceAsync(String resPath, boolean srgb) {
+        String norm = normalize(resPath);
+        // 资源包里的贴图按内容哈希作键：不同目录下的同一张图共用一份纹理
+        AssetPack.Entry packed = AssetPack.find(norm);
+        String key = packed != null ? String.format("pak:%016x:%d", packed.hash, packed.length) : "res:" + norm;
+        return acquire(key, srgb, () -> Texture2D.decodeResource(norm, srgb));
+    }
+
+    public static Pending acquireAsync(Path file, boolean srgb) {
+        Path abs = file.toAbsolutePath().normalize();
+        return acquire("file:" + abs, srgb, () -> Texture2D.decodeFile(abs, srgb));
+    }
+
+    private static synchronized Pending acquire(String path, boolean srgb, Texture2D.Source decoder) {
+        String key = path + (srgb ? "|srgb" : "|linear");
+        Entry e = byKey.get(key);
+        if (e != null) {
+            e.refs++;
+            hits++;
+            if (e.tex != null) bytesSaved += gpuBytes(e.tex);
+            else e.pendingHits++;
+            return new Pending(e);
+        }
+        misses++;
+        Entry ne = new Entry(key, srgb, decoder);
+        ne.refs = 1;
+        ne.decoding = CompletableFuture.supplyAsync(() -> {
+            try {
+                return decoder.decode();
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, DECODER);
+        byKey.put(key, ne);
+        return new Pending(ne);
+    }
+
+    /** 归还一个引用；引用归零或纹理不归缓存管理时删除 GL 纹理 */
+    public static synchronized void release(Texture2D tex) {
+        if (tex == null) return;
+        Entry e = byTex.get(tex);
+        if (e == null) { tex.close(); return; }
+        if (--e.refs > 0) return;
+        byKey.remove(e.key);
+        byTex.remove(tex);
+        tex.close();
+    }
+
+    static long gpuBytes(Texture2D t) {
+        return t.gpuBytes();
+    }
+
+    /** 已上传的缓存纹理占的显存 */
+    public static synchronized long liveBytes() {
+        long n = 0;
+        for (Texture2D t : byTex.keySet()) n += t.gpuBytes();
+        return n;
+    }
+
+    public static synchronized int hits() { return hits; }
+    public static synchronized int misses() { return misses; }
+    public static synchronized long bytesSaved() { return bytesSaved; }
+    public static synchronized int liveTextures() { return byKey.size(); }
+
+    public static synchronized String stats() {
+        return String.format("TextureCache: %d hit / %d miss, %d live (%.1f MB VRAM), %.1f MB VRAM saved",
+                hits, misses, byKey.size(), liveBytes() / (1024.0 * 1024.0), bytesSaved / (1024.0 * 1024.0));
+    }
+
+    /** 资源路径规范化：统一分隔符，去掉 "." 与 "x/.." 段，保证同一文件得到同一个键 */
+    static String normalize(String resPath) {
+        Deque<String> out = new ArrayDeque<>();
+        for (String seg : resPath.replace('\\', '/').split("/")) {
+            if (seg.isEmpty() || seg.equals(".")) continue;
+            if (seg.equals("..") && !out.isEmpty() && !out.peekLast().equals("..")) out.pollLast();
+            else out.addLast(seg);
+        }
+        return String.join("/", out);
+    }
+}
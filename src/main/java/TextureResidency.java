@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 贴图驻留管理：给所有贴图一个显存预算，超出时从最久没用的贴图开始丢掉最大的几层 mip，
+ * 需要时再从来源（TextureCache 记下的解码器，KTX2 就是映射的文件）回载。
+ * <p>
+ * {@link RenderQueue#setResidency} 之后，每个可见且带贴图的 Part 提交时按它包围球的投影直径
+ * （{@link Lod#pixelsPerUnit}，视口高度取自 {@link ArcballCamera}）估计需要的最大一层：
+ * 贴图边长 / 屏幕像素 = 2^level。同一帧里同一张贴图取各处要求中最细的一层。
+ * {@link #update()} 每帧在 flush 之后调用一次，依次：
+ * <ol>
+ *   <li>把后台解码完的回载传上去（每帧最多 {@link #MAX_RESTORES_PER_FRAME} 张），记录回载延迟；</li>
+ *   <li>本帧需要的层比驻留的更细时提交回载（同时最多 {@link #MAX_INFLIGHT} 张，预算放不下就不回载）；</li>
+ *   <li>超出预算时按 LRU 淘汰：先把本帧没用到的贴图降到尾部（不大于 {@link #TAIL_SIZE} 的几层，
+ *       贴图永远有东西可采样，只是变糊），再把本帧用到的贴图降到它需要的那层，最后才让用到的贴图也降一层。</li>
+ * </ol>
+ * 预算由 -Dtexture.budget.mb 指定（默认不限，仍统计驻留字节）。不是从 TextureCache 取到的贴图没有来源，只计数不淘汰。
+ * 丢层要读回保留下来的小层（见 {@link Texture2D#dropTopLevels}），只能在 GL 线程使用。
+ */
+public final class TextureResidency {
+    /** 淘汰后保留的尾部：边长不大于此值的各层 */
+    public static final int TAIL_SIZE = 64;
+    public static final int MAX_INFLIGHT = 2, MAX_RESTORES_PER_FRAME = 2;
+
+    private static final class State {
+        final Texture2D tex;
+        long lastUsed = -1;
+        long wantedFrame = -1;
+        int wanted;
+        CompletableFuture<Texture2D.Decoded> reload;
+        int reloadLevel;
+        long reloadStart;
+        State(Texture2D t) { tex = t; }
+    }
+
+    private final ArcballCamera camera;
+    private long budget;
+    private final Map<Texture2D, State> states = new IdentityHashMap<>();
+    private final List<State> lru = new ArrayList<>();
+    private long frame;
+    private int inflight;
+
+    // 指标
+    private long residentBytes, evictions, evictedBytes, evictedBytesLastFrame, reloads, reloadFailures;
+    private long lastReloadNanos, maxReloadNanos, totalReloadNanos;
+
+    public TextureResidency(ArcballCamera camera, long budgetBytes) {
+        this.camera = camera;
+        this.budget = budgetBytes;
+    }
+
+    /** -Dtexture.budget.mb，未设置或 ≤ 0 时不限 */
+    public static long budgetFromProperty() {
+        long mb = Long.getLong("texture.budget.mb", 0L);
+        return mb > 0 ? mb << 20 : Long.MAX_VALUE;
+    }
+
+    public void setBudget(long bytes) { budget = bytes; }
+    public long budget() { return budget; }
+    public int viewportHeight() { return camera.viewportHeight(); }
+
+    /** 贴图在屏幕上约占 projectedPixels 像素（边长）时需要的最大一层 */
+    public static int levelFor(Texture2D tex, float projectedPixels) {
+        if (!(projectedPixels < Float.POSITIVE_INFINITY)) return 0;
+        float ratio = Math.max(tex.width, tex.height) / Math.max(1f, projectedPixels);
+        int level = ratio <= 1f ? 0 : 31 - Integer.numberOfLeadingZeros((int) Math.min(ratio, 1 << 30));
+        return Math.min(level, tex.levelCount() - 1);
+    }
+
+    /** 尾部的第一层：边长不大于 TAIL_SIZE */
+    static int tailLevel(Texture2D tex) {
+        int l = 0;
+        while (l < tex.levelCount() - 1 && Math.max(tex.levelWidth(l), tex.levelHeight(l)) > TAIL_SIZE) l++;
+        return l;
+    }
+
+    /** 本帧要用 tex，它在屏幕上约占 projectedPixels 像素（+∞ 表示要第 0 层） */
+    public void request(Texture2D tex, float projectedPixels) {
+        State s = states.get(tex);
+        if (s == null) {
+            s = new State(tex);
+            states.put(tex, s);
+            lru.add(s);
+        }
+        int level = levelFor(tex, projectedPixels);
+        if (s.wantedFrame != frame) { s.wantedFrame = frame; s.wanted = level; }
+        else s.wanted = Math.min(s.wanted, level);
+        s.lastUsed = frame;
+    }
+
+    /** 每帧一次（GL 线程，flush 之后） */
+    public void update() {
+        evictedBytesLastFrame = 0;
+        lru.removeIf(s -> {
+            if (!s.tex.isClosed()) return false;
+            states.remove(s.tex);
+            if (s.reload != null) { inflight--; s.reload.thenAccept(Texture2D.Decoded::free); }
+            return true;
+        });
+        lru.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed)); // 最久没用的在前；几乎有序，排序很便宜
+
+        finishReloads();
+        residentBytes = 0;
+        long freeable = 0;
+        for (State s : lru) {
+            residentBytes += s.tex.gpuBytes();
+            if (s.lastUsed != frame && s.tex.isEvictable()) freeable += s.tex.gpuBytes() - s.tex.bytesFrom(tailLevel(s.tex));
+        }
+        startReloads(freeable);
+        if (residentBytes > budget) evict();
+        frame++;
+    }
+
+    private void finishReloads() {
+        int restored = 0;
+        for (State s : lru) {
+            if (s.reload == null || !s.reload.isDone() || restored >= MAX_RESTORES_PER_FRAME) continue;
+            CompletableFuture<Texture2D.Decoded> f = s.reload;
+            s.reload = null;
+            inflight--;
+            Texture2D.Decoded d;
+            try {
+                d = f.join();
+            } catch (CompletionException e) {
+                reloadFailures++;
+                System.err.println("WARN: texture reload failed: " + e.getCause());
+                continue;
+            }
+            try {
+                // 到齐时相机可能又动了：按最新的需要取层，但不比发起时要的更细
+                int level = s.wantedFrame == frame ? Math.max(s.reloadLevel, s.wanted) : s.reloadLevel;
+                if (level < s.tex.residentLevel() && s.tex.restore(d, level)) {
+                    long dt = System.nanoTime() - s.reloadStart;
+                    reloads++;
+                    lastReloadNanos = dt;
+                    maxReloadNanos = Math.max(maxReloadNanos, dt);
+                    totalReloadNanos += dt;
+                    restored++;
+                }
+            } finally {
+                d.free();
+            }
+        }
+    }
+
+    private void startReloads(long freeable) {
+        // 最近用到的优先
+        for (int i = lru.size() - 1; i >= 0 && inflight < MAX_INFLIGHT; i--) {
+            State s = lru.get(i);
+            if (s.wantedFrame != frame || s.reload != null || !s.tex.isEvictable()) continue;
+            if (s.wanted >= s.tex.residentLevel()) continue;
+            long extra = s.tex.bytesFrom(s.wanted) - s.tex.gpuBytes();
+            if (residentBytes + extra > budget && extra > freeable) continue; // 腾不出地方，回载了也会被马上淘汰
+            Texture2D.Source src = s.tex.source;
+            s.reloadLevel = s.wanted;
+            s.reloadStart = System.nanoTime();
+            s.reload = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return src.decode();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, TextureCache.DECODER);
+            inflight++;
+            freeable -= Math.min(freeable, extra);
+        }
+    }
+
+    private void evict() {
+        // 1. 本帧没用到的：降到尾部
+        for (State s : lru) {
+            if (residentBytes <= budget) return;
+            if (s.lastUsed == frame || !s.tex.isEvictable()) continue;
+            drop(s, tailLevel(s.tex));
+        }
+        // 2. 本帧用到但驻留得比需要的更细：降到需要的那层
+        for (State s : lru) {
+            if (residentBytes <= budget) return;
+            if (s.lastUsed != frame || !s.tex.isEvictable()) continue;
+            drop(s, Math.min(s.wanted, tailLevel(s.tex)));
+        }
+        // 3. 仍然超出：用到的也按 LRU 逐层降，直到尾部
+        boolean progress = true;
+        while (residentBytes > budget && progress) {
+            progress = false;
+            for (State s : lru) {
+                if (residentBytes <= budget) return;
+                if (!s.tex.isEvictable() || s.tex.residentLevel() >= tailLevel(s.tex)) continue;
+                drop(s, s.tex.residentLevel() + 1);
+                progress = true;
+            }
+        }
+    }
+
+    private void drop(State s, int level) {
+        if (level <= s.tex.residentLevel()) return;
+        long before = s.tex.gpuBytes();
+        s.tex.dropTopLevels(level);
+        long freed = before - s.tex.gpuBytes();
+        if (freed <= 0) return;
+        residentBytes -= freed;
+        evictions++;
+        evictedBytes += freed;
+        evictedBytesLastFrame += freed;
+    }
+
+    // ---------------- 指标 ----------------
+
+    public long residentBytes() { return residentBytes; }
+    /** 丢层次数（一次可能丢好几层） */
+    public long evictions() { return evictions; }
+    public long evictedBytes() { return evictedBytes; }
+    public long evictedBytesLastFrame() { return evictedBytesLastFrame; }
+    public long reloads() { return reloads; }
+    public long reloadFailures() { return reloadFailures; }
+    public int pendingReloads() { return inflight; }
+    public int trackedTextures() { return lru.size(); }
+    /** 回载延迟：从提交解码到新层上传完毕 */
+    public float lastReloadMillis() { return lastReloadNanos / 1e6f; }
+    public float maxReloadMillis() { return maxReloadNanos / 1e6f; }
+    public float avgReloadMillis() { return reloads == 0 ? 0f : totalReloadNanos / 1e6f / reloads; }
+
+    public String stats() {
+        return String.format("TextureResidency: %d textures, %.1f / %s MB resident, %d evictions (%.1f MB), %d reloads (avg %.1f ms, max %.1f ms), %d pending",
+                lru.size(), residentBytes / 1048576.0, budget == Long.MAX_VALUE ? "∞" : String.format("%.0f", budget / 1048576.0),
+                evictions, evictedBytes / 1048576.0, reloads, avgReloadMillis(), maxReloadMillis(), inflight);
+    }
+}
@@ -0,0 +1,226 @@
+import org.lwjgl.stb.STBIWriteCallback;
+import org.lwjgl.stb.STBImageWrite;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 批量缩略图 / 转台序列：无界面 GL 上下文（{@link Renderer#initHeadless()}）+ {@link OffscreenTarget}，
+ * 不等垂直同步。对目录下每个 .obj / .pmx 渲染 N 个角度（绕 Y 轴等分），每张存成 PNG。
+ * <p>
+ * 流水线：GL 线程只负责加载、绘制和发出异步读回；行翻转之后的 PNG 压缩在后台线程池进行，
+ * 压缩跟不上时 GL 线程在信号量上等待，内存占用有上限。结束时打印渲染帧率与每秒模型数。
+ * <pre>
+ *   java Thumbnails models/ out/                                  # 每个模型一张 256x256
+ *   java -Dthumb.angles=36 -Dthumb.size=512 Thumbnails a.obj out/  # 36 帧转台：a_000.png .. a_035.png
+ *   java -Dheadless.backend=osmesa Thumbnails models/ out/         # 没有 GPU / 显示服务器的 Linux（见 Renderer）
+ * </pre>
+ * 其余选项：-Dthumb.msaa=4、-Dthumb.elevation=20（度）、-Dthumb.flipV=true、-Dthumb.encoders=线程数。
+ * 有模型加载失败时继续处理其余模型，最后以退出码 1 结束，便于 CI 判断。
+ */
+public class Thumbnails {
+
+    private static final int SIZE = Integer.getInteger("thumb.size", 256);
+    private static final int ANGLES = Math.max(1, Integer.getInteger("thumb.angles", 1));
+    private static final int MSAA = Integer.getInteger("thumb.msaa", 4);
+    private static final float ELEVATION = Float.parseFloat(System.getProperty("thumb.elevation", "20"));
+    private static final boolean FLIP_V = !"false".equalsIgnoreCase(System.getProperty("thumb.flipV", "true"));
+    private static final int ENCODERS = Integer.getInteger("thumb.encoders",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    private static final float FOV = 40f;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: Thumbnails <model.obj | model.pmx | directory> <output directory>");
+            System.exit(2);
+        }
+        Path in = Path.of(args[0]), out = Path.of(args[1]);
+        List<Path> models = find(in);
+        System.out.printf("%d model(s), %d angle(s) each, %dx%d, msaa %d%n", models.size(), ANGLES, SIZE, SIZE, MSAA);
+
+        Renderer renderer = new Renderer(SIZE, SIZE);
+        renderer.initHeadless();
+        renderer.setClearColor(0f, 0f, 0f, 0f); // 透明背景，PNG 带 alpha
+
+        ShaderProgram shader = new ShaderProgram(MainApp.VS, MainApp.FS);
+        shader.use();
+        shader.set1i("uAlbedo", 0);
+        ShaderProgram.unbind();
+
+        UploadQueue uploads = UploadQueue.createDefault();
+        OffscreenTarget target = new OffscreenTarget(SIZE, SIZE, MSAA);
+        RenderQueue queue = new RenderQueue();
+        queue.setLod(SIZE, 1f); // 缩略图分辨率低，远处的 Part 用粗 LOD 即可
+        Encoder encoder = new Encoder(ENCODERS);
+
+        float[] sphere = new float[4], view = new float[16], proj = new float[16], viewProj = new float[16];
+        long start = System.nanoTime(), renderNanos = 0, loadNanos = 0;
+        int frames = 0, done = 0, failed = 0;
+        for (Path obj : models) {
+            String name = stripExtension(in.equals(obj) ? obj.getFileName().toString() : in.relativize(obj).toString());
+            long t0 = System.nanoTime();
+            Model model;
+            try {
+                model = isPmx(obj) ? PmxLoader.load(obj, uploads) : ObjMtlLoader.loadOBJWithMTL(obj, FLIP_V, uploads);
+                uploads.flush(); // 缩略图必须等网格和贴图全部到齐
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[Thumbnails] " + obj + ": " + e);
+                failed++;
+                continue;
+            }
+            long t1 = System.nanoTime();
+
+            model.boundingSphere(sphere);
+            float r = Math.max(1e-6f, sphere[3]);
+            float dist = r / (float) Math.sin(Math.toRadians(FOV * 0.5)) * 1.05f;
+            Mat4f.perspective(proj, FOV, 1f, Math.max(dist - r * 1.1f, dist * 1e-3f), dist + r * 1.1f);
+            float el = (float) Math.toRadians(ELEVATION);
+            for (int a = 0; a < ANGLES; a++) {
+                double yaw = 2.0 * Math.PI * a / ANGLES;
+                float ex = sphere[0] + dist * (float) (Math.cos(el) * Math.sin(yaw));
+                float ey = sphere[1] + dist * (float) Math.sin(el);
+                float ez = sphere[2] + dist * (float) (Math.cos(el) * Math.cos(yaw));
+                Mat4f.lookAt(view, ex, ey, ez, sphere[0], sphere[1], sphere[2], 0f, 1f, 0f);
+                Mat4f.multiply(proj, view, viewProj);
+
+                target.bind();
+                renderer.beginFrame();
+                queue.submit(shader, model, viewProj);
+                queue.flush();
+                Path png = out.resolve(ANGLES == 1 ? name + ".png" : String.format(Locale.ROOT, "%s_%03d.png", name, a));
+                target.capture(png, encoder);
+            }
+            // 删除 GL 对象不影响已排队的命令（驱动延后释放），不必等读回完成
+            queue.forget(model);
+            model.close();
+            long t2 = System.nanoTime();
+            loadNanos += t1 - t0;
+            renderNanos += t2 - t1;
+            frames += ANGLES;
+            done++;
+            if (done % 100 == 0) System.out.printf("  %d/%d  %s%n", done, models.size(), name);
+        }
+        target.drain();
+        encoder.finish();
+        long wall = System.nanoTime() - start;
+
+        double renderSec = renderNanos / 1e9, wallSec = wall / 1e9;
+        System.out.printf("%d model(s) ok, %d failed, %d PNG(s) written, %d encode error(s)%n",
+                done, failed, encoder.written.get(), encoder.errors.get());
+        System.out.printf("render %.1f fps (%d frames in %.2f s, incl. readback), load %.2f s, wall %.2f s: %.1f models/s, %.1f frames/s%n",
+                frames / Math.max(renderSec, 1e-9), frames, renderSec, loadNanos / 1e9, wallSec,
+                done / Math.max(wallSec, 1e-9), frames / Math.max(wallSec, 1e-9));
+
+        uploads.close();
+        target.close();
+        shader.dispose();
+        renderer.cleanup();
+        if (failed > 0 || encoder.errors.get() > 0) System.exit(1);
+    }
+
+    /** 单个文件或目录下所有 .obj / .pmx（递归，按路径排序，输出顺序稳定） */
+    private static List<Path> find(Path in) throws IOException {
+        if (Files.isRegularFile(in)) return List.of(in);
+        if (!Files.isDirectory(in)) throw new IOException("not found: " + in);
+        try (Stream<Path> s = Files.walk(in)) {
+            return s.filter(p -> Files.isRegularFile(p) && (p.getFileName().toString().toLowerCase().endsWith(".obj") || isPmx(p)))
+                    .sorted().toList();
+        }
+    }
+
+    private static boolean isPmx(Path p) {
+        return p.getFileName().toString().toLowerCase().endsWith(".pmx");
+    }
+
+    private static String stripExtension(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".obj") || lower.endsWith(".pmx") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /**
+     * 读回回调：在 GL 线程把像素翻转拷进自己的缓冲区，交给线程池压缩写盘。
+     * 在途的帧数受信号量限制，压缩慢于渲染时 GL 线程在这里等待。
+     */
+    private static final class Encoder implements OffscreenTarget.Sink {
+        final ExecutorService pool;
+        final Semaphore inFlight;
+        final AtomicInteger written = new AtomicInteger(), errors = new AtomicInteger();
+        /** 每个压缩线程一个 STB 回调和输出缓冲；回调是本地闭包，结束时统一释放 */
+        final List<PngWriter> writers = new ArrayList<>();
+        final ThreadLocal<PngWriter> writer = ThreadLocal.withInitial(() -> {
+            PngWriter w = new PngWriter();
+            synchronized (writers) { writers.add(w); }
+            return w;
+        });
+
+        Encoder(int threads) {
+            pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "png-encode");
+                t.setDaemon(true);
+                return t;
+            });
+            inFlight = new Semaphore(threads * 2);
+        }
+
+        @Override public void accept(ByteBuffer rgba, int width, int height, Object tag) {
+            inFlight.acquireUninterruptibly();
+            ByteBuffer copy = MemoryUtil.memAlloc(width * height * 4);
+            OffscreenTarget.flipRows(rgba, width, height, copy);
+            Path png = (Path) tag;
+            pool.execute(() -> {
+                try {
+                    writer.get().write(png, copy, width, height);
+                    written.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[Thumbnails] " + png + ": " + e);
+                    errors.incrementAndGet();
+                } finally {
+                    MemoryUtil.memFree(copy);
+                    inFlight.release();
+                }
+            });
+        }
+
+        void finish() throws InterruptedException {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.DAYS);
+            for (PngWriter w : writers) w.callback.free();
+        }
+    }
+
+    /** stbi_write_png_to_func 写进内存再由 Java 写文件：路径不经过 C 字符串，任意字符都行，错误是 IOException */
+    private static final class PngWriter {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(1 << 16);
+        final STBIWriteCallback callback = STBIWriteCallback.create((ctx, data, size) -> {
+            ByteBuffer b = STBIWriteCallback.getData(data, size);
+            byte[] chunk = new byte[size];
+            b.get(chunk);
+            buf.write(chunk, 0, size);
+        });
+
+        void write(Path png, ByteBuffer rgba, int width, int height) throws IOException {
+            buf.reset();
+            if (!STBImageWrite.stbi_write_png_to_func(callback, 0L, width, height, 4, rgba, width * 4)) {
+                throw new IOException("stbi_write_png failed");
+            }
+            Path dir = png.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            try (var os = Files.newOutputStream(png)) {
+                buf.writeTo(os);
+            }
+        }
+    }
+}
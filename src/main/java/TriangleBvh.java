@@ -0,0 +1,168 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 三角形 BVH：从 ObjReader / ObjMtlLoader 产出的交错顶点 + 索引构建，用于鼠标拾取等射线查询。
+ * <p>
+ * 构建后按叶子顺序把每个三角形的 9 个坐标拷成连续数组，叶子内的 Möller–Trumbore 测试顺序访问内存。
+ * 顶点移动（例如蒙皮后）用 {@link #refit(float[])}：拓扑不变，只重算包围盒。
+ */
+public final class TriangleBvh {
+    private final Bvh bvh;
+    private final int[] indices;   // 原始三角形索引（3 个一组）
+    private final int stride;      // positions 的步长（float）
+    private final float[] tri;     // 按 bvh.prims 顺序：每三角形 v0 v1 v2 共 9 个 float
+    private final int[] slotOf;    // 三角形原始下标 → tri 中的位置
+
+    /**
+     * @param interleaved 交错顶点，位置在每个顶点的前 3 个 float
+     * @param strideFloats 每个顶点的 float 数（3 + 3?normal + 2?uv）
+     * @param indices 三角形索引；为 null 时按顶点顺序每 3 个一组
+     */
+    public TriangleBvh(float[] interleaved, int strideFloats, int[] indices, ForkJoinPool pool) {
+        this.stride = strideFloats;
+        if (indices == null) {
+            indices = new int[interleaved.length / strideFloats];
+            for (int i = 0; i < indices.length; i++) indices[i] = i;
+        }
+        this.indices = indices;
+        int n = indices.length / 3;
+        float[] mn = new float[3 * n], mx = new float[3 * n];
+        triangleBounds(interleaved, mn, mx, n);
+        bvh = new Bvh(mn, mx, n).build(pool);
+        tri = new float[9 * n];
+        slotOf = new int[n];
+        for (int k = 0; k < n; k++) slotOf[bvh.prims[k]] = k;
+        copyTriangles(interleaved);
+    }
+
+    public TriangleBvh(float[] interleaved, int strideFloats, int[] indices) {
+        this(interleaved, strideFloats, indices, ForkJoinPool.commonPool());
+    }
+
+    /** 从 .gmesh 映射切片构建（native order 的 float / int 字节） */
+    public static TriangleBvh fromBuffers(ByteBuffer vertices, ByteBuffer indices, int strideFloats) {
+        FloatBuffer fv = vertices.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        float[] v = new float[fv.remaining()];
+        fv.get(v);
+        int[] ix = null;
+        if (indices != null && indices.remaining() > 0) {
+            IntBuffer ib = indices.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+            ix = new int[ib.remaining()];
+            ib.get(ix);
+        }
+        return new TriangleBvh(v, strideFloats, ix);
+    }
+
+    public Bvh bvh() { return bvh; }
+    public int triangleCount() { return indices.length / 3; }
+
+    private void triangleBounds(float[] p, float[] mn, float[] mx, int n) {
+        for (int t = 0; t < n; t++) {
+            int a = indices[3*t] * stride, b = indices[3*t+1] * stride, c = indices[3*t+2] * stride;
+            for (int k = 0; k < 3; k++) {
+                float va = p[a+k], vb = p[b+k], vc = p[c+k];
+                mn[3*t+k] = Math.min(va, Math.min(vb, vc));
+                mx[3*t+k] = Math.max(va, Math.max(vb, vc));
+            }
+        }
+    }
+
+    private void copyTriangles(float[] p) {
+        int n = indices.length / 3;
+        for (int t = 0; t < n; t++) {
+            int o = 9 * slotOf[t];
+            for (int v = 0; v < 3; v++) {
+                int src = indices[3*t+v] * stride;
+                tri[o + 3*v] = p[src]; tri[o + 3*v + 1] = p[src+1]; tri[o + 3*v + 2] = p[src+2];
+            }
+        }
+    }
+
+    /** 顶点位置整体更新后重算（布局须与构建时一致） */
+    public void refit(float[] interleaved) {
+        triangleBounds(interleaved, bvh.pmin, bvh.pmax, indices.length / 3);
+        copyTriangles(interleaved);
+        bvh.refit();
+    }
+
+    /**
+     * 最近命中的三角形。hit.prim 为三角形下标（索引数组里的第几个三角形），u/v 为重心坐标
+     * （交点 = (1-u-v)·v0 + u·v1 + v·v2）。方向不必归一化。
+     */
+    public boolean raycast(float ox, float oy, float oz, float dx, float dy, float dz, float tMax, Bvh.Hit hit) {
+        hit.reset(tMax);
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        if (bvh.slab(0, ox, oy, oz, ix, iy, iz, tMax) == Float.POSITIVE_INFINITY) return false;
+        int[] first = bvh.first, count = bvh.count;
+        int[] stack = new int[bvh.maxDepth + 2];
+        int sp = 0;
+        stack[sp++] = 0;
+        int bestSlot = -1;
+        while (sp > 0) {
+            int node = stack[--sp];
+            int cnt = count[node];
+            if (cnt > 0) {
+                for (int k = first[node], e = k + cnt; k < e; k++) {
+                    // Möller–Trumbore，双面
+                    int o = 9 * k;
+                    float e1x = tri[o+3] - tri[o], e1y = tri[o+4] - tri[o+1], e1z = tri[o+5] - tri[o+2];
+                    float e2x = tri[o+6] - tri[o], e2y = tri[o+7] - tri[o+1], e2z = tri[o+8] - tri[o+2];
+                    float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+                    float det = e1x * px + e1y * py + e1z * pz;
+                    if (det > -1e-12f && det < 1e-12f) continue;
+                    float inv = 1f / det;
+                    float tx = ox - tri[o], ty = oy - tri[o+1], tz = oz - tri[o+2];
+                    float u = (tx * px + ty * py + tz * pz) * inv;
+                    if (u < 0f || u > 1f) continue;
+                    float qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x;
+                    float v = (dx * qx + dy * qy + dz * qz) * inv;
+                    if (v < 0f || u + v > 1f) continue;
+                    float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+                    if (t >= 0f && t < hit.t) { hit.t = t; hit.u = u; hit.v = v; bestSlot = k; }
+                }
+                continue;
+            }
+            int l = first[node], r = l + 1;
+            float tl = bvh.slab(l, ox, oy, oz, ix, iy, iz, hit.t);
+            float tr = bvh.slab(r, ox, oy, oz, ix, iy, iz, hit.t);
+            if (tl <= tr) {
+                if (tr != Float.POSITIVE_INFINITY) stack[sp++] = r;
+                if (tl != Float.POSITIVE_INFINITY) stack[sp++] = l;
+            } else {
+                if (tl != Float.POSITIVE_INFINITY) stack[sp++] = l;
+                if (tr != Float.POSITIVE_INFINITY) stack[sp++] = r;
+            }
+        }
+        if (bestSlot >= 0) hit.prim = hit.triangle = bvh.prims[bestSlot];
+        return hit.hit();
+    }
+
+    /** 不用 BVH 的逐三角形扫描，作为对照基准 */
+    public static boolean raycastBruteForce(float[] interleaved, int stride, int[] indices,
+                                            float ox, float oy, float oz, float dx, float dy, float dz, float tMax, Bvh.Hit hit) {
+        hit.reset(tMax);
+        int n = indices.length / 3;
+        for (int t = 0; t < n; t++) {
+            int a = indices[3*t] * stride, b = indices[3*t+1] * stride, c = indices[3*t+2] * stride;
+            float e1x = interleaved[b] - interleaved[a], e1y = interleaved[b+1] - interleaved[a+1], e1z = interleaved[b+2] - interleaved[a+2];
+            float e2x = interleaved[c] - interleaved[a], e2y = interleaved[c+1] - interleaved[a+1], e2z = interleaved[c+2] - interleaved[a+2];
+            float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+            float det = e1x * px + e1y * py + e1z * pz;
+            if (det > -1e-12f && det < 1e-12f) continue;
+            float inv = 1f / det;
+            float tx = ox - interleaved[a], ty = oy - interleaved[a+1], tz = oz - interleaved[a+2];
+            float u = (tx * px + ty * py + tz * pz) * inv;
+            if (u < 0f || u > 1f) continue;
+            float qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x;
+            float v = (dx * qx + dy * qy + dz * qz) * inv;
+            if (v < 0f || u + v > 1f) continue;
+            float tt = (e2x * qx + e2y * qy + e2z * qz) * inv;
+            if (tt >= 0f && tt < hit.t) { hit.t = tt; hit.u = u; hit.v = v; hit.prim = hit.triangle = t; }
+        }
+        return hit.hit();
+    }
+}
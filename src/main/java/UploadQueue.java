@@ -0,0 +1,277 @@
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import static org.lwjgl.opengl.GL33C.*;
+import static org.lwjgl.opengl.GL44C.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44C.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL44C.glBufferStorage;
+
+/**
+ * 分帧流式上传：纹理与顶点/索引数据先拷进一圈 staging PBO，再由 GPU 从 PBO 取数，
+ * 每个 PBO 槽位用 fence 保护，CPU 永远不会等 GPU（槽位未完成就留到下一帧）。
+ * <p>
+ * 有 GL 4.4 / ARB_buffer_storage 时 PBO 持久映射（一次映射长期使用），
+ * 否则每次用 GL_MAP_UNSYNCHRONIZED_BIT 映射——同步由 fence 负责。
+ * 每帧调用 {@link #pump()}，最多上传 frameBudget 字节，把加载期的帧时间尖峰限制在预算内。
+ * 只能在 GL 线程使用。
+ */
+public class UploadQueue implements AutoCloseable {
+
+    /**
+     * 任务的归属：资源删除 GL 名字时调用 {@link #cancel()}，队列里属于它的任务在 pump 时丢弃，
+     * 不再发 GL 命令（删掉的名字可能已被下一次 glGen* 复用），只运行 onCancel 释放源数据。
+     */
+    public static final class Owner {
+        private boolean cancelled;
+        public void cancel(){ cancelled = true; }
+        public boolean isCancelled(){ return cancelled; }
+    }
+
+    /** 一个待上传的资源，按 chunk 拆分推进 */
+    private abstract static class Job {
+        final ByteBuffer src;   // 源数据（直接缓冲区），从 position 开始
+        final Owner owner;      // 可为 null
+        final Runnable onDone, onCancel;
+        int done;               // 已上传字节
+        Job(ByteBuffer src, Owner owner, Runnable onDone, Runnable onCancel){
+            this.src = direct(src); this.owner = owner; this.onDone = onDone; this.onCancel = onCancel;
+        }
+        boolean cancelled(){ return owner != null && owner.cancelled; }
+        int remaining(){ return src.remaining() - done; }
+        /** 本次最多能上传多少字节（受槽位大小约束） */
+        abstract int nextChunk(int slotBytes);
+        /** 数据已在 pbo 的 pboOffset 处，发出 GL 拷贝命令 */
+        abstract void issue(int pbo, long pboOffset, int bytes);
+    }
+
+    private static final class BufferJob extends Job {
+        final int target;
+        final long dstOffset;
+        BufferJob(int target, long dstOffset, ByteBuffer src, Owner owner, Runnable onDone){ super(src, owner, onDone, null); this.target = target; this.dstOffset = dstOffset; }
+        @Override int nextChunk(int slotBytes){ return Math.min(slotBytes, remaining()); }
+        @Override void issue(int pbo, long off, int bytes){
+            glBindBuffer(GL_COPY_READ_BUFFER, pbo);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, target);
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, off, dstOffset + done, bytes);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        }
+    }
+
+    /** RGBA8 第 0 层，按整行分带上传 */
+    private static final class TextureJob extends Job {
+        final int tex, width, height;
+        TextureJob(int tex, int w, int h, ByteBuffer src, Owner owner, Runnable onDone, Runnable onCancel){
+            super(src, owner, onDone, onCancel); this.tex = tex; width = w; height = h; }
+        @Override int nextChunk(int slotBytes){
+            int row = width * 4;   // enqueueTexture 保证一行放得进一个槽位
+            int rows = Math.max(1, Math.min(slotBytes / row, remaining() / row));
+            return rows * row;
+        }
+        @Override void issue(int pbo, long off, int bytes){
+            int row = width * 4;
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pbo);
+            glBindTexture(GL_TEXTURE_2D, tex);
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, done / row, width, bytes / row, GL_RGBA, GL_UNSIGNED_BYTE, off);
+            glBindTexture(GL_TEXTURE_2D, 0);
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        }
+    }
+
+    private final int slotBytes;
+    private final int[] pbos;
+    private final long[] fences;
+    private final ByteBuffer[] mapped;     // 持久映射时有效
+    private final boolean persistent;
+    private int next;                      // 下一个要用的槽位
+    private long frameBudget;
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+
+    // 统计
+    private long bytesThisFrame, bytesTotal;
+    private int stallsThisFrame;           // 因槽位未就绪而提前结束的次数
+
+    /**
+     * @param slots       PBO 个数（≥2，一般 3~4 足够让 CPU/GPU 流水）
+     * @param slotBytes   每个 PBO 的大小，也是单次拷贝的上限
+     * @param frameBudget 每帧最多上传的字节数
+     */
+    public UploadQueue(int slots, int slotBytes, long frameBudget) {
+        this.slotBytes = slotBytes;
+        this.frameBudget = frameBudget;
+        pbos = new int[slots];
+        fences = new long[slots];
+        mapped = new ByteBuffer[slots];
+        GLCapabilities caps = GL.getCapabilities();
+        persistent = caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+
+        for (int i = 0; i < slots; i++) {
+            pbos[i] = glGenBuffers();
+            glBindBuffer(GL_COPY_WRITE_BUFFER, pbos[i]);
+            if (persistent) {
+                int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+                glBufferStorage(GL_COPY_WRITE_BUFFER, slotBytes, flags);
+                mapped[i] = glMapBufferRange(GL_COPY_WRITE_BUFFER, 0, slotBytes, flags);
+            } else {
+                glBufferData(GL_COPY_WRITE_BUFFER, slotBytes, GL_STREAM_DRAW);
+            }
+        }
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    /** 默认：4 × 4 MB 槽位，每帧预算可用 -Dupload.budget（字节）调整，默认 8 MB */
+    public static UploadQueue createDefault() {
+        return new UploadQueue(4, 4 << 20, Long.getLong("upload.budget", 8L << 20));
+    }
+
+    public void setFrameBudget(long bytes) { this.frameBudget = bytes; }
+
+    /**
+     * src 从 position 到 limit 的字节会被写入 buffer 的 [0, n)；buffer 须已分配足够大小。
+     * 上传时按地址拷贝，堆缓冲会先复制成直接缓冲；src 在 onDone 之前不能改动。
+     */
+    public void enqueueBuffer(int buffer, ByteBuffer src, Runnable onDone) {
+        enqueueBuffer(buffer, 0L, src, onDone);
+    }
+
+    /** 写入 buffer 的 [dstOffset, dstOffset + n)，用于合并缓冲里的一段 */
+    public void enqueueBuffer(int buffer, long dstOffset, ByteBuffer src, Runnable onDone) {
+        enqueueBuffer(buffer, dstOffset, src, null, onDone);
+    }
+
+    /** owner 被取消后，尚未拷完的部分直接丢弃，onDone 不再调用 */
+    public void enqueueBuffer(int buffer, long dstOffset, ByteBuffer src, Owner owner, Runnable onDone) {
+        jobs.add(new BufferJob(buffer, dstOffset, src, owner, onDone));
+    }
+
+    /** src 为 w*h 的 RGBA8 像素；纹理第 0 层须已分配。按整行分带，一行必须放得进一个槽位 */
+    public void enqueueTexture(int tex, int w, int h, ByteBuffer src, Runnable onDone) {
+        enqueueTexture(tex, w, h, src, null, onDone, null);
+    }
+
+    /** owner 被取消后丢弃剩余部分，改为调用 onCancel（释放 src 等），onDone 不再调用 */
+    public void enqueueTexture(int tex, int w, int h, ByteBuffer src, Owner owner, Runnable onDone, Runnable onCancel) {
+        long row = w * 4L;
+        if (!fitsTextureRow(w))
+            throw new IllegalArgumentException("texture row of " + row + " bytes exceeds upload slot of " + slotBytes + " bytes");
+        if (src.remaining() < row * h)
+            throw new IllegalArgumentException("texture data too short: " + src.remaining() + " < " + row * h + " bytes");
+        jobs.add(new TextureJob(tex, w, h, src, owner, onDone, onCancel));
+    }
+
+    /** 宽 w 的 RGBA8 纹理能否分带上传（一行放得进一个槽位） */
+    public boolean fitsTextureRow(int w) { return w * 4L <= slotBytes; }
+
+    /** pump 按地址拷贝源数据，堆缓冲没有稳定地址，先复制一份 */
+    private static ByteBuffer direct(ByteBuffer src) {
+        if (src.isDirect()) return src;
+        ByteBuffer copy = ByteBuffer.allocateDirect(src.remaining()).order(src.order());
+        copy.put(src.duplicate()).flip();
+        return copy;
+    }
+
+    public boolean isIdle() { return jobs.isEmpty(); }
+    public int pendingJobs() { return jobs.size(); }
+    public long bytesLastFrame() { return bytesThisFrame; }
+    public long bytesTotal() { return bytesTotal; }
+    public int stallsLastFrame() { return stallsThisFrame; }
+
+    /** 每帧调用一次：在预算内尽量推进队列，槽位未就绪时直接返回而不是等待；已取消的任务不占预算 */
+    public void pump() {
+        bytesThisFrame = 0;
+        stallsThisFrame = 0;
+        while (!jobs.isEmpty() && bytesThisFrame < frameBudget) {
+            Job job = jobs.peek();
+            if (job.cancelled()) {
+                jobs.poll();
+                if (job.onCancel != null) job.onCancel.run();
+                continue;
+            }
+            if (!slotReady(next)) { stallsThisFrame++; break; }
+            // 纹理按整行对齐，至少推进一行，保证每帧都有进展
+            int bytes = job.nextChunk((int) Math.min(slotBytes, frameBudget - bytesThisFrame));
+
+            ByteBuffer dst = map(next, bytes);
+            MemoryUtil.memCopy(MemoryUtil.memAddress(job.src) + job.done, MemoryUtil.memAddress(dst), bytes);
+            unmap(next);
+
+            job.issue(pbos[next], 0L, bytes);
+            fences[next] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            next = (next + 1) % pbos.length;
+
+            job.done += bytes;
+            bytesThisFrame += bytes;
+            bytesTotal += bytes;
+            if (job.remaining() <= 0) {
+                jobs.poll();
+                if (job.onDone != null) job.onDone.run();
+            }
+        }
+    }
+
+    /** 阻塞直到队列清空（加载画面 / 离线渲染用） */
+    public void flush() {
+        long saved = frameBudget;
+        frameBudget = Long.MAX_VALUE;
+        try {
+            while (!jobs.isEmpty()) {
+                waitSlot(next);
+                pump();
+            }
+        } finally {
+            frameBudget = saved;
+        }
+    }
+
+    private boolean slotReady(int i) {
+        long f = fences[i];
+        if (f == 0L) return true;
+        int r = glClientWaitSync(f, 0, 0L);
+        if (r == GL_ALREADY_SIGNALED || r == GL_CONDITION_SATISFIED) {
+            glDeleteSync(f);
+            fences[i] = 0L;
+            return true;
+        }
+        return false;
+    }
+
+    private void waitSlot(int i) {
+        long f = fences[i];
+        if (f == 0L) return;
+        glClientWaitSync(f, GL_SYNC_FLUSH_COMMANDS_BIT, Long.MAX_VALUE);
+        glDeleteSync(f);
+        fences[i] = 0L;
+    }
+
+    private ByteBuffer map(int i, int bytes) {
+        if (persistent) return mapped[i];
+        glBindBuffer(GL_COPY_WRITE_BUFFER, pbos[i]);
+        // fence 已保证 GPU 不再读这个槽位，可以不同步映射
+        return glMapBufferRange(GL_COPY_WRITE_BUFFER, 0, bytes,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+    }
+
+    private void unmap(int i) {
+        if (persistent) return;
+        glUnmapBuffer(GL_COPY_WRITE_BUFFER);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    @Override public void close() {
+        flush();
+        for (int i = 0; i < pbos.length; i++) {
+            if (fences[i] != 0L) glDeleteSync(fences[i]);
+            if (persistent) {
+                glBindBuffer(GL_COPY_WRITE_BUFFER, pbos[i]);
+                glUnmapBuffer(GL_COPY_WRITE_BUFFER);
+            }
+            glDeleteBuffers(pbos[i]);
+        }
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+}
@@ -0,0 +1,307 @@
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * 顶点 / 索引在 GPU 上的存储格式。源数据总是交错 float [pos3 (+normal3) (+uv2)] + uint32 索引，
+ * {@link #encode} 按 flags 打包，各项可单独开关：
+ * <ul>
+ *   <li>{@link #POS16}：位置相对 Part 的 AABB 量化为 3×uint16（补 2 字节对齐），误差不超过边长 / 131070；</li>
+ *   <li>{@link #OCT16}：法线八面体映射后存 2×int16；</li>
+ *   <li>{@link #HALF_UV}：UV 存 2×half；</li>
+ *   <li>{@link #INDEX16}：顶点数少于 65536 的 Part 用 uint16 索引。</li>
+ * </ul>
+ * 法线、UV 齐全时每顶点 32 → 16 字节。整数分量都以非归一化方式交给 GL（GL 3.3 与 4.2+ 的 snorm 转换公式不同，
+ * 这样两边结果一致），由顶点着色器按 {@link #GLSL_DECODE} 解码；RenderQueue 每个网格设置 uPosOffset / uPosScale / uOctNormal。
+ */
+public final class VertexFormat {
+    public static final int POS16 = 1, OCT16 = 2, HALF_UV = 4, INDEX16 = 8;
+    public static final int FLOAT = 0, COMPACT = POS16 | OCT16 | HALF_UV | INDEX16;
+
+    /** 顶点着色器里拼在 main 之前；float 格式时 uPosOffset = 0、uPosScale = 1、uOctNormal = 0，解码为恒等变换 */
+    public static final String GLSL_DECODE =
+            "uniform vec3 uPosOffset;\n" +
+            "uniform vec3 uPosScale;\n" +
+            "uniform int uOctNormal;\n" +
+            "vec3 decodePosition(vec3 p){ return uPosOffset + p * uPosScale; }\n" +
+            "vec3 decodeNormal(vec3 n){\n" +
+            "  if (uOctNormal == 0) return n;\n" +
+            "  vec2 e = n.xy / 32767.0;\n" +
+            "  vec3 v = vec3(e, 1.0 - abs(e.x) - abs(e.y));\n" +
+            "  float t = max(-v.z, 0.0);\n" +
+            "  v.xy += vec2(v.x >= 0.0 ? -t : t, v.y >= 0.0 ? -t : t);\n" +
+            "  return normalize(v);\n" +
+            "}\n";
+
+    public final boolean hasNormal, hasUV;
+    /** 实际生效的顶点项（POS16 / OCT16 / HALF_UV），不含索引 */
+    public final int flags;
+    public final int strideBytes, normalOffset, uvOffset;
+
+    public VertexFormat(boolean hasNormal, boolean hasUV, int flags) {
+        this.hasNormal = hasNormal; this.hasUV = hasUV;
+        this.flags = flags & POS16 | (hasNormal ? flags & OCT16 : 0) | (hasUV ? flags & HALF_UV : 0);
+        normalOffset = (this.flags & POS16) != 0 ? 8 : 12;
+        uvOffset = normalOffset + (!hasNormal ? 0 : (this.flags & OCT16) != 0 ? 4 : 12);
+        strideBytes = uvOffset + (!hasUV ? 0 : (this.flags & HALF_UV) != 0 ? 4 : 8);
+    }
+
+    public boolean quantized() { return (flags & POS16) != 0; }
+    public boolean octNormals() { return (flags & OCT16) != 0; }
+    public boolean halfUV() { return (flags & HALF_UV) != 0; }
+
+    public boolean sameLayout(VertexFormat o) {
+        return hasNormal == o.hasNormal && hasUV == o.hasUV && flags == o.flags;
+    }
+
+    /** 源数据每顶点的 float 数 */
+    public int sourceStrideFloats() { return 3 + (hasNormal ? 3 : 0) + (hasUV ? 2 : 0); }
+
+    /** 作用于当前绑定的 VAO 与 GL_ARRAY_BUFFER：location 0 位置、1 法线、2 UV */
+    public void setupAttribs() {
+        glVertexAttribPointer(0, 3, quantized() ? GL_UNSIGNED_SHORT : GL_FLOAT, false, strideBytes, 0L);
+        glEnableVertexAttribArray(0);
+        if (hasNormal) {
+            if (octNormals()) glVertexAttribPointer(1, 2, GL_SHORT, false, strideBytes, normalOffset);
+            else glVertexAttribPointer(1, 3, GL_FLOAT, false, strideBytes, normalOffset);
+            glEnableVertexAttribArray(1);
+        }
+        if (hasUV) {
+            glVertexAttribPointer(2, 2, halfUV() ? GL_HALF_FLOAT : GL_FLOAT, false, strideBytes, uvOffset);
+            glEnableVertexAttribArray(2);
+        }
+    }
+
+    /** -Dmesh.format：float（默认，无损）、compact，或逗号分隔的 pos16 / oct16 / half / index16 */
+    public static int configured() {
+        String s = System.getProperty("mesh.format", "float").trim().toLowerCase();
+        int flags = 0;
+        for (String t : s.split(",")) {
+            switch (t.trim()) {
+                case "compact": flags |= COMPACT; break;
+                case "float": case "": break;
+                case "pos16": flags |= POS16; break;
+                case "oct16": flags |= OCT16; break;
+                case "half": flags |= HALF_UV; break;
+                case "index16": flags |= INDEX16; break;
+                default: throw new IllegalArgumentException("unknown -Dmesh.format item: " + t);
+            }
+        }
+        return flags;
+    }
+
+    /** 打包结果，可直接交给 {@link Mesh#fromEncoded} / {@link Mesh#merged(Encoded[], float[][], float[][], UploadQueue)} */
+    public static final class Encoded {
+        public final VertexFormat format;
+        public final int vertexCount;
+        /** native order；indices 可为 null（非索引网格） */
+        public ByteBuffer vertices, indices;
+        public int indexType = GL_UNSIGNED_INT;
+        /** 位置解码：p = posOffset + q * posScale */
+        public final float[] posOffset = { 0f, 0f, 0f }, posScale = { 1f, 1f, 1f };
+        /** 打包前（float + uint32）的字节数，以及各项的最大误差：物体空间距离、角度（度）、UV */
+        public long sourceBytes;
+        public float maxPositionError, maxNormalDegrees, maxUvError;
+
+        Encoded(VertexFormat format, int vertexCount) { this.format = format; this.vertexCount = vertexCount; }
+
+        public int indexBytes() { return indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES; }
+        public int indexCount() { return indices == null ? 0 : indices.remaining() / indexBytes(); }
+        public long gpuBytes() { return vertices.remaining() + (indices == null ? 0 : indices.remaining()); }
+    }
+
+    /**
+     * 字节版（例如 .gmesh 映射出来的切片，native order）：不需要转换的部分原样复用，不拷贝。
+     * min/max 为位置的 AABB，只在 POS16 时用到，可为 null（现算）。
+     */
+    public static Encoded encode(ByteBuffer vertices, ByteBuffer indices, boolean hasNormal, boolean hasUV,
+                                 float[] min, float[] max, int flags) {
+        VertexFormat fmt = new VertexFormat(hasNormal, hasUV, flags);
+        int n = vertices.remaining() / (fmt.sourceStrideFloats() * Float.BYTES);
+        Encoded e = new Encoded(fmt, n);
+        e.sourceBytes = vertices.remaining() + (indices == null ? 0 : indices.remaining());
+        e.vertices = fmt.flags == 0 ? vertices : fmt.pack(vertices.asFloatBuffer(), n, min, max, e);
+        if (indices != null && indices.remaining() > 0) {
+            if (shortIndices(flags, n)) packIndices(indices.asIntBuffer(), e);
+            else e.indices = indices;
+        }
+        return e;
+    }
+
+    public static Encoded encode(float[] interleaved, int[] indices, boolean hasNormal, boolean hasUV,
+                                 float[] min, float[] max, int flags) {
+        VertexFormat fmt = new VertexFormat(hasNormal, hasUV, flags);
+        int n = interleaved.length / fmt.sourceStrideFloats();
+        Encoded e = new Encoded(fmt, n);
+        e.sourceBytes = (long) interleaved.length * Float.BYTES + (indices == null ? 0 : (long) indices.length * Integer.BYTES);
+        if (fmt.flags != 0) e.vertices = fmt.pack(FloatBuffer.wrap(interleaved), n, min, max, e);
+        else {
+            e.vertices = BufferUtils.createByteBuffer(interleaved.length * Float.BYTES);
+            e.vertices.asFloatBuffer().put(interleaved);
+        }
+        if (indices != null && indices.length > 0) {
+            if (shortIndices(flags, n)) packIndices(IntBuffer.wrap(indices), e);
+            else {
+                e.indices = BufferUtils.createByteBuffer(indices.length * Integer.BYTES);
+                e.indices.asIntBuffer().put(indices);
+            }
+        }
+        return e;
+    }
+
+    /**
+     * 已打包好的数据（{@link MeshCache} 里存的 GPU 格式）直接组装成 Encoded，不再经过 {@link #pack}。
+     * vertexFlags 为 {@link #flags}（实际生效的顶点项），errors 为打包时统计的三项最大误差。
+     */
+    static Encoded restore(boolean hasNormal, boolean hasUV, int vertexFlags, ByteBuffer vertices, ByteBuffer indices,
+                           boolean shortIndices, float[] posOffset, float[] posScale, float[] errors, long sourceBytes) {
+        VertexFormat fmt = new VertexFormat(hasNormal, hasUV, vertexFlags);
+        Encoded e = new Encoded(fmt, vertices.remaining() / fmt.strideBytes);
+        e.vertices = vertices;
+        e.indices = indices.remaining() > 0 ? indices : null;
+        e.indexType = shortIndices ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+        System.arraycopy(posOffset, 0, e.posOffset, 0, 3);
+        System.arraycopy(posScale, 0, e.posScale, 0, 3);
+        e.maxPositionError = errors[0]; e.maxNormalDegrees = errors[1]; e.maxUvError = errors[2];
+        e.sourceBytes = sourceBytes;
+        return e;
+    }
+
+    private static boolean shortIndices(int flags, int vertexCount) {
+        return (flags & INDEX16) != 0 && vertexCount < 65536;
+    }
+
+    private static void packIndices(IntBuffer src, Encoded e) {
+        int count = src.remaining(), base = src.position();
+        ByteBuffer out = BufferUtils.createByteBuffer(count * Short.BYTES);
+        for (int k = 0; k < count; k++) out.putShort(k * Short.BYTES, (short) src.get(base + k));
+        e.indices = out;
+        e.indexType = GL_UNSIGNED_SHORT;
+    }
+
+    /** 打包并顺带按着色器的解码方式还原，统计最大误差 */
+    private ByteBuffer pack(FloatBuffer src, int n, float[] min, float[] max, Encoded e) {
+        int sf = sourceStrideFloats(), base = src.position();
+        if (quantized()) {
+            float[] lo = new float[3], hi = new float[3];
+            if (min != null && max != null) { System.arraycopy(min, 0, lo, 0, 3); System.arraycopy(max, 0, hi, 0, 3); }
+            else bounds(src, n, sf, lo, hi);
+            for (int a = 0; a < 3; a++) {
+                e.posOffset[a] = n > 0 ? lo[a] : 0f;
+                e.posScale[a] = n > 0 ? (hi[a] - lo[a]) / 65535f : 0f;
+            }
+        }
+        ByteBuffer out = BufferUtils.createByteBuffer(n * strideBytes);
+        float posErr = 0f, uvErr = 0f;
+        double normalCos = 1.0;
+        for (int i = 0; i < n; i++) {
+            int s = base + i * sf, o = i * strideBytes;
+            for (int a = 0; a < 3; a++) {
+                float x = src.get(s + a);
+                if (quantized()) {
+                    float scale = e.posScale[a];
+                    int q = scale > 0f ? Math.round((x - e.posOffset[a]) / scale) : 0;
+                    q = Math.max(0, Math.min(65535, q));
+                    out.putShort(o + 2 * a, (short) q);
+                    posErr = Math.max(posErr, Math.abs(e.posOffset[a] + q * scale - x));
+                } else {
+                    out.putFloat(o + 4 * a, x);
+                }
+            }
+            if (quantized()) out.putShort(o + 6, (short) 0);
+            if (hasNormal) {
+                float nx = src.get(s + 3), ny = src.get(s + 4), nz = src.get(s + 5);
+                if (octNormals()) {
+                    int o2 = o + normalOffset;
+                    short qx, qy;
+                    float l1 = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+                    if (l1 > 0f) {
+                        float ex = nx / l1, ey = ny / l1;
+                        if (nz < 0f) {
+                            float fx = (1f - Math.abs(ey)) * (ex >= 0f ? 1f : -1f);
+                            float fy = (1f - Math.abs(ex)) * (ey >= 0f ? 1f : -1f);
+                            ex = fx; ey = fy;
+                        }
+                        qx = snorm16(ex); qy = snorm16(ey);
+                    } else {
+                        qx = qy = 0;
+                    }
+                    out.putShort(o2, qx); out.putShort(o2 + 2, qy);
+                    double len = Math.sqrt((double) nx * nx + (double) ny * ny + (double) nz * nz);
+                    if (len > 0) { // double 累加：接近 1 的 cos 在 float 下只剩约 0.03° 的分辨率
+                        float[] d = octDecode(qx, qy);
+                        normalCos = Math.min(normalCos, ((double) d[0] * nx + (double) d[1] * ny + (double) d[2] * nz) / len);
+                    }
+                } else {
+                    out.putFloat(o + normalOffset, nx); out.putFloat(o + normalOffset + 4, ny); out.putFloat(o + normalOffset + 8, nz);
+                }
+            }
+            if (hasUV) {
+                int su = s + (hasNormal ? 6 : 3);
+                float u = src.get(su), v = src.get(su + 1);
+                if (halfUV()) {
+                    short hu = toHalf(u), hv = toHalf(v);
+                    out.putShort(o + uvOffset, hu); out.putShort(o + uvOffset + 2, hv);
+                    uvErr = Math.max(uvErr, Math.max(Math.abs(fromHalf(hu) - u), Math.abs(fromHalf(hv) - v)));
+                } else {
+                    out.putFloat(o + uvOffset, u); out.putFloat(o + uvOffset + 4, v);
+                }
+            }
+        }
+        e.maxPositionError = posErr;
+        e.maxNormalDegrees = (float) Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, normalCos))));
+        e.maxUvError = uvErr;
+        return out;
+    }
+
+    private static void bounds(FloatBuffer src, int n, int sf, float[] lo, float[] hi) {
+        for (int a = 0; a < 3; a++) { lo[a] = Float.POSITIVE_INFINITY; hi[a] = Float.NEGATIVE_INFINITY; }
+        for (int i = 0, s = src.position(); i < n; i++, s += sf) {
+            for (int a = 0; a < 3; a++) { float x = src.get(s + a); lo[a] = Math.min(lo[a], x); hi[a] = Math.max(hi[a], x); }
+        }
+    }
+
+    private static short snorm16(float v) {
+        return (short) Math.round(Math.max(-1f, Math.min(1f, v)) * 32767f);
+    }
+
+    /** 与 {@link #GLSL_DECODE} 的 decodeNormal 相同，返回单位向量 */
+    static float[] octDecode(short qx, short qy) {
+        float x = qx / 32767f, y = qy / 32767f, z = 1f - Math.abs(x) - Math.abs(y);
+        float t = Math.max(-z, 0f);
+        x += x >= 0f ? -t : t;
+        y += y >= 0f ? -t : t;
+        float len = (float) Math.sqrt(x * x + y * y + z * z);
+        return new float[]{ x / len, y / len, z / len };
+    }
+
+    /** float → IEEE 754 binary16，就近舍入到偶数；溢出为 ±inf */
+    static short toHalf(float f) {
+        int b = Float.floatToRawIntBits(f);
+        int sign = (b >>> 16) & 0x8000, exp = (b >>> 23) & 0xFF, mant = b & 0x7FFFFF;
+        if (exp == 0xFF) return (short) (sign | 0x7C00 | (mant != 0 ? 0x200 : 0));
+        int e = exp - 127 + 15;
+        if (e >= 0x1F) return (short) (sign | 0x7C00);
+        if (e <= 0) { // 非规格化
+            if (e < -10) return (short) sign;
+            mant |= 0x800000;
+            int shift = 14 - e, h = mant >> shift, rem = mant & ((1 << shift) - 1), half = 1 << (shift - 1);
+            if (rem > half || (rem == half && (h & 1) != 0)) h++;
+            return (short) (sign | h);
+        }
+        int h = (e << 10) | (mant >> 13), rem = mant & 0x1FFF;
+        if (rem > 0x1000 || (rem == 0x1000 && (h & 1) != 0)) h++; // 进位可能进到指数位，结果仍然正确
+        return (short) (sign | h);
+    }
+
+    static float fromHalf(short s) {
+        int h = s & 0xFFFF, sign = (h & 0x8000) << 16, exp = (h >>> 10) & 0x1F, mant = h & 0x3FF;
+        if (exp == 0) { float v = mant * 0x1p-24f; return sign != 0 ? -v : v; }
+        if (exp == 0x1F) return Float.intBitsToFloat(sign | 0x7F800000 | (mant << 13));
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mant << 13));
+    }
+}
@@ -0,0 +1,35 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** headless 相机：写入 dst 的帧路径与重构前返回新数组的算法结果一致 */
+class ArcballCameraTest {
+
+    /** 重构前 getViewProjection 的算法：同一组相机参数，全部用返回新数组的接口 */
+    static float[] legacyViewProjection(float cx, float cy, float cz, float radius) {
+        float dist = radius / (float) Math.tan(Math.toRadians(30.0)) * 1.2f; // frameMesh 的取景距离（纵向受限）
+        float[] view = Mat4f.lookAt(cx, cy, cz + dist, cx, cy, cz, 0f, 1f, 0f);
+        float[] proj = Mat4f.perspective(60f, 1280f / 800f, 0.02f, 1e7f);
+        return Mat4f.multiply(proj, view);
+    }
+
+    @Test
+    void dstPathMatchesLegacy() {
+        ArcballCamera cam = ArcballCamera.headless(1280, 800);
+        cam.frameMesh(0.3f, 1.2f, -0.4f, 2.5f);
+        float[] vp = new float[16];
+        assertSame(vp, cam.getViewProjection(vp));
+        float[] legacy = legacyViewProjection(0.3f, 1.2f, -0.4f, 2.5f);
+        for (int i = 0; i < 16; i++) assertEquals(legacy[i], vp[i], 1e-5f * Math.max(1f, Math.abs(legacy[i])), "element " + i);
+        assertArrayEquals(vp, cam.getViewProjection());
+    }
+
+    @Test
+    void dstVersionsMatchAllocatingOnes() {
+        float[] dst = new float[16];
+        float[] a = Mat4f.perspective(60f, 1.6f, 0.1f, 100f), b = Mat4f.lookAt(1f, 2f, 5f, 0f, 0.5f, 0f, 0f, 1f, 0f);
+        assertArrayEquals(a, Mat4f.perspective(dst, 60f, 1.6f, 0.1f, 100f));
+        assertArrayEquals(b, Mat4f.lookAt(dst, 1f, 2f, 5f, 0f, 0.5f, 0f, 0f, 1f, 0f));
+        assertArrayEquals(Mat4f.multiply(a, b), Mat4f.multiply(a, b, dst));
+    }
+}
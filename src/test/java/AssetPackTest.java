@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** .gpak 打包 / 读取往返、内容去重、挂载查找顺序，以及截断和损坏的包报 IOException */
+class AssetPackTest {
+    @TempDir Path dir;
+
+    @AfterEach
+    void unmount() { AssetPack.unmountAll(); }
+
+    static byte[] utf8(String s) { return s.getBytes(StandardCharsets.UTF_8); }
+
+    static byte[] bytes(ByteBuffer b) {
+        byte[] a = new byte[b.remaining()];
+        b.duplicate().get(a);
+        return a;
+    }
+
+    /** root/tex/a.png 与 root/other/b.png 内容相同，root/model.obj 不同 */
+    Path tree() throws IOException {
+        Path root = dir.resolve("root");
+        Files.createDirectories(root.resolve("tex"));
+        Files.createDirectories(root.resolve("other"));
+        Files.write(root.resolve("tex/a.png"), utf8("same pixels"));
+        Files.write(root.resolve("other/b.png"), utf8("same pixels"));
+        Files.write(root.resolve("model.obj"), utf8("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n"));
+        return root;
+    }
+
+    @Test
+    void roundTripDeduplicatesContent() throws Exception {
+        Path root = tree();
+        AssetPack pack = AssetPack.build(root, dir.resolve("out" + AssetPack.EXT));
+        assertEquals(3, pack.entryCount());
+        assertEquals(2, pack.blobCount());
+        assertArrayEquals(utf8("same pixels"), bytes(pack.slice("tex/a.png")));
+        assertArrayEquals(Files.readAllBytes(root.resolve("model.obj")), bytes(pack.slice("model.obj")));
+        assertTrue(pack.slice("model.obj").isReadOnly());
+        assertNull(pack.slice("missing.png"));
+
+        AssetPack.Entry a = pack.entry("tex/a.png"), b = pack.entry("other/./b.png");
+        assertEquals(a.offset, b.offset, "identical content is stored once");
+        assertEquals(0, a.offset % 16, "blobs are 16-byte aligned");
+        long sha = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(utf8("same pixels"))).getLong();
+        assertEquals(sha, a.hash);
+        assertNotEquals(a.offset, pack.entry("model.obj").offset);
+    }
+
+    @Test
+    void packInsideRootDoesNotIncludeItself() throws IOException {
+        Path root = tree();
+        Path out = root.resolve("assets" + AssetPack.EXT);
+        AssetPack.build(root, out);
+        AssetPack again = AssetPack.build(root, out); // 第二次打包时旧包已在目录里
+        assertEquals(3, again.entryCount());
+        assertNull(again.entry("assets" + AssetPack.EXT));
+    }
+
+    @Test
+    void mountedPacksWinAndLaterMountsOverride() throws IOException {
+        Path root = tree();
+        AssetPack first = AssetPack.build(root, dir.resolve("first" + AssetPack.EXT));
+        Files.write(root.resolve("model.obj"), utf8("# patched\n"));
+        Path second = dir.resolve("second" + AssetPack.EXT);
+        AssetPack.build(root, second);
+
+        AssetPack.mount(first.file());
+        assertArrayEquals(utf8("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n"), bytes(AssetPack.resource("model.obj")));
+        AssetPack.mount(second);
+        assertArrayEquals(utf8("# patched\n"), bytes(AssetPack.resource("/model.obj")));
+        assertEquals(2, AssetPack.mounted().size());
+        assertNotNull(AssetPack.find("tex/a.png"));
+
+        // 包里没有的退回 classpath
+        assertNull(AssetPack.findSlice("asserts/Klee/Klee.pmx"));
+        assertTrue(AssetPack.resource("asserts/Klee/Klee.pmx").remaining() > 0);
+        assertThrows(FileNotFoundException.class, () -> AssetPack.resource("no/such/file.png"));
+    }
+
+    @Test
+    void mountIsQuietUnlessVerbose() throws IOException {
+        AssetPack pack = AssetPack.build(tree(), dir.resolve("quiet" + AssetPack.EXT));
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            AssetPack.mount(pack.file());
+            assertEquals("", captured.toString(StandardCharsets.UTF_8));
+            System.setProperty("assets.verbose", "true");
+            AssetPack.mount(pack.file());
+            assertTrue(captured.toString(StandardCharsets.UTF_8).startsWith("INFO: mounted "));
+        } finally {
+            System.setOut(out);
+            System.clearProperty("assets.verbose");
+        }
+    }
+
+    @Test
+    void truncatedPackThrowsIOException() throws IOException {
+        Path packFile = dir.resolve("full" + AssetPack.EXT);
+        AssetPack.build(tree(), packFile);
+        byte[] full = Files.readAllBytes(packFile);
+        Path cut = dir.resolve("cut" + AssetPack.EXT);
+        for (int len = 0; len < full.length; len++) {
+            Files.write(cut, Arrays.copyOf(full, len));
+            assertThrows(IOException.class, () -> AssetPack.open(cut), "length " + len);
+        }
+        assertThrows(FileNotFoundException.class, () -> AssetPack.open(dir.resolve("missing" + AssetPack.EXT)));
+    }
+
+    @Test
+    void corruptHeaderThrowsIOException() throws IOException {
+        Path packFile = dir.resolve("full" + AssetPack.EXT);
+        AssetPack.build(tree(), packFile);
+        byte[] full = Files.readAllBytes(packFile);
+
+        assertCorrupt(full, b -> b.putInt(0, 0x12345678), "not an asset pack");
+        assertCorrupt(full, b -> b.putInt(4, 99), "unsupported asset pack version");
+        assertCorrupt(full, b -> b.putInt(8, -1), "corrupt asset pack header");
+        // 第一个条目：路径之后是偏移、长度；偏移 + 长度溢出也不能通过检查
+        int name = Short.toUnsignedInt(ByteBuffer.wrap(full).order(ByteOrder.LITTLE_ENDIAN).getShort(16));
+        int at = 16 + 2 + name;
+        assertCorrupt(full, b -> b.putLong(at, -16L), "corrupt asset pack entry");
+        assertCorrupt(full, b -> b.putLong(at + 8, Long.MAX_VALUE), "corrupt asset pack entry");
+        assertCorrupt(full, b -> b.putLong(at, 16L).putLong(at + 8, full.length), "corrupt asset pack entry");
+    }
+
+    interface Patch { void apply(ByteBuffer b); }
+
+    void assertCorrupt(byte[] full, Patch patch, String message) throws IOException {
+        byte[] copy = full.clone();
+        patch.apply(ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN));
+        Path f = dir.resolve("corrupt" + AssetPack.EXT);
+        Files.write(f, copy);
+        IOException e = assertThrows(IOException.class, () -> AssetPack.open(f));
+        assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+}
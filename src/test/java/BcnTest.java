@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** BC1 / BC7 编码后再解码的 PSNR、纯色块、mip 链尺寸与格式选择 */
+class BcnTest {
+
+    /** 平滑渐变 + 少量噪声 + 一道硬边，alpha 为 255 或另一道渐变 */
+    static byte[] image(int w, int h, boolean alpha, long seed) {
+        Random rnd = new Random(seed);
+        byte[] px = new byte[w * h * 4];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int o = (y * w + x) * 4;
+                int edge = x > w / 2 ? 60 : 0;
+                px[o] = (byte) clamp(x * 255 / w + edge + rnd.nextInt(5) - 2);
+                px[o + 1] = (byte) clamp(y * 255 / h + rnd.nextInt(5) - 2);
+                px[o + 2] = (byte) clamp(128 + (int) (80 * Math.sin(x * 0.1) * Math.cos(y * 0.07)));
+                px[o + 3] = (byte) (alpha ? clamp((x + y) * 255 / (w + h)) : 255);
+            }
+        }
+        return px;
+    }
+
+    static int clamp(int v) { return Math.max(0, Math.min(255, v)); }
+
+    static double psnr(byte[] src, ByteBuffer back, int channels) {
+        double se = 0;
+        int n = 0;
+        for (int i = 0; i < src.length; i++) {
+            if ((i & 3) >= channels) continue;
+            int e = (src[i] & 0xFF) - (back.get(i) & 0xFF);
+            se += e * e;
+            n++;
+        }
+        return 10 * Math.log10(255.0 * 255.0 / Math.max(se / n, 1e-9));
+    }
+
+    @Test
+    void bc1QualityOnOpaqueImage() {
+        int w = 64, h = 48;
+        byte[] src = image(w, h, false, 1);
+        ByteBuffer blocks = Bcn.encodeLevel(src, w, h, Bcn.BC1);
+        assertEquals(Bcn.levelBytes(Bcn.BC1, w, h), blocks.remaining());
+        assertEquals(w * h / 2, blocks.remaining(), "4 bits per pixel");
+        double db = psnr(src, Bcn.decodeLevel(blocks, w, h, Bcn.BC1), 3);
+        assertTrue(db > 32, "BC1 PSNR " + db);
+    }
+
+    @Test
+    void bc7QualityWithAlpha() {
+        int w = 64, h = 48;
+        byte[] src = image(w, h, true, 2);
+        ByteBuffer blocks = Bcn.encodeLevel(src, w, h, Bcn.BC7);
+        assertEquals(w * h, blocks.remaining(), "8 bits per pixel");
+        ByteBuffer back = Bcn.decodeLevel(blocks, w, h, Bcn.BC7);
+        double db = psnr(src, back, 4);
+        assertTrue(db > 38, "BC7 PSNR " + db);
+        assertTrue(db > psnr(src, Bcn.decodeLevel(Bcn.encodeLevel(src, w, h, Bcn.BC1), w, h, Bcn.BC1), 3), "BC7 beats BC1");
+    }
+
+    @Test
+    void solidColorSurvivesBothFormats() {
+        int w = 8, h = 8;
+        byte[] src = new byte[w * h * 4];
+        for (int i = 0; i < src.length; i += 4) { src[i] = (byte) 200; src[i + 1] = 16; src[i + 2] = 99; src[i + 3] = (byte) 255; }
+        for (int format : new int[]{ Bcn.BC1, Bcn.BC7 }) {
+            ByteBuffer back = Bcn.decodeLevel(Bcn.encodeLevel(src, w, h, format), w, h, format);
+            for (int i = 0; i < src.length; i++) {
+                assertEquals(src[i] & 0xFF, back.get(i) & 0xFF, format == Bcn.BC1 ? 4 : 1, "format " + format + " byte " + i);
+            }
+        }
+    }
+
+    @Test
+    void oddSizesUseEdgeBlocksAndFullMipChain() {
+        int w = 37, h = 19;
+        byte[] src = image(w, h, false, 3);
+        ByteBuffer[] levels = Bcn.encode(ByteBuffer.wrap(src), w, h, Bcn.BC1, true);
+        assertEquals(6, levels.length, "37x19 .. 1x1");
+        assertEquals(Bcn.levelCount(w, h), levels.length);
+        for (int l = 0; l < levels.length; l++) {
+            int lw = Math.max(1, w >> l), lh = Math.max(1, h >> l);
+            assertEquals(Bcn.levelBytes(Bcn.BC1, lw, lh), levels[l].remaining(), "level " + l);
+            assertTrue(levels[l].isDirect());
+        }
+        double db = psnr(src, Bcn.decodeLevel(levels[0], w, h, Bcn.BC1), 3);
+        assertTrue(db > 30, "edge blocks PSNR " + db);
+    }
+
+    @Test
+    void mipChainAveragesInLinearOrSrgb() {
+        // 黑白棋盘：线性平均为 128，sRGB 下按线性光平均约为 188
+        byte[] src = new byte[4 * 4];
+        for (int i = 0; i < 4; i++) { int v = (i == 0 || i == 3) ? 255 : 0; src[i * 4] = src[i * 4 + 1] = src[i * 4 + 2] = (byte) v; src[i * 4 + 3] = (byte) 255; }
+        byte[][] lin = Bcn.mipChain(ByteBuffer.wrap(src), 2, 2, false), srgb = Bcn.mipChain(ByteBuffer.wrap(src), 2, 2, true);
+        assertEquals(2, lin.length);
+        assertEquals(128, lin[1][0] & 0xFF);
+        assertEquals(188, srgb[1][0] & 0xFF, 1);
+        assertEquals(255, srgb[1][3] & 0xFF);
+    }
+
+    @Test
+    void chooseUsesBc7OnlyForTranslucentImages() {
+        assertEquals(Bcn.BC1, Bcn.choose(ByteBuffer.wrap(image(8, 8, false, 4))));
+        assertEquals(Bcn.BC7, Bcn.choose(ByteBuffer.wrap(image(8, 8, true, 4))));
+        assertEquals(Bcn.BC1, Bcn.format("bc1", ByteBuffer.wrap(image(8, 8, true, 4))));
+        assertEquals(Bcn.BC7, Bcn.format("BC7", ByteBuffer.wrap(image(8, 8, false, 4))));
+    }
+}
@@ -0,0 +1,129 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** TriangleBvh 的最近命中与逐三角形暴力扫描一致：构建（顺序 / 并行）与 refit 之后都要成立 */
+class BvhTest {
+
+    static float[] bumpySphere(int seg) {
+        float[] p = new float[3 * (seg + 1) * (seg + 1)];
+        int k = 0;
+        for (int i = 0; i <= seg; i++) {
+            double th = Math.PI * i / seg;
+            for (int j = 0; j <= seg; j++) {
+                double ph = 2 * Math.PI * j / seg;
+                double r = 1 + 0.05 * Math.sin(12 * th) * Math.cos(9 * ph);
+                p[k++] = (float) (r * Math.sin(th) * Math.cos(ph));
+                p[k++] = (float) (r * Math.cos(th));
+                p[k++] = (float) (r * Math.sin(th) * Math.sin(ph));
+            }
+        }
+        return p;
+    }
+
+    static int[] sphereIndices(int seg) {
+        int[] ix = new int[seg * seg * 6];
+        int k = 0;
+        for (int i = 0; i < seg; i++) {
+            for (int j = 0; j < seg; j++) {
+                int a = i * (seg + 1) + j, b = a + seg + 1;
+                ix[k++] = a; ix[k++] = b; ix[k++] = a + 1;
+                ix[k++] = a + 1; ix[k++] = b; ix[k++] = b + 1;
+            }
+        }
+        return ix;
+    }
+
+    /** 随机三角形汤：大小不一、互相穿插，专门考验 SAH 分桶与叶子重叠 */
+    static float[] soup(int tris, Random rnd) {
+        float[] p = new float[9 * tris];
+        for (int t = 0; t < tris; t++) {
+            float cx = rnd.nextFloat() * 4 - 2, cy = rnd.nextFloat() * 4 - 2, cz = rnd.nextFloat() * 4 - 2;
+            float s = rnd.nextFloat() < 0.1f ? 1.5f : 0.15f;
+            for (int k = 0; k < 9; k++) p[9 * t + k] = (k % 3 == 0 ? cx : k % 3 == 1 ? cy : cz) + (rnd.nextFloat() - 0.5f) * s;
+        }
+        return p;
+    }
+
+    static int[] identity(int n) {
+        int[] ix = new int[n];
+        for (int i = 0; i < n; i++) ix[i] = i;
+        return ix;
+    }
+
+    /** 从半径 3 的球面射向中心附近；一部分射线偏出去，检验未命中 */
+    static void assertMatchesBruteForce(TriangleBvh bvh, float[] inter, int stride, int[] idx, long seed) {
+        Random rnd = new Random(seed);
+        Bvh.Hit hit = new Bvh.Hit(), ref = new Bvh.Hit();
+        int hits = 0;
+        for (int i = 0; i < 500; i++) {
+            double th = rnd.nextDouble() * Math.PI * 2, z = rnd.nextDouble() * 2 - 1, s = Math.sqrt(1 - z * z);
+            float ox = (float) (3 * s * Math.cos(th)), oy = (float) (3 * s * Math.sin(th)), oz = (float) (3 * z);
+            float spread = i % 5 == 0 ? 6f : 1f;
+            float dx = (rnd.nextFloat() - 0.5f) * spread - ox, dy = (rnd.nextFloat() - 0.5f) * spread - oy,
+                    dz = (rnd.nextFloat() - 0.5f) * spread - oz;
+            float tMax = i % 7 == 0 ? 0.5f : Float.POSITIVE_INFINITY;
+            boolean a = bvh.raycast(ox, oy, oz, dx, dy, dz, tMax, hit);
+            boolean b = TriangleBvh.raycastBruteForce(inter, stride, idx, ox, oy, oz, dx, dy, dz, tMax, ref);
+            assertEquals(b, a, "ray " + i);
+            if (!b) continue;
+            hits++;
+            assertEquals(ref.t, hit.t, 1e-5f * Math.max(1f, ref.t), "ray " + i + " distance");
+            if (hit.triangle != ref.triangle) { // 只允许在共边/共点上命中相邻三角形
+                assertEquals(ref.t, hit.t, 1e-6f * Math.max(1f, ref.t), "ray " + i + " triangle");
+            }
+        }
+        assertTrue(hits > 100, "rays should mostly hit: " + hits);
+    }
+
+    @Test
+    void sphereMatchesBruteForce() {
+        int seg = 80;
+        float[] inter = bumpySphere(seg);
+        int[] idx = sphereIndices(seg);
+        TriangleBvh bvh = new TriangleBvh(inter, 3, idx, ForkJoinPool.commonPool());
+        assertTrue(bvh.bvh().nodeCount() > 1);
+        assertEquals(idx.length / 3, bvh.triangleCount());
+        assertMatchesBruteForce(bvh, inter, 3, idx, 1);
+    }
+
+    @Test
+    void soupMatchesBruteForceSequentialAndParallel() {
+        Random rnd = new Random(9);
+        float[] inter = soup(6000, rnd); // 超过 PARALLEL_MIN，会走 ForkJoin 构建
+        int[] idx = identity(inter.length / 3);
+        assertMatchesBruteForce(new TriangleBvh(inter, 3, idx, new ForkJoinPool(4)), inter, 3, idx, 2);
+        assertMatchesBruteForce(new TriangleBvh(inter, 3, idx, new ForkJoinPool(1)), inter, 3, idx, 2);
+    }
+
+    @Test
+    void interleavedStrideIsRespected() {
+        int seg = 40;
+        float[] pos = bumpySphere(seg);
+        int n = pos.length / 3, stride = 8;
+        float[] inter = new float[n * stride];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(pos, 3 * i, inter, stride * i, 3);
+            for (int k = 3; k < stride; k++) inter[stride * i + k] = 1000f + k; // 法线 / uv 里放离谱的值
+        }
+        int[] idx = sphereIndices(seg);
+        assertMatchesBruteForce(new TriangleBvh(inter, stride, idx), inter, stride, idx, 3);
+    }
+
+    @Test
+    void refitTracksMovedVertices() {
+        int seg = 50;
+        float[] inter = bumpySphere(seg);
+        int[] idx = sphereIndices(seg);
+        TriangleBvh bvh = new TriangleBvh(inter, 3, idx);
+        for (int v = 0; v < inter.length; v += 3) {
+            inter[v] *= 1.3f;
+            inter[v + 1] += 0.4f;
+        }
+        bvh.refit(inter);
+        assertMatchesBruteForce(bvh, inter, 3, idx, 4);
+    }
+}
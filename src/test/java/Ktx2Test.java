@@ -0,0 +1,137 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** KTX2 写入/读取往返（逐层字节一致）、截断与不支持的文件报 IOException，以及首次加载压缩的缓存 */
+class Ktx2Test {
+    @TempDir Path dir;
+
+    @BeforeEach
+    void useTempDir() { System.setProperty("ktx.cache.dir", dir.resolve("cache").toString()); }
+
+    @AfterEach
+    void restore() {
+        System.clearProperty("ktx.cache.dir");
+        System.clearProperty("texture.compress");
+    }
+
+    static byte[] bytes(ByteBuffer b) {
+        byte[] a = new byte[b.remaining()];
+        b.duplicate().get(a);
+        return a;
+    }
+
+    @Test
+    void writeReadRoundTrip() throws IOException {
+        int w = 37, h = 19;
+        for (int format : new int[]{ Bcn.BC1, Bcn.BC7 }) {
+            for (boolean srgb : new boolean[]{ false, true }) {
+                ByteBuffer[] levels = Bcn.encode(ByteBuffer.wrap(BcnTest.image(w, h, true, format)), w, h, format, srgb);
+                Path f = dir.resolve("t" + format + srgb + Ktx2.EXT);
+                Ktx2.write(f, format, srgb, w, h, levels);
+
+                Ktx2.Image img = Ktx2.read(f);
+                assertEquals(format, img.format);
+                assertEquals(srgb, img.srgb);
+                assertEquals(w, img.width);
+                assertEquals(h, img.height);
+                assertEquals(levels.length, img.levels.length);
+                long total = 0;
+                for (int l = 0; l < levels.length; l++) {
+                    assertArrayEquals(bytes(levels[l]), bytes(img.levels[l]), "level " + l);
+                    total += levels[l].remaining();
+                }
+                assertEquals(total, img.bytes());
+                assertArrayEquals(new byte[]{ (byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB }, Arrays.copyOf(Files.readAllBytes(f), 8));
+            }
+        }
+    }
+
+    @Test
+    void siblingSwapsExtension() {
+        assertEquals("a/b.ktx2", Ktx2.sibling("a/b.png"));
+    }
+
+    @Test
+    void vkFormatsMatchTheSpec() {
+        assertEquals(131, Ktx2.vkFormat(Bcn.BC1, false));
+        assertEquals(132, Ktx2.vkFormat(Bcn.BC1, true));
+        assertEquals(145, Ktx2.vkFormat(Bcn.BC7, false));
+        assertEquals(146, Ktx2.vkFormat(Bcn.BC7, true));
+    }
+
+    @Test
+    void truncatedOrForeignFilesThrowIOException() throws IOException {
+        int w = 16, h = 16;
+        Path f = dir.resolve("full" + Ktx2.EXT);
+        Ktx2.write(f, Bcn.BC1, true, w, h, Bcn.encode(ByteBuffer.wrap(BcnTest.image(w, h, false, 5)), w, h, Bcn.BC1, true));
+        byte[] full = Files.readAllBytes(f);
+        for (int len = 0; len < full.length; len++) {
+            ByteBuffer cut = ByteBuffer.wrap(Arrays.copyOf(full, len));
+            assertThrows(IOException.class, () -> Ktx2.read(cut), "length " + len);
+        }
+        assertThrows(IOException.class, () -> Ktx2.read(ByteBuffer.wrap(new byte[100])));
+        assertThrows(IOException.class, () -> Ktx2.read(dir.resolve("missing" + Ktx2.EXT)));
+
+        byte[] badFormat = full.clone();
+        ByteBuffer.wrap(badFormat).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(12, 37); // VK_FORMAT_R8G8B8A8_UNORM
+        IOException e = assertThrows(IOException.class, () -> Ktx2.read(ByteBuffer.wrap(badFormat)));
+        assertTrue(e.getMessage().contains("vkFormat"), e.getMessage());
+
+        byte[] manyLevels = full.clone();
+        ByteBuffer.wrap(manyLevels).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(40, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> Ktx2.read(ByteBuffer.wrap(manyLevels)));
+    }
+
+    @Test
+    void readHonoursBufferPosition() throws IOException {
+        int w = 8, h = 8;
+        Path f = dir.resolve("p" + Ktx2.EXT);
+        ByteBuffer[] levels = Bcn.encode(ByteBuffer.wrap(BcnTest.image(w, h, true, 6)), w, h, Bcn.BC7, false);
+        Ktx2.write(f, Bcn.BC7, false, w, h, levels);
+        byte[] file = Files.readAllBytes(f);
+        ByteBuffer padded = ByteBuffer.allocate(file.length + 7);
+        padded.position(7);
+        padded.put(file).position(7);
+        Ktx2.Image img = Ktx2.read(padded);
+        assertArrayEquals(bytes(levels[0]), bytes(img.levels[0]));
+        assertEquals(7, padded.position(), "source position unchanged");
+    }
+
+    @Test
+    void compressCachedWritesAndReusesCacheEntry() throws IOException {
+        BufferedImage png = new BufferedImage(16, 12, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 12; y++) for (int x = 0; x < 16; x++) png.setRGB(x, y, (x * 16) << 16 | (y * 20) << 8 | 0x40);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(png, "png", out);
+        ByteBuffer encoded = ByteBuffer.allocateDirect(out.size()).put(out.toByteArray()).flip();
+
+        System.setProperty("texture.compress", "auto");
+        Ktx2.Image first = Ktx2.compressCached(encoded, "tex/a b.png", true);
+        assertEquals(Bcn.BC1, first.format, "opaque → BC1");
+        assertEquals(16, first.width);
+        Path cache = dir.resolve("cache");
+        try (Stream<Path> s = Files.list(cache)) {
+            Path[] files = s.toArray(Path[]::new);
+            assertEquals(1, files.length);
+            assertTrue(files[0].getFileName().toString().startsWith("tex_a_b.png-"), files[0].toString());
+            assertTrue(files[0].getFileName().toString().endsWith("-auto-srgb" + Ktx2.EXT), files[0].toString());
+        }
+        Ktx2.Image again = Ktx2.compressCached(encoded, "tex/a b.png", true);
+        for (int l = 0; l < first.levels.length; l++) assertArrayEquals(bytes(first.levels[l]), bytes(again.levels[l]), "level " + l);
+        assertEquals(0, encoded.position(), "source buffer untouched");
+    }
+}
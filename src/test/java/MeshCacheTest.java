@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** .gmesh 写入/读取往返、键校验与旧条目清理 */
+class MeshCacheTest {
+    @TempDir Path dir;
+
+    @BeforeEach
+    void useTempDir() { System.setProperty("gmesh.cache.dir", dir.toString()); }
+
+    @AfterEach
+    void restore() { System.clearProperty("gmesh.cache.dir"); }
+
+    static MeshData quad() {
+        float[] v = {
+                0, 0, 0, 0, 0, 1, 0, 0,
+                1, 0, 0, 0, 0, 1, 1, 0,
+                1, 1, 0, 0, 0, 1, 1, 1,
+                0, 1, 0, 0, 0, 1, 0, 1,
+        };
+        return new MeshData("mat", true, true, v, new int[]{0, 1, 2, 0, 2, 3});
+    }
+
+    static ByteBuffer src(String s) { return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)); }
+
+    /** 按 format 打包后写入，与 ObjMtlLoader 未命中缓存时的路径相同 */
+    static void write(Path file, byte[] digest, long size, String source, boolean flipV, long settings,
+                      List<String> mtllibs, MeshData p, int format) {
+        float[] mn = new float[3], mx = new float[3];
+        Mesh.computeBounds(p.interleaved, p.hasNormal, p.hasUV, mn, mx);
+        VertexFormat.Encoded e = VertexFormat.encode(p.interleaved, p.indices, p.hasNormal, p.hasUV, mn, mx, format);
+        MeshCache.write(file, digest, size, source, flipV, settings, mtllibs, List.of(p),
+                new VertexFormat.Encoded[]{ e }, new float[][]{ mn }, new float[][]{ mx });
+    }
+
+    static void write(Path file, byte[] digest, long size, String source, boolean flipV, long settings,
+                      List<String> mtllibs, MeshData p) {
+        write(file, digest, size, source, flipV, settings, mtllibs, p, VertexFormat.FLOAT);
+    }
+
+    static byte[] bytes(ByteBuffer b) {
+        byte[] a = new byte[b.remaining()];
+        b.duplicate().get(a);
+        return a;
+    }
+
+    long entries() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) { return s.filter(p -> p.toString().endsWith(MeshCache.EXT)).count(); }
+    }
+
+    @Test
+    void roundTrip() {
+        ByteBuffer src = src("v 0 0 0\n");
+        byte[] digest = MeshCache.contentDigest(src);
+        Path file = MeshCache.pathFor("models/box.obj", digest, true);
+        write(file, digest, src.remaining(), "models/box.obj", true, 7L, List.of("box.mtl"), quad());
+
+        MeshCache.Cached c = MeshCache.read(file, digest, src.remaining(), "models/box.obj", true, 7L);
+        assertNotNull(c);
+        assertEquals(List.of("box.mtl"), c.mtllibs);
+        MeshCache.Part p = c.parts.get(0);
+        assertEquals("mat", p.material);
+        assertTrue(p.hasNormal && p.hasUV);
+        float[] v = new float[quad().interleaved.length];
+        p.vertices.asFloatBuffer().get(v);
+        assertArrayEquals(quad().interleaved, v);
+        int[] ix = new int[6];
+        p.baseIndices().asIntBuffer().get(ix);
+        assertArrayEquals(quad().indices, ix);
+        assertArrayEquals(new float[]{1, 1, 0}, p.aabbMax);
+        // float 格式：打包数据就是源数据，不重复存
+        assertEquals(VertexFormat.FLOAT, p.encoded.format.flags);
+        assertArrayEquals(bytes(p.vertices), bytes(p.encoded.vertices));
+        assertEquals(4, p.encoded.vertexCount);
+    }
+
+    @Test
+    void compactEntryStoresPackedData() {
+        ByteBuffer src = src("v 0 0 0\n");
+        byte[] digest = MeshCache.contentDigest(src);
+        Path file = MeshCache.pathFor("models/box.obj", digest, false);
+        write(file, digest, src.remaining(), "models/box.obj", false, 3L, List.of(), quad(), VertexFormat.COMPACT);
+
+        MeshCache.Part p = MeshCache.read(file, digest, src.remaining(), "models/box.obj", false, 3L).parts.get(0);
+        float[] mn = new float[3], mx = new float[3];
+        Mesh.computeBounds(quad().interleaved, true, true, mn, mx);
+        VertexFormat.Encoded fresh = VertexFormat.encode(quad().interleaved, quad().indices, true, true, mn, mx, VertexFormat.COMPACT);
+        VertexFormat.Encoded e = p.encoded;
+        assertEquals(fresh.format.flags, e.format.flags);
+        assertEquals(16, e.format.strideBytes);
+        assertEquals(fresh.indexType, e.indexType);
+        assertEquals(6, e.indexCount());
+        assertEquals(fresh.vertexCount, e.vertexCount);
+        assertArrayEquals(bytes(fresh.vertices), bytes(e.vertices));
+        assertArrayEquals(bytes(fresh.indices), bytes(e.indices));
+        assertArrayEquals(fresh.posOffset, e.posOffset);
+        assertArrayEquals(fresh.posScale, e.posScale);
+        assertEquals(fresh.maxPositionError, e.maxPositionError);
+        assertEquals(fresh.sourceBytes, e.sourceBytes);
+        // float 源数据仍在（拾取 / 蒙皮用）
+        float[] v = new float[quad().interleaved.length];
+        p.vertices.asFloatBuffer().get(v);
+        assertArrayEquals(quad().interleaved, v);
+    }
+
+    @Test
+    void keyMismatchMisses() {
+        ByteBuffer src = src("v 0 0 0\n");
+        byte[] digest = MeshCache.contentDigest(src);
+        Path file = MeshCache.pathFor("a/box.obj", digest, false);
+        write(file, digest, src.remaining(), "a/box.obj", false, 1L, List.of(), quad());
+
+        assertNotNull(MeshCache.read(file, digest, src.remaining(), "a/box.obj", false, 1L));
+        assertNull(MeshCache.read(file, digest, src.remaining(), "b/box.obj", false, 1L), "other source path");
+        assertNull(MeshCache.read(file, digest, src.remaining(), "a/box.obj", true, 1L), "flipV");
+        assertNull(MeshCache.read(file, digest, src.remaining(), "a/box.obj", false, 2L), "settings");
+        byte[] other = MeshCache.contentDigest(src("v 1 0 0\n"));
+        assertNull(MeshCache.read(file, other, src.remaining(), "a/box.obj", false, 1L), "content");
+        assertNotEquals(file, MeshCache.pathFor("b/box.obj", digest, false), "same name in another directory");
+    }
+
+    @Test
+    void newEntryRemovesStaleOnesForSameSource() throws IOException {
+        byte[] d1 = MeshCache.contentDigest(src("v 0 0 0\n")), d2 = MeshCache.contentDigest(src("v 1 0 0\n"));
+        Path old = MeshCache.pathFor("a/box.obj", d1, false);
+        write(old, d1, 8, "a/box.obj", false, 1L, List.of(), quad());
+        Path flipped = MeshCache.pathFor("a/box.obj", d1, true);
+        write(flipped, d1, 8, "a/box.obj", true, 1L, List.of(), quad());
+        Path neighbour = MeshCache.pathFor("b/box.obj", d1, false);
+        write(neighbour, d1, 8, "b/box.obj", false, 1L, List.of(), quad());
+        assertEquals(3, entries());
+
+        Path fresh = MeshCache.pathFor("a/box.obj", d2, false);
+        write(fresh, d2, 8, "a/box.obj", false, 1L, List.of(), quad());
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(flipped), "other flipV variant is a different entry");
+        assertTrue(Files.exists(neighbour), "other source path is a different entry");
+        assertEquals(3, entries());
+    }
+}
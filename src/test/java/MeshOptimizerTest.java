@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** 重排前后的 ACMR，以及重排不改变三角形集合与绕序 */
+class MeshOptimizerTest {
+
+    /** n×n 格平面（起伏的 z 让 overdraw 排序有东西可比），三角形顺序与起始角点都打乱 */
+    static int[] shuffledGrid(int n, float[] outVertices, Random rnd) {
+        int row = n + 1;
+        for (int y = 0; y <= n; y++) {
+            for (int x = 0; x <= n; x++) {
+                int i = 3 * (y * row + x);
+                outVertices[i] = x; outVertices[i + 1] = y; outVertices[i + 2] = (float) Math.sin(x * 0.3) * (float) Math.cos(y * 0.2);
+            }
+        }
+        List<int[]> tris = new ArrayList<>();
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                int a = y * row + x, b = a + 1, c = a + row + 1, d = a + row;
+                tris.add(new int[]{a, b, c});
+                tris.add(new int[]{a, c, d});
+            }
+        }
+        Collections.shuffle(tris, rnd);
+        int[] ix = new int[3 * tris.size()];
+        for (int t = 0; t < tris.size(); t++) {
+            int r = rnd.nextInt(3); // 旋转角点不改变绕序
+            for (int k = 0; k < 3; k++) ix[3 * t + k] = tris.get(t)[(k + r) % 3];
+        }
+        return ix;
+    }
+
+    /** 三角形多重集合，每个三角形旋转到最小索引在前（保留绕序） */
+    static Map<List<Integer>, Integer> triangles(int[] ix, int offset, int count) {
+        Map<List<Integer>, Integer> m = new HashMap<>();
+        for (int t = offset; t < offset + count; t += 3) {
+            int r = ix[t] <= ix[t + 1] && ix[t] <= ix[t + 2] ? 0 : ix[t + 1] <= ix[t + 2] ? 1 : 2;
+            List<Integer> key = List.of(ix[t + r], ix[t + (r + 1) % 3], ix[t + (r + 2) % 3]);
+            m.merge(key, 1, Integer::sum);
+        }
+        return m;
+    }
+
+    @Test
+    void acmrOfKnownOrders() {
+        assertEquals(3f, MeshOptimizer.acmr(new int[]{0, 1, 2}, 3));
+        // 一条三角带：第一个 3 次未命中，之后每个 1 次
+        int[] strip = new int[3 * 10];
+        for (int t = 0; t < 10; t++) { strip[3 * t] = t; strip[3 * t + 1] = t + 1; strip[3 * t + 2] = t + 2; }
+        assertEquals((3f + 9f) / 10f, MeshOptimizer.acmr(strip, 12), 1e-6f);
+    }
+
+    @Test
+    void vertexCacheLowersAcmrAndKeepsTriangles() {
+        int n = 64;
+        float[] v = new float[3 * (n + 1) * (n + 1)];
+        int[] ix = shuffledGrid(n, v, new Random(5));
+        int vc = v.length / 3;
+        Map<List<Integer>, Integer> before = triangles(ix, 0, ix.length);
+        float acmrBefore = MeshOptimizer.acmr(ix, vc);
+
+        MeshOptimizer.optimizeVertexCache(ix, vc);
+        float acmrAfter = MeshOptimizer.acmr(ix, vc);
+        assertEquals(before, triangles(ix, 0, ix.length));
+        assertTrue(acmrBefore > 2f, "shuffled order is cache-hostile: " + acmrBefore);
+        assertTrue(acmrAfter < 0.85f, "Tipsify on a regular grid: " + acmrAfter);
+
+        // overdraw 排序允许 ACMR 回升，但不超过阈值太多，三角形仍不变
+        MeshOptimizer.optimizeOverdraw(ix, 0, ix.length, v, 3, 1.05f);
+        assertEquals(before, triangles(ix, 0, ix.length));
+        assertTrue(MeshOptimizer.acmr(ix, vc) < acmrAfter * 1.25f, "overdraw pass ACMR: " + MeshOptimizer.acmr(ix, vc));
+    }
+
+    @Test
+    void subRangeLeavesOtherIndicesAlone() {
+        int n = 24;
+        float[] v = new float[3 * (n + 1) * (n + 1)];
+        int[] ix = shuffledGrid(n, v, new Random(6));
+        int vc = v.length / 3, half = ix.length / 2 / 3 * 3;
+        int[] head = Arrays.copyOf(ix, half);
+        Map<List<Integer>, Integer> tail = triangles(ix, half, ix.length - half);
+        float tailBefore = MeshOptimizer.acmr(ix, half, ix.length - half, vc);
+
+        MeshOptimizer.optimizeVertexCache(ix, half, ix.length - half, vc);
+        assertArrayEquals(head, Arrays.copyOf(ix, half));
+        assertEquals(tail, triangles(ix, half, ix.length - half));
+        assertTrue(MeshOptimizer.acmr(ix, half, ix.length - half, vc) < tailBefore);
+    }
+
+    @Test
+    void vertexFetchFollowsFirstUseAndDropsUnused() {
+        int stride = 5;
+        float[] v = new float[stride * 6];
+        for (int i = 0; i < 6; i++) for (int k = 0; k < stride; k++) v[stride * i + k] = 10 * i + k;
+        int[] ix = {4, 2, 5, 5, 2, 0}; // 顶点 1、3 没用到
+        int[] original = ix.clone();
+
+        float[] out = MeshOptimizer.optimizeVertexFetch(v, stride, ix);
+        assertEquals(4 * stride, out.length);
+        assertArrayEquals(new int[]{0, 1, 2, 2, 1, 3}, ix);
+        for (int k = 0; k < ix.length; k++) {
+            assertArrayEquals(Arrays.copyOfRange(v, stride * original[k], stride * original[k] + stride),
+                    Arrays.copyOfRange(out, stride * ix[k], stride * ix[k] + stride), "corner " + k);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QEM 简化的约束：开放边界锁定（轮廓与面积不变）、UV 接缝沿着接缝折叠（两侧不串、不裂）、
+ * 不翻面；误差随级数单调不减。
+ */
+class MeshSimplifierTest {
+    static final int STRIDE = 5; // 位置 + uv
+
+    /**
+     * n×n 格的 [0,1]² 平面，高度 h(x, y)。x = 0.5 一列是 UV 接缝：左右两侧各有一份顶点，
+     * 右侧的 u 加 10，任何跨接缝的三角形都能从 u 上看出来。
+     */
+    static final class Grid {
+        final int n;
+        float[] v;
+        int[] ix;
+        int count;
+
+        Grid(int n, boolean bumpy) {
+            this.n = n;
+            int row = n + 1;
+            v = new float[STRIDE * (row * row + row)];
+            for (int y = 0; y <= n; y++)
+                for (int x = 0; x <= n; x++) put(y * row + x, x, y, bumpy, x > n / 2 ? 10f : 0f);
+            int seam = row * row; // 接缝右侧的副本
+            for (int y = 0; y <= n; y++) put(seam + y, n / 2, y, bumpy, 10f);
+            ix = new int[6 * n * n];
+            for (int y = 0; y < n; y++) {
+                for (int x = 0; x < n; x++) {
+                    boolean right = x >= n / 2;
+                    int a = id(x, y, right), b = id(x + 1, y, right), c = id(x + 1, y + 1, right), d = id(x, y + 1, right);
+                    ix[count++] = a; ix[count++] = b; ix[count++] = c;
+                    ix[count++] = a; ix[count++] = c; ix[count++] = d;
+                }
+            }
+        }
+
+        int id(int x, int y, boolean right) {
+            return right && x == n / 2 ? (n + 1) * (n + 1) + y : y * (n + 1) + x;
+        }
+
+        void put(int i, int x, int y, boolean bumpy, float du) {
+            float fx = x / (float) n, fy = y / (float) n;
+            v[STRIDE * i] = fx;
+            v[STRIDE * i + 1] = fy;
+            v[STRIDE * i + 2] = bumpy ? 0.05f * (float) (Math.sin(fx * 9) * Math.cos(fy * 7)) : 0f;
+            v[STRIDE * i + 3] = fx + du;
+            v[STRIDE * i + 4] = fy;
+        }
+    }
+
+    static double area2d(float[] v, int[] ix) {
+        double sum = 0;
+        for (int t = 0; t < ix.length; t += 3) sum += signedArea(v, ix[t], ix[t + 1], ix[t + 2]);
+        return sum;
+    }
+
+    static double signedArea(float[] v, int a, int b, int c) {
+        double ax = v[STRIDE * a], ay = v[STRIDE * a + 1];
+        return 0.5 * ((v[STRIDE * b] - ax) * (v[STRIDE * c + 1] - ay) - (v[STRIDE * c] - ax) * (v[STRIDE * b + 1] - ay));
+    }
+
+    @Test
+    void planeKeepsBorderAndAreaAndSeam() {
+        Grid g = new Grid(32, false);
+        MeshSimplifier s = new MeshSimplifier(g.v, STRIDE, g.ix);
+        int[] out = s.simplifyTo(g.ix.length / 8, Float.MAX_VALUE);
+        assertTrue(out.length < g.ix.length / 3, "planar interior should collapse freely: " + out.length);
+        assertEquals(0f, s.error(), 1e-6f, "collapses inside a plane cost nothing");
+
+        // 面积与轮廓：平面内不翻面、边界不动，总面积不变且每个三角形仍是正向
+        assertEquals(area2d(g.v, g.ix), area2d(g.v, out), 1e-6);
+        for (int t = 0; t < out.length; t += 3) assertTrue(signedArea(g.v, out[t], out[t + 1], out[t + 2]) > 0, "flipped triangle " + t / 3);
+
+        // 边界顶点全部保留
+        Set<Integer> used = new HashSet<>();
+        for (int i : out) used.add(i);
+        for (int k = 0; k <= g.n; k++) {
+            assertTrue(used.contains(g.id(k, 0, false)) || used.contains(g.id(k, 0, true)), "bottom " + k);
+            assertTrue(used.contains(g.id(k, g.n, false)) || used.contains(g.id(k, g.n, true)), "top " + k);
+            assertTrue(used.contains(g.id(0, k, false)), "left " + k);
+            assertTrue(used.contains(g.id(g.n, k, true)), "right " + k);
+        }
+
+        // 接缝：三角形不跨接缝，两侧留下的接缝点位置一一对应（不裂）
+        Set<Float> leftSeam = new HashSet<>(), rightSeam = new HashSet<>();
+        for (int t = 0; t < out.length; t += 3) {
+            boolean r0 = g.v[STRIDE * out[t] + 3] >= 10f;
+            for (int k = 0; k < 3; k++) {
+                int i = out[t + k];
+                assertEquals(r0, g.v[STRIDE * i + 3] >= 10f, "triangle " + t / 3 + " straddles the UV seam");
+                if (g.v[STRIDE * i] == 0.5f) (r0 ? rightSeam : leftSeam).add(g.v[STRIDE * i + 1]);
+            }
+        }
+        assertFalse(leftSeam.isEmpty());
+        assertEquals(leftSeam, rightSeam);
+    }
+
+    @Test
+    void curvedSurfaceErrorGrowsWithLevel() {
+        Grid g = new Grid(48, true);
+        MeshSimplifier.Lods lods = MeshSimplifier.buildLods(g.v, STRIDE, g.ix, 3, 0.5f);
+        assertTrue(lods.levels() >= 3, "levels: " + lods.levels());
+        assertEquals(g.ix.length, lods.counts[0]);
+        assertEquals(0f, lods.errors[0]);
+        int total = 0;
+        for (int l = 0; l < lods.levels(); l++) {
+            total += lods.counts[l];
+            if (l == 0) continue;
+            assertTrue(lods.counts[l] <= lods.counts[l - 1] * 0.9, "level " + l + " shrinks");
+            assertTrue(lods.errors[l] >= lods.errors[l - 1], "level " + l + " error is monotonic");
+            assertTrue(lods.errors[l] < 0.05f, "level " + l + " error bounded by bump height: " + lods.errors[l]);
+        }
+        assertEquals(total, lods.indices.length);
+        int vertices = g.v.length / STRIDE;
+        for (int i : lods.indices) assertTrue(i >= 0 && i < vertices);
+    }
+
+    @Test
+    void tinyPartsAreLeftAlone() {
+        Grid g = new Grid(4, true); // 32 个三角形，低于 buildLods 的门槛
+        MeshSimplifier.Lods lods = MeshSimplifier.buildLods(g.v, STRIDE, g.ix, 3, 0.5f);
+        assertEquals(1, lods.levels());
+        assertArrayEquals(g.ix, lods.indices);
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** 稀疏表情混合：源顶点展开到各 Part 的副本、组变形按比例展开、换表情时清掉旧位移、只标脏碰到的块 */
+class MorphTest {
+
+    static PmxLoader.PmxMorph morph(String name, int type, int[] targets, float[] values) {
+        PmxLoader.PmxMorph m = new PmxLoader.PmxMorph();
+        m.name = name; m.type = type; m.targets = targets; m.values = values;
+        return m;
+    }
+
+    /** 两个 Part：源顶点 2 在两边各有一份 */
+    static final int[][] SOURCES = { { 0, 1, 2 }, { 2, 3 } };
+
+    static Morphs synthetic() {
+        List<PmxLoader.PmxMorph> list = new ArrayList<>();
+        list.add(morph("a", Morphs.VERTEX, new int[]{ 2, 3 }, new float[]{ 1f, 0f, 0f, 0f, 1f, 0f }));
+        list.add(morph("b", Morphs.VERTEX, new int[]{ 0 }, new float[]{ 0f, 0f, 1f }));
+        list.add(morph("g", Morphs.GROUP, new int[]{ 0, 1 }, new float[]{ 0.5f, 2f }));
+        list.add(morph("bone", PmxLoader.PmxMorph.BONE, new int[]{ 0 }, new float[7]));
+        return Morphs.of(list, SOURCES, 4);
+    }
+
+    static float[] get(MorphBuffer buf, int v) {
+        float[] d = new float[3];
+        buf.get(v, d);
+        return d;
+    }
+
+    @Test
+    void noVertexMorphsMeansNoMorphs() {
+        List<PmxLoader.PmxMorph> list = List.of(morph("bone", PmxLoader.PmxMorph.BONE, new int[]{ 0 }, new float[7]));
+        assertNull(Morphs.of(list, SOURCES, 4));
+    }
+
+    @Test
+    void vertexMorphReachesEveryCopy() {
+        Morphs m = synthetic();
+        assertEquals(5, m.vertexCount);
+        assertEquals(3, m.size(0), "source vertex 2 has two GPU copies");
+        MorphBuffer buf = new MorphBuffer(2 * m.vertexCount);
+        buf.allocate(m.vertexCount);
+        int base = buf.allocate(m.vertexCount); // 第二个角色，检验基址
+        Morpher face = new Morpher(m);
+        assertTrue(face.set("a", 1f));
+        assertFalse(face.set("missing", 1f));
+        assertTrue(face.apply(buf, base));
+        assertArrayEquals(new float[]{ 1f, 0f, 0f }, get(buf, base + 2));
+        assertArrayEquals(new float[]{ 1f, 0f, 0f }, get(buf, base + 3));
+        assertArrayEquals(new float[]{ 0f, 1f, 0f }, get(buf, base + 4));
+        assertArrayEquals(new float[3], get(buf, base));
+        assertArrayEquals(new float[3], get(buf, 2), "first character untouched");
+        assertFalse(face.apply(buf, base), "unchanged weights do nothing");
+    }
+
+    @Test
+    void groupExpandsAndSwitchingClearsOldDeltas() {
+        Morphs m = synthetic();
+        MorphBuffer buf = new MorphBuffer(m.vertexCount);
+        int base = buf.allocate(m.vertexCount);
+        Morpher face = new Morpher(m);
+        face.set(2, 1f); // g = 0.5·a + 2·b
+        face.apply(buf, base);
+        assertArrayEquals(new float[]{ 0f, 0f, 2f }, get(buf, 0));
+        assertArrayEquals(new float[]{ 0.5f, 0f, 0f }, get(buf, 2));
+        assertArrayEquals(new float[]{ 0f, 0.5f, 0f }, get(buf, 4));
+
+        face.clear();
+        face.set(1, 0.25f);
+        face.apply(buf, base);
+        assertArrayEquals(new float[]{ 0f, 0f, 0.25f }, get(buf, 0));
+        for (int v = 1; v < m.vertexCount; v++) assertArrayEquals(new float[3], get(buf, v), "vertex " + v);
+    }
+
+    @Test
+    void onlyTouchedBlocksAreDirty() {
+        Morphs m = synthetic();
+        MorphBuffer buf = new MorphBuffer(0);
+        int chars = 3 * MorphBuffer.BLOCK; // 每个角色 5 个顶点，几个角色挤在一块里
+        int[] bases = new int[chars];
+        for (int i = 0; i < chars; i++) bases[i] = buf.allocate(m.vertexCount);
+        buf.discardDirty();
+        assertEquals(0, buf.pendingBytes());
+        Morpher face = new Morpher(m);
+        face.set(1, 1f);
+        face.apply(buf, bases[chars - 1]);
+        assertEquals(MorphBuffer.BLOCK * 4L * Float.BYTES, buf.pendingBytes(), "one block");
+        buf.discardDirty();
+        assertEquals(0, buf.pendingBytes());
+    }
+
+    @Test
+    void kleeSingleMorphsAreExactAndClearLeavesNoResidue() throws IOException {
+        PmxLoader.Parsed p = PmxLoader.parse(PmxLoaderTest.resource("asserts/Klee/Klee.pmx"));
+        // 与加载器相同：重排 + LOD 之后的顶点顺序
+        List<MeshData> parts = ObjMtlLoader.prepareParts(p.materials.size(), i -> p.part(i, i + ":" + p.materials.get(i).name), false);
+        List<int[]> map = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            MeshData d = parts.get(i);
+            if (!d.isEmpty()) map.add(p.sourceVertices(i, FloatBuffer.wrap(d.interleaved), d.strideFloats()));
+        }
+        Morphs morphs = Morphs.of(p.morphs, map.toArray(new int[0][]), p.vertexCount);
+        assertNotNull(morphs, "Klee has vertex morphs");
+
+        MorphBuffer buf = new MorphBuffer(morphs.vertexCount);
+        int base = buf.allocate(morphs.vertexCount);
+        long full = (long) morphs.vertexCount * 4 * Float.BYTES;
+        Morpher face = new Morpher(morphs);
+        float[] d = new float[3];
+        int checked = 0;
+        for (int m = 0; m < morphs.count(); m++) {
+            if (morphs.type(m) != Morphs.VERTEX || morphs.size(m) == 0) continue;
+            buf.discardDirty();
+            face.clear();
+            face.set(m, 1f);
+            face.apply(buf, base);
+            for (int e = morphs.first[m]; e < morphs.first[m + 1]; e++) {
+                buf.get(base + morphs.vertex[e], d);
+                for (int c = 0; c < 3; c++) assertEquals(morphs.delta[e * 3 + c], d[c], 0f, morphs.name(m) + " entry " + e); // 0 与 -0 视为相等
+            }
+            assertTrue(buf.pendingBytes() <= full);
+            checked++;
+        }
+        assertTrue(checked > 0);
+        face.clear();
+        face.apply(buf, base);
+        for (int v = 0; v < morphs.vertexCount; v++) {
+            buf.get(base + v, d);
+            assertArrayEquals(new float[3], d, 0f, "vertex " + v);
+        }
+    }
+}
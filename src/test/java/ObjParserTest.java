@@ -0,0 +1,279 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ObjParser 与旧的 BufferedReader + ArrayList&lt;Float&gt; 实现（{@link Legacy}，原样保留作对照）逐位一致，
+ * 顺序、映射文件与分块并行三条路径结果相同。
+ */
+class ObjParserTest {
+
+    /** 改写前的 ObjReader，只把输入换成字符串 */
+    static final class Legacy {
+        final float[] interleaved;
+        final int[] indices;
+        final boolean hasNormal, hasUV;
+
+        private record VertexKey(int v, int t, int n) {}
+
+        Legacy(String text, boolean flipV) throws IOException {
+            ArrayList<float[]> pos = new ArrayList<>();
+            ArrayList<float[]> uv  = new ArrayList<>();
+            ArrayList<float[]> nrm = new ArrayList<>();
+            LinkedHashMap<VertexKey, Integer> map = new LinkedHashMap<>();
+            ArrayList<Float> out = new ArrayList<>();
+            ArrayList<Integer> idx = new ArrayList<>();
+            boolean seenUV = false, seenN = false;
+
+            BufferedReader br = new BufferedReader(new StringReader(text));
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] p = line.split("\\s+");
+                switch (p[0]) {
+                    case "v"  -> pos.add(new float[]{f(p[1]), f(p[2]), f(p[3])});
+                    case "vt" -> { float u = f(p[1]), v = f(p[2]); uv.add(new float[]{u, flipV ? 1f - v : v}); seenUV = true; }
+                    case "vn" -> { nrm.add(new float[]{f(p[1]), f(p[2]), f(p[3])}); seenN = true; }
+                    case "f"  -> {
+                        int[] ids = new int[p.length - 1];
+                        for (int i = 1; i < p.length; i++) {
+                            String[] tri = p[i].split("/");
+                            int vi = resolve(Integer.parseInt(tri[0]), pos.size());
+                            int ti = tri.length > 1 && !tri[1].isEmpty() ? resolve(Integer.parseInt(tri[1]), uv.size()) : -1;
+                            int ni = tri.length > 2 && !tri[2].isEmpty() ? resolve(Integer.parseInt(tri[2]), nrm.size()) : -1;
+                            VertexKey key = new VertexKey(vi, ti, ni);
+                            Integer found = map.get(key);
+                            if (found == null) {
+                                float[] q = pos.get(vi);
+                                out.add(q[0]); out.add(q[1]); out.add(q[2]);
+                                if (ni >= 0) { float[] n = nrm.get(ni); out.add(n[0]); out.add(n[1]); out.add(n[2]); }
+                                else if (seenN) { out.add(0f); out.add(0f); out.add(1f); }
+                                if (ti >= 0) { float[] t = uv.get(ti); out.add(t[0]); out.add(t[1]); }
+                                else if (seenUV) { out.add(0f); out.add(0f); }
+                                found = map.size();
+                                map.put(key, found);
+                            }
+                            ids[i - 1] = found;
+                        }
+                        for (int i = 1; i + 1 < ids.length; i++) { idx.add(ids[0]); idx.add(ids[i]); idx.add(ids[i + 1]); }
+                    }
+                    default -> {}
+                }
+            }
+            interleaved = new float[out.size()];
+            for (int i = 0; i < interleaved.length; i++) interleaved[i] = out.get(i);
+            indices = idx.stream().mapToInt(Integer::intValue).toArray();
+            hasNormal = seenN;
+            hasUV = seenUV;
+        }
+
+        private static float f(String s) { return Float.parseFloat(s); }
+        private static int resolve(int idx, int size) { return idx > 0 ? idx - 1 : size + idx; }
+    }
+
+    static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ObjParser.Group whole(ObjParser.Result r) {
+        return r.groups.get(ObjParser.DEFAULT_GROUP);
+    }
+
+    static void assertSame(Legacy expect, ObjParser.Result actual) {
+        ObjParser.Group g = whole(actual);
+        float[] a = g.interleaved();
+        assertEquals(expect.interleaved.length, a.length, "interleaved length");
+        for (int i = 0; i < a.length; i++) {
+            assertEquals(Float.floatToRawIntBits(expect.interleaved[i]), Float.floatToRawIntBits(a[i]), "interleaved[" + i + "]");
+        }
+        assertArrayEquals(expect.indices, g.indices(), "indices");
+        assertEquals(expect.hasNormal, actual.hasNormal, "hasNormal");
+        assertEquals(expect.hasUV, actual.hasUV, "hasUV");
+    }
+
+    static void check(String obj, boolean flipV) throws IOException {
+        assertSame(new Legacy(obj, flipV), ObjParser.parse(bytes(obj), flipV, false));
+    }
+
+    @Test
+    void fullCornersAndFlipV() throws IOException {
+        String obj = """
+                # cube corner
+                v 0 0 0
+                v 1.5 0 0
+                v 1.5 2.25 0
+                vt 0 0
+                vt 1 0
+                vt 1 0.75
+                vn 0 0 1
+                f 1/1/1 2/2/1 3/3/1
+                f 1/1/1 3/3/1 2/2/1
+                """;
+        check(obj, false);
+        check(obj, true);
+    }
+
+    @Test
+    void negativeIndicesResolveAgainstCurrentPool() throws IOException {
+        check("""
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                vt 0 0
+                vt 1 0
+                vt 1 1
+                f -3/-3 -2/-2 -1/-1
+                v 0 1 0
+                vt 0 1
+                f -4/-4 -2/-2 -1/-1
+                """, true);
+    }
+
+    @Test
+    void ngonsAreFanTriangulated() throws IOException {
+        String obj = """
+                v 0 0 0
+                v 1 0 0
+                v 2 1 0
+                v 1 2 0
+                v 0 2 0
+                v -1 1 0
+                f 1 2 3 4 5 6
+                f 1 3 5 6
+                """;
+        check(obj, false);
+        int[] idx = whole(ObjParser.parse(bytes(obj), false, false)).indices();
+        assertEquals((4 + 2) * 3, idx.length);
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 3, 4, 0, 4, 5}, Arrays.copyOf(idx, 12));
+    }
+
+    @Test
+    void missingComponentsAreFilledOnlyAfterFirstSeen() throws IOException {
+        // 出现 vt/vn 之前的角点不补缺省值，与旧实现的（不一致的）stride 行为相同
+        check("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                f 1 2 3
+                vn 0 0 1
+                f 1//1 2 3//1
+                vt 0.5 0.5
+                f 1/1 2/1/1 3
+                """, false);
+    }
+
+    @Test
+    void numberFormatsAndWhitespace() throws IOException {
+        check("v 1e-3 -2.5E+2 .5\r\n"
+                + "v\t+3   4.000001 -0\r\n"
+                + "v 123456789.125 1e30 -7e-39\r\n"
+                + "vn 0.57735026 0.57735026 0.57735026\r\n"
+                + "  f 1//1   2//1\t3//1  \r\n"
+                + "o ignored\r\ns 1\r\ng grp\r\n", false);
+    }
+
+    @Test
+    void outOfRangeIndexThrowsIOException() {
+        assertThrows(IOException.class, () -> ObjParser.parse(bytes("v 0 0 0\nv 1 0 0\nf 1 2 3\n"), false, false));
+        assertThrows(IOException.class, () -> ObjParser.parse(bytes("v 0 0 0\nv 1 0 0\nv 0 1 0\nf -4 2 3\n"), false, false));
+        assertThrows(IOException.class, () -> ObjParser.parse(bytes("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nf 1/2 2/1 3/1\n"), false, false));
+        assertThrows(IOException.class, () -> ObjParser.parse(bytes("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 0 1 2\n"), false, false));
+    }
+
+    @Test
+    void materialGroupsPartitionFaces() throws IOException {
+        ObjParser.Result r = ObjParser.parse(bytes("""
+                mtllib a.mtl
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                v 1 1 0
+                usemtl red
+                f 1 2 3
+                usemtl blue
+                f 2 4 3
+                usemtl red
+                f 1 3 4
+                """), false, true);
+        assertEquals(List.of("a.mtl"), r.mtllibs);
+        assertEquals(0, whole(r).indices().length);
+        assertEquals(6, r.groups.get("red").indices().length);
+        assertEquals(3, r.groups.get("blue").indices().length);
+        assertEquals(4, r.groups.get("red").vertexCount());
+    }
+
+    /** 足够大的随机网格，让并行路径切成多块（每块至少 1 MB） */
+    static String bigObj(int grid) {
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder(grid * grid * 80);
+        for (int y = 0; y <= grid; y++) {
+            for (int x = 0; x <= grid; x++) {
+                sb.append("v ").append(x * 0.01f).append(' ').append(rnd.nextFloat()).append(' ').append(y * 0.01f).append('\n');
+                sb.append("vt ").append(x / (float) grid).append(' ').append(y / (float) grid).append('\n');
+            }
+        }
+        sb.append("vn 0 1 0\n");
+        int row = grid + 1;
+        for (int y = 0; y < grid; y++) {
+            if (y == grid / 2) sb.append("usemtl second\n");
+            for (int x = 0; x < grid; x++) {
+                int a = y * row + x + 1, b = a + 1, c = a + row + 1, d = a + row;
+                if ((x & 1) == 0) sb.append(String.format("f %d/%d/1 %d/%d/1 %d/%d/1 %d/%d/1\n", a, a, b, b, c, c, d, d));
+                else sb.append(String.format("f %d/%d/-1 %d/%d/-1 %d/%d/-1\nf %d/%d/1 %d/%d/1 %d/%d/1\n", a, a, b, b, c, c, a, a, c, c, d, d));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void parallelAndMappedMatchSequential(@TempDir Path dir) throws IOException {
+        String obj = bigObj(256);
+        assertTrue(obj.length() > 3 << 20, "test input should span several chunks");
+        check(obj, true);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean byMaterial : new boolean[]{false, true}) {
+                ObjParser.Result seq = ObjParser.parse(bytes(obj), true, byMaterial);
+                ObjParser.Result par = ObjParser.parseParallel(bytes(obj), true, byMaterial, pool);
+                assertEquals(seq.groups.keySet(), par.groups.keySet());
+                for (String name : seq.groups.keySet()) {
+                    assertArrayEquals(seq.groups.get(name).interleaved(), par.groups.get(name).interleaved(), name);
+                    assertArrayEquals(seq.groups.get(name).indices(), par.groups.get(name).indices(), name);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Path file = dir.resolve("big.obj");
+        Files.writeString(file, obj);
+        ObjReader.Result mapped = ObjReader.read(file, true);
+        Legacy expect = new Legacy(obj, true);
+        assertArrayEquals(expect.interleaved, mapped.interleaved);
+        assertArrayEquals(expect.indices, mapped.indices);
+    }
+
+    @Test
+    void parallelReportsOutOfRangeIndex() {
+        String obj = bigObj(256) + "f 1 2 999999999\n";
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThrows(IOException.class, () -> ObjParser.parseParallel(bytes(obj), false, false, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** 工程自带的 Klee.pmx：解析结果自洽、按材质拆出的 Part 与源顶点一一对应，截断 / 非 PMX 抛 IOException */
+class PmxLoaderTest {
+    static ByteBuffer klee;
+    static PmxLoader.Parsed p;
+
+    static ByteBuffer resource(String path) throws IOException {
+        try (InputStream in = PmxLoaderTest.class.getClassLoader().getResourceAsStream(path)) {
+            assertNotNull(in, path);
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    @BeforeAll
+    static void parse() throws IOException {
+        klee = resource("asserts/Klee/Klee.pmx");
+        p = PmxLoader.parse(klee);
+    }
+
+    @Test
+    void sectionsAreConsistent() {
+        int n = p.vertexCount;
+        assertTrue(n > 0);
+        assertEquals(3 * n, p.positions.length);
+        assertEquals(3 * n, p.normals.length);
+        assertEquals(2 * n, p.uvs.length);
+        assertEquals(0, p.indices.length % 3);
+        for (int i : p.indices) assertTrue(i >= 0 && i < n, "index " + i);
+        assertEquals(0, klee.position(), "parse leaves the source position alone");
+
+        // 材质的索引区间首尾相接、覆盖全部索引
+        int next = 0;
+        for (PmxLoader.PmxMaterial m : p.materials) {
+            assertEquals(next, m.firstIndex, m.name);
+            assertEquals(0, m.indexCount % 3, m.name);
+            next += m.indexCount;
+        }
+        assertEquals(p.indices.length, next);
+    }
+
+    @Test
+    void skinWeightsAreNormalized() {
+        assertFalse(p.bones.isEmpty());
+        for (int b = 0; b < p.bones.size(); b++) assertTrue(p.bones.get(b).parent < p.bones.size(), "bone " + b);
+        for (int v = 0; v < p.vertexCount; v++) {
+            float sum = 0f;
+            for (int k = 4 * v; k < 4 * v + 4; k++) {
+                assertTrue(p.skinBones[k] >= 0 && p.skinBones[k] < p.bones.size());
+                assertTrue(p.skinWeights[k] >= 0f);
+                sum += p.skinWeights[k];
+            }
+            assertEquals(1f, sum, 1e-5f, "vertex " + v);
+        }
+    }
+
+    @Test
+    void partsMapBackToSourceVertices() {
+        // 与加载器相同：重排 + LOD 之后按位对回源顶点
+        List<MeshData> parts = ObjMtlLoader.prepareParts(p.materials.size(), i -> p.part(i, i + ":" + p.materials.get(i).name), false);
+        assertEquals(p.materials.size(), parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            MeshData d = parts.get(i);
+            assertEquals(p.materials.get(i).indexCount, d.lodCounts[0], "part " + i + " level 0");
+            int[] map = p.sourceVertices(i, FloatBuffer.wrap(d.interleaved), d.strideFloats());
+            assertEquals(d.vertexCount(), map.length);
+            for (int v = 0; v < map.length; v++) {
+                int s = map[v], o = v * d.strideFloats();
+                for (int c = 0; c < 3; c++) assertEquals(p.positions[s * 3 + c], d.interleaved[o + c], "part " + i + " vertex " + v);
+                for (int c = 0; c < 2; c++) assertEquals(p.uvs[s * 2 + c], d.interleaved[o + 6 + c], "part " + i + " vertex " + v);
+            }
+        }
+    }
+
+    @Test
+    void truncatedOrForeignInputThrowsIOException() {
+        for (int len : new int[]{ 0, 3, 17, klee.capacity() / 3, p.displayOffset - 1 }) { // 只解析到变形节
+            ByteBuffer cut = klee.duplicate().limit(len).slice();
+            assertThrows(IOException.class, () -> PmxLoader.parse(cut), "length " + len);
+        }
+        ByteBuffer obj = ByteBuffer.wrap("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n".getBytes());
+        IOException e = assertThrows(IOException.class, () -> PmxLoader.parse(obj));
+        assertTrue(e.getMessage().contains("not a PMX"), e.getMessage());
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Skeleton 的调色板与 {@link Skin#skinCpu}（与 GLSL_SKIN 同一公式）：绑定姿势不动、已知姿势的结果、角色之间姿势独立 */
+class SkinTest {
+
+    static PmxLoader.PmxBone bone(String name, int parent, float x, float y, float z) {
+        PmxLoader.PmxBone b = new PmxLoader.PmxBone();
+        b.name = name; b.parent = parent;
+        b.position[0] = x; b.position[1] = y; b.position[2] = z;
+        return b;
+    }
+
+    /** 根在原点，子骨骼在 (0, 1, 0) */
+    static Skeleton chain() {
+        List<PmxLoader.PmxBone> bones = new ArrayList<>();
+        bones.add(bone("root", -1, 0f, 0f, 0f));
+        bones.add(bone("arm", 0, 0f, 1f, 0f));
+        return Skeleton.of(bones);
+    }
+
+    @Test
+    void bindPoseLeavesKleeUnchanged() throws IOException {
+        PmxLoader.Parsed p = PmxLoader.parse(PmxLoaderTest.resource("asserts/Klee/Klee.pmx"));
+        Skeleton rig = Skeleton.of(p.bones);
+        int n = p.vertexCount;
+        float[] pos = new float[n * 3], nrm = new float[n * 3];
+        rig.update();
+        Skin.skinCpu(rig.palette(), p.skinBones, p.skinWeights, p.positions, p.normals, pos, nrm, n);
+        for (int i = 0; i < n * 3; i++) {
+            assertEquals(p.positions[i], pos[i], 1e-5f * Math.max(1f, Math.abs(p.positions[i])), "position " + i);
+            assertEquals(p.normals[i], nrm[i], 1e-5f, "normal " + i);
+        }
+    }
+
+    @Test
+    void rotatedChildMovesOnlyItsVertices() {
+        Skeleton s = chain();
+        s.setRotationAxis(1, 0f, 0f, 1f, (float) (Math.PI / 2)); // 绕 z 转 90°，枢轴在 (0, 1, 0)
+        s.update();
+        float[] positions = { 0f, 2f, 0f,   0f, 2f, 0f,   0.5f, 0.5f, 0f };
+        float[] normals = { 1f, 0f, 0f,   1f, 0f, 0f,   1f, 0f, 0f };
+        int[] bones = { 1, 0, 0, 0,   0, 1, 0, 0,   0, 0, 0, 0 };
+        float[] weights = { 1f, 0f, 0f, 0f,   0.5f, 0.5f, 0f, 0f,   1f, 0f, 0f, 0f };
+        float[] pos = new float[9], nrm = new float[9];
+        Skin.skinCpu(s.palette(), bones, weights, positions, normals, pos, nrm, 3);
+        assertArrayEquals(new float[]{ -1f, 1f, 0f }, new float[]{ pos[0], pos[1], pos[2] }, 1e-6f);
+        assertArrayEquals(new float[]{ 0f, 1f, 0f }, new float[]{ nrm[0], nrm[1], nrm[2] }, 1e-6f);
+        // 线性混合：两块骨骼各一半，落在两个结果的中点
+        assertArrayEquals(new float[]{ -0.5f, 1.5f, 0f }, new float[]{ pos[3], pos[4], pos[5] }, 1e-6f);
+        assertArrayEquals(new float[]{ 0.5f, 0.5f, 0f }, new float[]{ pos[6], pos[7], pos[8] }, 1e-6f, "root vertex stays");
+    }
+
+    @Test
+    void parentRotationCarriesChildren() {
+        Skeleton s = chain();
+        s.setRotationAxis(0, 0f, 0f, 1f, (float) (Math.PI / 2));
+        s.setTranslation(1, 0f, 0f, 2f);
+        s.update();
+        float[] pos = new float[3];
+        Skin.skinCpu(s.palette(), new int[]{ 1, 0, 0, 0 }, new float[]{ 1f, 0f, 0f, 0f }, new float[]{ 0f, 2f, 0f }, null, pos, null, 1);
+        assertArrayEquals(new float[]{ -2f, 0f, 2f }, pos, 1e-6f);
+    }
+
+    @Test
+    void copiesPoseIndependently() {
+        Skeleton a = chain(), b = a.copy();
+        assertEquals(a.boneCount(), b.boneCount());
+        assertEquals(1, b.depth(1));
+        float[] rest = a.palette().clone();
+        b.setRotationAxis(1, 1f, 0f, 0f, 1f);
+        b.update();
+        assertArrayEquals(rest, a.palette());
+        assertNotSame(a.palette(), b.palette());
+        b.resetPose();
+        b.update();
+        assertArrayEquals(rest, b.palette(), 1e-7f);
+    }
+}
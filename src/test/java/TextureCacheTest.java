@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** 没有 GL 上下文：关闭未 resolve 的材质只能放弃解码结果，一旦去上传就会抛异常 */
+class TextureCacheTest {
+
+    @Test
+    void closingUnresolvedMaterialReleasesDecodeWithoutGl(@TempDir Path dir) throws IOException {
+        Path png = dir.resolve("red.png");
+        BufferedImage img = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 8; y++) for (int x = 0; x < 8; x++) img.setRGB(x, y, 0xFF0000);
+        ImageIO.write(img, "png", png.toFile());
+
+        int live = TextureCache.liveTextures();
+        Material a = new Material(), b = new Material();
+        a.mapKdPending = TextureCache.acquireAsync(png, true);
+        b.mapKdPending = TextureCache.acquireAsync(png, true);
+        assertEquals(live + 1, TextureCache.liveTextures(), "shared entry");
+
+        a.close();
+        assertEquals(live + 1, TextureCache.liveTextures(), "b still holds a reference");
+        a.close(); // 幂等
+        b.close();
+        assertEquals(live, TextureCache.liveTextures());
+        assertNull(b.mapKd);
+        assertFalse(b.hasMapKd());
+    }
+
+    @Test
+    void releasingFailedDecodeIsHarmless(@TempDir Path dir) {
+        int live = TextureCache.liveTextures();
+        Material m = new Material();
+        m.mapKdPending = TextureCache.acquireAsync(dir.resolve("missing.png"), false);
+        m.close();
+        assertEquals(live, TextureCache.liveTextures());
+    }
+}
@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** 各打包项的误差上界（自己按着色器的方式解码来量，不只信 Encoded 里的统计）与布局 */
+class VertexFormatTest {
+
+    /** n 个随机顶点：位置在 [-3, 5]×[0, 0.01]×[100, 140]，单位法线，uv 在 [-2, 4] */
+    static float[] randomVertices(int n, Random rnd) {
+        float[] v = new float[8 * n];
+        for (int i = 0; i < n; i++) {
+            int o = 8 * i;
+            v[o] = -3 + 8 * rnd.nextFloat(); v[o + 1] = 0.01f * rnd.nextFloat(); v[o + 2] = 100 + 40 * rnd.nextFloat();
+            double z = rnd.nextDouble() * 2 - 1, th = rnd.nextDouble() * Math.PI * 2, s = Math.sqrt(1 - z * z);
+            v[o + 3] = (float) (s * Math.cos(th)); v[o + 4] = (float) (s * Math.sin(th)); v[o + 5] = (float) z;
+            v[o + 6] = -2 + 6 * rnd.nextFloat(); v[o + 7] = -2 + 6 * rnd.nextFloat();
+        }
+        return v;
+    }
+
+    static VertexFormat.Encoded encode(float[] v, int[] ix, int flags, float[] mn, float[] mx) {
+        Mesh.computeBounds(v, true, true, mn, mx);
+        return VertexFormat.encode(v, ix, true, true, mn, mx, flags);
+    }
+
+    @Test
+    void floatIsTheDefault() {
+        String old = System.clearProperty("mesh.format");
+        try {
+            assertEquals(VertexFormat.FLOAT, VertexFormat.configured());
+            System.setProperty("mesh.format", "compact");
+            assertEquals(VertexFormat.COMPACT, VertexFormat.configured());
+            System.setProperty("mesh.format", "pos16, half");
+            assertEquals(VertexFormat.POS16 | VertexFormat.HALF_UV, VertexFormat.configured());
+            System.setProperty("mesh.format", "pos8");
+            assertThrows(IllegalArgumentException.class, VertexFormat::configured);
+        } finally {
+            if (old != null) System.setProperty("mesh.format", old);
+            else System.clearProperty("mesh.format");
+        }
+    }
+
+    @Test
+    void floatFormatIsLossless() {
+        float[] v = randomVertices(100, new Random(1));
+        VertexFormat.Encoded e = encode(v, new int[]{0, 1, 2}, VertexFormat.FLOAT, new float[3], new float[3]);
+        assertEquals(32, e.format.strideBytes);
+        float[] back = new float[v.length];
+        e.vertices.asFloatBuffer().get(back);
+        assertArrayEquals(v, back);
+        assertEquals(0f, e.maxPositionError);
+        assertEquals(0f, e.maxUvError);
+    }
+
+    @Test
+    void compactLayoutAndErrorBounds() {
+        int n = 5000;
+        float[] v = randomVertices(n, new Random(2));
+        float[] mn = new float[3], mx = new float[3];
+        VertexFormat.Encoded e = encode(v, new int[]{0, 1, 2, 2, 1, n - 1}, VertexFormat.COMPACT, mn, mx);
+        VertexFormat f = e.format;
+        assertEquals(16, f.strideBytes, "32 → 16 bytes per vertex");
+        assertEquals(8, f.normalOffset);
+        assertEquals(12, f.uvOffset);
+        assertEquals(n * 16, e.vertices.remaining());
+
+        ByteBuffer b = e.vertices;
+        float posErr = 0f, uvErr = 0f, normalDeg = 0f;
+        for (int i = 0; i < n; i++) {
+            int o = 16 * i, s = 8 * i;
+            for (int a = 0; a < 3; a++) {
+                float p = e.posOffset[a] + (b.getShort(o + 2 * a) & 0xFFFF) * e.posScale[a];
+                float bound = (mx[a] - mn[a]) / 131070f + Math.ulp(Math.max(Math.abs(mn[a]), Math.abs(mx[a]))) * 2;
+                assertTrue(Math.abs(p - v[s + a]) <= bound, "vertex " + i + " axis " + a + ": " + Math.abs(p - v[s + a]));
+                posErr = Math.max(posErr, Math.abs(p - v[s + a]));
+            }
+            float[] d = VertexFormat.octDecode(b.getShort(o + 8), b.getShort(o + 10));
+            assertEquals(1f, (float) Math.sqrt(d[0] * d[0] + d[1] * d[1] + d[2] * d[2]), 1e-5f);
+            double len = Math.sqrt((double) v[s + 3] * v[s + 3] + (double) v[s + 4] * v[s + 4] + (double) v[s + 5] * v[s + 5]);
+            double dot = ((double) d[0] * v[s + 3] + (double) d[1] * v[s + 4] + (double) d[2] * v[s + 5]) / len;
+            normalDeg = Math.max(normalDeg, (float) Math.toDegrees(Math.acos(Math.min(1.0, dot))));
+            for (int k = 0; k < 2; k++) {
+                float u = v[s + 6 + k], h = VertexFormat.fromHalf(b.getShort(o + 12 + 2 * k));
+                // half 有 10 位尾数：相对误差不超过 2^-11
+                assertTrue(Math.abs(h - u) <= Math.abs(u) * 0x1p-11f + 0x1p-25f, "uv " + i + ": " + u + " → " + h);
+                uvErr = Math.max(uvErr, Math.abs(h - u));
+            }
+        }
+        assertTrue(normalDeg < 0.05f, "oct16 normal error (deg): " + normalDeg); // 2×16 位八面体映射约 0.01° 量级
+        // Encoded 里的统计与实测一致
+        assertEquals(posErr, e.maxPositionError, 1e-6f);
+        assertEquals(normalDeg, e.maxNormalDegrees, 1e-4f);
+        assertEquals(uvErr, e.maxUvError, 0f);
+
+        assertEquals(2, e.indexBytes(), "5000 vertices fit uint16 indices");
+    }
+
+    @Test
+    void halfRoundTripsExactValues() {
+        for (float f : new float[]{0f, -0f, 1f, -1f, 0.5f, 0.25f, 2048f, 65504f, 0x1p-14f, 0x1p-24f, 1.5f, -3.75f}) {
+            assertEquals(f, VertexFormat.fromHalf(VertexFormat.toHalf(f)), "value " + f);
+        }
+        assertEquals(Float.POSITIVE_INFINITY, VertexFormat.fromHalf(VertexFormat.toHalf(1e6f)));
+        assertTrue(Float.isNaN(VertexFormat.fromHalf(VertexFormat.toHalf(Float.NaN))));
+    }
+
+    @Test
+    void index16OnlyBelow65536Vertices() {
+        int[] ix = {0, 1, 2};
+        VertexFormat.Encoded small = VertexFormat.encode(new float[3 * 65535], ix, false, false, null, null, VertexFormat.COMPACT);
+        assertEquals(2, small.indexBytes());
+        assertEquals(3, small.indexCount());
+        VertexFormat.Encoded large = VertexFormat.encode(new float[3 * 65536], ix, false, false, null, null, VertexFormat.COMPACT);
+        assertEquals(4, large.indexBytes());
+        assertEquals(3, large.indexCount());
+    }
+
+    @Test
+    void flagsIgnoreMissingAttributes() {
+        VertexFormat f = new VertexFormat(false, true, VertexFormat.COMPACT);
+        assertEquals(VertexFormat.POS16 | VertexFormat.HALF_UV, f.flags);
+        assertEquals(8, f.uvOffset);
+        assertEquals(12, f.strideBytes);
+        VertexFormat g = new VertexFormat(false, false, VertexFormat.OCT16 | VertexFormat.HALF_UV);
+        assertEquals(0, g.flags);
+        assertEquals(12, g.strideBytes);
+    }
+}